@@ -0,0 +1,38 @@
+package net.thegreshams.firebase4j.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Generates the payloads shared by the benchmarks: objects of a given number
+ * of children, each a small record of a string, a number and a boolean.
+ */
+final class BenchmarkData {
+
+	private BenchmarkData() {
+	}
+
+	static Map<String, Object> dataMap(final int children) {
+		Map<String, Object> dataMap = new LinkedHashMap<>();
+		for (int i = 0; i < children; i++) {
+			Map<String, Object> child = new LinkedHashMap<>();
+			child.put("name", "user" + i);
+			child.put("score", i);
+			child.put("active", i % 2 == 0);
+			dataMap.put("child" + i, child);
+		}
+		return dataMap;
+	}
+
+	static String json(final int children) {
+		StringBuilder json = new StringBuilder("{");
+		for (int i = 0; i < children; i++) {
+			if (i > 0) {
+				json.append(',');
+			}
+			json.append("\"child").append(i).append("\":{\"name\":\"user").append(i).append("\",\"score\":")
+					.append(i).append(",\"active\":").append(i % 2 == 0).append('}');
+		}
+		return json.append('}').toString();
+	}
+}
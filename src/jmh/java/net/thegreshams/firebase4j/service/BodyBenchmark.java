@@ -0,0 +1,65 @@
+package net.thegreshams.firebase4j.service;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of serializing request bodies and parsing response bodies.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BodyBenchmark {
+
+	@Param({ "10", "1000" })
+	public int children;
+
+	private Firebase firebase;
+
+	private FirebaseRequest mapRequest;
+
+	private FirebaseRequest jsonRequest;
+
+	private String json;
+
+	@Setup
+	public void setup() {
+		firebase = new Firebase("https://benchmark.firebaseio.com/");
+		mapRequest = firebase.request();
+		for (Map.Entry<String, Object> entry : BenchmarkData.dataMap(children).entrySet()) {
+			mapRequest = mapRequest.addData(entry.getKey(), entry.getValue());
+		}
+		json = BenchmarkData.json(children);
+		jsonRequest = firebase.addData(json).addData("extra", "value");
+	}
+
+	@Benchmark
+	public byte[] combineDataFromMap() throws Exception {
+		return firebase.combineData(mapRequest);
+	}
+
+	@Benchmark
+	public byte[] combineDataFromJson() throws Exception {
+		return firebase.combineData(jsonRequest);
+	}
+
+	@Benchmark
+	public Map<String, Object> convertJsonToMap() {
+		return FirebaseJsonUtil.convertJsonToMap(json);
+	}
+}
@@ -0,0 +1,89 @@
+package net.thegreshams.firebase4j.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Cost of instrumentation: round trips against an in-process stub server
+ * with no instrumentation and with the Micrometer adapter, and the recording
+ * of a request on its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InstrumentationBenchmark {
+
+	@Param({ "noop", "micrometer" })
+	public String instrumentation;
+
+	private StubFirebaseServer server;
+
+	private Firebase firebase;
+
+	private FirebaseInstrumentation recording;
+
+	@Setup
+	public void setup() throws Exception {
+		final byte[] body = BenchmarkData.json(10).getBytes(StandardCharsets.UTF_8);
+		server = new StubFirebaseServer(new HttpHandler() {
+
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException {
+				StubFirebaseServer.readBody(exchange);
+				exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+				exchange.sendResponseHeaders(200, body.length);
+				exchange.getResponseBody().write(body);
+				exchange.close();
+			}
+		});
+		recording = "micrometer".equals(instrumentation)
+				? new FirebaseMicrometerInstrumentation(new SimpleMeterRegistry())
+				: FirebaseInstrumentation.NOOP;
+		firebase = new Firebase(server.getBaseUrl(), "secure-token", FirebaseClientConfig.builder()
+				.instrumentation(recording)
+				.build());
+	}
+
+	@TearDown
+	public void teardown() throws Exception {
+		firebase.close();
+		server.close();
+	}
+
+	@Benchmark
+	public Map<String, Object> get() throws Exception {
+		return firebase.get("users/joe").getBody();
+	}
+
+	@Benchmark
+	public FirebaseRequestRecorder record() {
+		FirebaseRequestRecorder recorder = recording.start(FirebaseRestMethod.GET, "users/joe");
+		if (recorder != null) {
+			recorder.completed(200, 0, 512);
+		}
+		return recorder;
+	}
+}
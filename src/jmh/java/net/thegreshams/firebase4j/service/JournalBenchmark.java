@@ -0,0 +1,86 @@
+package net.thegreshams.firebase4j.service;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of journaling a write, i.e. of converting it to JSON and appending it
+ * to the mapped segment, with and without forcing every append to disk.
+ * Firebase is unreachable, so the drainer sends nothing and the journal only
+ * grows; each iteration starts a new one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JournalBenchmark {
+
+	@Param({ "1", "100" })
+	public int children;
+
+	@Param({ "false", "true" })
+	public boolean sync;
+
+	private Firebase firebase;
+
+	private Map<String, Object> dataMap;
+
+	private File directory;
+
+	private FirebaseJournal journal;
+
+	private long writes;
+
+	@Setup
+	public void setup() throws Exception {
+		firebase = new Firebase("http://127.0.0.1:1/", null, FirebaseClientConfig.builder().build());
+		dataMap = BenchmarkData.dataMap(children);
+	}
+
+	@Setup(Level.Iteration)
+	public void openJournal() throws Exception {
+		directory = Files.createTempDirectory("journal-benchmark").toFile();
+		journal = FirebaseJournal.builder(firebase, directory)
+				.segmentSize(64 * 1024 * 1024)
+				.retryDelay(TimeUnit.MINUTES.toMillis(10))
+				.sync(sync)
+				.build();
+	}
+
+	@TearDown(Level.Iteration)
+	public void deleteJournal() throws Exception {
+		journal.close();
+		for (File file : directory.listFiles()) {
+			Files.delete(file.toPath());
+		}
+		Files.delete(directory.toPath());
+	}
+
+	@TearDown
+	public void teardown() throws Exception {
+		firebase.close();
+	}
+
+	@Benchmark
+	public void put() throws Exception {
+		journal.put("users/child" + (writes++ & 1023), dataMap);
+	}
+}
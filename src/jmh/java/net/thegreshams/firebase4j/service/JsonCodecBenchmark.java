@@ -0,0 +1,101 @@
+package net.thegreshams.firebase4j.service;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Throughput of the JSON codecs on the payloads of the other benchmarks, both
+ * as maps and bound to objects: writing request bodies, reading whole
+ * responses and streaming the children of a response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonCodecBenchmark {
+
+	@Param({ "jackson1", "jackson2" })
+	public String codecName;
+
+	@Param({ "10", "1000" })
+	public int children;
+
+	private FirebaseJsonCodec codec;
+
+	private Map<String, Object> dataMap;
+
+	private Map<String, User> users;
+
+	private byte[] json;
+
+	@Setup
+	public void setup() throws Exception {
+		codec = codecName.equals("jackson1") ? FirebaseJackson1Codec.INSTANCE : FirebaseJackson2Codec.DEFAULT;
+		dataMap = BenchmarkData.dataMap(children);
+		users = new LinkedHashMap<>();
+		for (int i = 0; i < children; i++) {
+			users.put("child" + i, new User("user" + i, i, i % 2 == 0));
+		}
+		json = BenchmarkData.json(children).getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Benchmark
+	public byte[] writeMap() throws Exception {
+		return codec.write(dataMap);
+	}
+
+	@Benchmark
+	public byte[] writeObjects() throws Exception {
+		return codec.write(users);
+	}
+
+	@Benchmark
+	public Map<?, ?> readMap() throws Exception {
+		return codec.read(json, Map.class);
+	}
+
+	@Benchmark
+	public long readObjects(final Blackhole blackhole) throws Exception {
+		return codec.readChildren(new ByteArrayInputStream(json), User.class, new FirebaseChildHandler<User>() {
+
+			@Override
+			public void onChild(final String key, final User value) {
+				blackhole.consume(value);
+			}
+		});
+	}
+
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	public static class User {
+
+		private String name;
+
+		private int score;
+
+		private boolean active;
+	}
+}
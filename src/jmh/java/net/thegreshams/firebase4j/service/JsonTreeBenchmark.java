@@ -0,0 +1,62 @@
+package net.thegreshams.firebase4j.service;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import net.thegreshams.firebase4j.model.FirebaseNode;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jol.info.GraphLayout;
+
+/**
+ * Cost of parsing a response body into a {@link FirebaseNode} tree versus the
+ * map of maps of {@link FirebaseJsonUtil#convertJsonToMap(String)}, and, for
+ * the memory each keeps, the retained size of both as measured by JOL,
+ * printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonTreeBenchmark {
+
+	@Param({ "1000", "100000" })
+	public int children;
+
+	private String json;
+
+	@Setup
+	public void setup() throws Exception {
+		json = BenchmarkData.json(children);
+		long mapSize = GraphLayout.parseInstance(FirebaseJsonUtil.convertJsonToMap(json)).totalSize();
+		long treeSize = GraphLayout.parseInstance(FirebaseNode.parse(json)).totalSize();
+		System.out.println(children + " children: map " + mapSize + " bytes, tree " + treeSize + " bytes");
+	}
+
+	@Benchmark
+	public Map<String, Object> convertJsonToMap() {
+		return FirebaseJsonUtil.convertJsonToMap(json);
+	}
+
+	@Benchmark
+	public FirebaseNode parseTree() throws Exception {
+		return FirebaseNode.parse(json);
+	}
+
+	@Benchmark
+	public long parseTreeAndReadPath() throws Exception {
+		return FirebaseNode.parse(json).at("child" + (children / 2) + "/score").asLong();
+	}
+}
@@ -0,0 +1,100 @@
+package net.thegreshams.firebase4j.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Full request/response cycles against an in-process stub server, from one
+ * thread and from many threads sharing a single {@link Firebase}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoundTripBenchmark {
+
+	private static final int CONCURRENT_THREADS = 16;
+
+	@Param({ "10", "1000" })
+	public int children;
+
+	private StubFirebaseServer server;
+
+	private Firebase firebase;
+
+	private FirebaseRequest putRequest;
+
+	@Setup
+	public void setup() throws Exception {
+		final byte[] body = BenchmarkData.json(children).getBytes(StandardCharsets.UTF_8);
+		server = new StubFirebaseServer(new HttpHandler() {
+
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException {
+				StubFirebaseServer.readBody(exchange);
+				exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+				exchange.sendResponseHeaders(200, body.length);
+				exchange.getResponseBody().write(body);
+				exchange.close();
+			}
+		});
+		firebase = new Firebase(server.getBaseUrl(), "secure-token", FirebaseClientConfig.builder()
+				.maxPerRoute(CONCURRENT_THREADS)
+				.build());
+		putRequest = firebase.request();
+		for (Map.Entry<String, Object> entry : BenchmarkData.dataMap(children).entrySet()) {
+			putRequest = putRequest.addData(entry.getKey(), entry.getValue());
+		}
+	}
+
+	@TearDown
+	public void teardown() throws Exception {
+		firebase.close();
+		server.close();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public Map<String, Object> get() throws Exception {
+		return firebase.get("users").getBody();
+	}
+
+	@Benchmark
+	@Threads(CONCURRENT_THREADS)
+	public Map<String, Object> getConcurrent() throws Exception {
+		return firebase.get("users").getBody();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public boolean put() throws Exception {
+		return putRequest.put("users").isSuccess();
+	}
+
+	@Benchmark
+	@Threads(CONCURRENT_THREADS)
+	public boolean putConcurrent() throws Exception {
+		return putRequest.put("users").isSuccess();
+	}
+}
@@ -0,0 +1,68 @@
+package net.thegreshams.firebase4j.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.thegreshams.firebase4j.model.FirebaseResponse;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency distribution of GETs sent by many threads at once over each
+ * transport, against a local server answering every request after 5ms: over
+ * HTTP/1.1 every request in flight needs a connection of its own, and waits
+ * for one once the pool limit of 50 per route is reached, while HTTP/2 sends
+ * them all as streams of one connection. The number of connections each
+ * transport opened is printed at the end of the trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(128)
+@Fork(1)
+public class TransportBenchmark {
+
+	@Param({ "http1", "http2" })
+	public String transport;
+
+	private H2StubFirebaseServer server;
+
+	private Firebase firebase;
+
+	private final AtomicLong gets = new AtomicLong();
+
+	@Setup
+	public void setup() throws Exception {
+		server = new H2StubFirebaseServer(5);
+		boolean http2 = "http2".equals(transport);
+		firebase = new Firebase(http2 ? server.getBaseUrl() : server.getHttp1BaseUrl(), null,
+				FirebaseClientConfig.builder().http2(http2).build());
+	}
+
+	@TearDown
+	public void teardown() throws Exception {
+		firebase.close();
+		server.close();
+		System.out.println(transport + ": " + server.getConnectionCount() + " connections for " + gets.get()
+				+ " GETs");
+	}
+
+	@Benchmark
+	public FirebaseResponse get() throws Exception {
+		return firebase.get("users/u" + (gets.incrementAndGet() & 1023));
+	}
+}
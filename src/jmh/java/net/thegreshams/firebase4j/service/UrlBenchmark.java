@@ -0,0 +1,63 @@
+package net.thegreshams.firebase4j.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of turning a request into its full URL. Run with "-prof gc" for the
+ * bytes allocated per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UrlBenchmark {
+
+	private static final FirebasePathTemplate EVENTS = FirebasePathTemplate.compile("users/{uid}/events");
+
+	@Param({ "0", "4" })
+	public int queryParams;
+
+	private Firebase firebase;
+
+	private FirebaseRequest request;
+
+	private String uid = "abc123";
+
+	@Setup
+	public void setup() throws Exception {
+		firebase = new Firebase("https://benchmark.firebaseio.com/", "secure-token");
+		request = firebase.request().withPath("/users/abc123/events");
+		for (int i = 0; i < queryParams; i++) {
+			request = request.addQuery("query" + i, "\"value " + i + "\"");
+		}
+	}
+
+	@Benchmark
+	public String buildFullUrlFromRelativePath() {
+		return firebase.buildFullUrlFromRelativePath(request);
+	}
+
+	@Benchmark
+	public String expandTemplate() {
+		return EVENTS.expand(uid);
+	}
+
+	@Benchmark
+	public String buildFullUrlFromTemplate() {
+		return firebase.buildFullUrlFromRelativePath(request.withPath(EVENTS, uid));
+	}
+}
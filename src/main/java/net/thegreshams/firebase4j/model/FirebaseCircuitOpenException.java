@@ -0,0 +1,21 @@
+package net.thegreshams.firebase4j.model;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of sending a request while the circuit breaker of its
+ * Firebase is open, i.e. while the backend is considered unhealthy.
+ */
+public class FirebaseCircuitOpenException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * @param url
+	 *            URL of the request; its query, which holds the secure token,
+	 *            is left out of the message
+	 */
+	public FirebaseCircuitOpenException(final String url) {
+		super("circuit breaker is open; not sending request to '" + FirebaseException.withoutQuery(url) + "'");
+	}
+}
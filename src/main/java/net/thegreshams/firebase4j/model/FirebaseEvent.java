@@ -0,0 +1,43 @@
+package net.thegreshams.firebase4j.model;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * A single event received from the Firebase streaming endpoint.
+ */
+@Getter
+@ToString
+public class FirebaseEvent {
+
+	public enum Type {
+		PUT, PATCH, CANCEL, AUTH_REVOKED
+	}
+
+	private final Type type;
+
+	/**
+	 * Path of the changed data relative to the listened location, e.g. "/" or
+	 * "/a/b"; null for CANCEL and AUTH_REVOKED.
+	 */
+	private final String path;
+
+	/**
+	 * New data at the path for PUT, the children to update below the path for
+	 * PATCH, and the server's message (if any) for CANCEL and AUTH_REVOKED.
+	 */
+	private final Object data;
+
+	/**
+	 * The whole listened location after this event was applied, as
+	 * unmodifiable maps, lists and scalars; null if it is empty.
+	 */
+	private final Object snapshot;
+
+	public FirebaseEvent(final Type type, final String path, final Object data, final Object snapshot) {
+		this.type = type;
+		this.path = path;
+		this.data = data;
+		this.snapshot = snapshot;
+	}
+}
@@ -0,0 +1,45 @@
+package net.thegreshams.firebase4j.model;
+
+import java.io.IOException;
+
+import lombok.Getter;
+
+/**
+ * Thrown by calls that return data rather than a {@link FirebaseResponse} when
+ * Firebase answers with an unsuccessful response. The message leaves out the
+ * query of the URL, which holds the secure token, and all but the start of
+ * the body; both are still available whole from the response.
+ */
+@Getter
+public class FirebaseException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Number of characters of the body kept in the message
+	 */
+	static final int MAX_MESSAGE_BODY = 200;
+
+	private final FirebaseResponse response;
+
+	public FirebaseException(final FirebaseResponse response) {
+		super("unsuccessful response from '" + withoutQuery(response.getUrl()) + "': " + response.getCode() + " "
+				+ abbreviate(response.getRawBody()));
+		this.response = response;
+	}
+
+	/**
+	 * @return the URL without its query, for messages and logs
+	 */
+	static String withoutQuery(final String url) {
+		int query = url != null ? url.indexOf('?') : -1;
+		return query < 0 ? url : url.substring(0, query);
+	}
+
+	private static String abbreviate(final String body) {
+		if (body == null || body.length() <= MAX_MESSAGE_BODY) {
+			return body;
+		}
+		return body.substring(0, MAX_MESSAGE_BODY) + "... (" + (body.length() - MAX_MESSAGE_BODY) + " more characters)";
+	}
+}
@@ -0,0 +1,817 @@
+package net.thegreshams.firebase4j.model;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * A read-only JSON document held compactly in memory, navigated by path:
+ *
+ * <pre>
+ * long score = response.getTree().at("users/abc/score").asLong();
+ * </pre>
+ *
+ * Rather than a map per object and a boxed value per number, every object or
+ * array is a single node whose children are held in parallel arrays: keys
+ * sorted for binary search, a type per child, numbers and booleans as
+ * primitive longs, and strings and nested nodes as references. Objects of
+ * the same shape, such as the records of a large collection, share one
+ * instance of their key and type arrays, and equal keys share one string.
+ * Numbers, strings and booleans get a node of their own only when navigated
+ * to.
+ *
+ * Where an object has a key more than once, the last value wins. Integers too
+ * large for a long are held as doubles.
+ *
+ * Nodes are immutable and can be shared freely between threads. Navigating to
+ * something that does not exist returns {@link #MISSING} rather than null,
+ * so paths can be followed without checks along the way.
+ */
+public abstract class FirebaseNode {
+
+	public enum Type {
+		OBJECT, ARRAY, STRING, LONG, DOUBLE, BOOLEAN, NULL, MISSING
+	}
+
+	/**
+	 * What navigating to something that does not exist returns; also the
+	 * tree of an empty document.
+	 */
+	public static final FirebaseNode MISSING = new Leaf(Type.MISSING, 0, null);
+
+	private static final FirebaseNode NULL = new Leaf(Type.NULL, 0, null);
+
+	private static final FirebaseNode TRUE = new Leaf(Type.BOOLEAN, 1, null);
+
+	private static final FirebaseNode FALSE = new Leaf(Type.BOOLEAN, 0, null);
+
+	private static final FirebaseNode EMPTY_OBJECT = new Container(Type.OBJECT, new String[0], new byte[0], null,
+			null);
+
+	private static final FirebaseNode EMPTY_ARRAY = new Container(Type.ARRAY, null, new byte[0], null, null);
+
+	private static final Type[] TYPES = Type.values();
+
+	/**
+	 * Field names are not interned: the keys of large collections, such as
+	 * push IDs, would fill the JVM's string pool.
+	 */
+	private static final JsonFactory FACTORY = JsonFactory.builder()
+			.disable(JsonFactory.Feature.INTERN_FIELD_NAMES)
+			.build();
+
+	private final Type type;
+
+	private FirebaseNode(final Type type) {
+		this.type = type;
+	}
+
+	/**
+	 * @param json
+	 *            JSON document
+	 * @return the root of the document, or {@link #MISSING} if the document
+	 *         is null or blank
+	 * @throws IOException
+	 *             if the document is not valid JSON
+	 */
+	public static FirebaseNode parse(final String json) throws IOException {
+		if (json == null) {
+			return MISSING;
+		}
+		try (JsonParser parser = FACTORY.createParser(json)) {
+			return new TreeReader(parser).readRoot();
+		}
+	}
+
+	/**
+	 * @param json
+	 *            UTF-8 encoded JSON document
+	 * @return the root of the document, or {@link #MISSING} if the document
+	 *         is null or blank
+	 * @throws IOException
+	 *             if the document is not valid JSON
+	 */
+	public static FirebaseNode parse(final byte[] json) throws IOException {
+		if (json == null) {
+			return MISSING;
+		}
+		try (JsonParser parser = FACTORY.createParser(json)) {
+			return new TreeReader(parser).readRoot();
+		}
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public boolean isMissing() {
+		return type == Type.MISSING;
+	}
+
+	public boolean isNull() {
+		return type == Type.NULL;
+	}
+
+	public boolean isObject() {
+		return type == Type.OBJECT;
+	}
+
+	public boolean isArray() {
+		return type == Type.ARRAY;
+	}
+
+	public boolean isNumber() {
+		return type == Type.LONG || type == Type.DOUBLE;
+	}
+
+	public boolean isTextual() {
+		return type == Type.STRING;
+	}
+
+	public boolean isBoolean() {
+		return type == Type.BOOLEAN;
+	}
+
+	/**
+	 * @return the number of children of an object or array; 0 for anything
+	 *         else
+	 */
+	public int size() {
+		return 0;
+	}
+
+	/**
+	 * @return the keys of an object, in ascending order; empty for anything
+	 *         else
+	 */
+	public List<String> keys() {
+		return Collections.emptyList();
+	}
+
+	/**
+	 * @param key
+	 *            Key of a child of an object, or index of an element of an
+	 *            array
+	 * @return the child, or {@link #MISSING} if there is none
+	 */
+	public FirebaseNode get(final String key) {
+		return MISSING;
+	}
+
+	/**
+	 * @param index
+	 *            Index of an element of an array
+	 * @return the element, or {@link #MISSING} if there is none
+	 */
+	public FirebaseNode get(final int index) {
+		return MISSING;
+	}
+
+	/**
+	 * @param key
+	 *            Key of a child of an object, or index of an element of an
+	 *            array
+	 * @return whether the child exists; it may still be JSON null
+	 */
+	public boolean has(final String key) {
+		return !get(key).isMissing();
+	}
+
+	/**
+	 * @param path
+	 *            Slash-separated keys (or array indexes) of a descendant. If
+	 *            null/empty, refers to this node
+	 * @return the descendant, or {@link #MISSING} if there is none
+	 */
+	public FirebaseNode at(final String path) {
+		if (path == null) {
+			return this;
+		}
+		FirebaseNode node = this;
+		int start = 0;
+		while (start <= path.length() && !node.isMissing()) {
+			int end = path.indexOf('/', start);
+			if (end < 0) {
+				end = path.length();
+			}
+			if (end > start) {
+				node = node.get(path.substring(start, end));
+			}
+			start = end + 1;
+		}
+		return node;
+	}
+
+	/**
+	 * @return the string, or the text of a number or boolean; null for
+	 *         anything else
+	 */
+	public String asText() {
+		return asText(null);
+	}
+
+	/**
+	 * @param defaultValue
+	 *            Returned for anything but a string, number or boolean
+	 * @return the string, or the text of a number or boolean
+	 */
+	public String asText(final String defaultValue) {
+		return defaultValue;
+	}
+
+	/**
+	 * @return the number, 1 or 0 for a boolean, or a string's number; 0 for
+	 *         anything else
+	 */
+	public long asLong() {
+		return asLong(0);
+	}
+
+	/**
+	 * @param defaultValue
+	 *            Returned for anything but a number, boolean or a string
+	 *            holding a number
+	 * @return the number (a double is truncated), 1 or 0 for a boolean, or a
+	 *         string's number
+	 */
+	public long asLong(final long defaultValue) {
+		return defaultValue;
+	}
+
+	/**
+	 * @return the number, 1 or 0 for a boolean, or a string's number; 0 for
+	 *         anything else
+	 */
+	public double asDouble() {
+		return asDouble(0);
+	}
+
+	/**
+	 * @param defaultValue
+	 *            Returned for anything but a number, boolean or a string
+	 *            holding a number
+	 * @return the number, 1 or 0 for a boolean, or a string's number
+	 */
+	public double asDouble(final double defaultValue) {
+		return defaultValue;
+	}
+
+	/**
+	 * @return the boolean, whether a number is not 0, or whether a string is
+	 *         "true"; false for anything else
+	 */
+	public boolean asBoolean() {
+		return asBoolean(false);
+	}
+
+	/**
+	 * @param defaultValue
+	 *            Returned for anything but a boolean, number or string
+	 * @return the boolean, whether a number is not 0, or whether a string is
+	 *         "true"
+	 */
+	public boolean asBoolean(final boolean defaultValue) {
+		return defaultValue;
+	}
+
+	/**
+	 * @return the node as JSON; an empty string for {@link #MISSING}
+	 */
+	@Override
+	public String toString() {
+		if (isMissing()) {
+			return "";
+		}
+		StringWriter json = new StringWriter();
+		try (JsonGenerator generator = FACTORY.createGenerator(json)) {
+			write(generator);
+		} catch (IOException e) {
+			// not thrown by a StringWriter
+			throw new IllegalStateException(e);
+		}
+		return json.toString();
+	}
+
+	abstract void write(JsonGenerator generator) throws IOException;
+
+	/**
+	 * A string, number, boolean, null or the missing node.
+	 */
+	private static final class Leaf extends FirebaseNode {
+
+		/**
+		 * A long, the raw bits of a double, or 1 or 0 for a boolean.
+		 */
+		private final long bits;
+
+		private final String text;
+
+		private Leaf(final Type type, final long bits, final String text) {
+			super(type);
+			this.bits = bits;
+			this.text = text;
+		}
+
+		@Override
+		public String asText(final String defaultValue) {
+			switch (getType()) {
+			case STRING:
+				return text;
+			case LONG:
+				return Long.toString(bits);
+			case DOUBLE:
+				return Double.toString(Double.longBitsToDouble(bits));
+			case BOOLEAN:
+				return Boolean.toString(bits != 0);
+			default:
+				return defaultValue;
+			}
+		}
+
+		@Override
+		public long asLong(final long defaultValue) {
+			switch (getType()) {
+			case LONG:
+			case BOOLEAN:
+				return bits;
+			case DOUBLE:
+				return (long) Double.longBitsToDouble(bits);
+			case STRING:
+				try {
+					return Long.parseLong(text.trim());
+				} catch (NumberFormatException e) {
+					double value = asDouble(Double.NaN);
+					return Double.isNaN(value) ? defaultValue : (long) value;
+				}
+			default:
+				return defaultValue;
+			}
+		}
+
+		@Override
+		public double asDouble(final double defaultValue) {
+			switch (getType()) {
+			case LONG:
+			case BOOLEAN:
+				return bits;
+			case DOUBLE:
+				return Double.longBitsToDouble(bits);
+			case STRING:
+				try {
+					return Double.parseDouble(text.trim());
+				} catch (NumberFormatException e) {
+					return defaultValue;
+				}
+			default:
+				return defaultValue;
+			}
+		}
+
+		@Override
+		public boolean asBoolean(final boolean defaultValue) {
+			switch (getType()) {
+			case LONG:
+			case BOOLEAN:
+				return bits != 0;
+			case DOUBLE:
+				return Double.longBitsToDouble(bits) != 0;
+			case STRING:
+				return "true".equalsIgnoreCase(text.trim());
+			default:
+				return defaultValue;
+			}
+		}
+
+		@Override
+		void write(final JsonGenerator generator) throws IOException {
+			switch (getType()) {
+			case STRING:
+				generator.writeString(text);
+				break;
+			case LONG:
+				generator.writeNumber(bits);
+				break;
+			case DOUBLE:
+				generator.writeNumber(Double.longBitsToDouble(bits));
+				break;
+			case BOOLEAN:
+				generator.writeBoolean(bits != 0);
+				break;
+			default:
+				generator.writeNull();
+				break;
+			}
+		}
+	}
+
+	/**
+	 * An object or array, with its children in parallel arrays indexed alike.
+	 */
+	private static final class Container extends FirebaseNode {
+
+		/**
+		 * Keys of an object in ascending order, possibly shared with objects
+		 * of the same shape; null for an array.
+		 */
+		private final String[] keys;
+
+		/**
+		 * Ordinal of the {@link Type} of every child, possibly shared with
+		 * containers of the same shape.
+		 */
+		private final byte[] types;
+
+		/**
+		 * Values of the numbers and booleans, as in {@link Leaf#bits}; null if
+		 * there are none.
+		 */
+		private final long[] bits;
+
+		/**
+		 * Strings and nested containers; null if there are none.
+		 */
+		private final Object[] refs;
+
+		private Container(final Type type, final String[] keys, final byte[] types, final long[] bits,
+		        final Object[] refs) {
+			super(type);
+			this.keys = keys;
+			this.types = types;
+			this.bits = bits;
+			this.refs = refs;
+		}
+
+		@Override
+		public int size() {
+			return types.length;
+		}
+
+		@Override
+		public List<String> keys() {
+			return keys != null ? Collections.unmodifiableList(Arrays.asList(keys)) : super.keys();
+		}
+
+		@Override
+		public FirebaseNode get(final String key) {
+			if (keys != null) {
+				int index = Arrays.binarySearch(keys, key);
+				return index >= 0 ? child(index) : MISSING;
+			}
+			try {
+				return get(Integer.parseInt(key));
+			} catch (NumberFormatException e) {
+				return MISSING;
+			}
+		}
+
+		@Override
+		public FirebaseNode get(final int index) {
+			return keys == null && index >= 0 && index < types.length ? child(index) : MISSING;
+		}
+
+		private FirebaseNode child(final int index) {
+			Type childType = TYPES[types[index]];
+			switch (childType) {
+			case OBJECT:
+			case ARRAY:
+				return (FirebaseNode) refs[index];
+			case STRING:
+				return new Leaf(Type.STRING, 0, (String) refs[index]);
+			case BOOLEAN:
+				return bits[index] != 0 ? TRUE : FALSE;
+			case NULL:
+				return NULL;
+			default:
+				return new Leaf(childType, bits[index], null);
+			}
+		}
+
+		@Override
+		void write(final JsonGenerator generator) throws IOException {
+			if (keys != null) {
+				generator.writeStartObject();
+				for (int i = 0; i < types.length; i++) {
+					generator.writeFieldName(keys[i]);
+					child(i).write(generator);
+				}
+				generator.writeEndObject();
+			} else {
+				generator.writeStartArray();
+				for (int i = 0; i < types.length; i++) {
+					child(i).write(generator);
+				}
+				generator.writeEndArray();
+			}
+		}
+	}
+
+	/**
+	 * Builds the tree of one document straight from the tokens of a parser.
+	 * Children are gathered in scratch arrays kept per depth, then copied
+	 * into exact-size arrays once their container ends.
+	 */
+	private static final class TreeReader {
+
+		/**
+		 * Objects with up to this many keys have their key and type arrays
+		 * shared with objects of the same shape.
+		 */
+		private static final int SHAPE_LIMIT = 32;
+
+		private final JsonParser parser;
+
+		private final List<Scratch> scratches = new ArrayList<>();
+
+		private final Map<String, String> keys = new HashMap<>();
+
+		private final Map<List<String>, String[]> keySets = new HashMap<>();
+
+		private final Map<ByteBuffer, byte[]> typeSets = new HashMap<>();
+
+		/**
+		 * The container read last, until its parent takes it.
+		 */
+		private FirebaseNode built;
+
+		private TreeReader(final JsonParser parser) {
+			this.parser = parser;
+		}
+
+		private FirebaseNode readRoot() throws IOException {
+			JsonToken token = parser.nextToken();
+			if (token == null) {
+				return MISSING;
+			}
+			Scratch root = scratch(0);
+			root.add(null, read(token, 1), this);
+			Type rootType = TYPES[root.types[0]];
+			switch (rootType) {
+			case OBJECT:
+			case ARRAY:
+				return (FirebaseNode) root.refs[0];
+			default:
+				return root.leaf(0);
+			}
+		}
+
+		/**
+		 * @return the type of the value the token starts, its container
+		 *         having been read if it is one
+		 */
+		private Type read(final JsonToken token, final int depth) throws IOException {
+			switch (token) {
+			case START_OBJECT:
+				readContainer(true, depth);
+				return Type.OBJECT;
+			case START_ARRAY:
+				readContainer(false, depth);
+				return Type.ARRAY;
+			case VALUE_STRING:
+				return Type.STRING;
+			case VALUE_NUMBER_INT:
+				return parser.getNumberType() == JsonParser.NumberType.BIG_INTEGER ? Type.DOUBLE : Type.LONG;
+			case VALUE_NUMBER_FLOAT:
+				return Type.DOUBLE;
+			case VALUE_TRUE:
+			case VALUE_FALSE:
+				return Type.BOOLEAN;
+			case VALUE_NULL:
+				return Type.NULL;
+			default:
+				throw new JsonParseException(parser, "Unexpected token " + token);
+			}
+		}
+
+		/**
+		 * Reads the children of the container the parser is on the start of,
+		 * leaving the container in {@link #built}.
+		 */
+		private void readContainer(final boolean object, final int depth) throws IOException {
+			Scratch scratch = scratch(depth);
+			scratch.clear();
+			JsonToken token;
+			if (object) {
+				while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+					String key = parser.getCurrentName();
+					scratch.add(key, read(parser.nextToken(), depth + 1), this);
+				}
+			} else {
+				while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+					if (token == null) {
+						throw new JsonParseException(parser, "Unexpected end of input in an array");
+					}
+					scratch.add(null, read(token, depth + 1), this);
+				}
+			}
+			if (token == null) {
+				throw new JsonParseException(parser, "Unexpected end of input in an object");
+			}
+			built = object ? scratch.toObject(this) : scratch.toArray(this);
+		}
+
+		private Scratch scratch(final int depth) {
+			while (scratches.size() <= depth) {
+				scratches.add(new Scratch());
+			}
+			return scratches.get(depth);
+		}
+
+		private String[] shareKeys(final String[] sorted) {
+			if (sorted.length > SHAPE_LIMIT) {
+				return sorted;
+			}
+			for (int i = 0; i < sorted.length; i++) {
+				String shared = keys.get(sorted[i]);
+				if (shared == null) {
+					keys.put(sorted[i], sorted[i]);
+				} else {
+					sorted[i] = shared;
+				}
+			}
+			String[] shared = keySets.get(Arrays.asList(sorted));
+			if (shared == null) {
+				keySets.put(Arrays.asList(sorted), sorted);
+				return sorted;
+			}
+			return shared;
+		}
+
+		private byte[] shareTypes(final byte[] types) {
+			if (types.length > SHAPE_LIMIT) {
+				return types;
+			}
+			ByteBuffer key = ByteBuffer.wrap(types);
+			byte[] shared = typeSets.get(key);
+			if (shared == null) {
+				typeSets.put(key, types);
+				return types;
+			}
+			return shared;
+		}
+	}
+
+	/**
+	 * Growable arrays gathering the children of one container.
+	 */
+	private static final class Scratch {
+
+		private String[] keys = new String[16];
+
+		private byte[] types = new byte[16];
+
+		private long[] bits = new long[16];
+
+		private Object[] refs = new Object[16];
+
+		private int size;
+
+		private boolean hasBits;
+
+		private boolean hasRefs;
+
+		private void clear() {
+			size = 0;
+			hasBits = false;
+			hasRefs = false;
+		}
+
+		/**
+		 * Adds the value the parser is on, or the container just read.
+		 */
+		private void add(final String key, final Type type, final TreeReader reader) throws IOException {
+			if (size == types.length) {
+				int capacity = size * 2;
+				keys = Arrays.copyOf(keys, capacity);
+				types = Arrays.copyOf(types, capacity);
+				bits = Arrays.copyOf(bits, capacity);
+				refs = Arrays.copyOf(refs, capacity);
+			}
+			JsonParser parser = reader.parser;
+			keys[size] = key;
+			types[size] = (byte) type.ordinal();
+			switch (type) {
+			case OBJECT:
+			case ARRAY:
+				refs[size] = reader.built;
+				reader.built = null;
+				hasRefs = true;
+				break;
+			case STRING:
+				refs[size] = parser.getText();
+				hasRefs = true;
+				break;
+			case LONG:
+				bits[size] = parser.getLongValue();
+				hasBits = true;
+				break;
+			case DOUBLE:
+				bits[size] = Double.doubleToRawLongBits(parser.getDoubleValue());
+				hasBits = true;
+				break;
+			case BOOLEAN:
+				bits[size] = parser.getCurrentToken() == JsonToken.VALUE_TRUE ? 1 : 0;
+				hasBits = true;
+				break;
+			default:
+				break;
+			}
+			size++;
+		}
+
+		private FirebaseNode leaf(final int index) {
+			Type type = TYPES[types[index]];
+			switch (type) {
+			case STRING:
+				return new Leaf(type, 0, (String) refs[index]);
+			case BOOLEAN:
+				return bits[index] != 0 ? TRUE : FALSE;
+			case NULL:
+				return NULL;
+			default:
+				return new Leaf(type, bits[index], null);
+			}
+		}
+
+		private FirebaseNode toArray(final TreeReader reader) {
+			if (size == 0) {
+				return EMPTY_ARRAY;
+			}
+			return new Container(Type.ARRAY, null, reader.shareTypes(Arrays.copyOf(types, size)),
+					hasBits ? Arrays.copyOf(bits, size) : null, hasRefs ? Arrays.copyOf(refs, size) : null);
+		}
+
+		private FirebaseNode toObject(final TreeReader reader) {
+			if (size == 0) {
+				return EMPTY_OBJECT;
+			}
+			int[] order = sortedOrder();
+			int count = order.length;
+			String[] sortedKeys = new String[count];
+			byte[] sortedTypes = new byte[count];
+			long[] sortedBits = hasBits ? new long[count] : null;
+			Object[] sortedRefs = hasRefs ? new Object[count] : null;
+			for (int i = 0; i < count; i++) {
+				int from = order[i];
+				sortedKeys[i] = keys[from];
+				sortedTypes[i] = types[from];
+				if (sortedBits != null) {
+					sortedBits[i] = bits[from];
+				}
+				if (sortedRefs != null) {
+					sortedRefs[i] = refs[from];
+				}
+			}
+			return new Container(Type.OBJECT, reader.shareKeys(sortedKeys), reader.shareTypes(sortedTypes),
+					sortedBits, sortedRefs);
+		}
+
+		/**
+		 * @return the indexes of the children in ascending order of their
+		 *         keys, keeping only the last child of a repeated key
+		 */
+		private int[] sortedOrder() {
+			int[] order = new int[size];
+			boolean sorted = true;
+			for (int i = 0; i < size; i++) {
+				order[i] = i;
+				sorted &= i == 0 || keys[i - 1].compareTo(keys[i]) < 0;
+			}
+			if (sorted) {
+				return order;
+			}
+			Integer[] boxed = new Integer[size];
+			for (int i = 0; i < size; i++) {
+				boxed[i] = i;
+			}
+			// stable, so the children of a repeated key stay in the order read
+			Arrays.sort(boxed, new Comparator<Integer>() {
+
+				@Override
+				public int compare(final Integer a, final Integer b) {
+					return keys[a].compareTo(keys[b]);
+				}
+			});
+			int count = 0;
+			for (int i = 0; i < size; i++) {
+				if (i + 1 < size && keys[boxed[i]].equals(keys[boxed[i + 1]])) {
+					continue;
+				}
+				order[count++] = boxed[i];
+			}
+			return Arrays.copyOf(order, count);
+		}
+	}
+}
@@ -2,14 +2,19 @@ package net.thegreshams.firebase4j.model;
 
 import static com.google.common.base.Strings.nullToEmpty;
 import static net.thegreshams.firebase4j.service.FirebaseJsonUtil.convertJsonToMap;
+import static net.thegreshams.firebase4j.service.FirebaseJsonUtil.convertJsonToTree;
 
+import java.io.IOException;
 import java.util.Map;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.ToString;
+import net.thegreshams.firebase4j.service.FirebaseJackson2Codec;
+import net.thegreshams.firebase4j.service.FirebaseJsonCodec;
 
 @Getter
-@ToString
+@ToString(exclude = { "jsonCodec", "body", "tree" })
 public class FirebaseResponse {
 
 	private final boolean success;
@@ -20,13 +25,107 @@ public class FirebaseResponse {
 
 	private final String url;
 
-	private Map<String, Object> body;
+	/**
+	 * ETag of the data, if it was asked for with the X-Firebase-ETag header;
+	 * otherwise null.
+	 */
+	private final String etag;
+
+	/**
+	 * Codec of the Firebase that received the response, which the raw body is
+	 * converted with.
+	 */
+	@Getter(AccessLevel.NONE)
+	private final FirebaseJsonCodec jsonCodec;
+
+	/**
+	 * The raw body converted to a map, or null until it is first asked for.
+	 * This and the tree are held by hand rather than by lazy getters, whose
+	 * generated cast is unchecked.
+	 */
+	@Getter(AccessLevel.NONE)
+	private volatile Map<String, Object> body;
+
+	/**
+	 * The raw body as a compact, read-only tree, or null until it is first
+	 * asked for.
+	 */
+	@Getter(AccessLevel.NONE)
+	private volatile FirebaseNode tree;
 
 	public FirebaseResponse(final boolean success, final int code, final String rawBody, final String url) {
+		this(success, code, rawBody, url, null);
+	}
+
+	public FirebaseResponse(final boolean success, final int code, final String rawBody, final String url,
+	        final String etag) {
+		this(success, code, rawBody, url, etag, FirebaseJackson2Codec.DEFAULT);
+	}
+
+	public FirebaseResponse(final boolean success, final int code, final String rawBody, final String url,
+	        final String etag, final FirebaseJsonCodec jsonCodec) {
 		this.success = success;
 		this.code = code;
 		this.rawBody = nullToEmpty(rawBody).trim();
-		body = convertJsonToMap(rawBody);
 		this.url = url;
+		this.etag = etag;
+		this.jsonCodec = jsonCodec;
+	}
+
+	/**
+	 * @return the raw body converted to a map; only parsed the first time it
+	 *         is asked for
+	 */
+	public Map<String, Object> getBody() {
+		Map<String, Object> result = body;
+		if (result == null) {
+			synchronized (this) {
+				result = body;
+				if (result == null) {
+					result = convertJsonToMap(jsonCodec, rawBody);
+					body = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the raw body as a compact, read-only tree, which takes about
+	 *         half the memory of the body map for large responses; only
+	 *         parsed the first time it is asked for. It is read with Jackson 2
+	 *         whatever the codec
+	 */
+	public FirebaseNode getTree() {
+		FirebaseNode result = tree;
+		if (result == null) {
+			synchronized (this) {
+				result = tree;
+				if (result == null) {
+					result = convertJsonToTree(rawBody);
+					tree = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Reads a single value out of the raw body without converting the rest of
+	 * it; siblings of the requested value are skipped rather than parsed.
+	 *
+	 * @param path
+	 *            Slash-separated keys of the value within the body. If
+	 *            null/empty, refers to the whole body
+	 * @param type
+	 *            Type to convert the value to
+	 * @return the value, or null if the body is empty or has nothing at the
+	 *         path
+	 * @throws IOException
+	 *             if the body is not valid JSON or the value cannot be
+	 *             converted to the type
+	 */
+	public <T> T getValue(final String path, final Class<T> type) throws IOException {
+		return jsonCodec.readChild(rawBody, path, type);
 	}
 }
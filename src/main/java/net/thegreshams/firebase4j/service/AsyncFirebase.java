@@ -0,0 +1,306 @@
+package net.thegreshams.firebase4j.service;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static net.thegreshams.firebase4j.service.FirebaseRestMethod.DELETE;
+import static net.thegreshams.firebase4j.service.FirebaseRestMethod.GET;
+import static net.thegreshams.firebase4j.service.FirebaseRestMethod.PATCH;
+import static net.thegreshams.firebase4j.service.FirebaseRestMethod.POST;
+import static net.thegreshams.firebase4j.service.FirebaseRestMethod.PUT;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import net.thegreshams.firebase4j.model.FirebaseCircuitOpenException;
+import net.thegreshams.firebase4j.model.FirebaseResponse;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+
+/**
+ * Non-blocking counterpart of {@link Firebase}. Requests are executed on a
+ * small pool of I/O threads and every call returns immediately with a
+ * {@link CompletableFuture}.
+ *
+ * At most {@link FirebaseClientConfig#getMaxInFlight()} requests are in flight
+ * at once; further calls block the caller until a slot frees up, and fail with
+ * a {@link RejectedExecutionException} if none does within the
+ * {@link FirebaseClientConfig#getInFlightTimeout() in-flight timeout}. Futures are completed on the I/O threads, so
+ * expensive continuations should use the *Async variants of
+ * {@link CompletableFuture}.
+ *
+ * Writes invalidate the {@link FirebaseCache} of the underlying Firebase, if it
+ * has one; reads always go to the network. Requests go through the
+ * {@link FirebaseCircuitBreaker} of the underlying Firebase, but are not
+ * retried, and are reported to its {@link FirebaseInstrumentation}.
+ */
+@ToString(of = "firebase")
+@Slf4j
+public class AsyncFirebase implements Closeable {
+
+	private final Firebase firebase;
+
+	private final CloseableHttpAsyncClient httpAsyncClient;
+
+	private final Semaphore inFlight;
+
+	private final long inFlightTimeout;
+
+	/**
+	 * @param firebase
+	 *            Firebase providing the base URL and secure token
+	 */
+	public AsyncFirebase(final Firebase firebase) {
+		this(firebase, FirebaseClientConfig.DEFAULT);
+	}
+
+	/**
+	 * @param firebase
+	 *            Firebase providing the base URL and secure token
+	 * @param config
+	 *            Configuration of the non-blocking HTTP client owned by this
+	 *            AsyncFirebase and released by {@link #close()}
+	 */
+	public AsyncFirebase(final Firebase firebase, final FirebaseClientConfig config) {
+		this.firebase = checkNotNull(firebase, "firebase cannot be null");
+		httpAsyncClient = config.createHttpAsyncClient();
+		httpAsyncClient.start();
+		inFlight = new Semaphore(config.getMaxInFlight());
+		inFlightTimeout = config.getInFlightTimeout();
+	}
+
+	/**
+	 * @return an empty {@link FirebaseRequest} to build calls from
+	 * @see Firebase#request()
+	 */
+	public FirebaseRequest request() {
+		return firebase.request();
+	}
+
+	/**
+	 * GETs data from the provided path relative to the base URL
+	 *
+	 * @param path
+	 *            Path relative to base URL. If null/empty, refers to the base
+	 *            URL
+	 * @return a future of the {@link FirebaseResponse}
+	 */
+	public CompletableFuture<FirebaseResponse> get(final String path) {
+		return execute(GET, request().withPath(path));
+	}
+
+	/**
+	 * GETs data as described by the request
+	 *
+	 * @param request
+	 *            Path and query to GET
+	 * @return a future of the {@link FirebaseResponse}
+	 */
+	public CompletableFuture<FirebaseResponse> get(final FirebaseRequest request) {
+		return execute(GET, request);
+	}
+
+	/**
+	 * PATCHs the data of the request to its path
+	 *
+	 * @param request
+	 *            Path, query and data to PATCH
+	 * @return a future of the {@link FirebaseResponse}
+	 */
+	public CompletableFuture<FirebaseResponse> patch(final FirebaseRequest request) {
+		return execute(PATCH, request);
+	}
+
+	/**
+	 * PUTs the data of the request to its path
+	 *
+	 * @param request
+	 *            Path, query and data to PUT
+	 * @return a future of the {@link FirebaseResponse}
+	 */
+	public CompletableFuture<FirebaseResponse> put(final FirebaseRequest request) {
+		return execute(PUT, request);
+	}
+
+	/**
+	 * POSTs the data of the request to its path
+	 *
+	 * @param request
+	 *            Path, query and data to POST
+	 * @return a future of the {@link FirebaseResponse}
+	 */
+	public CompletableFuture<FirebaseResponse> post(final FirebaseRequest request) {
+		return execute(POST, request);
+	}
+
+	/**
+	 * DELETEs data from the provided path relative to the base URL
+	 *
+	 * @param path
+	 *            Path relative to base URL. If null/empty, refers to the base
+	 *            URL
+	 * @return a future of the {@link FirebaseResponse}
+	 */
+	public CompletableFuture<FirebaseResponse> delete(final String path) {
+		return execute(DELETE, request().withPath(path));
+	}
+
+	/**
+	 * DELETEs data as described by the request
+	 *
+	 * @param request
+	 *            Path and query to DELETE
+	 * @return a future of the {@link FirebaseResponse}
+	 */
+	public CompletableFuture<FirebaseResponse> delete(final FirebaseRequest request) {
+		return execute(DELETE, request);
+	}
+
+	/**
+	 * Executes the request without blocking on the response. Blocks only while
+	 * waiting for an in-flight slot.
+	 *
+	 * @param restMethod
+	 *            Method to execute
+	 * @param request
+	 *            Path, query and data of the call
+	 * @return a future of the {@link FirebaseResponse}, completed
+	 *         exceptionally if the request could not be sent or its response
+	 *         could not be read
+	 */
+	public CompletableFuture<FirebaseResponse> execute(final FirebaseRestMethod restMethod,
+	        final FirebaseRequest request) {
+		final CompletableFuture<FirebaseResponse> result = new CompletableFuture<>();
+		final String url = firebase.buildFullUrlFromRelativePath(request);
+		final FirebaseCircuitBreaker circuitBreaker = firebase.getCircuitBreaker();
+		final FirebaseRequestRecorder recorder = firebase.getInstrumentation().start(restMethod,
+				FirebaseCache.normalize(request.getPath()));
+		try {
+			if (inFlightTimeout < 0) {
+				inFlight.acquire();
+			} else if (!inFlight.tryAcquire(inFlightTimeout, TimeUnit.MILLISECONDS)) {
+				return fail(result, recorder, new RejectedExecutionException(
+						"no in-flight slot became available within " + inFlightTimeout + "ms"));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return fail(result, recorder, e);
+		}
+		if (!circuitBreaker.tryAcquire()) {
+			inFlight.release();
+			return fail(result, recorder, new FirebaseCircuitOpenException(url));
+		}
+
+		final boolean write = restMethod != GET;
+		if (write) {
+			firebase.invalidateCache(request);
+		}
+		final HttpRequestBase httpRequest;
+		try {
+			httpRequest = firebase.createHttpRequest(restMethod, request, url);
+		} catch (IOException | RuntimeException e) {
+			inFlight.release();
+			circuitBreaker.onCancel();
+			return fail(result, recorder, e);
+		}
+
+		final Future<HttpResponse> httpFuture = httpAsyncClient.execute(httpRequest,
+				new FutureCallback<HttpResponse>() {
+
+					@Override
+					public void completed(final HttpResponse httpResponse) {
+						finished();
+						int code = httpResponse.getStatusLine().getStatusCode();
+						if (FirebaseCircuitBreaker.isFailure(code)) {
+							circuitBreaker.onFailure();
+						} else {
+							circuitBreaker.onSuccess();
+						}
+						try {
+							Firebase.decompress(httpResponse);
+							if (recorder != null) {
+								// recorded once the body is read, with the bytes read rather than announced
+								HttpEntity entity = httpResponse.getEntity();
+								long requestBytes = Firebase.requestBytes(httpRequest);
+								if (entity == null) {
+									recorder.completed(code, requestBytes, 0);
+								} else {
+									httpResponse.setEntity(new RecordingEntity(entity, recorder, code, requestBytes));
+								}
+							}
+							result.complete(firebase.processResponse(restMethod, httpResponse, url));
+						} catch (IOException | RuntimeException e) {
+							result.completeExceptionally(e);
+						}
+					}
+
+					@Override
+					public void failed(final Exception e) {
+						finished();
+						circuitBreaker.onFailure();
+						if (recorder != null) {
+							recorder.failed(e, Firebase.requestBytes(httpRequest));
+						}
+						log.debug("{} to '{}' failed", restMethod, url, e);
+						result.completeExceptionally(e);
+					}
+
+					@Override
+					public void cancelled() {
+						finished();
+						circuitBreaker.onCancel();
+						if (recorder != null) {
+							recorder.failed(new CancellationException(), Firebase.requestBytes(httpRequest));
+						}
+						result.cancel(false);
+					}
+
+					private void finished() {
+						inFlight.release();
+						if (write) {
+							firebase.invalidateCache(request);
+						}
+					}
+				});
+
+		result.whenComplete(new BiConsumer<FirebaseResponse, Throwable>() {
+
+			@Override
+			public void accept(final FirebaseResponse response, final Throwable t) {
+				if (result.isCancelled()) {
+					httpFuture.cancel(true);
+				}
+			}
+		});
+		return result;
+	}
+
+	private static CompletableFuture<FirebaseResponse> fail(final CompletableFuture<FirebaseResponse> result,
+	        final FirebaseRequestRecorder recorder, final Exception e) {
+		if (recorder != null) {
+			recorder.failed(e, 0);
+		}
+		result.completeExceptionally(e);
+		return result;
+	}
+
+	/**
+	 * Shuts down the non-blocking HTTP client; requests still in flight are
+	 * aborted.
+	 */
+	@Override
+	public void close() throws IOException {
+		httpAsyncClient.close();
+	}
+}
@@ -1,27 +1,48 @@
 package net.thegreshams.firebase4j.service;
 
 import static com.google.common.base.Preconditions.checkArgument;
-import static com.google.common.base.Strings.nullToEmpty;
-import static net.thegreshams.firebase4j.service.FirebaseJsonUtil.convertJsonToMap;
-import static net.thegreshams.firebase4j.service.FirebaseRestMethod.DELETE;
+import static com.google.common.base.Preconditions.checkNotNull;
 import static net.thegreshams.firebase4j.service.FirebaseRestMethod.GET;
-import static net.thegreshams.firebase4j.service.FirebaseRestMethod.PATCH;
-import static net.thegreshams.firebase4j.service.FirebaseRestMethod.POST;
-import static net.thegreshams.firebase4j.service.FirebaseRestMethod.PUT;
 
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
-import java.net.URLEncoder;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
 
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
+import net.thegreshams.firebase4j.model.FirebaseCircuitOpenException;
+import net.thegreshams.firebase4j.model.FirebaseException;
 import net.thegreshams.firebase4j.model.FirebaseResponse;
 
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
-import org.apache.http.client.HttpClient;
+import org.apache.http.client.entity.GzipDecompressingEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
 import org.apache.http.client.methods.HttpGet;
@@ -29,85 +50,294 @@ import org.apache.http.client.methods.HttpPatch;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpRequestBase;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.HttpClients;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.util.EntityUtils;
 import org.apache.logging.log4j.util.Strings;
 import org.codehaus.jackson.map.ObjectMapper;
 
-import com.google.common.base.Joiner;
 
+/**
+ * Client for a single Firebase base URL.
+ *
+ * A Firebase holds no per-call state; the path, query and data of each call
+ * live in an immutable {@link FirebaseRequest}. One instance can therefore be
+ * shared by any number of threads.
+ *
+ * Unless given a {@link FirebaseClientConfig} or an HTTP client of its own, a
+ * Firebase uses a pooled HTTP client shared by all such instances.
+ */
 @ToString(of = "baseUrl")
 @Slf4j
-public class Firebase {
+public class Firebase implements Closeable {
 
 	public static final String FIREBASE_API_JSON_EXTENSION = ".json";
 
+	/**
+	 * The Codehaus Jackson mapper of {@link FirebaseJackson1Codec}. Unless
+	 * another {@link FirebaseJsonCodec} is configured, it writes the data added
+	 * with {@link #addData(String, Object)}; values passed to calls such as
+	 * {@link #put(String, Object)} are converted with
+	 * {@link FirebaseJackson2Codec#DEFAULT}.
+	 */
 	public static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
-	private static final HttpClient HTTP_CLIENT = HttpClients.createDefault();
+	/**
+	 * Request header asking Firebase to return the ETag of the data.
+	 */
+	public static final String ETAG_REQUEST_HEADER = "X-Firebase-ETag";
+
+	public static final String ETAG_RESPONSE_HEADER = "ETag";
+
+	/**
+	 * Request header making a write conditional on the ETag of the data.
+	 */
+	public static final String IF_MATCH_HEADER = "if-match";
+
+	public static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+
+	private static final String GZIP_ENCODING = "gzip";
+
+	private static final CloseableHttpClient DEFAULT_HTTP_CLIENT = FirebaseClientConfig.DEFAULT.createHttpClient();
+
+	/**
+	 * Builder reused by every URL built on a thread; one that grew past the
+	 * maximum capacity for an unusually long URL is dropped afterwards. A
+	 * virtual thread per task, as with
+	 * {@link FirebaseClientConfig.Builder#virtualThreads()}, builds one URL
+	 * and gains nothing from the reuse.
+	 */
+	private static final ThreadLocal<StringBuilder> URL_BUILDER = new ThreadLocal<StringBuilder>() {
+
+		@Override
+		protected StringBuilder initialValue() {
+			return new StringBuilder(256);
+		}
+	};
+
+	private static final int MAX_URL_BUILDER_CAPACITY = 4096;
 
 	private final String baseUrl;
 
-	private final Map<String, String> queryMap = new HashMap<>();
+	private final CloseableHttpClient httpClient;
+
+	private final FirebaseTransport transport;
+
+	private final boolean ownsHttpClient;
+
+	private final FirebaseClientConfig config;
+
+	private final FirebaseCache cache;
 
-	private final Map<String, Object> dataMap = new HashMap<>();
+	private final FirebaseSingleFlight singleFlight;
 
-	private final StringBuffer jsonData = new StringBuffer();
+	private final FirebaseRetryPolicy retryPolicy;
+
+	private final FirebaseCircuitBreaker circuitBreaker;
+
+	private final FirebaseInstrumentation instrumentation;
+
+	private final int compressionThreshold;
+
+	private final FirebaseJsonCodec jsonCodec;
+
+	private final FirebaseJsonCodec dataCodec;
+
+	private final ExecutorService executor;
+
+	private final AtomicLong requestCount = new AtomicLong();
+
+	private final AtomicLong retryCount = new AtomicLong();
+
+	private final FirebaseRequest emptyRequest;
+
+	private final ConcurrentMap<String, FirebaseEventStream> streams = new ConcurrentHashMap<>();
 
 	public Firebase(final String baseUrl) {
 		this(baseUrl, null);
 	}
 
 	public Firebase(final String baseUrl, final String secureToken) {
+		this(baseUrl, secureToken, DEFAULT_HTTP_CLIENT, null, false, FirebaseClientConfig.DEFAULT);
+	}
+
+	/**
+	 * @param baseUrl
+	 *            Base URL of the Firebase
+	 * @param secureToken
+	 *            Token sent as the 'auth' query parameter; may be null
+	 * @param config
+	 *            Configuration of a new HTTP client owned by this Firebase and
+	 *            released by {@link #close()}, and of the GET cache (if any)
+	 */
+	public Firebase(final String baseUrl, final String secureToken, final FirebaseClientConfig config) {
+		this(baseUrl, secureToken, config.createHttpClient(), null, true, config);
+	}
+
+	/**
+	 * @param baseUrl
+	 *            Base URL of the Firebase
+	 * @param secureToken
+	 *            Token sent as the 'auth' query parameter; may be null
+	 * @param httpClient
+	 *            HTTP client to execute requests with; it is not closed by
+	 *            {@link #close()}, so it can be shared between Firebases
+	 */
+	public Firebase(final String baseUrl, final String secureToken, final CloseableHttpClient httpClient) {
+		this(baseUrl, secureToken, httpClient, null, false, FirebaseClientConfig.DEFAULT);
+	}
+
+	/**
+	 * @param baseUrl
+	 *            Base URL of the Firebase
+	 * @param secureToken
+	 *            Token sent as the 'auth' query parameter; may be null
+	 * @param transport
+	 *            Transport to send requests with; it is not closed by
+	 *            {@link #close()}, so it can be shared between Firebases.
+	 *            Streams opened by {@link #listen(String, FirebaseEventListener)}
+	 *            use the default HTTP client instead
+	 */
+	public Firebase(final String baseUrl, final String secureToken, final FirebaseTransport transport) {
+		this(baseUrl, secureToken, DEFAULT_HTTP_CLIENT, checkNotNull(transport, "transport cannot be null"), false,
+				FirebaseClientConfig.DEFAULT);
+	}
+
+	/**
+	 * @param transport
+	 *            Transport to send requests with, or null to create one from
+	 *            the configuration around the HTTP client
+	 */
+	private Firebase(final String baseUrl, final String secureToken, final CloseableHttpClient httpClient,
+	        final FirebaseTransport transport, final boolean ownsHttpClient, final FirebaseClientConfig config) {
 		checkArgument(Strings.isNotBlank(baseUrl), "baseUrl cannot be null or empty; was: '" + baseUrl + "'");
+		Map<String, String> queryMap = new LinkedHashMap<>();
 		if (secureToken != null) {
-			queryMap.put("auth", secureToken);
+			// encoded once here rather than for every URL
+			queryMap.put("auth", FirebaseRequest.QUERY_ESCAPER.escape(secureToken));
 		}
 		this.baseUrl = baseUrl.trim() + (!baseUrl.trim().endsWith("/") ? "/" : "");
+		emptyRequest = new FirebaseRequest(this, Collections.unmodifiableMap(queryMap));
+		this.httpClient = checkNotNull(httpClient, "httpClient cannot be null");
+		this.transport = transport != null ? transport : config.createTransport(httpClient);
+		this.ownsHttpClient = ownsHttpClient;
+		this.config = config;
+		cache = ownsHttpClient ? config.createCache() : null;
+		singleFlight = config.createSingleFlight();
+		retryPolicy = config.getRetryPolicy();
+		circuitBreaker = config.createCircuitBreaker();
+		instrumentation = config.getInstrumentation();
+		compressionThreshold = config.getCompressionThreshold();
+		jsonCodec = config.getJsonCodec();
+		dataCodec = config.getDataCodec();
+		executor = config.getExecutor();
 		log.debug("intialized with base URL: " + this.baseUrl);
 	}
 
 	/**
-	 * Append a query to the request.
+	 * Starts a new request against this Firebase. The returned request carries
+	 * the secure token (if any) and nothing else; it is immutable and can be
+	 * shared freely between threads.
+	 *
+	 * @return an empty {@link FirebaseRequest}
+	 */
+	public FirebaseRequest request() {
+		return emptyRequest;
+	}
+
+	/**
+	 * @return the cache of GET responses, or null if this Firebase was not
+	 *         configured with one
+	 * @see FirebaseClientConfig.Builder#cacheMaximumSize(long)
+	 */
+	public FirebaseCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * @return the circuit breaker guarding the base URL; it never opens unless
+	 *         configured to
+	 * @see FirebaseClientConfig.Builder#circuitBreakerFailureThreshold(int)
+	 */
+	public FirebaseCircuitBreaker getCircuitBreaker() {
+		return circuitBreaker;
+	}
+
+	/**
+	 * @return the instrumentation requests are reported to
+	 * @see FirebaseClientConfig.Builder#instrumentation(FirebaseInstrumentation)
+	 */
+	public FirebaseInstrumentation getInstrumentation() {
+		return instrumentation;
+	}
+
+	/**
+	 * @return the codec data is converted to and from JSON with
+	 * @see FirebaseClientConfig.Builder#jsonCodec(FirebaseJsonCodec)
+	 */
+	public FirebaseJsonCodec getJsonCodec() {
+		return jsonCodec;
+	}
+
+	/**
+	 * @return a snapshot of the request, retry and circuit breaker counters
+	 */
+	public FirebaseRequestStats stats() {
+		return new FirebaseRequestStats(requestCount.get(), retryCount.get(),
+				singleFlight != null ? singleFlight.getCoalescedCount() : 0, circuitBreaker);
+	}
+
+	/**
+	 * Append a query to a new request.
 	 *
 	 * @param query
 	 *            Query string based on Firebase REST API
 	 * @param parameter
 	 *            Query parameter
-	 * @return this Firebase object
+	 * @return a new {@link FirebaseRequest}
 	 * @throws UnsupportedEncodingException
 	 *             if parameter cannot be encoded to UTF-8
 	 */
-	public Firebase addQuery(final String query, final String parameter) throws UnsupportedEncodingException {
-		queryMap.put(query, URLEncoder.encode(parameter, "UTF-8"));
-		return this;
+	public FirebaseRequest addQuery(final String query, final String parameter) throws UnsupportedEncodingException {
+		return request().addQuery(query, parameter);
 	}
 
 	/**
-	 * Add data to the request
+	 * Append the parameters of a query to a new request, e.g.
+	 * <code>firebase.query(FirebaseQuery.shallow()).get("users")</code>
+	 *
+	 * @param query
+	 *            Query to append
+	 * @return a new {@link FirebaseRequest}
+	 */
+	public FirebaseRequest query(final FirebaseQuery query) {
+		return request().query(query);
+	}
+
+	/**
+	 * Add data to a new request
 	 *
 	 * @param key
 	 *            Data key
 	 * @param value
 	 *            Data value
-	 * @return this Firebase object
+	 * @return a new {@link FirebaseRequest}
 	 */
-	public Firebase addData(final String key, final Object value) {
-		dataMap.put(key, value);
-		return this;
+	public FirebaseRequest addData(final String key, final Object value) {
+		return request().addData(key, value);
 	}
 
 	/**
-	 * Add data to the request
+	 * Add data to a new request
 	 *
 	 * @param jsonData
 	 *            Data to add as a JSON string
-	 * @return this Firebase object
+	 * @return a new {@link FirebaseRequest}
 	 */
-	public Firebase addData(final String jsonData) {
-		this.jsonData.append(jsonData);
-		return this;
+	public FirebaseRequest addData(final String jsonData) {
+		return request().addData(jsonData);
 	}
 
 	/**
@@ -134,7 +364,162 @@ public class Firebase {
 	 *             ParseException while converting response content to string
 	 */
 	public FirebaseResponse get(final String path) throws IOException {
-		return requestResponse(GET, path, new HttpGet());
+		return request().get(path);
+	}
+
+	/**
+	 * GETs data from the provided path relative to the base URL and converts it
+	 * straight from the response to the provided type, without building an
+	 * intermediate map. With a cache or coalesced GETs configured, the data is
+	 * read like that of {@link #get(String)}, cached or shared, and converted
+	 * from the raw body of the response
+	 *
+	 * @param path
+	 *            Path relative to base URL. If null/empty, refers to the base
+	 *            URL
+	 * @param type
+	 *            Type to convert the data to
+	 * @return the data, or null if there is no data at the path
+	 * @throws FirebaseException
+	 *             if the response is unsuccessful
+	 * @throws IOException
+	 *             if ClientProtocolException executing Rest request or the
+	 *             data cannot be converted to the type
+	 */
+	public <T> T get(final String path, final Class<T> type) throws IOException {
+		return request().get(path, type);
+	}
+
+	/**
+	 * GETs data from the provided path relative to the base URL together with
+	 * its ETag
+	 *
+	 * @param path
+	 *            Path relative to base URL. If null/empty, refers to the base
+	 *            URL
+	 * @return {@link FirebaseResponse}, with {@link FirebaseResponse#getEtag()}
+	 *         set if successful
+	 * @throws IOException
+	 *             if ClientProtocolException executing Rest request or
+	 *             ParseException while converting response content to string
+	 */
+	public FirebaseResponse getWithEtag(final String path) throws IOException {
+		return request().addHeader(ETAG_REQUEST_HEADER, "true").get(path);
+	}
+
+	/**
+	 * GETs data from the provided path relative to the base URL unless it is
+	 * unchanged since a previous GET. The previous ETag is sent as
+	 * If-None-Match; if the data still has that ETag, the previous response
+	 * (and its already-parsed body) is returned instead of the new one.
+	 *
+	 * @param path
+	 *            Path relative to base URL. If null/empty, refers to the base
+	 *            URL
+	 * @param previous
+	 *            Response of an earlier {@link #getWithEtag(String)} or
+	 *            getIfChanged of the same path; may be null
+	 * @return previous if the data is unchanged; otherwise the new
+	 *         {@link FirebaseResponse}
+	 * @throws IOException
+	 *             if ClientProtocolException executing Rest request or
+	 *             ParseException while converting response content to string
+	 */
+	public FirebaseResponse getIfChanged(final String path, final FirebaseResponse previous) throws IOException {
+		if (previous == null || previous.getEtag() == null) {
+			return getWithEtag(path);
+		}
+		FirebaseResponse response = request()
+				.addHeader(ETAG_REQUEST_HEADER, "true")
+				.addHeader(IF_NONE_MATCH_HEADER, previous.getEtag())
+				.get(path);
+		if (response.getCode() == 304 || response.isSuccess() && previous.getEtag().equals(response.getEtag())) {
+			return previous;
+		}
+		return response;
+	}
+
+	/**
+	 * GETs data from many paths relative to the base URL at once. With an
+	 * executor configured, e.g. {@link FirebaseClientConfig.Builder#virtualThreads()},
+	 * every path is read by a task of its own; otherwise the paths are read
+	 * one after the other on the calling thread. This is the only call that
+	 * runs on the executor.
+	 *
+	 * @param paths
+	 *            Paths relative to base URL; a path given more than once is
+	 *            read once
+	 * @return the {@link FirebaseResponse} of every path, in the order of the
+	 *         paths
+	 * @throws IOException
+	 *             if ClientProtocolException executing any of the requests;
+	 *             the requests still running are cancelled
+	 * @see FirebaseClientConfig.Builder#executor(ExecutorService)
+	 */
+	public Map<String, FirebaseResponse> getAll(final Collection<String> paths) throws IOException {
+		return request().getAll(paths);
+	}
+
+	/**
+	 * GETs data from the provided path relative to the base URL, reading the
+	 * response as a stream and handing each child of the node to the handler
+	 * as soon as it arrives. Unlike {@link #get(String)}, the body is never
+	 * held in memory as a whole, so arbitrarily large nodes can be processed.
+	 *
+	 * @param path
+	 *            Path relative to base URL. If null/empty, refers to the base
+	 *            URL
+	 * @param type
+	 *            Type to convert each child to
+	 * @param handler
+	 *            Receiver of the children
+	 * @return {@link FirebaseResponse} without a body if successful; otherwise
+	 *         with the error body, and the handler is not called
+	 * @throws IOException
+	 *             if ClientProtocolException executing Rest request, the
+	 *             response is not valid JSON, or the handler aborts
+	 */
+	public <T> FirebaseResponse stream(final String path, final Class<T> type,
+	        final FirebaseChildHandler<? super T> handler) throws IOException {
+		return request().stream(path, type, handler);
+	}
+
+	/**
+	 * Scans the children of the provided path relative to the base URL in
+	 * order of their keys, one page of children per request, so collections
+	 * of any size can be walked with bounded memory
+	 *
+	 * @param path
+	 *            Path relative to base URL. If null/empty, refers to the base
+	 *            URL
+	 * @param type
+	 *            Type to convert each child to
+	 * @param pageSize
+	 *            Number of children per request
+	 * @return a {@link FirebaseScan}; nothing is requested until it is
+	 *         iterated
+	 */
+	public <T> FirebaseScan<T> scan(final String path, final Class<T> type, final int pageSize) {
+		return request().scan(path, type, pageSize);
+	}
+
+	/**
+	 * Listens to changes of the data at the provided path relative to the base
+	 * URL. Listeners of the same location share a single streaming connection,
+	 * which is re-opened with backoff whenever it drops; a listener joining an
+	 * open connection first receives a put of the current data.
+	 *
+	 * @param path
+	 *            Path relative to base URL. If null/empty, refers to the base
+	 *            URL
+	 * @param listener
+	 *            Receives the events of the location
+	 * @return a {@link FirebaseSubscription} holding a local copy of the
+	 *         location; close it to stop listening
+	 * @see FirebaseClientConfig.Builder#listenReadTimeout(int)
+	 */
+	public FirebaseSubscription listen(final String path, final FirebaseEventListener listener) {
+		return request().listen(path, listener);
 	}
 
 	/**
@@ -162,7 +547,25 @@ public class Firebase {
 	 *             ParseException while converting response content to string
 	 */
 	public FirebaseResponse patch(final String path) throws IOException {
-		return requestResponse(PATCH, path, new HttpPatch());
+		return request().patch(path);
+	}
+
+	/**
+	 * PATCHs the provided value to the provided path relative to the base URL,
+	 * converting it straight to the request body.
+	 *
+	 * @param path
+	 *            Path relative to base URL. If null/empty, refers to the base
+	 *            URL
+	 * @param value
+	 *            Value to PATCH; its properties are written to the path
+	 * @return {@link FirebaseResponse}
+	 * @throws IOException
+	 *             if ClientProtocolException executing Rest request or the
+	 *             value cannot be converted to JSON
+	 */
+	public FirebaseResponse patch(final String path, final Object value) throws IOException {
+		return request().patch(path, value);
 	}
 
 	/**
@@ -193,7 +596,87 @@ public class Firebase {
 	 *             ParseException while converting response content to string
 	 */
 	public FirebaseResponse put(final String path) throws IOException {
-		return requestResponse(PUT, path, new HttpPut());
+		return request().put(path);
+	}
+
+	/**
+	 * PUTs the provided value to the provided path relative to the base URL,
+	 * converting it straight to the request body.
+	 *
+	 * @param path
+	 *            Path relative to base URL. If null/empty, refers to the base
+	 *            URL
+	 * @param value
+	 *            Value to PUT; if null, any data existing at the path is
+	 *            deleted
+	 * @return {@link FirebaseResponse}
+	 * @throws IOException
+	 *             if ClientProtocolException executing Rest request or the
+	 *             value cannot be converted to JSON
+	 */
+	public FirebaseResponse put(final String path, final Object value) throws IOException {
+		return request().put(path, value);
+	}
+
+	/**
+	 * PUTs the provided value to the provided path relative to the base URL
+	 * only if the data there still has the expected ETag.
+	 *
+	 * @param path
+	 *            Path relative to base URL. If null/empty, refers to the base
+	 *            URL
+	 * @param expectedEtag
+	 *            ETag the data must have for the write to happen
+	 * @param value
+	 *            Value to PUT
+	 * @return {@link FirebaseResponse}; if the ETag did not match it is
+	 *         unsuccessful with code 412, and carries the current data and its
+	 *         ETag
+	 * @throws IOException
+	 *             if ClientProtocolException executing Rest request or the
+	 *             value cannot be converted to JSON
+	 */
+	public FirebaseResponse compareAndSet(final String path, final String expectedEtag, final Object value)
+	        throws IOException {
+		return request()
+				.addHeader(ETAG_REQUEST_HEADER, "true")
+				.addHeader(IF_MATCH_HEADER, expectedEtag)
+				.put(path, value);
+	}
+
+	/**
+	 * PUTs the provided value to the provided path relative to the base URL
+	 * only if the data there still has the expected ETag, asking the handler
+	 * for a new value and retrying with the current ETag for as long as the
+	 * write conflicts.
+	 *
+	 * @param path
+	 *            Path relative to base URL. If null/empty, refers to the base
+	 *            URL
+	 * @param expectedEtag
+	 *            ETag the data must have for the first write to happen
+	 * @param value
+	 *            Value to PUT
+	 * @param conflictHandler
+	 *            Computes the value to retry with from each conflicting
+	 *            response
+	 * @return {@link FirebaseResponse} of the last write; unsuccessful with
+	 *         code 412 if the handler aborted
+	 * @throws IOException
+	 *             if ClientProtocolException executing Rest request, a value
+	 *             cannot be converted to JSON, or the handler throws
+	 */
+	public FirebaseResponse compareAndSet(final String path, final String expectedEtag, final Object value,
+	        final FirebaseConflictHandler conflictHandler) throws IOException {
+		FirebaseResponse response = compareAndSet(path, expectedEtag, value);
+		while (response.getCode() == 412) {
+			Object retryValue = conflictHandler.onConflict(response);
+			if (retryValue == FirebaseConflictHandler.ABORT) {
+				break;
+			}
+			response = compareAndSet(path, response.getEtag(), retryValue);
+		}
+		return response;
 	}
 
 	/**
@@ -232,7 +715,26 @@ public class Firebase {
 	 *             ParseException while converting response content to string
 	 */
 	public FirebaseResponse post(final String path) throws IOException {
-		return requestResponse(POST, path, new HttpPost());
+		return request().post(path);
+	}
+
+	/**
+	 * POSTs the provided value under a Firebase-generated key below the
+	 * provided path relative to the base URL, converting it straight to the
+	 * request body.
+	 *
+	 * @param path
+	 *            Path relative to base URL. If null/empty, refers to the base
+	 *            URL
+	 * @param value
+	 *            Value to POST
+	 * @return {@link FirebaseResponse}
+	 * @throws IOException
+	 *             if ClientProtocolException executing Rest request or the
+	 *             value cannot be converted to JSON
+	 */
+	public FirebaseResponse post(final String path, final Object value) throws IOException {
+		return request().post(path, value);
 	}
 
 	/**
@@ -262,44 +764,470 @@ public class Firebase {
 	 *             ParseException while converting response content to string
 	 */
 	public FirebaseResponse delete(final String path) throws IOException {
-		return requestResponse(DELETE, path, new HttpDelete());
+		return request().delete(path);
+	}
+
+	FirebaseResponse execute(final FirebaseRestMethod restMethod, final FirebaseRequest request) throws IOException {
+		final String url = buildFullUrlFromRelativePath(request);
+		if (cache == null && singleFlight == null) {
+			return send(restMethod, request, createHttpRequest(restMethod, request, url), url);
+		}
+
+		if (restMethod == GET && !request.getHeaders().isEmpty()) {
+			// conditional and other header-carrying reads bypass the cache, but never invalidate it
+			return send(GET, request, createHttpRequest(GET, request, url), url);
+		}
+		if (restMethod == GET) {
+			if (cache != null) {
+				FirebaseResponse cached = cache.get(url);
+				if (cached != null) {
+					return cached;
+				}
+			}
+			if (singleFlight == null) {
+				return load(request, url);
+			}
+			return singleFlight.execute(request.getPath(), url, new Callable<FirebaseResponse>() {
+
+				@Override
+				public FirebaseResponse call() throws IOException {
+					return load(request, url);
+				}
+			});
+		}
+
+		invalidateCache(request);
+		try {
+			return send(restMethod, request, createHttpRequest(restMethod, request, url), url);
+		} finally {
+			invalidateCache(request);
+		}
+	}
+
+	/**
+	 * Sends a GET without headers of its own, caching the response if there
+	 * is a cache.
+	 */
+	private FirebaseResponse load(final FirebaseRequest request, final String url) throws IOException {
+		if (cache == null) {
+			return send(GET, request, createHttpRequest(GET, request, url), url);
+		}
+		FirebaseCache.Load load = cache.beginLoad(request.getPath());
+		try {
+			FirebaseResponse response = send(GET, request, createHttpRequest(GET, request, url), url);
+			cache.put(load, url, response);
+			return response;
+		} finally {
+			cache.endLoad(load);
+		}
+	}
+
+	private FirebaseResponse send(final FirebaseRestMethod restMethod, final FirebaseRequest request,
+	        final HttpRequestBase httpRequest, final String url) throws IOException {
+		try (CloseableHttpResponse httpResponse = executeHttpRequest(restMethod, request.getPath(), httpRequest, url)) {
+			return processResponse(restMethod, httpResponse, url);
+		}
+	}
+
+	/**
+	 * Executes the request with retries, reporting it to the instrumentation.
+	 * The request is recorded as completed once the body of the returned
+	 * response is read to its end or closed.
+	 *
+	 * @return the response of the last attempt, to be closed by the caller
+	 */
+	private CloseableHttpResponse executeHttpRequest(final FirebaseRestMethod restMethod, final String path,
+	        final HttpRequestBase httpRequest, final String url) throws IOException {
+		requestCount.incrementAndGet();
+		FirebaseRequestRecorder recorder = instrumentation.start(restMethod, FirebaseCache.normalize(path));
+		if (recorder == null) {
+			return executeWithPolicies(restMethod, httpRequest, url);
+		}
+		long requestBytes = requestBytes(httpRequest);
+		CloseableHttpResponse httpResponse;
+		try {
+			httpResponse = executeWithPolicies(restMethod, httpRequest, url);
+		} catch (IOException | RuntimeException e) {
+			recorder.failed(e, requestBytes);
+			throw e;
+		}
+		int code = httpResponse.getStatusLine().getStatusCode();
+		HttpEntity entity = httpResponse.getEntity();
+		if (entity == null) {
+			recorder.completed(code, requestBytes, 0);
+		} else {
+			httpResponse.setEntity(new RecordingEntity(entity, recorder, code, requestBytes));
+		}
+		return httpResponse;
+	}
+
+	static long requestBytes(final HttpRequest httpRequest) {
+		if (httpRequest instanceof HttpEntityEnclosingRequest) {
+			HttpEntity entity = ((HttpEntityEnclosingRequest) httpRequest).getEntity();
+			return entity != null ? Math.max(entity.getContentLength(), 0) : 0;
+		}
+		return 0;
+	}
+
+	/**
+	 * Executes the request through the circuit breaker, sending it again for
+	 * as long as the retry policy asks to.
+	 *
+	 * @return the response of the last attempt, to be closed by the caller
+	 * @throws IOException
+	 *             if the last attempt failed without a response, or the
+	 *             circuit breaker rejected it
+	 */
+	private CloseableHttpResponse executeWithPolicies(final FirebaseRestMethod restMethod,
+	        final HttpRequestBase httpRequest, final String url) throws IOException {
+		for (int attempts = 1;; attempts++) {
+			if (!circuitBreaker.tryAcquire()) {
+				throw new FirebaseCircuitOpenException(url);
+			}
+			CloseableHttpResponse httpResponse;
+			long delay;
+			try {
+				httpResponse = transport.execute(httpRequest);
+			} catch (IOException e) {
+				circuitBreaker.onFailure();
+				delay = retryPolicy.retryDelay(restMethod, attempts, e);
+				if (delay < 0) {
+					throw e;
+				}
+				log.debug("{} to '{}' failed on attempt {}; retrying in {}ms", restMethod, url, attempts, delay, e);
+				pause(delay);
+				retryCount.incrementAndGet();
+				httpRequest.reset();
+				continue;
+			} catch (RuntimeException e) {
+				circuitBreaker.onCancel();
+				throw e;
+			}
+
+			int code = httpResponse.getStatusLine().getStatusCode();
+			if (!FirebaseCircuitBreaker.isFailure(code)) {
+				circuitBreaker.onSuccess();
+				return httpResponse;
+			}
+			circuitBreaker.onFailure();
+			delay = retryPolicy.retryDelay(restMethod, attempts, code, retryAfter(httpResponse));
+			if (delay < 0) {
+				return httpResponse;
+			}
+			log.debug("{} to '{}' answered {} on attempt {}; retrying in {}ms", restMethod, url, code, attempts,
+					delay);
+			EntityUtils.consumeQuietly(httpResponse.getEntity());
+			httpResponse.close();
+			pause(delay);
+			retryCount.incrementAndGet();
+			httpRequest.reset();
+		}
+	}
+
+	/**
+	 * @return the delay asked for by the Retry-After header, in milliseconds,
+	 *         or -1 if there is none
+	 */
+	static long retryAfter(final HttpResponse httpResponse) {
+		Header header = httpResponse.getFirstHeader("Retry-After");
+		if (header == null) {
+			return -1;
+		}
+		String value = header.getValue().trim();
+		try {
+			return TimeUnit.SECONDS.toMillis(Math.max(Long.parseLong(value), 0));
+		} catch (NumberFormatException e) {
+			Date date = DateUtils.parseDate(value);
+			return date != null ? Math.max(date.getTime() - System.currentTimeMillis(), 0) : -1;
+		}
+	}
+
+	private static void pause(final long delay) throws InterruptedIOException {
+		try {
+			Thread.sleep(delay);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting to retry");
+		}
+	}
+
+	/**
+	 * Discards the cached responses of the path of a write, its ancestors and
+	 * its descendants, and detaches the GETs of them in flight.
+	 */
+	void invalidateCache(final FirebaseRequest request) {
+		if (cache != null) {
+			cache.invalidate(request.getPath());
+		}
+		if (singleFlight != null) {
+			singleFlight.invalidate(request.getPath());
+		}
+	}
+
+	<T> T read(final FirebaseRequest request, final Class<T> type) throws IOException {
+		if (cache != null || singleFlight != null) {
+			// through the cache and the GETs in flight like any other read, binding from the shared response
+			FirebaseResponse response = execute(GET, request);
+			if (!response.isSuccess()) {
+				throw new FirebaseException(response);
+			}
+			return !response.getRawBody().isEmpty() ? jsonCodec.read(response.getRawBody(), type) : null;
+		}
+		String url = buildFullUrlFromRelativePath(request);
+		HttpRequestBase httpRequest = createHttpRequest(GET, request, url);
+		try (CloseableHttpResponse httpResponse = executeHttpRequest(GET, request.getPath(), httpRequest, url)) {
+			int code = httpResponse.getStatusLine().getStatusCode();
+			if (!isSuccess(GET, code)) {
+				throw new FirebaseException(processResponse(GET, httpResponse, url));
+			}
+			HttpEntity entity = httpResponse.getEntity();
+			if (entity == null) {
+				return null;
+			}
+			try (InputStream content = entity.getContent()) {
+				return jsonCodec.read(content, type);
+			}
+		}
+	}
+
+	/**
+	 * GETs past the cache and the GETs in flight, for reads that must see the
+	 * data as it is now and would only crowd the cache, such as the shards of
+	 * an export.
+	 */
+	FirebaseResponse getUncached(final FirebaseRequest request) throws IOException {
+		String url = buildFullUrlFromRelativePath(request);
+		return send(GET, request, createHttpRequest(GET, request, url), url);
+	}
+
+	FirebaseResponse write(final FirebaseRestMethod restMethod, final FirebaseRequest request, final Object value)
+	        throws IOException {
+		String url = buildFullUrlFromRelativePath(request);
+		HttpRequestBase httpRequest = createHttpRequest(restMethod, request.getHeaders(), url);
+		((HttpEntityEnclosingRequestBase) httpRequest).setEntity(createEntity(jsonCodec.write(value)));
+		invalidateCache(request);
+		try {
+			return send(restMethod, request, httpRequest, url);
+		} finally {
+			invalidateCache(request);
+		}
+	}
+
+	<T> FirebaseResponse stream(final FirebaseRequest request, final Class<T> type,
+	        final FirebaseChildHandler<? super T> handler) throws IOException {
+		String url = buildFullUrlFromRelativePath(request);
+		HttpRequestBase httpRequest = createHttpRequest(GET, request, url);
+		try (CloseableHttpResponse httpResponse = executeHttpRequest(GET, request.getPath(), httpRequest, url)) {
+			int code = httpResponse.getStatusLine().getStatusCode();
+			HttpEntity entity = httpResponse.getEntity();
+			if (!isSuccess(GET, code) || entity == null) {
+				return processResponse(GET, httpResponse, url);
+			}
+			try (InputStream content = entity.getContent()) {
+				long children = jsonCodec.readChildren(content, type, handler);
+				log.debug("streamed {} children from '{}'", children, url);
+			}
+			return new FirebaseResponse(true, code, null, url, null, jsonCodec);
+		}
+	}
+
+	Map<String, FirebaseResponse> getAll(final FirebaseRequest request, final Collection<String> paths)
+	        throws IOException {
+		Map<String, FirebaseResponse> responses = new LinkedHashMap<>();
+		if (executor == null) {
+			for (String path : new LinkedHashSet<>(paths)) {
+				responses.put(path, request.get(path));
+			}
+			return responses;
+		}
+
+		CompletionService<FirebaseResponse> completionService = new ExecutorCompletionService<>(executor);
+		Map<String, Future<FirebaseResponse>> futures = new LinkedHashMap<>();
+		try {
+			for (final String path : paths) {
+				if (!futures.containsKey(path)) {
+					futures.put(path, completionService.submit(new Callable<FirebaseResponse>() {
+
+						@Override
+						public FirebaseResponse call() throws IOException {
+							return request.get(path);
+						}
+					}));
+				}
+			}
+			// in order of completion, to fail as soon as any request fails
+			for (int i = 0; i < futures.size(); i++) {
+				completionService.take().get();
+			}
+			for (Map.Entry<String, Future<FirebaseResponse>> future : futures.entrySet()) {
+				responses.put(future.getKey(), future.getValue().get());
+			}
+			return responses;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while reading " + futures.size() + " paths");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException(cause);
+		} finally {
+			if (responses.size() < futures.size()) {
+				for (Future<FirebaseResponse> future : futures.values()) {
+					future.cancel(true);
+				}
+			}
+		}
+	}
+
+	FirebaseSubscription listen(final FirebaseRequest request, final FirebaseEventListener listener) {
+		checkNotNull(listener, "listener cannot be null");
+		String url = buildFullUrlFromRelativePath(request);
+		while (true) {
+			FirebaseEventStream stream = streams.get(url);
+			if (stream == null) {
+				FirebaseEventStream created = new FirebaseEventStream(this, httpClient, request, url, config);
+				stream = streams.putIfAbsent(url, created);
+				if (stream == null) {
+					stream = created;
+					created.start();
+				}
+			}
+			if (stream.subscribe(listener)) {
+				return new FirebaseSubscription(stream, listener);
+			}
+			// closed since it was looked up
+			streams.remove(url, stream);
+		}
 	}
 
-	private FirebaseResponse requestResponse(final FirebaseRestMethod restMethod, final String path,
-	        final HttpRequestBase requestWithEntity) throws IOException {
-		String url = buildFullUrlFromRelativePath(path);
-		requestWithEntity.setURI(URI.create(url));
-		if (requestWithEntity instanceof HttpEntityEnclosingRequestBase) {
-			combineData();
-			((HttpEntityEnclosingRequestBase) requestWithEntity).setEntity(new StringEntity(jsonData.toString()));
+	void removeStream(final String url, final FirebaseEventStream stream) {
+		streams.remove(url, stream);
+	}
+
+	HttpRequestBase createHttpRequest(final FirebaseRestMethod restMethod, final FirebaseRequest request,
+	        final String url) throws IOException {
+		HttpRequestBase httpRequest = createHttpRequest(restMethod, request.getHeaders(), url);
+		if (httpRequest instanceof HttpEntityEnclosingRequestBase) {
+			((HttpEntityEnclosingRequestBase) httpRequest).setEntity(createEntity(combineData(request)));
 		}
-		return processResponse(restMethod, HTTP_CLIENT.execute(requestWithEntity), url);
+		return httpRequest;
 	}
 
-	private void combineData() throws IOException {
-		dataMap.putAll(convertJsonToMap(jsonData.toString()));
-		jsonData.setLength(0);
-		jsonData.append(OBJECT_MAPPER.writeValueAsString(dataMap));
+	/**
+	 * @return the JSON as a request entity, gzipped if it reaches the
+	 *         compression threshold
+	 * @see FirebaseClientConfig.Builder#compressionThreshold(int)
+	 */
+	HttpEntity createEntity(final byte[] json) throws IOException {
+		if (compressionThreshold < 0 || json.length < compressionThreshold) {
+			return new ByteArrayEntity(json, ContentType.APPLICATION_JSON);
+		}
+		// compressed up front, so the length is known and retries can resend it
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 4 + 32);
+		try (GZIPOutputStream gzip = new GZIPOutputStream(compressed, 8192) {
+			{
+				// JSON compresses well even at the fastest level, at a fraction of the CPU cost
+				def.setLevel(Deflater.BEST_SPEED);
+			}
+		}) {
+			gzip.write(json);
+		}
+		ByteArrayEntity entity = new ByteArrayEntity(compressed.toByteArray(), ContentType.APPLICATION_JSON);
+		entity.setContentEncoding(GZIP_ENCODING);
+		return entity;
+	}
+
+	/**
+	 * Makes the body of a gzipped response decompress while it is read, as
+	 * the blocking client does for its responses by itself.
+	 */
+	static void decompress(final HttpResponse httpResponse) {
+		HttpEntity entity = httpResponse.getEntity();
+		Header encoding = entity != null ? entity.getContentEncoding() : null;
+		if (encoding != null && GZIP_ENCODING.equalsIgnoreCase(encoding.getValue())) {
+			httpResponse.setEntity(new GzipDecompressingEntity(entity));
+		}
+	}
+
+	private static HttpRequestBase createHttpRequest(final FirebaseRestMethod restMethod,
+	        final Map<String, String> headers, final String url) {
+		HttpRequestBase httpRequest;
+		switch (restMethod) {
+		case GET:
+			httpRequest = new HttpGet();
+			break;
+		case PATCH:
+			httpRequest = new HttpPatch();
+			break;
+		case PUT:
+			httpRequest = new HttpPut();
+			break;
+		case POST:
+			httpRequest = new HttpPost();
+			break;
+		case DELETE:
+			httpRequest = new HttpDelete();
+			break;
+		default:
+			throw new IllegalArgumentException("unsupported rest method: " + restMethod);
+		}
+		httpRequest.setURI(URI.create(url));
+		for (Map.Entry<String, String> header : headers.entrySet()) {
+			httpRequest.setHeader(header.getKey(), header.getValue());
+		}
+		return httpRequest;
 	}
 
-	private String buildFullUrlFromRelativePath(final String path) {
+	byte[] combineData(final FirebaseRequest request) throws IOException {
+		return dataCodec.writeObject(request.getDataMap(), request.getJsonData());
+	}
 
-		String tempPath = nullToEmpty(path).trim();
-		if (tempPath.startsWith("/")) {
-			tempPath = tempPath.substring(1);
+	String buildFullUrlFromRelativePath(final FirebaseRequest request) {
+		String path = request.getPath();
+		// trim whitespace and the leading slash by index, without copying the path
+		int start = 0;
+		int end = path != null ? path.length() : 0;
+		while (start < end && path.charAt(start) <= ' ') {
+			start++;
+		}
+		while (end > start && path.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		if (start < end && path.charAt(start) == '/') {
+			start++;
+		}
+		StringBuilder builder = URL_BUILDER.get();
+		builder.setLength(0);
+		builder.append(baseUrl).append(path, start, end).append(FIREBASE_API_JSON_EXTENSION).append('?')
+				.append(request.getQueryString());
+		String url = builder.toString();
+		if (builder.capacity() > MAX_URL_BUILDER_CAPACITY) {
+			URL_BUILDER.remove();
 		}
-		String url = String.format("%s%s%s?%s", baseUrl, tempPath, FIREBASE_API_JSON_EXTENSION,
-				Joiner.on("&").withKeyValueSeparator("=").join(queryMap));
 
 		log.debug("built full url to '{}' using relative-path of '{}'", url, path);
 
 		return url;
 	}
 
-	private FirebaseResponse processResponse(final FirebaseRestMethod method, final HttpResponse httpResponse,
+	FirebaseResponse processResponse(final FirebaseRestMethod method, final HttpResponse httpResponse,
 	        final String url) throws IOException {
 		int code = httpResponse.getStatusLine().getStatusCode();
 
+		boolean success = isSuccess(method, code);
+
+		HttpEntity entity = httpResponse.getEntity();
+		Header etag = httpResponse.getFirstHeader(ETAG_RESPONSE_HEADER);
+		return new FirebaseResponse(success, code, entity != null ? EntityUtils.toString(entity) : null, url,
+				etag != null ? etag.getValue() : null, jsonCodec);
+	}
+
+	static boolean isSuccess(final FirebaseRestMethod method, final int code) {
 		boolean success = false;
 		switch (method) {
 		case DELETE:
@@ -318,12 +1246,25 @@ public class Firebase {
 		default:
 			break;
 		}
+		return success;
+	}
 
-		// Clear all data
-		queryMap.clear();
-		dataMap.clear();
-		jsonData.setLength(0);
-
-		return new FirebaseResponse(success, code, EntityUtils.toString(httpResponse.getEntity()), url);
+	/**
+	 * Closes every open {@link #listen(String, FirebaseEventListener)} stream,
+	 * and releases the HTTP client and transport if they were created by this
+	 * Firebase from a {@link FirebaseClientConfig}.
+	 */
+	@Override
+	public void close() throws IOException {
+		for (FirebaseEventStream stream : streams.values()) {
+			stream.close();
+		}
+		if (ownsHttpClient) {
+			try {
+				transport.close();
+			} finally {
+				httpClient.close();
+			}
+		}
 	}
 }
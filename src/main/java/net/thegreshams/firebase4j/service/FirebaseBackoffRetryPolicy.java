@@ -0,0 +1,135 @@
+package net.thegreshams.firebase4j.service;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static net.thegreshams.firebase4j.service.FirebaseRestMethod.DELETE;
+import static net.thegreshams.firebase4j.service.FirebaseRestMethod.GET;
+import static net.thegreshams.firebase4j.service.FirebaseRestMethod.PUT;
+
+import java.io.IOException;
+import java.net.UnknownHostException;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.net.ssl.SSLException;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import org.apache.http.client.ClientProtocolException;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Retries idempotent requests (GET, PUT and DELETE; never POST or PATCH) that
+ * failed with a connection error or a 429, 500, 502, 503 or 504 response.
+ *
+ * The delay before the n-th retry is drawn uniformly between zero and
+ * initialDelay * 2^(n-1), capped at maxDelay ("full jitter"), so clients that
+ * failed together do not retry together. A Retry-After header raises the
+ * delay to what it asks for; if it asks for more than maxDelay, the request is
+ * not retried at all. Build one with {@link #builder()}.
+ */
+@Getter
+@ToString
+public class FirebaseBackoffRetryPolicy implements FirebaseRetryPolicy {
+
+	private static final Set<FirebaseRestMethod> IDEMPOTENT_METHODS = EnumSet.of(GET, PUT, DELETE);
+
+	private static final Set<Integer> RETRYABLE_CODES = ImmutableSet.of(429, 500, 502, 503, 504);
+
+	private final int maxAttempts;
+
+	private final long initialDelay;
+
+	private final long maxDelay;
+
+	private FirebaseBackoffRetryPolicy(final Builder builder) {
+		maxAttempts = builder.maxAttempts;
+		initialDelay = builder.initialDelay;
+		maxDelay = builder.maxDelay;
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	@Override
+	public long retryDelay(final FirebaseRestMethod method, final int attempts, final int code,
+	        final long retryAfter) {
+		if (!RETRYABLE_CODES.contains(code) || !mayRetry(method, attempts) || retryAfter > maxDelay) {
+			return NO_RETRY;
+		}
+		return Math.max(backoff(attempts), retryAfter);
+	}
+
+	@Override
+	public long retryDelay(final FirebaseRestMethod method, final int attempts, final IOException error) {
+		if (error instanceof UnknownHostException || error instanceof SSLException
+				|| error instanceof ClientProtocolException || !mayRetry(method, attempts)) {
+			return NO_RETRY;
+		}
+		return backoff(attempts);
+	}
+
+	private boolean mayRetry(final FirebaseRestMethod method, final int attempts) {
+		return IDEMPOTENT_METHODS.contains(method) && attempts < maxAttempts;
+	}
+
+	private long backoff(final int attempts) {
+		long ceiling = attempts > 31 ? maxDelay : Math.min(maxDelay, initialDelay << (attempts - 1));
+		return ThreadLocalRandom.current().nextLong(ceiling + 1);
+	}
+
+	public static class Builder {
+
+		private int maxAttempts = 4;
+
+		private long initialDelay = 100;
+
+		private long maxDelay = 10000;
+
+		private Builder() {
+		}
+
+		/**
+		 * @param maxAttempts
+		 *            Maximum number of times a request is sent, including the
+		 *            first
+		 * @return this Builder
+		 */
+		public Builder maxAttempts(final int maxAttempts) {
+			checkArgument(maxAttempts > 0, "maxAttempts must be positive; was: " + maxAttempts);
+			this.maxAttempts = maxAttempts;
+			return this;
+		}
+
+		/**
+		 * @param initialDelay
+		 *            Upper bound of the delay before the first retry, in
+		 *            milliseconds; doubles with every further retry
+		 * @return this Builder
+		 */
+		public Builder initialDelay(final long initialDelay) {
+			checkArgument(initialDelay > 0, "initialDelay must be positive; was: " + initialDelay);
+			this.initialDelay = initialDelay;
+			return this;
+		}
+
+		/**
+		 * @param maxDelay
+		 *            Upper bound of any delay, in milliseconds, including one
+		 *            asked for by a Retry-After header
+		 * @return this Builder
+		 */
+		public Builder maxDelay(final long maxDelay) {
+			checkArgument(maxDelay > 0, "maxDelay must be positive; was: " + maxDelay);
+			this.maxDelay = maxDelay;
+			return this;
+		}
+
+		public FirebaseBackoffRetryPolicy build() {
+			return new FirebaseBackoffRetryPolicy(this);
+		}
+	}
+}
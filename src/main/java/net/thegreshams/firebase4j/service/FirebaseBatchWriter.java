@@ -0,0 +1,385 @@
+package net.thegreshams.firebase4j.service;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.base.Strings.nullToEmpty;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import net.thegreshams.firebase4j.model.FirebaseResponse;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Collects writes to a {@link Firebase} and sends them together as one
+ * multi-location PATCH on their deepest common ancestor.
+ *
+ * A batch is sent once it has been open for the flush interval, or straight
+ * away on the writing thread once it holds the maximum number of paths.
+ * Within a batch, a write replaces any earlier write to the same path or
+ * below it, and is merged into an earlier write to one of its ancestors, so
+ * the batch has the same effect as the individual writes in order. Batches
+ * are sent one at a time, in the order they were collected.
+ *
+ * Each write returns a future of the response to the batch it was sent in.
+ * Values are only converted to JSON when the batch is sent, so they must not
+ * be modified after being written.
+ */
+@ToString(of = { "firebase", "flushInterval", "maxBatchSize" })
+@Slf4j
+public class FirebaseBatchWriter implements Closeable {
+
+	private static final Splitter PATH_SPLITTER = Splitter.on('/').omitEmptyStrings().trimResults();
+
+	private static final Joiner PATH_JOINER = Joiner.on('/');
+
+	private final Firebase firebase;
+
+	private final long flushInterval;
+
+	private final int maxBatchSize;
+
+	private final ScheduledExecutorService scheduler;
+
+	private final Lock sendLock = new ReentrantLock();
+
+	/**
+	 * Pending writes by normalized path; guarded by this. Sorted, so the
+	 * writes below a path are a contiguous range.
+	 */
+	private TreeMap<String, Write> pending = new TreeMap<>();
+
+	private boolean flushScheduled;
+
+	private boolean closed;
+
+	/**
+	 * @param firebase
+	 *            Firebase to send the batches to
+	 */
+	public FirebaseBatchWriter(final Firebase firebase) {
+		this(firebase, 50, 1000);
+	}
+
+	/**
+	 * @param firebase
+	 *            Firebase to send the batches to
+	 * @param flushInterval
+	 *            Time a batch stays open after its first write, in
+	 *            milliseconds
+	 * @param maxBatchSize
+	 *            Number of distinct paths at which a batch is sent without
+	 *            waiting for the flush interval
+	 */
+	public FirebaseBatchWriter(final Firebase firebase, final long flushInterval, final int maxBatchSize) {
+		checkArgument(flushInterval > 0, "flushInterval must be positive; was: " + flushInterval);
+		checkArgument(maxBatchSize > 0, "maxBatchSize must be positive; was: " + maxBatchSize);
+		this.firebase = checkNotNull(firebase, "firebase cannot be null");
+		this.flushInterval = flushInterval;
+		this.maxBatchSize = maxBatchSize;
+		scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+				.setNameFormat("firebase-batch-writer-%d")
+				.setDaemon(true)
+				.build());
+	}
+
+	/**
+	 * Replaces the data at the provided path relative to the base URL
+	 *
+	 * @param path
+	 *            Path relative to base URL. If null/empty, refers to the base
+	 *            URL
+	 * @param value
+	 *            Value to write; null deletes the data
+	 * @return a future of the response to the batch the write was sent in
+	 */
+	public CompletableFuture<FirebaseResponse> put(final String path, final Object value) {
+		return add(Collections.singletonMap(normalize(path), value));
+	}
+
+	/**
+	 * Updates the children of the provided path relative to the base URL,
+	 * leaving its other children untouched
+	 *
+	 * @param path
+	 *            Path relative to base URL. If null/empty, refers to the base
+	 *            URL
+	 * @param value
+	 *            Map or object whose properties are written to the path; keys
+	 *            may themselves be slash-separated paths
+	 * @return a future of the response to the batch the writes were sent in
+	 */
+	public CompletableFuture<FirebaseResponse> patch(final String path, final Object value) {
+		checkNotNull(value, "value cannot be null");
+		Map<?, ?> children = value instanceof Map ? (Map<?, ?>) value
+				: firebase.getJsonCodec().convert(value, Map.class);
+		checkArgument(!children.isEmpty(), "value must have at least one property");
+		Map<String, Object> writes = new LinkedHashMap<>();
+		for (Map.Entry<?, ?> child : children.entrySet()) {
+			writes.put(normalize(nullToEmpty(path) + "/" + child.getKey()), child.getValue());
+		}
+		return add(writes);
+	}
+
+	/**
+	 * Deletes the data at the provided path relative to the base URL
+	 *
+	 * @param path
+	 *            Path relative to base URL. If null/empty, refers to the base
+	 *            URL
+	 * @return a future of the response to the batch the delete was sent in
+	 */
+	public CompletableFuture<FirebaseResponse> delete(final String path) {
+		return put(path, null);
+	}
+
+	/**
+	 * Sends the pending writes now, on the calling thread.
+	 */
+	public void flush() {
+		sendLock.lock();
+		try {
+			TreeMap<String, Write> batch;
+			synchronized (this) {
+				batch = pending;
+				pending = new TreeMap<>();
+			}
+			if (!batch.isEmpty()) {
+				send(batch);
+			}
+		} finally {
+			sendLock.unlock();
+		}
+	}
+
+	/**
+	 * Sends the pending writes and stops the background flushing; further
+	 * writes are rejected.
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			closed = true;
+		}
+		scheduler.shutdown();
+		flush();
+	}
+
+	/**
+	 * Adds the writes to the same batch, so they are sent together.
+	 */
+	private CompletableFuture<FirebaseResponse> add(final Map<String, Object> writes) {
+		CompletableFuture<FirebaseResponse> future = new CompletableFuture<>();
+		boolean full;
+		synchronized (this) {
+			checkState(!closed, "batch writer is closed");
+			for (Map.Entry<String, Object> write : writes.entrySet()) {
+				addPending(write.getKey(), write.getValue(), future);
+			}
+			full = pending.size() >= maxBatchSize;
+			if (!full && !flushScheduled) {
+				flushScheduled = true;
+				scheduler.schedule(new Runnable() {
+
+					@Override
+					public void run() {
+						synchronized (FirebaseBatchWriter.this) {
+							flushScheduled = false;
+						}
+						flush();
+					}
+				}, flushInterval, TimeUnit.MILLISECONDS);
+			}
+		}
+		if (full) {
+			flush();
+		}
+		return future;
+	}
+
+	/**
+	 * Must hold the lock on this.
+	 */
+	private void addPending(final String path, final Object value, final CompletableFuture<FirebaseResponse> future) {
+		List<String> segments = PATH_SPLITTER.splitToList(path);
+
+		// merge into a pending write of an ancestor
+		for (int depth = segments.size() - 1; depth >= 0; depth--) {
+			Write ancestor = pending.get(PATH_JOINER.join(segments.subList(0, depth)));
+			if (ancestor != null) {
+				ancestor.set(segments.subList(depth, segments.size()), value);
+				ancestor.futures.add(future);
+				return;
+			}
+		}
+
+		// replace pending writes of the path itself and its descendants
+		Write write = new Write(value);
+		Write same = pending.remove(path);
+		if (same != null) {
+			write.futures.addAll(same.futures);
+		}
+		// '0' follows '/', so this is every key starting with path + '/'
+		Map<String, Write> descendants = path.isEmpty() ? pending : pending.subMap(path + '/', path + '0');
+		for (Write descendant : descendants.values()) {
+			write.futures.addAll(descendant.futures);
+		}
+		descendants.clear();
+		write.futures.add(future);
+		pending.put(path, write);
+	}
+
+	private void send(final Map<String, Write> batch) {
+		List<CompletableFuture<FirebaseResponse>> futures = new ArrayList<>();
+		for (Write write : batch.values()) {
+			futures.addAll(write.futures);
+		}
+		try {
+			FirebaseResponse response;
+			if (batch.containsKey("")) {
+				// a write to the root has absorbed every other write
+				response = firebase.put(null, batch.get("").value);
+			} else {
+				List<String> ancestor = commonAncestor(batch.keySet());
+				String prefix = PATH_JOINER.join(ancestor);
+				Map<String, Object> updates = new LinkedHashMap<>();
+				for (Map.Entry<String, Write> entry : batch.entrySet()) {
+					String relative = ancestor.isEmpty() ? entry.getKey()
+							: entry.getKey().substring(prefix.length() + 1);
+					updates.put(relative, entry.getValue().value);
+				}
+				response = firebase.patch(prefix, updates);
+			}
+			log.debug("sent {} writes to {} paths: {}", futures.size(), batch.size(), response);
+			for (CompletableFuture<FirebaseResponse> future : futures) {
+				future.complete(response);
+			}
+		} catch (IOException | RuntimeException e) {
+			log.debug("failed to send {} writes", futures.size(), e);
+			for (CompletableFuture<FirebaseResponse> future : futures) {
+				future.completeExceptionally(e);
+			}
+		}
+	}
+
+	/**
+	 * @return the segments of the deepest path that is a strict ancestor of
+	 *         every one of the (non-root) paths
+	 */
+	static List<String> commonAncestor(final Iterable<String> paths) {
+		List<String> ancestor = null;
+		for (String path : paths) {
+			List<String> parent = PATH_SPLITTER.splitToList(path);
+			parent = parent.subList(0, parent.size() - 1);
+			if (ancestor == null) {
+				ancestor = parent;
+				continue;
+			}
+			int common = 0;
+			while (common < ancestor.size() && common < parent.size()
+					&& ancestor.get(common).equals(parent.get(common))) {
+				common++;
+			}
+			ancestor = ancestor.subList(0, common);
+		}
+		return ancestor;
+	}
+
+	private static String normalize(final String path) {
+		return PATH_JOINER.join(PATH_SPLITTER.split(nullToEmpty(path)));
+	}
+
+	private final class Write {
+
+		private final List<CompletableFuture<FirebaseResponse>> futures = new ArrayList<>(1);
+
+		private Object value;
+
+		/**
+		 * Whether value is a tree of maps private to this writer, which can be
+		 * modified in place.
+		 */
+		private boolean owned;
+
+		private Write(final Object value) {
+			this.value = value;
+		}
+
+		/**
+		 * Sets a descendant of the value, as a later write to that
+		 * descendant's path would.
+		 */
+		@SuppressWarnings("unchecked")
+		private void set(final List<String> relative, final Object descendant) {
+			if (!owned) {
+				value = copy(value);
+				owned = true;
+			}
+			if (!(value instanceof Map)) {
+				value = new LinkedHashMap<String, Object>();
+			}
+			Map<String, Object> node = (Map<String, Object>) value;
+			for (String key : relative.subList(0, relative.size() - 1)) {
+				Object child = node.get(key);
+				if (!(child instanceof Map)) {
+					child = new LinkedHashMap<String, Object>();
+					node.put(key, child);
+				}
+				node = (Map<String, Object>) child;
+			}
+			String last = relative.get(relative.size() - 1);
+			if (descendant == null) {
+				node.remove(last);
+			} else {
+				node.put(last, descendant);
+			}
+		}
+
+		/**
+		 * @return a copy of the value in which every object is a modifiable
+		 *         map
+		 */
+		private Object copy(final Object value) {
+			if (value == null || value instanceof String || value instanceof Number || value instanceof Boolean) {
+				return value;
+			}
+			if (value instanceof Map) {
+				Map<String, Object> copy = new LinkedHashMap<>();
+				for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+					copy.put(String.valueOf(entry.getKey()), copy(entry.getValue()));
+				}
+				return copy;
+			}
+			if (value instanceof List) {
+				Map<String, Object> copy = new LinkedHashMap<>();
+				List<?> list = (List<?>) value;
+				for (int i = 0; i < list.size(); i++) {
+					copy.put(String.valueOf(i), copy(list.get(i)));
+				}
+				return copy;
+			}
+			if (value.getClass().isArray()) {
+				return copy(firebase.getJsonCodec().convert(value, List.class));
+			}
+			return copy(firebase.getJsonCodec().convert(value, Map.class));
+		}
+	}
+}
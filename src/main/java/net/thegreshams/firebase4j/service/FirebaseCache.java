@@ -0,0 +1,214 @@
+package net.thegreshams.firebase4j.service;
+
+import static com.google.common.base.Strings.nullToEmpty;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+import lombok.ToString;
+import net.thegreshams.firebase4j.model.FirebaseResponse;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+
+/**
+ * Read-through cache of successful GET responses, keyed by full URL (path plus
+ * query parameters). Entries are evicted least-recently-used beyond the
+ * maximum size and expire a fixed time after being loaded.
+ *
+ * Writes issued through the owning {@link Firebase} invalidate every entry for
+ * the written path, its ancestors and its descendants, both before the write
+ * is sent and after it completes. Entries are indexed by path, so a write only
+ * visits the entries it discards. A GET of the path, an ancestor or a
+ * descendant that was in flight while the write happened is not cached, so it
+ * cannot re-insert data the write made stale; GETs of unrelated paths are.
+ * Changes made by other clients are only picked up once entries expire.
+ *
+ * Cached responses are shared between callers and must not be modified.
+ */
+@ToString(of = "cache")
+public class FirebaseCache {
+
+	/**
+	 * Separates the path from the URL in the keys of {@link #index}; it sorts
+	 * before the '/' of the descendants of the path
+	 */
+	private static final char SEPARATOR = '\0';
+
+	private final Cache<String, Entry> cache;
+
+	/**
+	 * URLs of the cached responses, keyed by their path and URL, so that the
+	 * entries of a path and of its descendants are each a range of keys
+	 */
+	private final ConcurrentNavigableMap<String, String> index = new ConcurrentSkipListMap<>();
+
+	private final Set<Load> loads = Collections.newSetFromMap(new ConcurrentHashMap<Load, Boolean>());
+
+	FirebaseCache(final long maximumSize, final long timeToLive) {
+		CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+				.maximumSize(maximumSize)
+				.recordStats();
+		if (timeToLive > 0) {
+			builder.expireAfterWrite(timeToLive, TimeUnit.MILLISECONDS);
+		}
+		cache = builder.removalListener(new RemovalListener<String, Entry>() {
+
+			@Override
+			public void onRemoval(final RemovalNotification<String, Entry> notification) {
+				// a replacing entry is of the same URL, hence the same path, and keeps its key
+				if (notification.getCause() != RemovalCause.REPLACED) {
+					index.remove(notification.getValue().indexKey, notification.getKey());
+				}
+			}
+		}).build();
+	}
+
+	/**
+	 * @return hit, miss and eviction counts since the cache was created
+	 */
+	public CacheStats stats() {
+		return cache.stats();
+	}
+
+	/**
+	 * @return the approximate number of cached responses
+	 */
+	public long size() {
+		return cache.size();
+	}
+
+	/**
+	 * Discards the responses for the path, its ancestors and its descendants.
+	 *
+	 * @param path
+	 *            Path relative to base URL. If null/empty, refers to the base
+	 *            URL (and therefore discards everything)
+	 */
+	public void invalidate(final String path) {
+		String written = normalize(path);
+		for (Load load : loads) {
+			if (isSameOrDescendant(load.path, written) || isSameOrDescendant(written, load.path)) {
+				load.stale = true;
+			}
+		}
+		if (written.isEmpty()) {
+			cache.invalidateAll();
+			return;
+		}
+		// the ancestors from the root down, the path itself, then its descendants
+		invalidatePath("");
+		for (int end = written.indexOf('/'); end >= 0; end = written.indexOf('/', end + 1)) {
+			invalidatePath(written.substring(0, end));
+		}
+		invalidatePath(written);
+		invalidateRange(written + '/', written + (char) ('/' + 1));
+	}
+
+	/**
+	 * Discards all cached responses.
+	 */
+	public void invalidateAll() {
+		for (Load load : loads) {
+			load.stale = true;
+		}
+		cache.invalidateAll();
+	}
+
+	FirebaseResponse get(final String url) {
+		Entry entry = cache.getIfPresent(url);
+		return entry != null ? entry.response : null;
+	}
+
+	/**
+	 * @return the GET about to be sent for the path, to pass to {@link #put}
+	 *         once it completes and to {@link #endLoad} in any case
+	 */
+	Load beginLoad(final String path) {
+		Load load = new Load(normalize(path));
+		loads.add(load);
+		return load;
+	}
+
+	void put(final Load load, final String url, final FirebaseResponse response) {
+		if (!response.isSuccess() || load.stale) {
+			return;
+		}
+		String indexKey = load.path + SEPARATOR + url;
+		index.put(indexKey, url);
+		Entry entry = new Entry(indexKey, response);
+		cache.put(url, entry);
+		// a write that invalidated the path in between may have missed the entry
+		if (load.stale) {
+			cache.asMap().remove(url, entry);
+		}
+	}
+
+	void endLoad(final Load load) {
+		loads.remove(load);
+	}
+
+	private void invalidatePath(final String path) {
+		invalidateRange(path + SEPARATOR, path + (char) (SEPARATOR + 1));
+	}
+
+	private void invalidateRange(final String fromKey, final String toKey) {
+		for (String url : index.subMap(fromKey, toKey).values()) {
+			cache.invalidate(url);
+		}
+	}
+
+	/**
+	 * @return the path without surrounding whitespace and slashes
+	 */
+	static String normalize(final String path) {
+		String normalized = nullToEmpty(path).trim();
+		while (normalized.startsWith("/")) {
+			normalized = normalized.substring(1);
+		}
+		while (normalized.endsWith("/")) {
+			normalized = normalized.substring(0, normalized.length() - 1);
+		}
+		return normalized;
+	}
+
+	static boolean isSameOrDescendant(final String path, final String ancestor) {
+		return ancestor.isEmpty() || path.equals(ancestor)
+				|| path.startsWith(ancestor) && path.charAt(ancestor.length()) == '/';
+	}
+
+	/**
+	 * A GET in flight, made stale by any write to its path, an ancestor or a
+	 * descendant.
+	 */
+	static final class Load {
+
+		private final String path;
+
+		private volatile boolean stale;
+
+		private Load(final String path) {
+			this.path = path;
+		}
+	}
+
+	private static final class Entry {
+
+		private final String indexKey;
+
+		private final FirebaseResponse response;
+
+		private Entry(final String indexKey, final FirebaseResponse response) {
+			this.indexKey = indexKey;
+			this.response = response;
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package net.thegreshams.firebase4j.service;
+
+import java.io.IOException;
+
+/**
+ * Receives the children of a node one at a time while it is being streamed.
+ *
+ * @param <T>
+ *            Type each child is converted to
+ * @see Firebase#stream(String, Class, FirebaseChildHandler)
+ */
+public interface FirebaseChildHandler<T> {
+
+	/**
+	 * @param key
+	 *            Key of the child; the index for array nodes, or null if the
+	 *            streamed node is a single value rather than an object or array
+	 * @param value
+	 *            Value of the child
+	 * @throws IOException
+	 *             to abort the stream
+	 */
+	void onChild(String key, T value) throws IOException;
+}
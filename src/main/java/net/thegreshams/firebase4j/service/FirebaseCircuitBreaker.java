@@ -0,0 +1,124 @@
+package net.thegreshams.firebase4j.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.ToString;
+
+/**
+ * Fails requests fast while the backend of a {@link Firebase} is unhealthy.
+ *
+ * After the configured number of consecutive failures (connection errors,
+ * 429 and 5xx responses) the breaker opens and rejects every request for the
+ * open time. It then lets a single trial request through: if that one does
+ * not fail the breaker closes again, otherwise it stays open for another open
+ * time. A breaker with a failure threshold of zero never opens.
+ */
+@ToString(of = { "state", "failureThreshold", "openTime" })
+public class FirebaseCircuitBreaker {
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private final int failureThreshold;
+
+	private final long openTime;
+
+	private final AtomicLong openedCount = new AtomicLong();
+
+	private final AtomicLong rejectedCount = new AtomicLong();
+
+	// the following are guarded by this
+
+	private State state = State.CLOSED;
+
+	private int consecutiveFailures;
+
+	private long openedAt;
+
+	private boolean trialInFlight;
+
+	FirebaseCircuitBreaker(final int failureThreshold, final long openTime) {
+		this.failureThreshold = failureThreshold;
+		this.openTime = openTime;
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * @return the number of times the breaker opened
+	 */
+	public long getOpenedCount() {
+		return openedCount.get();
+	}
+
+	/**
+	 * @return the number of requests rejected while the breaker was open
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+
+	/**
+	 * @return whether a request may be sent; if so, its outcome must be
+	 *         reported to exactly one of {@link #onSuccess()},
+	 *         {@link #onFailure()} or {@link #onCancel()}
+	 */
+	synchronized boolean tryAcquire() {
+		switch (state) {
+		case OPEN:
+			if (System.nanoTime() - openedAt < TimeUnit.MILLISECONDS.toNanos(openTime)) {
+				break;
+			}
+			state = State.HALF_OPEN;
+			trialInFlight = true;
+			return true;
+		case HALF_OPEN:
+			if (trialInFlight) {
+				break;
+			}
+			trialInFlight = true;
+			return true;
+		default:
+			return true;
+		}
+		rejectedCount.incrementAndGet();
+		return false;
+	}
+
+	synchronized void onSuccess() {
+		consecutiveFailures = 0;
+		trialInFlight = false;
+		state = State.CLOSED;
+	}
+
+	synchronized void onFailure() {
+		trialInFlight = false;
+		if (failureThreshold <= 0) {
+			return;
+		}
+		if (state == State.HALF_OPEN || ++consecutiveFailures >= failureThreshold && state == State.CLOSED) {
+			state = State.OPEN;
+			openedAt = System.nanoTime();
+			openedCount.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Reports a request that ended without telling anything about the health
+	 * of the backend.
+	 */
+	synchronized void onCancel() {
+		trialInFlight = false;
+	}
+
+	/**
+	 * @return whether a response with the code counts as a failure
+	 */
+	static boolean isFailure(final int code) {
+		return code == 429 || code >= 500;
+	}
+}
@@ -0,0 +1,672 @@
+package net.thegreshams.firebase4j.service;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.message.BasicHeader;
+
+/**
+ * Configuration of the HTTP transport used by a {@link Firebase}: HTTP/1.1
+ * or HTTP/2, connection pool limits, timeouts, connection time-to-live and
+ * idle-connection eviction, the retry policy, circuit breaker,
+ * instrumentation, body compression, JSON codec and the executor of
+ * {@link Firebase#getAll(java.util.Collection)}, plus the optional
+ * {@link FirebaseCache} of GET responses, the coalescing of concurrent
+ * identical GETs and the timeouts of streams opened
+ * by {@link Firebase#listen(String, FirebaseEventListener)}.
+ *
+ * All durations are in milliseconds; a value of -1 means "no limit". Build
+ * one with {@link #builder()}.
+ */
+@Getter
+@ToString(exclude = { "connectionManager", "executor" })
+public class FirebaseClientConfig {
+
+	public static final FirebaseClientConfig DEFAULT = builder().build();
+
+	private final boolean http2;
+
+	private final int maxTotal;
+
+	private final int maxPerRoute;
+
+	private final int connectTimeout;
+
+	private final int socketTimeout;
+
+	private final int connectionRequestTimeout;
+
+	private final long timeToLive;
+
+	private final long maxIdleTime;
+
+	private final int maxInFlight;
+
+	private final long inFlightTimeout;
+
+	private final long cacheMaximumSize;
+
+	private final long cacheTimeToLive;
+
+	private final boolean coalesceGets;
+
+	private final long coalesceWaitTimeout;
+
+	private final FirebaseRetryPolicy retryPolicy;
+
+	private final int circuitBreakerFailureThreshold;
+
+	private final long circuitBreakerOpenTime;
+
+	private final FirebaseInstrumentation instrumentation;
+
+	private final int compressionThreshold;
+
+	private final FirebaseJsonCodec jsonCodec;
+
+	/**
+	 * Codec the data added with {@link Firebase#addData(String, Object)} is
+	 * written with: the configured codec, or else {@link FirebaseJackson1Codec},
+	 * so that data keeps being bound with {@link Firebase#OBJECT_MAPPER} and
+	 * the org.codehaus.jackson annotations.
+	 */
+	private final FirebaseJsonCodec dataCodec;
+
+	/**
+	 * Executor {@link Firebase#getAll(java.util.Collection)} fans out on, or
+	 * null to make its requests one after the other on the calling thread.
+	 */
+	private final ExecutorService executor;
+
+	private final int listenReadTimeout;
+
+	private final long listenRetryDelay;
+
+	private final long listenMaxRetryDelay;
+
+	private final PoolingHttpClientConnectionManager connectionManager;
+
+	private FirebaseClientConfig(final Builder builder) {
+		http2 = builder.http2;
+		maxTotal = builder.maxTotal;
+		maxPerRoute = builder.maxPerRoute;
+		connectTimeout = builder.connectTimeout;
+		socketTimeout = builder.socketTimeout;
+		connectionRequestTimeout = builder.connectionRequestTimeout;
+		timeToLive = builder.timeToLive;
+		maxIdleTime = builder.maxIdleTime;
+		maxInFlight = builder.maxInFlight;
+		inFlightTimeout = builder.inFlightTimeout;
+		cacheMaximumSize = builder.cacheMaximumSize;
+		cacheTimeToLive = builder.cacheTimeToLive;
+		coalesceGets = builder.coalesceGets;
+		coalesceWaitTimeout = builder.coalesceWaitTimeout;
+		retryPolicy = builder.retryPolicy;
+		circuitBreakerFailureThreshold = builder.circuitBreakerFailureThreshold;
+		circuitBreakerOpenTime = builder.circuitBreakerOpenTime;
+		instrumentation = builder.instrumentation;
+		compressionThreshold = builder.compressionThreshold;
+		jsonCodec = builder.jsonCodec != null ? builder.jsonCodec : FirebaseJackson2Codec.DEFAULT;
+		dataCodec = builder.jsonCodec != null ? builder.jsonCodec : FirebaseJackson1Codec.INSTANCE;
+		executor = builder.executor;
+		listenReadTimeout = builder.listenReadTimeout;
+		listenRetryDelay = builder.listenRetryDelay;
+		listenMaxRetryDelay = builder.listenMaxRetryDelay;
+		connectionManager = builder.connectionManager;
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Creates a new HTTP client from this configuration. When
+	 * {@link #getMaxIdleTime()} is positive the client runs a background
+	 * thread evicting expired and idle connections; it stops when the client
+	 * is closed.
+	 *
+	 * @return a new {@link CloseableHttpClient}, owned by the caller
+	 */
+	public CloseableHttpClient createHttpClient() {
+		RequestConfig requestConfig = RequestConfig.custom()
+				.setConnectTimeout(connectTimeout)
+				.setSocketTimeout(socketTimeout)
+				.setConnectionRequestTimeout(connectionRequestTimeout)
+				.build();
+		HttpClientBuilder httpClientBuilder = HttpClients.custom()
+				.setConnectionManager(createConnectionManager())
+				// a supplied manager belongs to the caller, not to any one client
+				.setConnectionManagerShared(connectionManager != null)
+				.setDefaultRequestConfig(requestConfig)
+				// retries are left to the retry policy, which counts them and backs off
+				.disableAutomaticRetries();
+		if (maxIdleTime > 0) {
+			httpClientBuilder.evictExpiredConnections().evictIdleConnections(maxIdleTime, TimeUnit.MILLISECONDS);
+		}
+		return httpClientBuilder.build();
+	}
+
+	/**
+	 * Creates a new non-blocking HTTP client from this configuration, as used
+	 * by {@link AsyncFirebase}. Pool limits and timeouts apply as for
+	 * {@link #createHttpClient()}; a supplied connection manager, the
+	 * time-to-live and the idle reaper only apply to the blocking client.
+	 *
+	 * @return a new, not yet started {@link CloseableHttpAsyncClient}, owned by
+	 *         the caller
+	 */
+	public CloseableHttpAsyncClient createHttpAsyncClient() {
+		RequestConfig requestConfig = RequestConfig.custom()
+				.setConnectTimeout(connectTimeout)
+				.setSocketTimeout(socketTimeout)
+				.setConnectionRequestTimeout(connectionRequestTimeout)
+				.build();
+		IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+				.setConnectTimeout(Math.max(connectTimeout, 0))
+				.setSoTimeout(Math.max(socketTimeout, 0))
+				.build();
+		HttpAsyncClientBuilder httpAsyncClientBuilder = HttpAsyncClients.custom()
+				.setMaxConnTotal(maxTotal)
+				.setMaxConnPerRoute(maxPerRoute)
+				.setDefaultRequestConfig(requestConfig)
+				.setDefaultIOReactorConfig(ioReactorConfig);
+		if (compressionThreshold >= 0) {
+			// unlike the blocking client, the async client does not ask for compressed responses by itself
+			httpAsyncClientBuilder.setDefaultHeaders(Collections.singletonList(
+					new BasicHeader(HttpHeaders.ACCEPT_ENCODING, "gzip")));
+		}
+		return httpAsyncClientBuilder.build();
+	}
+
+	/**
+	 * @param httpClient
+	 *            Client created by {@link #createHttpClient()}, which the
+	 *            returned transport sends requests through unless they go
+	 *            over HTTP/2
+	 * @return a new transport, owned by the caller
+	 */
+	FirebaseTransport createTransport(final CloseableHttpClient httpClient) {
+		return http2 ? new Http2Transport(this) : new HttpClientTransport(httpClient);
+	}
+
+	/**
+	 * @return a new, empty cache of GET responses, or null if caching is
+	 *         disabled
+	 */
+	FirebaseCache createCache() {
+		return cacheMaximumSize > 0 ? new FirebaseCache(cacheMaximumSize, cacheTimeToLive) : null;
+	}
+
+	/**
+	 * @return a new, empty register of GETs in flight, or null if concurrent
+	 *         identical GETs are not coalesced
+	 */
+	FirebaseSingleFlight createSingleFlight() {
+		return coalesceGets ? new FirebaseSingleFlight(coalesceWaitTimeout) : null;
+	}
+
+	/**
+	 * @return a new circuit breaker, which never opens if the failure
+	 *         threshold is zero
+	 */
+	FirebaseCircuitBreaker createCircuitBreaker() {
+		return new FirebaseCircuitBreaker(circuitBreakerFailureThreshold, circuitBreakerOpenTime);
+	}
+
+	/**
+	 * @return the request configuration of a stream: the usual connect
+	 *         timeouts, but the listen read timeout in place of the socket
+	 *         timeout
+	 */
+	RequestConfig createListenRequestConfig() {
+		return RequestConfig.custom()
+				.setConnectTimeout(connectTimeout)
+				.setSocketTimeout(listenReadTimeout)
+				.setConnectionRequestTimeout(connectionRequestTimeout)
+				.build();
+	}
+
+	PoolingHttpClientConnectionManager createConnectionManager() {
+		if (connectionManager != null) {
+			return connectionManager;
+		}
+		PoolingHttpClientConnectionManager manager = instrumentation != FirebaseInstrumentation.NOOP
+				? new InstrumentedConnectionManager(timeToLive, instrumentation)
+				: new PoolingHttpClientConnectionManager(timeToLive, TimeUnit.MILLISECONDS);
+		manager.setMaxTotal(maxTotal);
+		manager.setDefaultMaxPerRoute(maxPerRoute);
+		return manager;
+	}
+
+	public static class Builder {
+
+		private boolean http2 = false;
+
+		private int maxTotal = 200;
+
+		private int maxPerRoute = 50;
+
+		private int connectTimeout = 10000;
+
+		private int socketTimeout = 30000;
+
+		private int connectionRequestTimeout = 10000;
+
+		private long timeToLive = -1;
+
+		private long maxIdleTime = 30000;
+
+		private int maxInFlight = 1024;
+
+		private long inFlightTimeout = 10000;
+
+		private long cacheMaximumSize = 0;
+
+		private long cacheTimeToLive = 60000;
+
+		private boolean coalesceGets = false;
+
+		private long coalesceWaitTimeout = -1;
+
+		private FirebaseRetryPolicy retryPolicy = FirebaseRetryPolicy.NEVER;
+
+		private int circuitBreakerFailureThreshold = 0;
+
+		private long circuitBreakerOpenTime = 30000;
+
+		private FirebaseInstrumentation instrumentation = FirebaseInstrumentation.NOOP;
+
+		private int compressionThreshold = -1;
+
+		private FirebaseJsonCodec jsonCodec;
+
+		private ExecutorService executor;
+
+		private int listenReadTimeout = 60000;
+
+		private long listenRetryDelay = 1000;
+
+		private long listenMaxRetryDelay = 30000;
+
+		private PoolingHttpClientConnectionManager connectionManager;
+
+		private Builder() {
+		}
+
+		/**
+		 * @param http2
+		 *            Whether requests are multiplexed over a single HTTP/2
+		 *            connection per host instead of taking a pooled HTTP/1.1
+		 *            connection each. The pool limits then only apply to
+		 *            streams opened by
+		 *            {@link Firebase#listen(String, FirebaseEventListener)},
+		 *            which stay on HTTP/1.1, as does {@link AsyncFirebase}.
+		 *            False by default
+		 * @return this Builder
+		 */
+		public Builder http2(final boolean http2) {
+			this.http2 = http2;
+			return this;
+		}
+
+		/**
+		 * @param maxTotal
+		 *            Maximum number of pooled connections across all routes
+		 * @return this Builder
+		 */
+		public Builder maxTotal(final int maxTotal) {
+			checkArgument(maxTotal > 0, "maxTotal must be positive; was: " + maxTotal);
+			this.maxTotal = maxTotal;
+			return this;
+		}
+
+		/**
+		 * @param maxPerRoute
+		 *            Maximum number of pooled connections to a single host
+		 * @return this Builder
+		 */
+		public Builder maxPerRoute(final int maxPerRoute) {
+			checkArgument(maxPerRoute > 0, "maxPerRoute must be positive; was: " + maxPerRoute);
+			this.maxPerRoute = maxPerRoute;
+			return this;
+		}
+
+		/**
+		 * @param connectTimeout
+		 *            Time to establish a connection, in milliseconds
+		 * @return this Builder
+		 */
+		public Builder connectTimeout(final int connectTimeout) {
+			this.connectTimeout = connectTimeout;
+			return this;
+		}
+
+		/**
+		 * @param socketTimeout
+		 *            Maximum inactivity between two data packets, in
+		 *            milliseconds
+		 * @return this Builder
+		 */
+		public Builder socketTimeout(final int socketTimeout) {
+			this.socketTimeout = socketTimeout;
+			return this;
+		}
+
+		/**
+		 * @param connectionRequestTimeout
+		 *            Time to wait for a connection from the pool, in
+		 *            milliseconds
+		 * @return this Builder
+		 */
+		public Builder connectionRequestTimeout(final int connectionRequestTimeout) {
+			this.connectionRequestTimeout = connectionRequestTimeout;
+			return this;
+		}
+
+		/**
+		 * @param timeToLive
+		 *            Maximum lifetime of a pooled connection, in milliseconds
+		 * @return this Builder
+		 */
+		public Builder timeToLive(final long timeToLive) {
+			this.timeToLive = timeToLive;
+			return this;
+		}
+
+		/**
+		 * @param maxIdleTime
+		 *            Idle time after which a pooled connection is evicted by
+		 *            the background reaper, in milliseconds; zero or less
+		 *            disables the reaper
+		 * @return this Builder
+		 */
+		public Builder maxIdleTime(final long maxIdleTime) {
+			this.maxIdleTime = maxIdleTime;
+			return this;
+		}
+
+		/**
+		 * @param maxInFlight
+		 *            Maximum number of requests an {@link AsyncFirebase} keeps
+		 *            in flight; further calls wait up to the in-flight timeout
+		 *            for a slot before failing
+		 * @return this Builder
+		 */
+		public Builder maxInFlight(final int maxInFlight) {
+			checkArgument(maxInFlight > 0, "maxInFlight must be positive; was: " + maxInFlight);
+			this.maxInFlight = maxInFlight;
+			return this;
+		}
+
+		/**
+		 * @param inFlightTimeout
+		 *            Time a call of an {@link AsyncFirebase} waits for one of
+		 *            its in-flight slots, in milliseconds, or -1 to wait
+		 *            without limit
+		 * @return this Builder
+		 */
+		public Builder inFlightTimeout(final long inFlightTimeout) {
+			this.inFlightTimeout = inFlightTimeout;
+			return this;
+		}
+
+		/**
+		 * @param cacheMaximumSize
+		 *            Maximum number of GET responses to cache; zero (the
+		 *            default) disables the cache
+		 * @return this Builder
+		 */
+		public Builder cacheMaximumSize(final long cacheMaximumSize) {
+			checkArgument(cacheMaximumSize >= 0, "cacheMaximumSize cannot be negative; was: " + cacheMaximumSize);
+			this.cacheMaximumSize = cacheMaximumSize;
+			return this;
+		}
+
+		/**
+		 * @param cacheTimeToLive
+		 *            Time a GET response stays cached, in milliseconds; zero or
+		 *            less keeps it until evicted or invalidated
+		 * @return this Builder
+		 */
+		public Builder cacheTimeToLive(final long cacheTimeToLive) {
+			this.cacheTimeToLive = cacheTimeToLive;
+			return this;
+		}
+
+		/**
+		 * @param coalesceGets
+		 *            Whether GETs of a full URL (path plus query parameters)
+		 *            made while a GET of the same URL is in flight wait for
+		 *            its response instead of being sent; GETs with headers of
+		 *            their own are always sent. False by default
+		 * @return this Builder
+		 */
+		public Builder coalesceGets(final boolean coalesceGets) {
+			this.coalesceGets = coalesceGets;
+			return this;
+		}
+
+		/**
+		 * @param coalesceWaitTimeout
+		 *            Maximum time a coalesced GET waits for the response of
+		 *            the GET in flight, in milliseconds, before failing with
+		 *            an {@link java.io.InterruptedIOException}; the GET in
+		 *            flight carries on for its other callers. -1 (the
+		 *            default) waits for as long as that GET takes
+		 * @return this Builder
+		 */
+		public Builder coalesceWaitTimeout(final long coalesceWaitTimeout) {
+			checkArgument(coalesceWaitTimeout >= -1, "coalesceWaitTimeout must be -1 or more; was: "
+					+ coalesceWaitTimeout);
+			this.coalesceWaitTimeout = coalesceWaitTimeout;
+			return this;
+		}
+
+		/**
+		 * @param retryPolicy
+		 *            Decides which failed requests are sent again; by default
+		 *            none are
+		 * @return this Builder
+		 * @see FirebaseBackoffRetryPolicy
+		 */
+		public Builder retryPolicy(final FirebaseRetryPolicy retryPolicy) {
+			this.retryPolicy = checkNotNull(retryPolicy, "retryPolicy cannot be null");
+			return this;
+		}
+
+		/**
+		 * @param circuitBreakerFailureThreshold
+		 *            Number of consecutive failures after which requests fail
+		 *            fast; zero (the default) disables the circuit breaker
+		 * @return this Builder
+		 */
+		public Builder circuitBreakerFailureThreshold(final int circuitBreakerFailureThreshold) {
+			checkArgument(circuitBreakerFailureThreshold >= 0,
+					"circuitBreakerFailureThreshold cannot be negative; was: " + circuitBreakerFailureThreshold);
+			this.circuitBreakerFailureThreshold = circuitBreakerFailureThreshold;
+			return this;
+		}
+
+		/**
+		 * @param circuitBreakerOpenTime
+		 *            Time requests fail fast for once the circuit breaker
+		 *            opens, before a trial request is let through, in
+		 *            milliseconds
+		 * @return this Builder
+		 */
+		public Builder circuitBreakerOpenTime(final long circuitBreakerOpenTime) {
+			checkArgument(circuitBreakerOpenTime > 0, "circuitBreakerOpenTime must be positive; was: "
+					+ circuitBreakerOpenTime);
+			this.circuitBreakerOpenTime = circuitBreakerOpenTime;
+			return this;
+		}
+
+		/**
+		 * @param instrumentation
+		 *            Receives the timings, sizes and outcomes of requests and
+		 *            the waits for pooled connections; by default nothing is
+		 *            recorded
+		 * @return this Builder
+		 * @see FirebaseMicrometerInstrumentation
+		 */
+		public Builder instrumentation(final FirebaseInstrumentation instrumentation) {
+			this.instrumentation = checkNotNull(instrumentation, "instrumentation cannot be null");
+			return this;
+		}
+
+		/**
+		 * @param compressionThreshold
+		 *            Size in bytes from which request bodies are sent gzipped,
+		 *            0 to gzip every body, or -1 (the default) to never
+		 *            compress them. Anything but -1 also makes
+		 *            {@link AsyncFirebase} accept gzipped responses, which the
+		 *            blocking client always does, decompressing them while they
+		 *            are read
+		 * @return this Builder
+		 */
+		public Builder compressionThreshold(final int compressionThreshold) {
+			checkArgument(compressionThreshold >= -1, "compressionThreshold must be -1 or more; was: "
+					+ compressionThreshold);
+			this.compressionThreshold = compressionThreshold;
+			return this;
+		}
+
+		/**
+		 * @param jsonCodec
+		 *            Converts the data of requests and responses to and from
+		 *            JSON. By default values are converted with
+		 *            {@link FirebaseJackson2Codec#DEFAULT}, but the data added
+		 *            with {@link Firebase#addData(String, Object)} is written
+		 *            with {@link FirebaseJackson1Codec}, as before codecs
+		 *            existed
+		 * @return this Builder
+		 * @see FirebaseJackson1Codec
+		 */
+		public Builder jsonCodec(final FirebaseJsonCodec jsonCodec) {
+			this.jsonCodec = checkNotNull(jsonCodec, "jsonCodec cannot be null");
+			return this;
+		}
+
+		/**
+		 * @param executor
+		 *            Executor that {@link Firebase#getAll(java.util.Collection)}
+		 *            runs its requests on, concurrently; it is not shut down
+		 *            by {@link Firebase#close()}. By default getAll makes its
+		 *            requests one after the other on the calling thread. No
+		 *            other call uses the executor
+		 * @return this Builder
+		 */
+		public Builder executor(final ExecutorService executor) {
+			this.executor = executor;
+			return this;
+		}
+
+		/**
+		 * Runs the requests of {@link Firebase#getAll(java.util.Collection)}
+		 * on a new virtual thread per request, so getAll can fan out to
+		 * thousands of requests without a large thread pool; the number of
+		 * requests actually sent at once is still bounded by
+		 * {@link #maxTotal(int)} and {@link #maxPerRoute(int)}.
+		 *
+		 * @return this Builder
+		 * @throws IllegalStateException
+		 *             if the runtime has no virtual threads, i.e. is older
+		 *             than Java 21
+		 */
+		public Builder virtualThreads() {
+			return executor(newVirtualThreadPerTaskExecutor());
+		}
+
+		/**
+		 * @param listenReadTimeout
+		 *            Maximum inactivity on a stream before it is re-opened, in
+		 *            milliseconds; Firebase sends a keep-alive every 30
+		 *            seconds
+		 * @return this Builder
+		 */
+		public Builder listenReadTimeout(final int listenReadTimeout) {
+			this.listenReadTimeout = listenReadTimeout;
+			return this;
+		}
+
+		/**
+		 * @param listenRetryDelay
+		 *            Delay before re-opening a dropped stream, in milliseconds;
+		 *            doubles with every attempt that receives nothing
+		 * @return this Builder
+		 */
+		public Builder listenRetryDelay(final long listenRetryDelay) {
+			checkArgument(listenRetryDelay > 0, "listenRetryDelay must be positive; was: " + listenRetryDelay);
+			this.listenRetryDelay = listenRetryDelay;
+			return this;
+		}
+
+		/**
+		 * @param listenMaxRetryDelay
+		 *            Upper bound of the delay before re-opening a dropped
+		 *            stream, in milliseconds
+		 * @return this Builder
+		 */
+		public Builder listenMaxRetryDelay(final long listenMaxRetryDelay) {
+			checkArgument(listenMaxRetryDelay > 0, "listenMaxRetryDelay must be positive; was: "
+					+ listenMaxRetryDelay);
+			this.listenMaxRetryDelay = listenMaxRetryDelay;
+			return this;
+		}
+
+		/**
+		 * Supplies a ready-made connection manager. When set, it is used as-is
+		 * and {@link #maxTotal(int)}, {@link #maxPerRoute(int)} and
+		 * {@link #timeToLive(long)} are ignored. It is shared by every client
+		 * created from the configuration and owned by the caller: closing a
+		 * client or {@link Firebase} leaves it open, and the caller must shut
+		 * it down once they are all closed.
+		 *
+		 * @param connectionManager
+		 *            Connection manager to use
+		 * @return this Builder
+		 */
+		public Builder connectionManager(final PoolingHttpClientConnectionManager connectionManager) {
+			this.connectionManager = connectionManager;
+			return this;
+		}
+
+		/**
+		 * @return Executors.newVirtualThreadPerTaskExecutor() of Java 21,
+		 *         looked up at runtime as this library is built for Java 8
+		 */
+		private static ExecutorService newVirtualThreadPerTaskExecutor() {
+			try {
+				return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			} catch (NoSuchMethodException e) {
+				throw new IllegalStateException("virtual threads need Java 21 or later; running on "
+						+ System.getProperty("java.version"), e);
+			} catch (IllegalAccessException | InvocationTargetException e) {
+				throw new IllegalStateException("cannot create a virtual-thread executor", e);
+			}
+		}
+
+		public FirebaseClientConfig build() {
+			return new FirebaseClientConfig(this);
+		}
+	}
+}
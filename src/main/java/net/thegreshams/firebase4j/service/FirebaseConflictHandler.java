@@ -0,0 +1,28 @@
+package net.thegreshams.firebase4j.service;
+
+import java.io.IOException;
+
+import net.thegreshams.firebase4j.model.FirebaseResponse;
+
+/**
+ * Decides how to retry a conditional write that failed because the data
+ * changed underneath it.
+ *
+ * @see Firebase#compareAndSet(String, String, Object, FirebaseConflictHandler)
+ */
+public interface FirebaseConflictHandler {
+
+	/**
+	 * Returned by {@link #onConflict(FirebaseResponse)} to stop retrying.
+	 */
+	Object ABORT = new Object();
+
+	/**
+	 * @param conflict
+	 *            The 412 response, carrying the current data and its ETag
+	 * @return the value to retry the write with, or {@link #ABORT}
+	 * @throws IOException
+	 *             to stop retrying with an error
+	 */
+	Object onConflict(FirebaseResponse conflict) throws IOException;
+}
@@ -0,0 +1,20 @@
+package net.thegreshams.firebase4j.service;
+
+import net.thegreshams.firebase4j.model.FirebaseEvent;
+
+/**
+ * Receives the events of a location listened to with
+ * {@link Firebase#listen(String, FirebaseEventListener)}.
+ */
+public interface FirebaseEventListener {
+
+	/**
+	 * Called on the thread reading the stream, in the order the events were
+	 * received; a slow listener delays every other listener of the location.
+	 * A CANCEL or AUTH_REVOKED event is the last one delivered.
+	 *
+	 * @param event
+	 *            The event, along with a snapshot of the location after it
+	 */
+	void onEvent(FirebaseEvent event);
+}
@@ -0,0 +1,295 @@
+package net.thegreshams.firebase4j.service;
+
+import static net.thegreshams.firebase4j.service.FirebaseRestMethod.GET;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import net.thegreshams.firebase4j.model.FirebaseEvent;
+import net.thegreshams.firebase4j.model.FirebaseEvent.Type;
+import net.thegreshams.firebase4j.model.FirebaseResponse;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.impl.client.CloseableHttpClient;
+
+/**
+ * One connection to the Firebase streaming endpoint for a location, feeding
+ * any number of {@link FirebaseEventListener}s and a {@link FirebaseMirror} of
+ * the location.
+ *
+ * The stream is read on a daemon thread of its own. When the connection drops,
+ * times out or fails with a server error, it is re-opened after a delay that
+ * doubles with every attempt that receives no event, up to a maximum; the
+ * first event of every connection is a put of the whole location, which
+ * replaces the mirror. A cancel or auth_revoked event, or a client error
+ * response, ends the stream for good.
+ */
+@ToString(of = "url")
+@Slf4j
+final class FirebaseEventStream implements Runnable {
+
+	private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+	private final Firebase firebase;
+
+	private final CloseableHttpClient httpClient;
+
+	private final FirebaseRequest request;
+
+	private final String url;
+
+	private final RequestConfig requestConfig;
+
+	private final long retryDelay;
+
+	private final long maxRetryDelay;
+
+	private final List<FirebaseEventListener> listeners = new CopyOnWriteArrayList<>();
+
+	private final FirebaseMirror mirror = new FirebaseMirror();
+
+	private final Thread thread;
+
+	/**
+	 * Whether the mirror holds the location yet; guarded by this.
+	 */
+	private boolean loaded;
+
+	private volatile boolean closed;
+
+	private volatile HttpRequestBase currentRequest;
+
+	FirebaseEventStream(final Firebase firebase, final CloseableHttpClient httpClient, final FirebaseRequest request,
+	        final String url, final FirebaseClientConfig config) {
+		this.firebase = firebase;
+		this.httpClient = httpClient;
+		this.request = request;
+		this.url = url;
+		requestConfig = config.createListenRequestConfig();
+		retryDelay = config.getListenRetryDelay();
+		maxRetryDelay = config.getListenMaxRetryDelay();
+		thread = new Thread(this, "firebase-listen-" + THREAD_COUNT.incrementAndGet());
+		thread.setDaemon(true);
+	}
+
+	void start() {
+		thread.start();
+	}
+
+	Object getValue() {
+		return mirror.getValue();
+	}
+
+	/**
+	 * Adds the listener and, if the location has already been loaded, hands
+	 * it a put of the whole mirror so it starts from the same state as the
+	 * other listeners.
+	 *
+	 * @return false if the stream is already closed
+	 */
+	synchronized boolean subscribe(final FirebaseEventListener listener) {
+		if (closed) {
+			return false;
+		}
+		listeners.add(listener);
+		if (loaded) {
+			deliver(listener, new FirebaseEvent(Type.PUT, "/", mirror.getValue(), mirror.getValue()));
+		}
+		return true;
+	}
+
+	boolean isSubscribed(final FirebaseEventListener listener) {
+		return !closed && listeners.contains(listener);
+	}
+
+	synchronized void unsubscribe(final FirebaseEventListener listener) {
+		listeners.remove(listener);
+		if (listeners.isEmpty()) {
+			close();
+		}
+	}
+
+	synchronized void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		firebase.removeStream(url, this);
+		HttpRequestBase httpRequest = currentRequest;
+		if (httpRequest != null) {
+			httpRequest.abort();
+		}
+		if (Thread.currentThread() != thread) {
+			thread.interrupt();
+		}
+	}
+
+	@Override
+	public void run() {
+		long delay = retryDelay;
+		while (!closed) {
+			try {
+				if (connect()) {
+					delay = retryDelay;
+				}
+			} catch (IOException | RuntimeException e) {
+				if (!closed) {
+					log.debug("stream of '{}' failed", url, e);
+				}
+			}
+			if (closed) {
+				break;
+			}
+			log.debug("reconnecting to '{}' in {}ms", url, delay);
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				if (closed) {
+					break;
+				}
+			}
+			delay = Math.min(delay * 2, maxRetryDelay);
+		}
+		log.debug("stopped listening to '{}'", url);
+	}
+
+	/**
+	 * Reads events until the connection ends.
+	 *
+	 * @return whether any event was received
+	 */
+	private boolean connect() throws IOException {
+		HttpRequestBase httpRequest = firebase.createHttpRequest(GET, request, url);
+		httpRequest.setHeader("Accept", "text/event-stream");
+		httpRequest.setConfig(requestConfig);
+		currentRequest = httpRequest;
+		if (closed) {
+			return false;
+		}
+		try (CloseableHttpResponse httpResponse = httpClient.execute(httpRequest)) {
+			int code = httpResponse.getStatusLine().getStatusCode();
+			HttpEntity entity = httpResponse.getEntity();
+			if (code != 200 || entity == null) {
+				FirebaseResponse response = firebase.processResponse(GET, httpResponse, url);
+				if (code >= 400 && code < 500 && code != 429) {
+					end(new FirebaseEvent(Type.CANCEL, null, response.getRawBody(), mirror.getValue()));
+				} else {
+					log.debug("unexpected response to listening to '{}': {}", url, response);
+				}
+				return false;
+			}
+			// the content is deliberately not closed: that would read the endless stream to its end
+			BufferedReader reader = new BufferedReader(new InputStreamReader(entity.getContent(),
+					StandardCharsets.UTF_8));
+			boolean received = false;
+			String event = null;
+			StringBuilder data = new StringBuilder();
+			String line;
+			while (!closed && (line = reader.readLine()) != null) {
+				if (line.isEmpty()) {
+					if (event != null) {
+						received = true;
+						handle(event, data.toString());
+					}
+					event = null;
+					data.setLength(0);
+					continue;
+				}
+				if (line.startsWith(":")) {
+					continue;
+				}
+				int colon = line.indexOf(':');
+				String field = colon < 0 ? line : line.substring(0, colon);
+				String value = colon < 0 ? "" : line.substring(colon + 1);
+				if (value.startsWith(" ")) {
+					value = value.substring(1);
+				}
+				if ("event".equals(field)) {
+					event = value;
+				} else if ("data".equals(field)) {
+					if (data.length() > 0) {
+						data.append('\n');
+					}
+					data.append(value);
+				}
+			}
+			return received;
+		} finally {
+			currentRequest = null;
+		}
+	}
+
+	private void handle(final String event, final String data) throws IOException {
+		switch (event) {
+		case "put":
+		case "patch":
+			Map<?, ?> change = firebase.getJsonCodec().read(data, Map.class);
+			String path = String.valueOf(change.get("path"));
+			Object value = change.get("data");
+			synchronized (this) {
+				if ("put".equals(event)) {
+					mirror.put(path, value);
+					loaded = true;
+					dispatch(new FirebaseEvent(Type.PUT, path, value, mirror.getValue()));
+				} else if (value instanceof Map) {
+					mirror.patch(path, (Map<?, ?>) value);
+					dispatch(new FirebaseEvent(Type.PATCH, path, value, mirror.getValue()));
+				}
+			}
+			break;
+		case "keep-alive":
+			break;
+		case "cancel":
+			end(new FirebaseEvent(Type.CANCEL, null, parseMessage(data), mirror.getValue()));
+			break;
+		case "auth_revoked":
+			end(new FirebaseEvent(Type.AUTH_REVOKED, null, parseMessage(data), mirror.getValue()));
+			break;
+		default:
+			log.debug("ignoring unknown event '{}' from '{}'", event, url);
+			break;
+		}
+	}
+
+	private synchronized void end(final FirebaseEvent event) {
+		log.debug("stream of '{}' ended by the server: {}", url, event);
+		close();
+		dispatch(event);
+	}
+
+	private Object parseMessage(final String data) {
+		if (data.trim().isEmpty()) {
+			return null;
+		}
+		try {
+			return firebase.getJsonCodec().read(data, Object.class);
+		} catch (IOException e) {
+			return data;
+		}
+	}
+
+	private void dispatch(final FirebaseEvent event) {
+		for (FirebaseEventListener listener : listeners) {
+			deliver(listener, event);
+		}
+	}
+
+	private void deliver(final FirebaseEventListener listener, final FirebaseEvent event) {
+		try {
+			listener.onEvent(event);
+		} catch (RuntimeException e) {
+			log.warn("listener {} of '{}' failed on {}", listener, url, event, e);
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package net.thegreshams.firebase4j.service;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Iterables;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * Spreads paths over shards by consistent hashing of their prefix: the first
+ * depth segments of a path, so that everything below a prefix, such as
+ * "users/abc" at a depth of 2, lives on the same shard. Paths with fewer
+ * segments than that are hashed whole, and span shards: their children may
+ * each live on another one.
+ *
+ * Every shard is placed on a ring of hashes at a number of points, and a
+ * prefix belongs to the first shard at or after its own hash. Adding a shard
+ * therefore moves only the prefixes that now fall to it, about 1/n of them,
+ * rather than nearly all of them as hashing modulo the number of shards
+ * would; the more points per shard, the more even the spread.
+ */
+@Getter
+@ToString(exclude = "ring")
+public class FirebaseHashShardStrategy implements FirebaseShardStrategy {
+
+	/**
+	 * Points per shard on the ring unless given otherwise, which keeps the
+	 * shards within about 10% of an even share.
+	 */
+	public static final int DEFAULT_POINTS = 160;
+
+	private static final HashFunction HASH = Hashing.murmur3_32();
+
+	private static final Splitter SEGMENT_SPLITTER = Splitter.on('/').omitEmptyStrings().trimResults();
+
+	private static final Joiner SEGMENT_JOINER = Joiner.on('/');
+
+	private final int depth;
+
+	private final int points;
+
+	private final TreeMap<Integer, String> ring = new TreeMap<>();
+
+	/**
+	 * @param shards
+	 *            Names of the shards
+	 * @param depth
+	 *            Number of leading path segments hashed
+	 */
+	public FirebaseHashShardStrategy(final Collection<String> shards, final int depth) {
+		this(shards, depth, DEFAULT_POINTS);
+	}
+
+	/**
+	 * @param shards
+	 *            Names of the shards
+	 * @param depth
+	 *            Number of leading path segments hashed
+	 * @param points
+	 *            Number of points of every shard on the ring
+	 */
+	public FirebaseHashShardStrategy(final Collection<String> shards, final int depth, final int points) {
+		checkArgument(!checkNotNull(shards, "shards cannot be null").isEmpty(), "shards cannot be empty");
+		checkArgument(depth > 0, "depth must be positive; was: " + depth);
+		checkArgument(points > 0, "points must be positive; was: " + points);
+		this.depth = depth;
+		this.points = points;
+		for (String shard : shards) {
+			checkNotNull(shard, "shard names cannot be null");
+			for (int i = 0; i < points; i++) {
+				int point = hash(shard + "#" + i);
+				// on a collision the lesser name wins, whatever the order of the shards
+				String other = ring.get(point);
+				if (other == null || shard.compareTo(other) < 0) {
+					ring.put(point, shard);
+				}
+			}
+		}
+	}
+
+	@Override
+	public String shardOf(final String path) {
+		String prefix = SEGMENT_JOINER.join(Iterables.limit(SEGMENT_SPLITTER.split(path != null ? path : ""), depth));
+		Map.Entry<Integer, String> point = ring.ceilingEntry(hash(prefix));
+		return (point != null ? point : ring.firstEntry()).getValue();
+	}
+
+	@Override
+	public boolean spansShards(final String path) {
+		return Iterables.size(Iterables.limit(SEGMENT_SPLITTER.split(path != null ? path : ""), depth)) < depth;
+	}
+
+	private static int hash(final String key) {
+		return HASH.hashString(key, StandardCharsets.UTF_8).asInt();
+	}
+}
@@ -0,0 +1,58 @@
+package net.thegreshams.firebase4j.service;
+
+/**
+ * Receives timings, sizes and outcomes of the requests made by a
+ * {@link Firebase} or {@link AsyncFirebase}, e.g. to feed a metrics or tracing
+ * system.
+ *
+ * Implementations are called on the request threads and must be thread-safe
+ * and fast. The default, {@link #NOOP}, records nothing and costs nothing:
+ * requests skip every timing and counting step when
+ * {@link #start(FirebaseRestMethod, String)} returns null.
+ *
+ * @see FirebaseMicrometerInstrumentation
+ * @see FirebaseClientConfig.Builder#instrumentation(FirebaseInstrumentation)
+ */
+public interface FirebaseInstrumentation {
+
+	FirebaseInstrumentation NOOP = new FirebaseInstrumentation() {
+
+		@Override
+		public FirebaseRequestRecorder start(final FirebaseRestMethod method, final String path) {
+			return null;
+		}
+
+		@Override
+		public void connectionLeased(final long waitNanos) {
+		}
+
+		@Override
+		public String toString() {
+			return "FirebaseInstrumentation.NOOP";
+		}
+	};
+
+	/**
+	 * Called before a request is sent for the first time; retries are part of
+	 * the same request.
+	 *
+	 * @param method
+	 *            Method of the request
+	 * @param path
+	 *            Path of the request relative to the base URL, without leading
+	 *            or trailing slashes; empty for the base URL
+	 * @return a recorder to report the outcome of the request to, or null to
+	 *         not record this request
+	 */
+	FirebaseRequestRecorder start(FirebaseRestMethod method, String path);
+
+	/**
+	 * Called whenever a connection is taken from the pool of a client created
+	 * by {@link FirebaseClientConfig#createHttpClient()}, unless the pool was
+	 * supplied with {@link FirebaseClientConfig.Builder#connectionManager}.
+	 *
+	 * @param waitNanos
+	 *            Time spent waiting for the connection, in nanoseconds
+	 */
+	void connectionLeased(long waitNanos);
+}
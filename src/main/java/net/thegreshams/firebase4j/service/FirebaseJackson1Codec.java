@@ -0,0 +1,143 @@
+package net.thegreshams.firebase4j.service;
+
+import static net.thegreshams.firebase4j.service.Firebase.OBJECT_MAPPER;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.map.ObjectReader;
+import org.codehaus.jackson.map.ObjectWriter;
+
+/**
+ * A {@link FirebaseJsonCodec} on the Codehaus Jackson 1
+ * {@link Firebase#OBJECT_MAPPER}, binding values as earlier versions of this
+ * client did: use it for classes annotated with the org.codehaus.jackson
+ * annotations, or to configure binding through the shared mapper. Unless
+ * another codec is configured, it writes the data added with
+ * {@link Firebase#addData(String, Object)}.
+ *
+ * @see FirebaseJsonUtil
+ */
+public final class FirebaseJackson1Codec
+        extends FirebaseJacksonCodec<JsonParser, JsonGenerator, ObjectReader, ObjectWriter> {
+
+	public static final FirebaseJackson1Codec INSTANCE = new FirebaseJackson1Codec();
+
+	private FirebaseJackson1Codec() {
+	}
+
+	@Override
+	public <T> T read(final byte[] json, final Class<T> type) throws IOException {
+		return readerFor(type).readValue(json);
+	}
+
+	@Override
+	public <T> T read(final String json, final Class<T> type) throws IOException {
+		return readerFor(type).readValue(json);
+	}
+
+	@Override
+	public <T> T read(final InputStream json, final Class<T> type) throws IOException {
+		return readerFor(type).readValue(json);
+	}
+
+	@Override
+	public <T> T convert(final Object value, final Class<T> type) {
+		return OBJECT_MAPPER.convertValue(value, type);
+	}
+
+	@Override
+	ObjectReader createReader(final Class<?> type) {
+		return OBJECT_MAPPER.reader(type);
+	}
+
+	@Override
+	ObjectWriter createWriter(final Class<?> type) {
+		return OBJECT_MAPPER.writerWithType(type);
+	}
+
+	@Override
+	JsonParser createParser(final String json) throws IOException {
+		return OBJECT_MAPPER.getJsonFactory().createJsonParser(json);
+	}
+
+	@Override
+	JsonParser createParser(final InputStream json) throws IOException {
+		return OBJECT_MAPPER.getJsonFactory().createJsonParser(json);
+	}
+
+	@Override
+	JsonGenerator createGenerator(final OutputStream out) throws IOException {
+		return OBJECT_MAPPER.getJsonFactory().createJsonGenerator(out, JsonEncoding.UTF8);
+	}
+
+	@Override
+	<T> T readValue(final ObjectReader reader, final JsonParser parser) throws IOException {
+		return reader.readValue(parser);
+	}
+
+	@Override
+	byte[] writeValueAsBytes(final ObjectWriter writer, final Object value) throws IOException {
+		return writer.writeValueAsBytes(value);
+	}
+
+	@Override
+	void writeValue(final ObjectWriter writer, final JsonGenerator generator, final Object value)
+	        throws IOException {
+		writer.writeValue(generator, value);
+	}
+
+	@Override
+	Token nextToken(final JsonParser parser) throws IOException {
+		return token(parser.nextToken());
+	}
+
+	@Override
+	Token currentToken(final JsonParser parser) {
+		return token(parser.getCurrentToken());
+	}
+
+	@Override
+	String currentName(final JsonParser parser) throws IOException {
+		return parser.getCurrentName();
+	}
+
+	@Override
+	void skipChildren(final JsonParser parser) throws IOException {
+		parser.skipChildren();
+	}
+
+	@Override
+	void writeStartObject(final JsonGenerator generator) throws IOException {
+		generator.writeStartObject();
+	}
+
+	@Override
+	void writeEndObject(final JsonGenerator generator) throws IOException {
+		generator.writeEndObject();
+	}
+
+	@Override
+	void writeFieldName(final JsonGenerator generator, final String name) throws IOException {
+		generator.writeFieldName(name);
+	}
+
+	@Override
+	void writeNull(final JsonGenerator generator) throws IOException {
+		generator.writeNull();
+	}
+
+	@Override
+	void copyCurrentStructure(final JsonGenerator generator, final JsonParser parser) throws IOException {
+		generator.copyCurrentStructure(parser);
+	}
+
+	@Override
+	public String toString() {
+		return "FirebaseJackson1Codec";
+	}
+}
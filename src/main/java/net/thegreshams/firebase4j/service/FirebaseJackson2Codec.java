@@ -0,0 +1,160 @@
+package net.thegreshams.firebase4j.service;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+
+/**
+ * A {@link FirebaseJsonCodec} on Jackson 2, the default codec of every
+ * {@link Firebase} for all but the data added with
+ * {@link Firebase#addData(String, Object)}. The default mapper has the Afterburner module registered,
+ * which replaces the reflection Jackson uses to get and set the properties of
+ * objects with generated bytecode.
+ *
+ * Values are read from and written to bytes directly, never through an
+ * intermediate string, and readers and writers are created once per type. To
+ * customize binding, e.g. to register modules for other types, create a codec
+ * on a configured mapper; a mapper must not be reconfigured once the codec is
+ * in use.
+ */
+public final class FirebaseJackson2Codec
+        extends FirebaseJacksonCodec<JsonParser, JsonGenerator, ObjectReader, ObjectWriter> {
+
+	public static final FirebaseJackson2Codec DEFAULT = new FirebaseJackson2Codec(
+			new ObjectMapper().registerModule(new AfterburnerModule()));
+
+	private final ObjectMapper mapper;
+
+	private final JsonFactory factory;
+
+	/**
+	 * @param mapper
+	 *            Mapper to bind values with
+	 */
+	public FirebaseJackson2Codec(final ObjectMapper mapper) {
+		this.mapper = checkNotNull(mapper, "mapper cannot be null");
+		factory = mapper.getFactory();
+	}
+
+	@Override
+	public <T> T read(final byte[] json, final Class<T> type) throws IOException {
+		return readerFor(type).readValue(json);
+	}
+
+	@Override
+	public <T> T read(final String json, final Class<T> type) throws IOException {
+		return readerFor(type).readValue(json);
+	}
+
+	@Override
+	public <T> T read(final InputStream json, final Class<T> type) throws IOException {
+		return readerFor(type).readValue(json);
+	}
+
+	@Override
+	public <T> T convert(final Object value, final Class<T> type) {
+		return mapper.convertValue(value, type);
+	}
+
+	@Override
+	ObjectReader createReader(final Class<?> type) {
+		return mapper.readerFor(type);
+	}
+
+	@Override
+	ObjectWriter createWriter(final Class<?> type) {
+		return mapper.writerFor(type);
+	}
+
+	@Override
+	JsonParser createParser(final String json) throws IOException {
+		return factory.createParser(json);
+	}
+
+	@Override
+	JsonParser createParser(final InputStream json) throws IOException {
+		return factory.createParser(json);
+	}
+
+	@Override
+	JsonGenerator createGenerator(final OutputStream out) throws IOException {
+		return factory.createGenerator(out, JsonEncoding.UTF8);
+	}
+
+	@Override
+	<T> T readValue(final ObjectReader reader, final JsonParser parser) throws IOException {
+		return reader.readValue(parser);
+	}
+
+	@Override
+	byte[] writeValueAsBytes(final ObjectWriter writer, final Object value) throws IOException {
+		return writer.writeValueAsBytes(value);
+	}
+
+	@Override
+	void writeValue(final ObjectWriter writer, final JsonGenerator generator, final Object value)
+	        throws IOException {
+		writer.writeValue(generator, value);
+	}
+
+	@Override
+	Token nextToken(final JsonParser parser) throws IOException {
+		return token(parser.nextToken());
+	}
+
+	@Override
+	Token currentToken(final JsonParser parser) {
+		return token(parser.getCurrentToken());
+	}
+
+	@Override
+	String currentName(final JsonParser parser) throws IOException {
+		return parser.getCurrentName();
+	}
+
+	@Override
+	void skipChildren(final JsonParser parser) throws IOException {
+		parser.skipChildren();
+	}
+
+	@Override
+	void writeStartObject(final JsonGenerator generator) throws IOException {
+		generator.writeStartObject();
+	}
+
+	@Override
+	void writeEndObject(final JsonGenerator generator) throws IOException {
+		generator.writeEndObject();
+	}
+
+	@Override
+	void writeFieldName(final JsonGenerator generator, final String name) throws IOException {
+		generator.writeFieldName(name);
+	}
+
+	@Override
+	void writeNull(final JsonGenerator generator) throws IOException {
+		generator.writeNull();
+	}
+
+	@Override
+	void copyCurrentStructure(final JsonGenerator generator, final JsonParser parser) throws IOException {
+		generator.copyCurrentStructure(parser);
+	}
+
+	@Override
+	public String toString() {
+		return "FirebaseJackson2Codec";
+	}
+}
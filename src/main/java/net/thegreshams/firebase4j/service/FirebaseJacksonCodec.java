@@ -0,0 +1,290 @@
+package net.thegreshams.firebase4j.service;
+
+import static com.google.common.base.Strings.nullToEmpty;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.apache.logging.log4j.util.Strings;
+
+import com.fasterxml.jackson.core.util.BufferRecycler;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.google.common.base.Splitter;
+
+/**
+ * The streaming logic of the Jackson codecs, written once for both Jackson
+ * versions: the one-pass writing of request data, the seeking of a child by
+ * its path and the reading of children one at a time, plus the readers and
+ * writers created once per type. Subclasses adapt the parser, generator,
+ * reader and writer of their Jackson version.
+ *
+ * @param <P>
+ *            Parser type
+ * @param <G>
+ *            Generator type
+ * @param <R>
+ *            Reader type
+ * @param <W>
+ *            Writer type
+ */
+@Slf4j
+abstract class FirebaseJacksonCodec<P extends Closeable, G extends Closeable, R, W> implements FirebaseJsonCodec {
+
+	/**
+	 * The tokens the shared logic tells apart; both Jackson versions name
+	 * their tokens alike.
+	 */
+	enum Token {
+		START_OBJECT, START_ARRAY, END_ARRAY, FIELD_NAME, VALUE_NULL, OTHER
+	}
+
+	private static final Splitter PATH_SPLITTER = Splitter.on('/').omitEmptyStrings();
+
+	/**
+	 * Per-thread buffer request bodies are written into; its first segment is
+	 * kept between requests so small bodies cost a single exact-size copy.
+	 * Threads that write one body and end, such as the virtual threads of
+	 * {@link FirebaseClientConfig.Builder#virtualThreads()}, pay for the
+	 * segment every time.
+	 */
+	private static final ThreadLocal<ByteArrayBuilder> BUFFER = new ThreadLocal<ByteArrayBuilder>() {
+
+		@Override
+		protected ByteArrayBuilder initialValue() {
+			return new ByteArrayBuilder(new BufferRecycler());
+		}
+	};
+
+	private final ConcurrentMap<Class<?>, R> readers = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<Class<?>, W> writers = new ConcurrentHashMap<>();
+
+	@Override
+	public byte[] write(final Object value) throws IOException {
+		return writeValueAsBytes(writerFor(value != null ? value.getClass() : Object.class), value);
+	}
+
+	/**
+	 * Writes the object in one pass: the fields of the JSON fragments are
+	 * copied token by token and the entries of the map are serialized, without
+	 * parsing anything into a map. Fragments are therefore written first,
+	 * latest first.
+	 */
+	@Override
+	public byte[] writeObject(final Map<String, Object> dataMap, final List<String> jsonData) throws IOException {
+		Set<String> writtenKeys = !jsonData.isEmpty() && (!dataMap.isEmpty() || jsonData.size() > 1)
+				? new HashSet<String>() : null;
+
+		ByteArrayBuilder buffer = BUFFER.get();
+		buffer.reset();
+		G generator = createGenerator(buffer);
+		writeStartObject(generator);
+		for (int i = jsonData.size() - 1; i >= 0; i--) {
+			try (P parser = createFragmentParser(jsonData.get(i))) {
+				while (parser != null && nextToken(parser) == Token.FIELD_NAME) {
+					String key = currentName(parser);
+					nextToken(parser);
+					if (writtenKeys == null || writtenKeys.add(key)) {
+						writeFieldName(generator, key);
+						copyCurrentStructure(generator, parser);
+					} else {
+						skipChildren(parser);
+					}
+				}
+			}
+		}
+		for (Map.Entry<String, Object> entry : dataMap.entrySet()) {
+			if (writtenKeys != null && writtenKeys.contains(entry.getKey())) {
+				continue;
+			}
+			writeFieldName(generator, entry.getKey());
+			if (entry.getValue() == null) {
+				writeNull(generator);
+			} else {
+				writeValue(writerFor(entry.getValue().getClass()), generator, entry.getValue());
+			}
+		}
+		writeEndObject(generator);
+		generator.close();
+		return buffer.toByteArray();
+	}
+
+	@Override
+	public <T> T readChild(final String json, final String path, final Class<T> type) throws IOException {
+		if (Strings.isBlank(json)) {
+			return null;
+		}
+		try (P parser = createParser(json)) {
+			nextToken(parser);
+			for (String key : PATH_SPLITTER.split(nullToEmpty(path))) {
+				if (!seekField(parser, key)) {
+					return null;
+				}
+			}
+			return readValue(readerFor(type), parser);
+		}
+	}
+
+	@Override
+	public <T> long readChildren(final InputStream json, final Class<T> type,
+	        final FirebaseChildHandler<? super T> handler) throws IOException {
+		P parser = createParser(json);
+		Token root = nextToken(parser);
+		if (root == null || root == Token.VALUE_NULL) {
+			return 0;
+		}
+
+		R reader = readerFor(type);
+		long count = 0;
+		if (root == Token.START_OBJECT) {
+			while (nextToken(parser) == Token.FIELD_NAME) {
+				String key = currentName(parser);
+				nextToken(parser);
+				handler.onChild(key, this.<T> readValue(reader, parser));
+				count++;
+			}
+		} else if (root == Token.START_ARRAY) {
+			while (nextToken(parser) != Token.END_ARRAY) {
+				handler.onChild(String.valueOf(count), this.<T> readValue(reader, parser));
+				count++;
+			}
+		} else {
+			handler.onChild(null, this.<T> readValue(reader, parser));
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * @return a reader of the type, created once per type and then reused
+	 */
+	final R readerFor(final Class<?> type) {
+		R reader = readers.get(type);
+		if (reader == null) {
+			reader = createReader(type);
+			R existing = readers.putIfAbsent(type, reader);
+			if (existing != null) {
+				reader = existing;
+			}
+		}
+		return reader;
+	}
+
+	/**
+	 * @return a writer of the type, created once per type and then reused
+	 */
+	final W writerFor(final Class<?> type) {
+		W writer = writers.get(type);
+		if (writer == null) {
+			writer = createWriter(type);
+			W existing = writers.putIfAbsent(type, writer);
+			if (existing != null) {
+				writer = existing;
+			}
+		}
+		return writer;
+	}
+
+	/**
+	 * @return the shared token of a Jackson token, or null at the end of the
+	 *         input
+	 */
+	static Token token(final Enum<?> jacksonToken) {
+		if (jacksonToken == null) {
+			return null;
+		}
+		switch (jacksonToken.name()) {
+		case "START_OBJECT":
+			return Token.START_OBJECT;
+		case "START_ARRAY":
+			return Token.START_ARRAY;
+		case "END_ARRAY":
+			return Token.END_ARRAY;
+		case "FIELD_NAME":
+			return Token.FIELD_NAME;
+		case "VALUE_NULL":
+			return Token.VALUE_NULL;
+		default:
+			return Token.OTHER;
+		}
+	}
+
+	abstract R createReader(Class<?> type);
+
+	abstract W createWriter(Class<?> type);
+
+	abstract P createParser(String json) throws IOException;
+
+	abstract P createParser(InputStream json) throws IOException;
+
+	abstract G createGenerator(OutputStream out) throws IOException;
+
+	abstract <T> T readValue(R reader, P parser) throws IOException;
+
+	abstract byte[] writeValueAsBytes(W writer, Object value) throws IOException;
+
+	abstract void writeValue(W writer, G generator, Object value) throws IOException;
+
+	/**
+	 * @return the token the parser moved to, or null at the end of the input
+	 */
+	abstract Token nextToken(P parser) throws IOException;
+
+	abstract Token currentToken(P parser);
+
+	abstract String currentName(P parser) throws IOException;
+
+	abstract void skipChildren(P parser) throws IOException;
+
+	abstract void writeStartObject(G generator) throws IOException;
+
+	abstract void writeEndObject(G generator) throws IOException;
+
+	abstract void writeFieldName(G generator, String name) throws IOException;
+
+	abstract void writeNull(G generator) throws IOException;
+
+	abstract void copyCurrentStructure(G generator, P parser) throws IOException;
+
+	/**
+	 * @return a parser positioned on the start of the fragment's object, or
+	 *         null if the fragment is blank or not a JSON object
+	 */
+	private P createFragmentParser(final String fragment) throws IOException {
+		if (Strings.isBlank(fragment)) {
+			return null;
+		}
+		P parser = createParser(fragment);
+		if (nextToken(parser) != Token.START_OBJECT) {
+			log.error("Ignoring JSON data that is not an object: {}", fragment);
+			parser.close();
+			return null;
+		}
+		return parser;
+	}
+
+	private boolean seekField(final P parser, final String key) throws IOException {
+		if (currentToken(parser) != Token.START_OBJECT) {
+			return false;
+		}
+		while (nextToken(parser) == Token.FIELD_NAME) {
+			String name = currentName(parser);
+			nextToken(parser);
+			if (key.equals(name)) {
+				return true;
+			}
+			skipChildren(parser);
+		}
+		return false;
+	}
+}
@@ -0,0 +1,999 @@
+package net.thegreshams.firebase4j.service;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.base.Strings.nullToEmpty;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import net.thegreshams.firebase4j.model.FirebaseResponse;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Journals writes to a {@link Firebase} on local disk and sends them in the
+ * background, so writes are accepted while Firebase is slow or unreachable
+ * and are not lost when the process restarts.
+ *
+ * A write is appended to a memory-mapped segment file in the directory of the
+ * journal and acknowledged as soon as it is appended; once a segment is full
+ * the next one is started. A single drainer thread reads the writes back in
+ * the order they were appended and sends up to maxBatchSize of them at a time
+ * through a {@link FirebaseBatchWriter}, so a batch has the same effect as
+ * its writes in order. A batch failing with a connection error, a 408, 429 or
+ * 5xx is sent again after a growing delay, for as long as it takes; a batch
+ * rejected otherwise, e.g. by security rules, is sent again one write at a
+ * time, and the writes rejected on their own are logged and dropped. A
+ * segment is deleted once all of its writes are sent.
+ *
+ * The position of the drainer is recorded in a checkpoint file after every
+ * batch, and opening the journal again after a crash or {@link #close()}
+ * resumes from there. A batch sent but not yet recorded is sent again, which
+ * is harmless: a POST is journaled as a PUT to a key generated on the spot,
+ * so every write replaces data rather than adding to it. A write torn by a
+ * crash while being appended fails its checksum and is discarded, together
+ * with anything after it in its segment.
+ *
+ * Appended writes survive the process being killed, as the pages of a mapped
+ * file belong to the operating system; to also survive a power failure, have
+ * every append forced to disk with {@link Builder#sync(boolean)}. Reads see
+ * journaled writes only once they are sent. Only one journal can be open on a
+ * directory at a time.
+ */
+@ToString(of = { "firebase", "directory", "segmentSize", "maxBatchSize" })
+@Slf4j
+public class FirebaseJournal implements Closeable {
+
+	/**
+	 * Name of the file recording how many writes were sent.
+	 */
+	public static final String CHECKPOINT_FILE = "checkpoint";
+
+	/**
+	 * Suffix of the segment files, named after the sequence number of their
+	 * first write.
+	 */
+	public static final String SEGMENT_SUFFIX = ".segment";
+
+	private static final Splitter PATH_SPLITTER = Splitter.on('/').omitEmptyStrings().trimResults();
+
+	private static final Joiner PATH_JOINER = Joiner.on('/');
+
+	/**
+	 * Length of the body and its CRC-32, both ints.
+	 */
+	private static final int HEADER_SIZE = 8;
+
+	private static final byte PUT = 'U';
+
+	private static final byte PATCH = 'P';
+
+	private static final byte DELETE = 'D';
+
+	private static final byte[] NO_VALUE = new byte[0];
+
+	private static final String PUSH_CHARS = "-0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz";
+
+	/**
+	 * Canonical paths of the directories of the journals open in this JVM,
+	 * which file locks do not tell apart.
+	 */
+	private static final Set<String> OPEN_DIRECTORIES = Collections.newSetFromMap(
+			new ConcurrentHashMap<String, Boolean>());
+
+	@Getter
+	private final Firebase firebase;
+
+	@Getter
+	private final File directory;
+
+	@Getter
+	private final int segmentSize;
+
+	@Getter
+	private final int maxBatchSize;
+
+	@Getter
+	private final long retryDelay;
+
+	@Getter
+	private final long maxRetryDelay;
+
+	@Getter
+	private final boolean sync;
+
+	private final String canonicalDirectory;
+
+	private final FileChannel checkpointChannel;
+
+	private final FileLock directoryLock;
+
+	private final MappedByteBuffer checkpoint;
+
+	private final FirebaseBatchWriter batchWriter;
+
+	private final ExecutorService drainer;
+
+	/**
+	 * Guards the segments, the counts and closed; a lock rather than
+	 * synchronized, as appends may force the segment to disk.
+	 */
+	private final Lock lock = new ReentrantLock();
+
+	/**
+	 * Signalled when a write is appended and when the journal is closed.
+	 */
+	private final Condition appended = lock.newCondition();
+
+	/**
+	 * Signalled when a batch is sent and when the journal is closed.
+	 */
+	private final Condition drained = lock.newCondition();
+
+	/**
+	 * Segments in order, oldest first; writes are appended to the last one.
+	 */
+	private final Deque<Segment> segments = new ArrayDeque<>();
+
+	/**
+	 * Sequence number of the next write appended.
+	 */
+	private long appendedCount;
+
+	/**
+	 * Sequence number of the next write sent.
+	 */
+	private long drainedCount;
+
+	private boolean closed;
+
+	private final AtomicLong droppedCount = new AtomicLong();
+
+	/**
+	 * Segment the drainer reads from; only used by the drainer.
+	 */
+	private Segment readSegment;
+
+	/**
+	 * Writes the drainer has read from readSegment, and where the next one
+	 * starts; only used by the drainer.
+	 */
+	private int readIndex;
+
+	private int readOffset;
+
+	private long lastPushTime;
+
+	private final int[] lastPushRandom = new int[12];
+
+	private FirebaseJournal(final Builder builder) throws IOException {
+		firebase = builder.firebase;
+		directory = builder.directory;
+		segmentSize = builder.segmentSize;
+		maxBatchSize = builder.maxBatchSize;
+		retryDelay = builder.retryDelay;
+		maxRetryDelay = builder.maxRetryDelay;
+		sync = builder.sync;
+
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("cannot create journal directory " + directory);
+		}
+		canonicalDirectory = directory.getCanonicalPath();
+		if (!OPEN_DIRECTORIES.add(canonicalDirectory)) {
+			throw new IOException("journal in " + directory + " is already open");
+		}
+		RandomAccessFile checkpointFile = null;
+		try {
+			checkpointFile = new RandomAccessFile(new File(directory, CHECKPOINT_FILE), "rw");
+			checkpointChannel = checkpointFile.getChannel();
+			directoryLock = checkpointChannel.tryLock();
+			if (directoryLock == null) {
+				throw new IOException("journal in " + directory + " is open in another process");
+			}
+			checkpoint = checkpointChannel.map(FileChannel.MapMode.READ_WRITE, 0, 8);
+			recover();
+		} catch (IOException | RuntimeException e) {
+			if (checkpointFile != null) {
+				checkpointFile.close();
+			}
+			OPEN_DIRECTORIES.remove(canonicalDirectory);
+			throw e;
+		}
+
+		batchWriter = new FirebaseBatchWriter(firebase, TimeUnit.DAYS.toMillis(1), maxBatchSize);
+		drainer = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+				.setNameFormat("firebase-journal-%d")
+				.setDaemon(true)
+				.build());
+		drainer.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				drain();
+			}
+		});
+		log.debug("opened journal in {} with {} writes to send", directory, appendedCount - drainedCount);
+	}
+
+	/**
+	 * @param firebase
+	 *            Firebase to send the writes to
+	 * @param directory
+	 *            Directory of the segment and checkpoint files; created if
+	 *            missing
+	 * @return a new {@link Builder}
+	 */
+	public static Builder builder(final Firebase firebase, final File directory) {
+		return new Builder(firebase, directory);
+	}
+
+	/**
+	 * Journals the replacement of the data at the provided path relative to
+	 * the base URL
+	 *
+	 * @param path
+	 *            Path relative to base URL. If null/empty, refers to the base
+	 *            URL
+	 * @param value
+	 *            Value to write; null deletes the data
+	 * @throws IOException
+	 *             if the value cannot be converted to JSON or the journal
+	 *             cannot be written
+	 */
+	public void put(final String path, final Object value) throws IOException {
+		append(value != null ? PUT : DELETE, normalize(path), value);
+	}
+
+	/**
+	 * Journals an update of the children of the provided path relative to the
+	 * base URL, leaving its other children untouched
+	 *
+	 * @param path
+	 *            Path relative to base URL. If null/empty, refers to the base
+	 *            URL
+	 * @param value
+	 *            Map or object whose properties are written to the path; keys
+	 *            may themselves be slash-separated paths
+	 * @throws IOException
+	 *             if the value cannot be converted to JSON or the journal
+	 *             cannot be written
+	 */
+	public void patch(final String path, final Object value) throws IOException {
+		checkNotNull(value, "value cannot be null");
+		append(PATCH, normalize(path), value);
+	}
+
+	/**
+	 * Journals the addition of a child with a new, unique key to the provided
+	 * path relative to the base URL. The key is generated here, the way
+	 * Firebase generates push IDs, and the value is sent as a PUT to it
+	 *
+	 * @param path
+	 *            Path relative to base URL. If null/empty, refers to the base
+	 *            URL
+	 * @param value
+	 *            Value of the child
+	 * @return the key of the child; keys sort in the order they were
+	 *         generated
+	 * @throws IOException
+	 *             if the value cannot be converted to JSON or the journal
+	 *             cannot be written
+	 */
+	public String post(final String path, final Object value) throws IOException {
+		checkNotNull(value, "value cannot be null");
+		String key = nextPushId();
+		String parent = normalize(path);
+		append(PUT, parent.isEmpty() ? key : parent + "/" + key, value);
+		return key;
+	}
+
+	/**
+	 * Journals the deletion of the data at the provided path relative to the
+	 * base URL
+	 *
+	 * @param path
+	 *            Path relative to base URL. If null/empty, refers to the base
+	 *            URL
+	 * @throws IOException
+	 *             if the journal cannot be written
+	 */
+	public void delete(final String path) throws IOException {
+		append(DELETE, normalize(path), null);
+	}
+
+	/**
+	 * Waits until every write journaled before the call is sent.
+	 *
+	 * @param timeout
+	 *            Maximum time to wait, in milliseconds
+	 * @return true if the writes were sent; false if the timeout passed or
+	 *         the journal was closed first
+	 * @throws InterruptedIOException
+	 *             if interrupted while waiting
+	 */
+	public boolean awaitDrained(final long timeout) throws InterruptedIOException {
+		lock.lock();
+		try {
+			long target = appendedCount;
+			long remaining = TimeUnit.MILLISECONDS.toNanos(timeout);
+			while (drainedCount < target) {
+				if (closed || remaining <= 0) {
+					return false;
+				}
+				remaining = drained.awaitNanos(remaining);
+			}
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting for the journal to drain");
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the number of writes journaled but not sent yet
+	 */
+	public long getPendingCount() {
+		lock.lock();
+		try {
+			return appendedCount - drainedCount;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the number of writes dropped since the journal was opened,
+	 *         because Firebase rejected them
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 * Stops the drainer once the batch it is sending completes, and closes the
+	 * files; the writes not sent yet are sent when the journal is opened
+	 * again. Further writes are rejected.
+	 */
+	@Override
+	public void close() throws IOException {
+		lock.lock();
+		try {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			appended.signalAll();
+			drained.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		drainer.shutdownNow();
+		try {
+			drainer.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while stopping the drainer");
+		} finally {
+			batchWriter.close();
+			for (Segment segment : segments) {
+				segment.buffer.force();
+			}
+			checkpoint.force();
+			directoryLock.release();
+			checkpointChannel.close();
+			OPEN_DIRECTORIES.remove(canonicalDirectory);
+		}
+		log.debug("closed journal in {} with {} writes to send", directory, appendedCount - drainedCount);
+	}
+
+	private void append(final byte operation, final String path, final Object value) throws IOException {
+		byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+		byte[] json = value != null ? firebase.getJsonCodec().write(value) : NO_VALUE;
+		int length = 1 + 4 + pathBytes.length + json.length;
+		CRC32 crc = new CRC32();
+		crc.update(operation);
+		updateInt(crc, pathBytes.length);
+		crc.update(pathBytes);
+		crc.update(json);
+
+		lock.lock();
+		try {
+			checkState(!closed, "journal is closed");
+			Segment segment = segments.getLast();
+			if (segment.remaining() < HEADER_SIZE + length) {
+				segment = rotate(HEADER_SIZE + length);
+			}
+			segment.append(length, (int) crc.getValue(), operation, pathBytes, json);
+			if (sync) {
+				segment.buffer.force();
+			}
+			appendedCount++;
+			appended.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Starts a new segment, large enough for a write of the size. Must hold
+	 * the lock.
+	 */
+	private Segment rotate(final int size) throws IOException {
+		segments.getLast().buffer.force();
+		File file = new File(directory, String.format("%020d%s", appendedCount, SEGMENT_SUFFIX));
+		Segment segment = Segment.map(file, appendedCount, Math.max(segmentSize, size + 4));
+		segments.addLast(segment);
+		log.debug("started journal segment {}", file);
+		return segment;
+	}
+
+	/**
+	 * Reads the checkpoint and the segments, dropping the segments already
+	 * sent and the torn write at the end of a segment, if any.
+	 */
+	private void recover() throws IOException {
+		drainedCount = checkpoint.getLong(0);
+		File[] files = directory.listFiles(new FileFilter() {
+
+			@Override
+			public boolean accept(final File file) {
+				return file.isFile() && file.getName().endsWith(SEGMENT_SUFFIX);
+			}
+		});
+		// zero-padded, so in order of first sequence number
+		Arrays.sort(files);
+		for (File file : files) {
+			String name = file.getName();
+			long firstSeq = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+			Segment segment = Segment.map(file, firstSeq, (int) file.length());
+			if (segment.recover()) {
+				log.warn("discarded a torn write at the end of journal segment {}", file);
+			}
+			if (segment.count == 0) {
+				// nothing to send, and possibly too small to append to
+				delete(segment);
+				continue;
+			}
+			segments.addLast(segment);
+		}
+		while (segments.size() > 1 && segments.getFirst().end() <= drainedCount) {
+			delete(segments.removeFirst());
+		}
+
+		if (segments.isEmpty()) {
+			File file = new File(directory, String.format("%020d%s", drainedCount, SEGMENT_SUFFIX));
+			segments.addLast(Segment.map(file, drainedCount, segmentSize));
+		}
+		Segment first = segments.getFirst();
+		drainedCount = Math.min(Math.max(drainedCount, first.firstSeq), segments.getLast().end());
+		appendedCount = segments.getLast().end();
+
+		readSegment = first;
+		while (first.firstSeq + readIndex < drainedCount) {
+			readOffset = first.next(readOffset);
+			readIndex++;
+		}
+	}
+
+	private void drain() {
+		while (true) {
+			lock.lock();
+			try {
+				while (!closed && drainedCount == appendedCount) {
+					appended.await();
+				}
+				if (closed) {
+					return;
+				}
+			} catch (InterruptedException e) {
+				return;
+			} finally {
+				lock.unlock();
+			}
+
+			List<Entry> batch = readBatch();
+			if (!batch.isEmpty() && !send(batch)) {
+				return;
+			}
+
+			lock.lock();
+			try {
+				drainedCount = readSegment.firstSeq + readIndex;
+				checkpoint.putLong(0, drainedCount);
+				if (sync) {
+					checkpoint.force();
+				}
+				while (segments.getFirst() != readSegment) {
+					delete(segments.removeFirst());
+				}
+				drained.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * @return up to maxBatchSize of the writes appended and not read yet, in
+	 *         order
+	 */
+	private List<Entry> readBatch() {
+		List<Entry> batch = new ArrayList<>();
+		while (batch.size() < maxBatchSize) {
+			if (readIndex < readSegment.count) {
+				batch.add(readSegment.read(readOffset));
+				readOffset = readSegment.next(readOffset);
+				readIndex++;
+				continue;
+			}
+			Segment next = nextSegment();
+			if (next == null) {
+				break;
+			}
+			// complete once the next one exists, but it may have grown since it was counted
+			if (readIndex < readSegment.count) {
+				continue;
+			}
+			readSegment = next;
+			readIndex = 0;
+			readOffset = 0;
+		}
+		return batch;
+	}
+
+	private Segment nextSegment() {
+		lock.lock();
+		try {
+			Iterator<Segment> iterator = segments.iterator();
+			while (iterator.hasNext()) {
+				if (iterator.next() == readSegment) {
+					return iterator.hasNext() ? iterator.next() : null;
+				}
+			}
+			return null;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Sends the writes, retrying for as long as they fail in a way that
+	 * sending them again may fix.
+	 *
+	 * @return true once the writes are sent or dropped; false if the journal
+	 *         was closed first
+	 */
+	private boolean send(final List<Entry> entries) {
+		long delay = retryDelay;
+		while (true) {
+			FirebaseResponse response;
+			try {
+				response = sendBatch(entries);
+			} catch (IOException e) {
+				log.debug("failed to send {} journaled writes; retrying in {}ms", entries.size(), delay, e);
+				if (!pause(delay)) {
+					return false;
+				}
+				delay = Math.min(delay * 2, maxRetryDelay);
+				continue;
+			} catch (RuntimeException e) {
+				response = null;
+				log.debug("cannot send {} journaled writes", entries.size(), e);
+			}
+
+			if (response != null && response.isSuccess()) {
+				return true;
+			}
+			if (response != null && isRetryable(response.getCode())) {
+				log.debug("{} journaled writes answered {}; retrying in {}ms", entries.size(), response.getCode(),
+						delay);
+				if (!pause(delay)) {
+					return false;
+				}
+				delay = Math.min(delay * 2, maxRetryDelay);
+				continue;
+			}
+
+			if (entries.size() > 1) {
+				// find the writes that are rejected on their own
+				for (Entry entry : entries) {
+					if (!send(Collections.singletonList(entry))) {
+						return false;
+					}
+				}
+				return true;
+			}
+			droppedCount.incrementAndGet();
+			log.error("dropping journaled write to '{}', which Firebase rejected: {}", entries.get(0).path,
+					response);
+			return true;
+		}
+	}
+
+	/**
+	 * @return the first unsuccessful response to the writes, or else the last
+	 *         response
+	 */
+	private FirebaseResponse sendBatch(final List<Entry> entries) throws IOException {
+		FirebaseJsonCodec codec = firebase.getJsonCodec();
+		List<CompletableFuture<FirebaseResponse>> futures = new ArrayList<>(entries.size());
+		for (Entry entry : entries) {
+			Object value = entry.json.length > 0 ? codec.read(entry.json, Object.class) : null;
+			if (entry.operation == PATCH) {
+				futures.add(batchWriter.patch(entry.path, value));
+			} else {
+				futures.add(batchWriter.put(entry.path, value));
+			}
+		}
+		batchWriter.flush();
+
+		FirebaseResponse response = null;
+		try {
+			for (CompletableFuture<FirebaseResponse> future : futures) {
+				response = future.get();
+				if (!response.isSuccess()) {
+					return response;
+				}
+			}
+			return response;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while sending journaled writes");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * @return false if the journal was closed while pausing
+	 */
+	private boolean pause(final long delay) {
+		lock.lock();
+		try {
+			long remaining = TimeUnit.MILLISECONDS.toNanos(delay);
+			while (!closed && remaining > 0) {
+				remaining = appended.awaitNanos(remaining);
+			}
+			return !closed;
+		} catch (InterruptedException e) {
+			return false;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private static boolean isRetryable(final int code) {
+		return code == 408 || FirebaseCircuitBreaker.isFailure(code);
+	}
+
+	private static void delete(final Segment segment) {
+		if (!segment.file.delete()) {
+			log.warn("cannot delete sent journal segment {}", segment.file);
+		}
+	}
+
+	/**
+	 * @return a key like the push IDs of Firebase: the time in eight
+	 *         characters, then twelve random ones, incremented instead for
+	 *         keys generated in the same millisecond so they sort in order
+	 */
+	private synchronized String nextPushId() {
+		long now = System.currentTimeMillis();
+		char[] id = new char[20];
+		long time = now;
+		for (int i = 7; i >= 0; i--) {
+			id[i] = PUSH_CHARS.charAt((int) (time % 64));
+			time /= 64;
+		}
+		if (now != lastPushTime) {
+			for (int i = 0; i < lastPushRandom.length; i++) {
+				lastPushRandom[i] = ThreadLocalRandom.current().nextInt(64);
+			}
+		} else {
+			int i = lastPushRandom.length - 1;
+			for (; i >= 0 && lastPushRandom[i] == 63; i--) {
+				lastPushRandom[i] = 0;
+			}
+			if (i >= 0) {
+				lastPushRandom[i]++;
+			}
+		}
+		lastPushTime = now;
+		for (int i = 0; i < lastPushRandom.length; i++) {
+			id[8 + i] = PUSH_CHARS.charAt(lastPushRandom[i]);
+		}
+		return new String(id);
+	}
+
+	private static void updateInt(final CRC32 crc, final int value) {
+		crc.update(value >>> 24);
+		crc.update(value >>> 16);
+		crc.update(value >>> 8);
+		crc.update(value);
+	}
+
+	private static String normalize(final String path) {
+		return PATH_JOINER.join(PATH_SPLITTER.split(nullToEmpty(path)));
+	}
+
+	/**
+	 * A segment file, mapped into memory as a whole. Each write is its length
+	 * and CRC-32, followed by its operation, the length of its path, its path
+	 * and its value as JSON; a zero length marks the end.
+	 */
+	private static final class Segment {
+
+		private final File file;
+
+		private final long firstSeq;
+
+		/**
+		 * Written by appends, under the lock of the journal.
+		 */
+		private final MappedByteBuffer buffer;
+
+		/**
+		 * Read by the drainer.
+		 */
+		private final ByteBuffer reader;
+
+		/**
+		 * Number of writes; written under the lock, volatile for the drainer,
+		 * which reads the writes counted without it.
+		 */
+		private volatile int count;
+
+		private int limit;
+
+		private Segment(final File file, final long firstSeq, final MappedByteBuffer buffer) {
+			this.file = file;
+			this.firstSeq = firstSeq;
+			this.buffer = buffer;
+			reader = buffer.duplicate();
+		}
+
+		/**
+		 * @param size
+		 *            Size the file is extended to, if smaller
+		 */
+		private static Segment map(final File file, final long firstSeq, final int size) throws IOException {
+			try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+				if (raf.length() < size) {
+					raf.setLength(size);
+				}
+				return new Segment(file, firstSeq, raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size));
+			}
+		}
+
+		/**
+		 * @return the sequence number following the last write
+		 */
+		private long end() {
+			return firstSeq + count;
+		}
+
+		private int remaining() {
+			return buffer.capacity() - limit;
+		}
+
+		private void append(final int length, final int crc, final byte operation, final byte[] path,
+		        final byte[] json) {
+			buffer.position(limit);
+			buffer.putInt(length).putInt(crc).put(operation).putInt(path.length).put(path).put(json);
+			limit = buffer.position();
+			if (remaining() >= 4) {
+				buffer.putInt(limit, 0);
+			}
+			count++;
+		}
+
+		/**
+		 * Counts the writes, up to the first that is missing or torn.
+		 *
+		 * @return whether a torn write was discarded after the last write
+		 */
+		private boolean recover() {
+			CRC32 crc = new CRC32();
+			byte[] body = new byte[0];
+			while (remaining() >= HEADER_SIZE) {
+				int length = buffer.getInt(limit);
+				if (length <= 0 || length > remaining() - HEADER_SIZE) {
+					break;
+				}
+				if (body.length < length) {
+					body = new byte[length];
+				}
+				reader.position(limit + HEADER_SIZE);
+				reader.get(body, 0, length);
+				crc.reset();
+				crc.update(body, 0, length);
+				if ((int) crc.getValue() != buffer.getInt(limit + 4)) {
+					break;
+				}
+				limit += HEADER_SIZE + length;
+				count++;
+			}
+			if (remaining() < 4 || buffer.getInt(limit) == 0) {
+				return false;
+			}
+			buffer.putInt(limit, 0);
+			return true;
+		}
+
+		/**
+		 * @return the offset of the write after the one at the offset
+		 */
+		private int next(final int offset) {
+			return offset + HEADER_SIZE + reader.getInt(offset);
+		}
+
+		private Entry read(final int offset) {
+			int length = reader.getInt(offset);
+			byte operation = reader.get(offset + HEADER_SIZE);
+			int pathLength = reader.getInt(offset + HEADER_SIZE + 1);
+			byte[] path = new byte[pathLength];
+			byte[] json = new byte[length - 1 - 4 - pathLength];
+			reader.position(offset + HEADER_SIZE + 1 + 4);
+			reader.get(path).get(json);
+			return new Entry(operation, new String(path, StandardCharsets.UTF_8), json);
+		}
+	}
+
+	private static final class Entry {
+
+		private final byte operation;
+
+		private final String path;
+
+		private final byte[] json;
+
+		private Entry(final byte operation, final String path, final byte[] json) {
+			this.operation = operation;
+			this.path = path;
+			this.json = json;
+		}
+	}
+
+	/**
+	 * Builder of {@link FirebaseJournal} instances.
+	 */
+	public static final class Builder {
+
+		private final Firebase firebase;
+
+		private final File directory;
+
+		private int segmentSize = 16 * 1024 * 1024;
+
+		private int maxBatchSize = 100;
+
+		private long retryDelay = 1000;
+
+		private long maxRetryDelay = 30000;
+
+		private boolean sync;
+
+		private Builder(final Firebase firebase, final File directory) {
+			this.firebase = checkNotNull(firebase, "firebase cannot be null");
+			this.directory = checkNotNull(directory, "directory cannot be null");
+		}
+
+		/**
+		 * @param segmentSize
+		 *            Size of a segment file, in bytes; a write larger than a
+		 *            segment gets a segment of its own
+		 * @return this Builder
+		 */
+		public Builder segmentSize(final int segmentSize) {
+			checkArgument(segmentSize >= 4096, "segmentSize must be at least 4096; was: " + segmentSize);
+			this.segmentSize = segmentSize;
+			return this;
+		}
+
+		/**
+		 * @param maxBatchSize
+		 *            Maximum number of writes sent together
+		 * @return this Builder
+		 */
+		public Builder maxBatchSize(final int maxBatchSize) {
+			checkArgument(maxBatchSize > 0, "maxBatchSize must be positive; was: " + maxBatchSize);
+			this.maxBatchSize = maxBatchSize;
+			return this;
+		}
+
+		/**
+		 * @param retryDelay
+		 *            Delay before a failed batch is sent again, in
+		 *            milliseconds; doubles with every attempt
+		 * @return this Builder
+		 */
+		public Builder retryDelay(final long retryDelay) {
+			checkArgument(retryDelay > 0, "retryDelay must be positive; was: " + retryDelay);
+			this.retryDelay = retryDelay;
+			return this;
+		}
+
+		/**
+		 * @param maxRetryDelay
+		 *            Upper bound of the delay before a failed batch is sent
+		 *            again, in milliseconds
+		 * @return this Builder
+		 */
+		public Builder maxRetryDelay(final long maxRetryDelay) {
+			checkArgument(maxRetryDelay > 0, "maxRetryDelay must be positive; was: " + maxRetryDelay);
+			this.maxRetryDelay = maxRetryDelay;
+			return this;
+		}
+
+		/**
+		 * @param sync
+		 *            Whether every append, and the checkpoint after every
+		 *            batch, is forced to disk before returning; false by
+		 *            default, which keeps writes through a crash of the
+		 *            process but not of the machine
+		 * @return this Builder
+		 */
+		public Builder sync(final boolean sync) {
+			this.sync = sync;
+			return this;
+		}
+
+		/**
+		 * Opens the journal, recovering the writes not sent before, and starts
+		 * sending them.
+		 *
+		 * @return a new {@link FirebaseJournal}, to be closed by the caller
+		 * @throws IOException
+		 *             if the directory cannot be read or written, or another
+		 *             journal is open on it
+		 */
+		public FirebaseJournal build() throws IOException {
+			return new FirebaseJournal(this);
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package net.thegreshams.firebase4j.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts between Java values and the JSON sent to and received from
+ * Firebase. Every {@link Firebase} reads and writes its data with the codec it
+ * was configured with, so the JSON library, and how values are bound to it,
+ * can be swapped without touching the rest of the client.
+ *
+ * Implementations must be thread-safe. The default is
+ * {@link FirebaseJackson2Codec}; {@link FirebaseJackson1Codec} binds values
+ * the way earlier versions of this client did, with the Codehaus Jackson
+ * {@link Firebase#OBJECT_MAPPER}, and by default writes the data added with
+ * {@link Firebase#addData(String, Object)}.
+ *
+ * @see FirebaseClientConfig.Builder#jsonCodec(FirebaseJsonCodec)
+ */
+public interface FirebaseJsonCodec {
+
+	/**
+	 * @param value
+	 *            Value to convert; null converts to JSON null
+	 * @return the value as UTF-8 encoded JSON
+	 * @throws IOException
+	 *             if the value cannot be converted
+	 */
+	byte[] write(Object value) throws IOException;
+
+	/**
+	 * Writes the data of a request as a single JSON object. Where a key
+	 * appears more than once, a fragment wins over the map and a later
+	 * fragment wins over an earlier one; fragments that are blank or not JSON
+	 * objects are ignored.
+	 *
+	 * @param dataMap
+	 *            Entries of the object
+	 * @param jsonData
+	 *            JSON objects whose fields are added to the object
+	 * @return the object as UTF-8 encoded JSON
+	 * @throws IOException
+	 *             if a fragment is not valid JSON or a value cannot be
+	 *             converted
+	 */
+	byte[] writeObject(Map<String, Object> dataMap, List<String> jsonData) throws IOException;
+
+	/**
+	 * @param json
+	 *            UTF-8 encoded JSON document
+	 * @param type
+	 *            Type to convert the document to
+	 * @return the document as the type; null for JSON null
+	 * @throws IOException
+	 *             if the document is not valid JSON or cannot be converted to
+	 *             the type
+	 */
+	<T> T read(byte[] json, Class<T> type) throws IOException;
+
+	/**
+	 * @param json
+	 *            JSON document
+	 * @param type
+	 *            Type to convert the document to
+	 * @return the document as the type; null for JSON null
+	 * @throws IOException
+	 *             if the document is not valid JSON or cannot be converted to
+	 *             the type
+	 */
+	<T> T read(String json, Class<T> type) throws IOException;
+
+	/**
+	 * @param json
+	 *            Stream of the JSON document; not closed by this method
+	 * @param type
+	 *            Type to convert the document to
+	 * @return the document as the type; null for JSON null
+	 * @throws IOException
+	 *             if the stream cannot be read, the document is not valid JSON
+	 *             or cannot be converted to the type
+	 */
+	<T> T read(InputStream json, Class<T> type) throws IOException;
+
+	/**
+	 * Converts the value at the provided path of a JSON document, skipping
+	 * over everything else in the document without binding it.
+	 *
+	 * @param json
+	 *            JSON document
+	 * @param path
+	 *            Slash-separated keys of the value. If null/empty, refers to
+	 *            the whole document
+	 * @param type
+	 *            Type to convert the value to
+	 * @return the value, or null if the document is empty or has nothing at
+	 *         the path
+	 * @throws IOException
+	 *             if the document is not valid JSON or the value cannot be
+	 *             converted to the type
+	 */
+	<T> T readChild(String json, String path, Class<T> type) throws IOException;
+
+	/**
+	 * Reads a JSON document from the stream and hands each child of its root
+	 * to the handler as soon as it has been read, so only one child is held
+	 * in memory at a time. The children of an array are keyed by their
+	 * indexes, and a root that is neither an object nor an array is handed
+	 * over as a single child with a null key.
+	 *
+	 * @param json
+	 *            Stream of the JSON document; not closed by this method
+	 * @param type
+	 *            Type to convert each child to
+	 * @param handler
+	 *            Receiver of the children
+	 * @return the number of children handed to the handler
+	 * @throws IOException
+	 *             if the document is not valid JSON, a child cannot be
+	 *             converted to the type, or the handler aborts
+	 */
+	<T> long readChildren(InputStream json, Class<T> type, FirebaseChildHandler<? super T> handler)
+	        throws IOException;
+
+	/**
+	 * Converts a value to another type as if it were written to JSON and read
+	 * back, e.g. an object to the map of its properties.
+	 *
+	 * @param value
+	 *            Value to convert
+	 * @param type
+	 *            Type to convert to
+	 * @return the converted value
+	 * @throws IllegalArgumentException
+	 *             if the value cannot be converted to the type
+	 */
+	<T> T convert(Object value, Class<T> type);
+}
@@ -1,20 +1,85 @@
 package net.thegreshams.firebase4j.service;
 
-import static net.thegreshams.firebase4j.service.Firebase.OBJECT_MAPPER;
-
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import lombok.extern.slf4j.Slf4j;
+import net.thegreshams.firebase4j.model.FirebaseNode;
 
 import org.apache.logging.log4j.util.Strings;
+import org.codehaus.jackson.map.ObjectReader;
+import org.codehaus.jackson.map.ObjectWriter;
 
 @Slf4j
 public class FirebaseJsonUtil {
 
-	@SuppressWarnings("unchecked")
+	/**
+	 * @param type
+	 *            Type to read
+	 * @return a reader of the type, created once per type and then reused
+	 */
+	public static ObjectReader readerFor(final Class<?> type) {
+		return FirebaseJackson1Codec.INSTANCE.readerFor(type);
+	}
+
+	/**
+	 * @param type
+	 *            Type to write
+	 * @return a writer of the type, created once per type and then reused
+	 */
+	public static ObjectWriter writerFor(final Class<?> type) {
+		return FirebaseJackson1Codec.INSTANCE.writerFor(type);
+	}
+
+	/**
+	 * Writes the data of a request as a single JSON object with
+	 * {@link FirebaseJackson1Codec}.
+	 *
+	 * @param dataMap
+	 *            Entries of the object
+	 * @param jsonData
+	 *            JSON objects whose fields are added to the object
+	 * @return the object as UTF-8 encoded JSON
+	 * @throws IOException
+	 *             if a fragment is not valid JSON or a value cannot be
+	 *             converted
+	 * @see FirebaseJsonCodec#writeObject(Map, List)
+	 */
+	public static byte[] convertDataToJson(final Map<String, Object> dataMap, final List<String> jsonData)
+	        throws IOException {
+		return FirebaseJackson1Codec.INSTANCE.writeObject(dataMap, jsonData);
+	}
+
+	/**
+	 * Converts a value to JSON without going through an intermediate map.
+	 *
+	 * @param value
+	 *            Value to convert; null converts to JSON null
+	 * @return the value as UTF-8 encoded JSON
+	 * @throws IOException
+	 *             if the value cannot be converted
+	 */
+	public static byte[] convertValueToJson(final Object value) throws IOException {
+		return FirebaseJackson1Codec.INSTANCE.write(value);
+	}
+
 	public static Map<String, Object> convertJsonToMap(final String jsonData) {
+		return convertJsonToMap(FirebaseJackson1Codec.INSTANCE, jsonData);
+	}
+
+	/**
+	 * @param codec
+	 *            Codec to convert with
+	 * @param jsonData
+	 *            JSON object
+	 * @return the object as a map, or an empty map if the data is blank or not
+	 *         a JSON object
+	 */
+	@SuppressWarnings("unchecked")
+	public static Map<String, Object> convertJsonToMap(final FirebaseJsonCodec codec, final String jsonData) {
 		/*
 		 * NOTE: @SuppressWarnings("unchecked") because Jackson docs state that
 		 * a JSON-Object will always return as Map<String, Object>
@@ -26,7 +91,7 @@ public class FirebaseJsonUtil {
 			jsonAsMap = new HashMap<String, Object>();
 		} else {
 			try {
-				jsonAsMap = OBJECT_MAPPER.readValue(jsonData.trim(), Map.class);
+				jsonAsMap = codec.read(jsonData.trim(), Map.class);
 			} catch (IOException e) {
 				log.error("Failed converting JSON to map: {}", jsonData);
 				jsonAsMap = new HashMap<>();
@@ -34,4 +99,65 @@ public class FirebaseJsonUtil {
 		}
 		return jsonAsMap;
 	}
+
+	/**
+	 * @param jsonData
+	 *            JSON document
+	 * @return the document as a compact tree, or {@link FirebaseNode#MISSING}
+	 *         if the data is blank or not valid JSON
+	 */
+	public static FirebaseNode convertJsonToTree(final String jsonData) {
+		if (Strings.isBlank(jsonData)) {
+			return FirebaseNode.MISSING;
+		}
+		try {
+			return FirebaseNode.parse(jsonData);
+		} catch (IOException e) {
+			log.error("Failed converting JSON to tree: {}", jsonData);
+			return FirebaseNode.MISSING;
+		}
+	}
+
+	/**
+	 * Converts the value at the provided path of a JSON document, skipping
+	 * over everything else in the document without binding it.
+	 *
+	 * @param jsonData
+	 *            JSON document
+	 * @param path
+	 *            Slash-separated keys of the value. If null/empty, refers to
+	 *            the whole document
+	 * @param type
+	 *            Type to convert the value to
+	 * @return the value, or null if the document is empty or has nothing at
+	 *         the path
+	 * @throws IOException
+	 *             if the document is not valid JSON or the value cannot be
+	 *             converted to the type
+	 */
+	public static <T> T convertJsonChild(final String jsonData, final String path, final Class<T> type)
+	        throws IOException {
+		return FirebaseJackson1Codec.INSTANCE.readChild(jsonData, path, type);
+	}
+
+	/**
+	 * Reads a JSON document from the stream and hands each child of its root
+	 * to the handler as soon as it has been read, so only one child is held
+	 * in memory at a time.
+	 *
+	 * @param jsonData
+	 *            Stream of the JSON document; not closed by this method
+	 * @param type
+	 *            Type to convert each child to
+	 * @param handler
+	 *            Receiver of the children
+	 * @return the number of children handed to the handler
+	 * @throws IOException
+	 *             if the document is not valid JSON, a child cannot be
+	 *             converted to the type, or the handler aborts
+	 */
+	public static <T> long convertJsonChildren(final InputStream jsonData, final Class<T> type,
+	        final FirebaseChildHandler<? super T> handler) throws IOException {
+		return FirebaseJackson1Codec.INSTANCE.readChildren(jsonData, type, handler);
+	}
 }
@@ -0,0 +1,216 @@
+package net.thegreshams.firebase4j.service;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.ToString;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+
+/**
+ * Publishes the requests of a {@link Firebase} to a Micrometer
+ * {@link MeterRegistry}:
+ *
+ * <ul>
+ * <li>firebase.requests: timer with a percentile histogram, tagged by method,
+ * path template and status (the HTTP code, or the exception class of a
+ * request that got no response)</li>
+ * <li>firebase.request.size and firebase.response.size: body sizes in bytes,
+ * tagged by method and path template</li>
+ * <li>firebase.requests.in.flight: gauge of requests started but not yet
+ * completed</li>
+ * <li>firebase.connection.lease: timer of the wait for a pooled connection</li>
+ * </ul>
+ *
+ * To keep the number of tag values bounded, paths are reduced to templates.
+ * The default template keeps the even-numbered segments and replaces the
+ * others with "{key}", following the usual Firebase layout of alternating
+ * collection names and keys: "users/joe/posts/-Kx1" becomes
+ * "users/{key}/posts/{key}".
+ */
+@ToString(of = "registry")
+public class FirebaseMicrometerInstrumentation implements FirebaseInstrumentation {
+
+	private static final Splitter PATH_SPLITTER = Splitter.on('/').omitEmptyStrings();
+
+	private static final Joiner PATH_JOINER = Joiner.on('/');
+
+	private final MeterRegistry registry;
+
+	private final Function<String, String> pathTemplate;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	private final Timer leaseTimer;
+
+	private final ConcurrentMap<String, String> templates = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<String, Meters> meters = new ConcurrentHashMap<>();
+
+	/**
+	 * @param registry
+	 *            Registry to publish to
+	 */
+	public FirebaseMicrometerInstrumentation(final MeterRegistry registry) {
+		this(registry, new Function<String, String>() {
+
+			@Override
+			public String apply(final String path) {
+				return keyTemplate(path);
+			}
+		});
+	}
+
+	/**
+	 * @param registry
+	 *            Registry to publish to
+	 * @param pathTemplate
+	 *            Reduces a request path to the template used as the path tag;
+	 *            it must map the paths in use to a small number of templates
+	 */
+	public FirebaseMicrometerInstrumentation(final MeterRegistry registry,
+	        final Function<String, String> pathTemplate) {
+		this.registry = checkNotNull(registry, "registry cannot be null");
+		this.pathTemplate = checkNotNull(pathTemplate, "pathTemplate cannot be null");
+		Gauge.builder("firebase.requests.in.flight", inFlight, new ToDoubleFunction<AtomicInteger>() {
+
+			@Override
+			public double applyAsDouble(final AtomicInteger value) {
+				return value.get();
+			}
+		}).register(registry);
+		leaseTimer = Timer.builder("firebase.connection.lease").publishPercentileHistogram().register(registry);
+	}
+
+	@Override
+	public FirebaseRequestRecorder start(final FirebaseRestMethod method, final String path) {
+		String template = templates.get(path);
+		if (template == null) {
+			template = pathTemplate.apply(path);
+			// raw paths are unbounded; only remember templates of the first ones seen
+			if (templates.size() < 10000) {
+				templates.put(path, template);
+			}
+		}
+		String key = method + " " + template;
+		Meters requestMeters = meters.get(key);
+		if (requestMeters == null) {
+			Meters created = new Meters(method.name(), template);
+			requestMeters = meters.putIfAbsent(key, created);
+			if (requestMeters == null) {
+				requestMeters = created;
+			}
+		}
+		inFlight.incrementAndGet();
+		return new Recorder(requestMeters, System.nanoTime());
+	}
+
+	@Override
+	public void connectionLeased(final long waitNanos) {
+		leaseTimer.record(waitNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @return the path with every odd-numbered segment replaced by "{key}"
+	 */
+	static String keyTemplate(final String path) {
+		List<String> segments = PATH_SPLITTER.splitToList(path);
+		if (segments.isEmpty()) {
+			return "/";
+		}
+		String[] template = new String[segments.size()];
+		for (int i = 0; i < template.length; i++) {
+			template[i] = i % 2 == 0 ? segments.get(i) : "{key}";
+		}
+		return PATH_JOINER.join(template);
+	}
+
+	/**
+	 * Meters of one method and path template.
+	 */
+	private final class Meters {
+
+		private final String method;
+
+		private final String template;
+
+		private final DistributionSummary requestSize;
+
+		private final DistributionSummary responseSize;
+
+		private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+
+		private Meters(final String method, final String template) {
+			this.method = method;
+			this.template = template;
+			requestSize = DistributionSummary.builder("firebase.request.size")
+					.baseUnit("bytes")
+					.tag("method", method)
+					.tag("path", template)
+					.register(registry);
+			responseSize = DistributionSummary.builder("firebase.response.size")
+					.baseUnit("bytes")
+					.tag("method", method)
+					.tag("path", template)
+					.register(registry);
+		}
+
+		private Timer timer(final String status) {
+			Timer timer = timers.get(status);
+			if (timer == null) {
+				timer = Timer.builder("firebase.requests")
+						.tag("method", method)
+						.tag("path", template)
+						.tag("status", status)
+						.publishPercentileHistogram()
+						.register(registry);
+				Timer existing = timers.putIfAbsent(status, timer);
+				if (existing != null) {
+					timer = existing;
+				}
+			}
+			return timer;
+		}
+	}
+
+	private final class Recorder implements FirebaseRequestRecorder {
+
+		private final Meters meters;
+
+		private final long start;
+
+		private Recorder(final Meters meters, final long start) {
+			this.meters = meters;
+			this.start = start;
+		}
+
+		@Override
+		public void completed(final int code, final long requestBytes, final long responseBytes) {
+			long latency = System.nanoTime() - start;
+			inFlight.decrementAndGet();
+			meters.timer(Integer.toString(code)).record(latency, TimeUnit.NANOSECONDS);
+			meters.requestSize.record(requestBytes);
+			meters.responseSize.record(responseBytes);
+		}
+
+		@Override
+		public void failed(final Exception error, final long requestBytes) {
+			long latency = System.nanoTime() - start;
+			inFlight.decrementAndGet();
+			meters.timer(error.getClass().getSimpleName()).record(latency, TimeUnit.NANOSECONDS);
+			meters.requestSize.record(requestBytes);
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package net.thegreshams.firebase4j.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Splitter;
+
+/**
+ * Local copy of a listened location, kept up to date from put and patch
+ * events.
+ *
+ * Updates copy only the maps on the path to the changed node and share the
+ * rest, and every map and list handed out is unmodifiable, so a value
+ * returned by {@link #getValue()} never changes afterwards. Must only be
+ * updated by one thread at a time; it can be read from any thread.
+ */
+final class FirebaseMirror {
+
+	private static final Splitter PATH_SPLITTER = Splitter.on('/').omitEmptyStrings().trimResults();
+
+	private volatile Object value;
+
+	/**
+	 * @return the mirrored data, or null if the location is empty
+	 */
+	Object getValue() {
+		return value;
+	}
+
+	void put(final String path, final Object data) {
+		value = set(value, PATH_SPLITTER.splitToList(path), 0, data);
+	}
+
+	void patch(final String path, final Map<?, ?> data) {
+		Object updated = value;
+		List<String> segments = PATH_SPLITTER.splitToList(path);
+		for (Map.Entry<?, ?> child : data.entrySet()) {
+			List<String> childSegments = new ArrayList<>(segments);
+			childSegments.addAll(PATH_SPLITTER.splitToList(String.valueOf(child.getKey())));
+			updated = set(updated, childSegments, 0, child.getValue());
+		}
+		value = updated;
+	}
+
+	private static Object set(final Object node, final List<String> segments, final int index, final Object data) {
+		if (index == segments.size()) {
+			return freeze(data);
+		}
+		String key = segments.get(index);
+		Map<String, Object> copy = toMap(node);
+		Object child = set(copy.get(key), segments, index + 1, data);
+		if (child == null) {
+			copy.remove(key);
+		} else {
+			copy.put(key, child);
+		}
+		return copy.isEmpty() ? null : Collections.unmodifiableMap(copy);
+	}
+
+	/**
+	 * @return a modifiable copy of the node as a map; lists become maps keyed
+	 *         by index, as Firebase stores them
+	 */
+	private static Map<String, Object> toMap(final Object node) {
+		Map<String, Object> map = new LinkedHashMap<>();
+		if (node instanceof Map) {
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) node).entrySet()) {
+				map.put(String.valueOf(entry.getKey()), entry.getValue());
+			}
+		} else if (node instanceof List) {
+			List<?> list = (List<?>) node;
+			for (int i = 0; i < list.size(); i++) {
+				if (list.get(i) != null) {
+					map.put(String.valueOf(i), list.get(i));
+				}
+			}
+		}
+		return map;
+	}
+
+	private static Object freeze(final Object data) {
+		if (data instanceof Map) {
+			Map<String, Object> map = new LinkedHashMap<>();
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) data).entrySet()) {
+				Object child = freeze(entry.getValue());
+				if (child != null) {
+					map.put(String.valueOf(entry.getKey()), child);
+				}
+			}
+			return map.isEmpty() ? null : Collections.unmodifiableMap(map);
+		}
+		if (data instanceof List) {
+			List<Object> list = new ArrayList<>();
+			for (Object element : (List<?>) data) {
+				list.add(freeze(element));
+			}
+			return list.isEmpty() ? null : Collections.unmodifiableList(list);
+		}
+		return data;
+	}
+}
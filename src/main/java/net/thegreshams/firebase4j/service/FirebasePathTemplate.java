@@ -0,0 +1,173 @@
+package net.thegreshams.firebase4j.service;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import com.google.common.base.Splitter;
+import com.google.common.escape.Escaper;
+import com.google.common.net.UrlEscapers;
+
+/**
+ * A path with variables in place of some of its segments, such as
+ * "users/{uid}/events", parsed once so that expanding it for a request is no
+ * more than copying strings into a builder of the exact size:
+ *
+ * <pre>
+ * private static final FirebasePathTemplate EVENTS = FirebasePathTemplate.compile("users/{uid}/events");
+ *
+ * firebase.get(EVENTS.expand(uid));
+ * firebase.request().withPath(EVENTS, uid).put(...);
+ * </pre>
+ *
+ * Unlike a raw path, the result is URL-encoded: the literal segments once,
+ * when the template is compiled, and the values whenever the template is
+ * expanded, so a value is always a single segment, even if it contains a "/".
+ * A template is immutable and can be shared between threads.
+ */
+@EqualsAndHashCode(of = "template")
+public final class FirebasePathTemplate {
+
+	private static final Splitter SEGMENT_SPLITTER = Splitter.on('/').omitEmptyStrings().trimResults();
+
+	private static final Escaper SEGMENT_ESCAPER = UrlEscapers.urlPathSegmentEscaper();
+
+	@Getter
+	private final String template;
+
+	/**
+	 * Encoded literal parts around the variables: literals[i] comes before
+	 * variable i and the last literal after the last variable.
+	 */
+	private final String[] literals;
+
+	private final String[] variables;
+
+	private final int literalsLength;
+
+	private FirebasePathTemplate(final String template, final String[] literals, final String[] variables) {
+		this.template = template;
+		this.literals = literals;
+		this.variables = variables;
+		int length = 0;
+		for (String literal : literals) {
+			length += literal.length();
+		}
+		literalsLength = length;
+	}
+
+	/**
+	 * @param template
+	 *            Path relative to base URL, with "{name}" in place of every
+	 *            segment to be provided when the template is expanded
+	 * @return the compiled template
+	 * @throws IllegalArgumentException
+	 *             if a segment contains braces but is not a variable, or a
+	 *             variable name is used twice
+	 */
+	public static FirebasePathTemplate compile(final String template) {
+		checkNotNull(template, "template cannot be null");
+		List<String> literals = new ArrayList<>();
+		List<String> variables = new ArrayList<>();
+		StringBuilder literal = new StringBuilder();
+		boolean first = true;
+		for (String segment : SEGMENT_SPLITTER.split(template)) {
+			if (!first) {
+				literal.append('/');
+			}
+			first = false;
+			if (segment.length() > 2 && segment.charAt(0) == '{' && segment.charAt(segment.length() - 1) == '}') {
+				String name = segment.substring(1, segment.length() - 1);
+				checkArgument(name.indexOf('{') < 0 && name.indexOf('}') < 0,
+						"invalid variable '" + segment + "' in template: " + template);
+				checkArgument(!variables.contains(name), "duplicate variable '" + name + "' in template: " + template);
+				literals.add(literal.toString());
+				literal.setLength(0);
+				variables.add(name);
+			} else {
+				checkArgument(segment.indexOf('{') < 0 && segment.indexOf('}') < 0,
+						"invalid segment '" + segment + "' in template: " + template);
+				literal.append(SEGMENT_ESCAPER.escape(segment));
+			}
+		}
+		literals.add(literal.toString());
+		return new FirebasePathTemplate(template, literals.toArray(new String[literals.size()]),
+				variables.toArray(new String[variables.size()]));
+	}
+
+	/**
+	 * @return the names of the variables, in the order their values are
+	 *         expected
+	 */
+	public List<String> getVariables() {
+		return Collections.unmodifiableList(Arrays.asList(variables));
+	}
+
+	/**
+	 * @param values
+	 *            Values of the variables, in order
+	 * @return the encoded path
+	 * @throws IllegalArgumentException
+	 *             if the number of values does not match the number of
+	 *             variables, or a value is null or empty
+	 */
+	public String expand(final String... values) {
+		checkValues(values);
+		int length = literalsLength;
+		for (String value : values) {
+			// escaping a value that needs none returns it as is
+			length += SEGMENT_ESCAPER.escape(value).length();
+		}
+		return append(new StringBuilder(length), values).toString();
+	}
+
+	/**
+	 * Appends the expanded template to a builder, such as one reused across
+	 * requests.
+	 *
+	 * @param builder
+	 *            Builder to append to
+	 * @param values
+	 *            Values of the variables, in order
+	 * @return the builder
+	 * @throws IllegalArgumentException
+	 *             if the number of values does not match the number of
+	 *             variables, or a value is null or empty
+	 */
+	public StringBuilder appendTo(final StringBuilder builder, final String... values) {
+		checkValues(values);
+		return append(builder, values);
+	}
+
+	private StringBuilder append(final StringBuilder builder, final String[] values) {
+		for (int i = 0; i < variables.length; i++) {
+			builder.append(literals[i]).append(SEGMENT_ESCAPER.escape(values[i]));
+		}
+		return builder.append(literals[variables.length]);
+	}
+
+	private void checkValues(final String[] values) {
+		// not checkArgument, which would build the messages on every call
+		if (values.length != variables.length) {
+			throw new IllegalArgumentException("expected " + variables.length + " values for " + template + "; got: "
+					+ values.length);
+		}
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] == null || values[i].isEmpty()) {
+				throw new IllegalArgumentException("value of " + variables[i] + " cannot be null or empty");
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return template;
+	}
+}
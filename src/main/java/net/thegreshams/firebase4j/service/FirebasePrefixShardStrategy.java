@@ -0,0 +1,85 @@
+package net.thegreshams.firebase4j.service;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+
+/**
+ * Assigns paths to shards by an explicit map of path prefixes, such as
+ * "users" to one shard and "events/2024" to another. A path belongs to the
+ * shard of its longest prefix in the map, compared segment by segment, so
+ * "users" is a prefix of "users/abc" but not of "usersettings"; the empty
+ * prefix matches every path. A path spans shards if a longer prefix below it
+ * goes to another shard than the path itself.
+ */
+@Getter
+@ToString
+public class FirebasePrefixShardStrategy implements FirebaseShardStrategy {
+
+	private static final Splitter SEGMENT_SPLITTER = Splitter.on('/').omitEmptyStrings().trimResults();
+
+	private static final Joiner SEGMENT_JOINER = Joiner.on('/');
+
+	private final Map<String, String> shardsByPrefix;
+
+	private final String defaultShard;
+
+	/**
+	 * @param shardsByPrefix
+	 *            Name of the shard of every prefix
+	 * @param defaultShard
+	 *            Name of the shard of paths matching none of the prefixes, or
+	 *            null for none
+	 */
+	public FirebasePrefixShardStrategy(final Map<String, String> shardsByPrefix, final String defaultShard) {
+		Map<String, String> normalized = new HashMap<>();
+		for (Map.Entry<String, String> entry : checkNotNull(shardsByPrefix, "shardsByPrefix cannot be null")
+				.entrySet()) {
+			normalized.put(normalize(checkNotNull(entry.getKey(), "prefixes cannot be null")),
+					checkNotNull(entry.getValue(), "shard names cannot be null"));
+		}
+		this.shardsByPrefix = Collections.unmodifiableMap(normalized);
+		this.defaultShard = defaultShard;
+	}
+
+	@Override
+	public String shardOf(final String path) {
+		String prefix = normalize(path);
+		while (true) {
+			String shard = shardsByPrefix.get(prefix);
+			if (shard != null) {
+				return shard;
+			}
+			if (prefix.isEmpty()) {
+				return defaultShard;
+			}
+			prefix = prefix.substring(0, Math.max(prefix.lastIndexOf('/'), 0));
+		}
+	}
+
+	@Override
+	public boolean spansShards(final String path) {
+		String normalized = normalize(path);
+		String shard = shardOf(normalized);
+		for (Map.Entry<String, String> entry : shardsByPrefix.entrySet()) {
+			String prefix = entry.getKey();
+			if (!prefix.equals(normalized) && FirebaseCache.isSameOrDescendant(prefix, normalized)
+					&& !entry.getValue().equals(shard)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String normalize(final String path) {
+		return SEGMENT_JOINER.join(SEGMENT_SPLITTER.split(path != null ? path : ""));
+	}
+}
@@ -0,0 +1,277 @@
+package net.thegreshams.firebase4j.service;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import com.google.common.primitives.Ints;
+
+/**
+ * The query parameters of the Firebase REST API, built with checks instead of
+ * raw {@link FirebaseRequest#addQuery(String, String)} strings.
+ *
+ * A query starts with an ordering, which the range and limit parameters
+ * apply to, or is a shallow query, which takes no other parameters:
+ *
+ * <pre>
+ * FirebaseQuery.orderByChild("score").startAt(100).limitToFirst(10)
+ * FirebaseQuery.orderByKey().startAt("m").endAt("n")
+ * FirebaseQuery.shallow()
+ * </pre>
+ *
+ * Like {@link FirebaseRequest}, a query is immutable; every method returns a
+ * new query. Apply it with {@link FirebaseRequest#query(FirebaseQuery)}.
+ */
+@EqualsAndHashCode
+@ToString
+public final class FirebaseQuery {
+
+	/**
+	 * The order of children by key: keys that are 32-bit integers first, in
+	 * numeric order, then the other keys in lexicographic order.
+	 */
+	public static final Comparator<String> KEY_ORDER = new Comparator<String>() {
+
+		@Override
+		public int compare(final String first, final String second) {
+			Integer firstInt = integerKey(first);
+			Integer secondInt = integerKey(second);
+			if (firstInt != null && secondInt != null) {
+				return firstInt.compareTo(secondInt);
+			}
+			if (firstInt != null || secondInt != null) {
+				return firstInt != null ? -1 : 1;
+			}
+			return first.compareTo(second);
+		}
+	};
+
+	private static final String ORDER_BY = "orderBy";
+
+	private static final String SHALLOW = "shallow";
+
+	private static final String START_AT = "startAt";
+
+	private static final String END_AT = "endAt";
+
+	private static final String EQUAL_TO = "equalTo";
+
+	private static final String LIMIT_TO_FIRST = "limitToFirst";
+
+	private static final String LIMIT_TO_LAST = "limitToLast";
+
+	/**
+	 * Parameters by name, with JSON values, in the order they were set.
+	 */
+	private final Map<String, String> parameters;
+
+	private FirebaseQuery(final Map<String, String> parameters) {
+		this.parameters = parameters;
+	}
+
+	/**
+	 * @return a query ordering children by their keys
+	 * @see #KEY_ORDER
+	 */
+	public static FirebaseQuery orderByKey() {
+		return orderBy("$key");
+	}
+
+	/**
+	 * @return a query ordering children by their values
+	 */
+	public static FirebaseQuery orderByValue() {
+		return orderBy("$value");
+	}
+
+	/**
+	 * @return a query ordering children by their priorities
+	 */
+	public static FirebaseQuery orderByPriority() {
+		return orderBy("$priority");
+	}
+
+	/**
+	 * @param path
+	 *            Path of the child property to order by, relative to each
+	 *            child; it must be indexed in the security rules
+	 * @return a query ordering children by the value of a property
+	 */
+	public static FirebaseQuery orderByChild(final String path) {
+		checkArgument(path != null && !path.isEmpty() && !path.startsWith("$"),
+				"path must be a non-empty child path; was: " + path);
+		return orderBy(path);
+	}
+
+	/**
+	 * @return a query for the keys of the children only, each with the value
+	 *         true in place of its data
+	 */
+	public static FirebaseQuery shallow() {
+		return new FirebaseQuery(Collections.singletonMap(SHALLOW, "true"));
+	}
+
+	/**
+	 * @param value
+	 *            Value, or key when ordering by key, of the first child
+	 * @return a new query starting at the provided value
+	 */
+	public FirebaseQuery startAt(final String value) {
+		return with(START_AT, json(checkNotNull(value, "value cannot be null")));
+	}
+
+	/**
+	 * @param value
+	 *            Value of the first child
+	 * @return a new query starting at the provided value
+	 */
+	public FirebaseQuery startAt(final double value) {
+		return with(START_AT, json(value));
+	}
+
+	/**
+	 * @param value
+	 *            Value of the first child
+	 * @return a new query starting at the provided value
+	 */
+	public FirebaseQuery startAt(final boolean value) {
+		return with(START_AT, json(value));
+	}
+
+	/**
+	 * @param value
+	 *            Value, or key when ordering by key, of the last child
+	 * @return a new query ending at the provided value
+	 */
+	public FirebaseQuery endAt(final String value) {
+		return with(END_AT, json(checkNotNull(value, "value cannot be null")));
+	}
+
+	/**
+	 * @param value
+	 *            Value of the last child
+	 * @return a new query ending at the provided value
+	 */
+	public FirebaseQuery endAt(final double value) {
+		return with(END_AT, json(value));
+	}
+
+	/**
+	 * @param value
+	 *            Value of the last child
+	 * @return a new query ending at the provided value
+	 */
+	public FirebaseQuery endAt(final boolean value) {
+		return with(END_AT, json(value));
+	}
+
+	/**
+	 * @param value
+	 *            Value, or key when ordering by key, of the children to return
+	 * @return a new query for the children with the provided value
+	 */
+	public FirebaseQuery equalTo(final String value) {
+		return with(EQUAL_TO, json(checkNotNull(value, "value cannot be null")));
+	}
+
+	/**
+	 * @param value
+	 *            Value of the children to return
+	 * @return a new query for the children with the provided value
+	 */
+	public FirebaseQuery equalTo(final double value) {
+		return with(EQUAL_TO, json(value));
+	}
+
+	/**
+	 * @param value
+	 *            Value of the children to return
+	 * @return a new query for the children with the provided value
+	 */
+	public FirebaseQuery equalTo(final boolean value) {
+		return with(EQUAL_TO, json(value));
+	}
+
+	/**
+	 * @param limit
+	 *            Maximum number of children to return
+	 * @return a new query for the first children in order
+	 */
+	public FirebaseQuery limitToFirst(final int limit) {
+		checkArgument(limit > 0, "limit must be positive; was: " + limit);
+		checkState(!parameters.containsKey(LIMIT_TO_LAST), "cannot combine limitToFirst with limitToLast");
+		return with(LIMIT_TO_FIRST, Integer.toString(limit));
+	}
+
+	/**
+	 * @param limit
+	 *            Maximum number of children to return
+	 * @return a new query for the last children in order
+	 */
+	public FirebaseQuery limitToLast(final int limit) {
+		checkArgument(limit > 0, "limit must be positive; was: " + limit);
+		checkState(!parameters.containsKey(LIMIT_TO_FIRST), "cannot combine limitToLast with limitToFirst");
+		return with(LIMIT_TO_LAST, Integer.toString(limit));
+	}
+
+	/**
+	 * @return the query parameters by name, with unencoded JSON values
+	 */
+	public Map<String, String> getParameters() {
+		return parameters;
+	}
+
+	/**
+	 * @return the key as an int if Firebase orders it as an integer, else null
+	 */
+	static Integer integerKey(final String key) {
+		Integer value = Ints.tryParse(key);
+		// "007" and "-0" are ordered as strings
+		return value != null && key.equals(value.toString()) ? value : null;
+	}
+
+	private static FirebaseQuery orderBy(final String orderBy) {
+		return new FirebaseQuery(Collections.singletonMap(ORDER_BY, json(orderBy)));
+	}
+
+	private FirebaseQuery with(final String name, final String value) {
+		checkState(!parameters.containsKey(SHALLOW), "a shallow query cannot have other parameters");
+		if (name.equals(EQUAL_TO)) {
+			checkState(!parameters.containsKey(START_AT) && !parameters.containsKey(END_AT),
+					"cannot combine equalTo with startAt or endAt");
+		} else if (name.equals(START_AT) || name.equals(END_AT)) {
+			checkState(!parameters.containsKey(EQUAL_TO), "cannot combine " + name + " with equalTo");
+		}
+		Map<String, String> newParameters = new LinkedHashMap<>(parameters);
+		newParameters.put(name, value);
+		return new FirebaseQuery(Collections.unmodifiableMap(newParameters));
+	}
+
+	private static String json(final String value) {
+		try {
+			return new String(FirebaseJackson2Codec.DEFAULT.write(value), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("cannot convert to JSON: " + value, e);
+		}
+	}
+
+	private static String json(final double value) {
+		checkArgument(!Double.isNaN(value) && !Double.isInfinite(value), "value must be finite; was: " + value);
+		// integral values without the ".0", as Firebase writes them
+		return value == (long) value ? Long.toString((long) value) : Double.toString(value);
+	}
+
+	private static String json(final boolean value) {
+		return Boolean.toString(value);
+	}
+}
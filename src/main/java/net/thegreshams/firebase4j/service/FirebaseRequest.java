@@ -0,0 +1,363 @@
+package net.thegreshams.firebase4j.service;
+
+import static net.thegreshams.firebase4j.service.FirebaseRestMethod.DELETE;
+import static net.thegreshams.firebase4j.service.FirebaseRestMethod.GET;
+import static net.thegreshams.firebase4j.service.FirebaseRestMethod.PATCH;
+import static net.thegreshams.firebase4j.service.FirebaseRestMethod.POST;
+import static net.thegreshams.firebase4j.service.FirebaseRestMethod.PUT;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.ToString;
+import net.thegreshams.firebase4j.model.FirebaseResponse;
+
+import com.google.common.base.Joiner;
+import com.google.common.escape.Escaper;
+import com.google.common.net.UrlEscapers;
+
+/**
+ * An immutable description of a single call against a {@link Firebase}: the
+ * path, the query parameters, any extra headers and the data making up the
+ * body.
+ *
+ * Every "add" method returns a new request and leaves this one untouched, so a
+ * request can be shared between threads or kept around as a template.
+ */
+@Getter
+@ToString(exclude = { "firebase", "queryString" })
+public final class FirebaseRequest {
+
+	static final Escaper QUERY_ESCAPER = UrlEscapers.urlFormParameterEscaper();
+
+	private static final Joiner.MapJoiner QUERY_JOINER = Joiner.on('&').withKeyValueSeparator("=");
+
+	private final Firebase firebase;
+
+	private final String path;
+
+	private final Map<String, String> queryMap;
+
+	/**
+	 * The query map joined into a query string once, when it changes, instead
+	 * of for every URL built from the request.
+	 */
+	@Getter(AccessLevel.NONE)
+	private final String queryString;
+
+	private final Map<String, Object> dataMap;
+
+	private final List<String> jsonData;
+
+	private final Map<String, String> headers;
+
+	FirebaseRequest(final Firebase firebase, final Map<String, String> queryMap) {
+		this(firebase, null, queryMap, QUERY_JOINER.join(queryMap), Collections.<String, Object> emptyMap(),
+				Collections.<String> emptyList(), Collections.<String, String> emptyMap());
+	}
+
+	private FirebaseRequest(final Firebase firebase, final String path, final Map<String, String> queryMap,
+	        final String queryString, final Map<String, Object> dataMap, final List<String> jsonData,
+	        final Map<String, String> headers) {
+		this.firebase = firebase;
+		this.path = path;
+		this.queryMap = queryMap;
+		this.queryString = queryString;
+		this.dataMap = dataMap;
+		this.jsonData = jsonData;
+		this.headers = headers;
+	}
+
+	/**
+	 * Append a query to the request.
+	 *
+	 * @param query
+	 *            Query string based on Firebase REST API
+	 * @param parameter
+	 *            Query parameter
+	 * @return a new request with the query added
+	 * @throws UnsupportedEncodingException
+	 *             if parameter cannot be encoded to UTF-8
+	 */
+	public FirebaseRequest addQuery(final String query, final String parameter) throws UnsupportedEncodingException {
+		Map<String, String> newQueryMap = new LinkedHashMap<>(queryMap);
+		newQueryMap.put(query, URLEncoder.encode(parameter, "UTF-8"));
+		return withQueryMap(newQueryMap);
+	}
+
+	/**
+	 * Append the parameters of a query to the request, replacing any earlier
+	 * parameters of the same names.
+	 *
+	 * @param query
+	 *            Query to append
+	 * @return a new request with the query added
+	 */
+	public FirebaseRequest query(final FirebaseQuery query) {
+		Map<String, String> newQueryMap = new LinkedHashMap<>(queryMap);
+		for (Map.Entry<String, String> parameter : query.getParameters().entrySet()) {
+			newQueryMap.put(parameter.getKey(), QUERY_ESCAPER.escape(parameter.getValue()));
+		}
+		return withQueryMap(newQueryMap);
+	}
+
+	/**
+	 * Add data to the request
+	 *
+	 * @param key
+	 *            Data key
+	 * @param value
+	 *            Data value
+	 * @return a new request with the data added
+	 */
+	public FirebaseRequest addData(final String key, final Object value) {
+		Map<String, Object> newDataMap = new LinkedHashMap<>(dataMap);
+		newDataMap.put(key, value);
+		return new FirebaseRequest(firebase, path, queryMap, queryString, Collections.unmodifiableMap(newDataMap),
+				jsonData, headers);
+	}
+
+	/**
+	 * Add data to the request
+	 *
+	 * @param jsonData
+	 *            Data to add as a JSON string
+	 * @return a new request with the data added
+	 */
+	public FirebaseRequest addData(final String jsonData) {
+		List<String> newJsonData = new ArrayList<>(this.jsonData);
+		newJsonData.add(jsonData);
+		return new FirebaseRequest(firebase, path, queryMap, queryString, dataMap,
+				Collections.unmodifiableList(newJsonData), headers);
+	}
+
+	/**
+	 * Add a header to the request
+	 *
+	 * @param name
+	 *            Header name, e.g. {@link Firebase#ETAG_REQUEST_HEADER}
+	 * @param value
+	 *            Header value
+	 * @return a new request with the header added
+	 */
+	public FirebaseRequest addHeader(final String name, final String value) {
+		Map<String, String> newHeaders = new LinkedHashMap<>(headers);
+		newHeaders.put(name, value);
+		return new FirebaseRequest(firebase, path, queryMap, queryString, dataMap, jsonData,
+				Collections.unmodifiableMap(newHeaders));
+	}
+
+	/**
+	 * @param path
+	 *            Path relative to base URL. If null/empty, refers to the base
+	 *            URL
+	 * @return a new request targeting the provided path
+	 */
+	public FirebaseRequest withPath(final String path) {
+		return new FirebaseRequest(firebase, path, queryMap, queryString, dataMap, jsonData, headers);
+	}
+
+	/**
+	 * @param template
+	 *            Template of the path relative to base URL
+	 * @param values
+	 *            Values of the template variables, in order
+	 * @return a new request targeting the expanded template
+	 * @see FirebasePathTemplate#expand(String...)
+	 */
+	public FirebaseRequest withPath(final FirebasePathTemplate template, final String... values) {
+		return withPath(template.expand(values));
+	}
+
+	/**
+	 * @return the query parameters joined into an encoded query string, without
+	 *         the leading "?"
+	 */
+	String getQueryString() {
+		return queryString;
+	}
+
+	private FirebaseRequest withQueryMap(final Map<String, String> newQueryMap) {
+		return new FirebaseRequest(firebase, path, Collections.unmodifiableMap(newQueryMap),
+				QUERY_JOINER.join(newQueryMap), dataMap, jsonData, headers);
+	}
+
+	/**
+	 * GETs data from the provided path relative to the base URL
+	 *
+	 * @see Firebase#get(String)
+	 */
+	public FirebaseResponse get(final String path) throws IOException {
+		return firebase.execute(GET, withPath(path));
+	}
+
+	/**
+	 * GETs data from the base URL
+	 *
+	 * @see Firebase#get()
+	 */
+	public FirebaseResponse get() throws IOException {
+		return get(null);
+	}
+
+	/**
+	 * GETs data from the provided path relative to the base URL as the
+	 * provided type
+	 *
+	 * @see Firebase#get(String, Class)
+	 */
+	public <T> T get(final String path, final Class<T> type) throws IOException {
+		return firebase.read(withPath(path), type);
+	}
+
+	/**
+	 * GETs data from many paths relative to the base URL at once, each with
+	 * the query parameters and headers of this request
+	 *
+	 * @see Firebase#getAll(Collection)
+	 */
+	public Map<String, FirebaseResponse> getAll(final Collection<String> paths) throws IOException {
+		return firebase.getAll(this, paths);
+	}
+
+	/**
+	 * Streams the children of the provided path relative to the base URL
+	 *
+	 * @see Firebase#stream(String, Class, FirebaseChildHandler)
+	 */
+	public <T> FirebaseResponse stream(final String path, final Class<T> type,
+	        final FirebaseChildHandler<? super T> handler) throws IOException {
+		return firebase.stream(withPath(path), type, handler);
+	}
+
+	/**
+	 * Scans the children of the provided path relative to the base URL in
+	 * pages, with the headers of this request
+	 *
+	 * @see Firebase#scan(String, Class, int)
+	 */
+	public <T> FirebaseScan<T> scan(final String path, final Class<T> type, final int pageSize) {
+		return new FirebaseScan<>(withPath(path), type, pageSize);
+	}
+
+	/**
+	 * Listens to changes of the data at the provided path relative to the base
+	 * URL, with the query parameters of this request
+	 *
+	 * @see Firebase#listen(String, FirebaseEventListener)
+	 */
+	public FirebaseSubscription listen(final String path, final FirebaseEventListener listener) {
+		return firebase.listen(withPath(path), listener);
+	}
+
+	/**
+	 * PATCHs data to the provided path relative to the base URL
+	 *
+	 * @see Firebase#patch(String)
+	 */
+	public FirebaseResponse patch(final String path) throws IOException {
+		return firebase.execute(PATCH, withPath(path));
+	}
+
+	/**
+	 * PATCHs data to the base URL
+	 *
+	 * @see Firebase#patch()
+	 */
+	public FirebaseResponse patch() throws IOException {
+		return patch(null);
+	}
+
+	/**
+	 * PATCHs the provided value to the provided path relative to the base URL;
+	 * the data of this request is ignored
+	 *
+	 * @see Firebase#patch(String, Object)
+	 */
+	public FirebaseResponse patch(final String path, final Object value) throws IOException {
+		return firebase.write(PATCH, withPath(path), value);
+	}
+
+	/**
+	 * PUTs data to the provided path relative to the base URL
+	 *
+	 * @see Firebase#put(String)
+	 */
+	public FirebaseResponse put(final String path) throws IOException {
+		return firebase.execute(PUT, withPath(path));
+	}
+
+	/**
+	 * PUTs data to the base URL
+	 *
+	 * @see Firebase#put()
+	 */
+	public FirebaseResponse put() throws IOException {
+		return put(null);
+	}
+
+	/**
+	 * PUTs the provided value to the provided path relative to the base URL;
+	 * the data of this request is ignored
+	 *
+	 * @see Firebase#put(String, Object)
+	 */
+	public FirebaseResponse put(final String path, final Object value) throws IOException {
+		return firebase.write(PUT, withPath(path), value);
+	}
+
+	/**
+	 * POSTs data to the provided path relative to the base URL
+	 *
+	 * @see Firebase#post(String)
+	 */
+	public FirebaseResponse post(final String path) throws IOException {
+		return firebase.execute(POST, withPath(path));
+	}
+
+	/**
+	 * POSTs data to the base URL
+	 *
+	 * @see Firebase#post()
+	 */
+	public FirebaseResponse post() throws IOException {
+		return post(null);
+	}
+
+	/**
+	 * POSTs the provided value below the provided path relative to the base
+	 * URL; the data of this request is ignored
+	 *
+	 * @see Firebase#post(String, Object)
+	 */
+	public FirebaseResponse post(final String path, final Object value) throws IOException {
+		return firebase.write(POST, withPath(path), value);
+	}
+
+	/**
+	 * DELETEs data from the provided path relative to the base URL
+	 *
+	 * @see Firebase#delete(String)
+	 */
+	public FirebaseResponse delete(final String path) throws IOException {
+		return firebase.execute(DELETE, withPath(path));
+	}
+
+	/**
+	 * DELETEs data from the base URL
+	 *
+	 * @see Firebase#delete()
+	 */
+	public FirebaseResponse delete() throws IOException {
+		return delete(null);
+	}
+}
@@ -0,0 +1,31 @@
+package net.thegreshams.firebase4j.service;
+
+/**
+ * Records the outcome of a single request, as returned by
+ * {@link FirebaseInstrumentation#start(FirebaseRestMethod, String)}. Exactly
+ * one of its methods is called, once the response has been read (or once the
+ * request failed), so the time since the recorder was created is the latency
+ * of the request.
+ */
+public interface FirebaseRequestRecorder {
+
+	/**
+	 * @param code
+	 *            HTTP status code of the response
+	 * @param requestBytes
+	 *            Size of the request body
+	 * @param responseBytes
+	 *            Number of response body bytes read; the body may not have
+	 *            been read to its end if the caller stopped early
+	 */
+	void completed(int code, long requestBytes, long responseBytes);
+
+	/**
+	 * @param error
+	 *            Why the request got no response, including
+	 *            {@link net.thegreshams.firebase4j.model.FirebaseCircuitOpenException}
+	 * @param requestBytes
+	 *            Size of the request body
+	 */
+	void failed(Exception error, long requestBytes);
+}
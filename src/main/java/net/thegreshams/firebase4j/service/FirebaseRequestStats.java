@@ -0,0 +1,52 @@
+package net.thegreshams.firebase4j.service;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Snapshot of the request counters of a {@link Firebase}, taken by
+ * {@link Firebase#stats()}. Counts are cumulative since the Firebase was
+ * created.
+ */
+@Getter
+@ToString
+public final class FirebaseRequestStats {
+
+	/**
+	 * Number of requests made, not counting retries.
+	 */
+	private final long requestCount;
+
+	/**
+	 * Number of times a request was sent again after failing.
+	 */
+	private final long retryCount;
+
+	/**
+	 * Number of GETs that waited for an identical GET in flight instead of
+	 * being sent, and so are not counted as requests.
+	 */
+	private final long coalescedCount;
+
+	/**
+	 * Number of requests rejected by the open circuit breaker.
+	 */
+	private final long rejectedCount;
+
+	/**
+	 * Number of times the circuit breaker opened.
+	 */
+	private final long circuitOpenedCount;
+
+	private final FirebaseCircuitBreaker.State circuitState;
+
+	FirebaseRequestStats(final long requestCount, final long retryCount, final long coalescedCount,
+	        final FirebaseCircuitBreaker circuitBreaker) {
+		this.requestCount = requestCount;
+		this.retryCount = retryCount;
+		this.coalescedCount = coalescedCount;
+		rejectedCount = circuitBreaker.getRejectedCount();
+		circuitOpenedCount = circuitBreaker.getOpenedCount();
+		circuitState = circuitBreaker.getState();
+	}
+}
@@ -0,0 +1,70 @@
+package net.thegreshams.firebase4j.service;
+
+import java.io.IOException;
+
+/**
+ * Decides whether, and after how long, a failed request is sent again.
+ *
+ * @see FirebaseBackoffRetryPolicy
+ * @see FirebaseClientConfig.Builder#retryPolicy(FirebaseRetryPolicy)
+ */
+public interface FirebaseRetryPolicy {
+
+	/**
+	 * Returned to give up and hand the failure to the caller.
+	 */
+	long NO_RETRY = -1;
+
+	/**
+	 * Never retries.
+	 */
+	FirebaseRetryPolicy NEVER = new FirebaseRetryPolicy() {
+
+		@Override
+		public long retryDelay(final FirebaseRestMethod method, final int attempts, final int code,
+		        final long retryAfter) {
+			return NO_RETRY;
+		}
+
+		@Override
+		public long retryDelay(final FirebaseRestMethod method, final int attempts, final IOException error) {
+			return NO_RETRY;
+		}
+
+		@Override
+		public String toString() {
+			return "FirebaseRetryPolicy.NEVER";
+		}
+	};
+
+	/**
+	 * Called when a request got an unsuccessful response.
+	 *
+	 * @param method
+	 *            Method of the request
+	 * @param attempts
+	 *            Number of times the request has been sent so far
+	 * @param code
+	 *            HTTP status code of the response
+	 * @param retryAfter
+	 *            Delay asked for by the Retry-After header of the response, in
+	 *            milliseconds; -1 if it had none
+	 * @return the delay before sending the request again, in milliseconds, or
+	 *         {@link #NO_RETRY}
+	 */
+	long retryDelay(FirebaseRestMethod method, int attempts, int code, long retryAfter);
+
+	/**
+	 * Called when a request failed without a response.
+	 *
+	 * @param method
+	 *            Method of the request
+	 * @param attempts
+	 *            Number of times the request has been sent so far
+	 * @param error
+	 *            The failure
+	 * @return the delay before sending the request again, in milliseconds, or
+	 *         {@link #NO_RETRY}
+	 */
+	long retryDelay(FirebaseRestMethod method, int attempts, IOException error);
+}
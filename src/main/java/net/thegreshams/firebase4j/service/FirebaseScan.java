@@ -0,0 +1,210 @@
+package net.thegreshams.firebase4j.service;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.SortedMap;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import lombok.ToString;
+import net.thegreshams.firebase4j.model.FirebaseException;
+import net.thegreshams.firebase4j.model.FirebaseResponse;
+
+import com.google.common.collect.Iterators;
+
+/**
+ * The children of a location, read in pages of a fixed number of children in
+ * {@link FirebaseQuery#KEY_ORDER key order}. Each page is a query ordered by
+ * key starting at the last key of the previous page, so only one page needs to
+ * be held in memory at a time, however large the location.
+ *
+ * Nothing is read until the scan is iterated, and every iteration starts a new
+ * scan from the first key. Children added or removed during a scan may or may
+ * not be seen. A page that cannot be read ends the iteration with an
+ * {@link UncheckedIOException}, whose cause is a {@link FirebaseException} for
+ * an unsuccessful response.
+ *
+ * @param <T>
+ *            Type each child is converted to
+ * @see Firebase#scan(String, Class, int)
+ */
+@ToString(of = { "request", "type", "pageSize" })
+public final class FirebaseScan<T> implements Iterable<Map.Entry<String, T>> {
+
+	private final FirebaseRequest request;
+
+	private final Class<T> type;
+
+	private final int pageSize;
+
+	FirebaseScan(final FirebaseRequest request, final Class<T> type, final int pageSize) {
+		checkArgument(pageSize > 0 && pageSize < Integer.MAX_VALUE, "pageSize must be positive; was: " + pageSize);
+		this.request = request;
+		this.type = checkNotNull(type, "type cannot be null");
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * @return the children, one page after the other
+	 */
+	@Override
+	public Iterator<Map.Entry<String, T>> iterator() {
+		return Iterators.concat(Iterators.transform(pages(),
+				new com.google.common.base.Function<SortedMap<String, T>, Iterator<Map.Entry<String, T>>>() {
+
+					@Override
+					public Iterator<Map.Entry<String, T>> apply(final SortedMap<String, T> page) {
+						return page.entrySet().iterator();
+					}
+				}));
+	}
+
+	/**
+	 * @return the pages, each a non-empty map of children sorted by key
+	 */
+	public Iterator<SortedMap<String, T>> pages() {
+		return new PageIterator();
+	}
+
+	/**
+	 * @return a sequential stream of the children
+	 */
+	public Stream<Map.Entry<String, T>> stream() {
+		return pageStream().flatMap(new Function<SortedMap<String, T>, Stream<Map.Entry<String, T>>>() {
+
+			@Override
+			public Stream<Map.Entry<String, T>> apply(final SortedMap<String, T> page) {
+				return page.entrySet().stream();
+			}
+		});
+	}
+
+	/**
+	 * Pages are always read one after the other, but a parallel stream hands
+	 * every page to a worker as soon as it is read, so pages are processed
+	 * concurrently while the next ones are being read.
+	 *
+	 * @return a sequential stream of the pages, which may be made parallel
+	 */
+	public Stream<SortedMap<String, T>> pageStream() {
+		return StreamSupport.stream(new PageSpliterator(), false);
+	}
+
+	/**
+	 * @param after
+	 *            Last key of the previous page, or null for the first page
+	 * @return the children after the provided key, with the key itself if it
+	 *         still exists
+	 */
+	private SortedMap<String, T> readPage(final String after) throws IOException {
+		FirebaseQuery query = after == null ? FirebaseQuery.orderByKey().limitToFirst(pageSize)
+				: FirebaseQuery.orderByKey().startAt(after).limitToFirst(pageSize + 1);
+		// the JSON object of the response is not ordered
+		final SortedMap<String, T> page = new TreeMap<>(FirebaseQuery.KEY_ORDER);
+		FirebaseResponse response = request.query(query).stream(request.getPath(), type, new FirebaseChildHandler<T>() {
+
+			@Override
+			public void onChild(final String key, final T value) {
+				// a single value has no children
+				if (key != null) {
+					page.put(key, value);
+				}
+			}
+		});
+		if (!response.isSuccess()) {
+			throw new FirebaseException(response);
+		}
+		return page;
+	}
+
+	private final class PageIterator implements Iterator<SortedMap<String, T>> {
+
+		private String after;
+
+		private SortedMap<String, T> next;
+
+		private boolean done;
+
+		@Override
+		public boolean hasNext() {
+			if (next == null && !done) {
+				SortedMap<String, T> page;
+				try {
+					page = readPage(after);
+				} catch (IOException e) {
+					done = true;
+					throw new UncheckedIOException(e);
+				}
+				// a short page is the last one
+				done = page.size() < (after == null ? pageSize : pageSize + 1);
+				if (after != null) {
+					page.remove(after);
+				}
+				if (page.isEmpty()) {
+					done = true;
+				} else {
+					after = page.lastKey();
+					next = page;
+				}
+			}
+			return next != null;
+		}
+
+		@Override
+		public SortedMap<String, T> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			SortedMap<String, T> page = next;
+			next = null;
+			return page;
+		}
+	}
+
+	/**
+	 * Splits off one page at a time, so a parallel stream hands out pages as
+	 * they are read instead of buffering batches of them first.
+	 */
+	private final class PageSpliterator implements Spliterator<SortedMap<String, T>> {
+
+		private final Iterator<SortedMap<String, T>> pages = pages();
+
+		@Override
+		public boolean tryAdvance(final Consumer<? super SortedMap<String, T>> action) {
+			if (!pages.hasNext()) {
+				return false;
+			}
+			action.accept(pages.next());
+			return true;
+		}
+
+		@Override
+		public Spliterator<SortedMap<String, T>> trySplit() {
+			if (!pages.hasNext()) {
+				return null;
+			}
+			return Spliterators.spliterator(new Object[] { pages.next() }, characteristics());
+		}
+
+		@Override
+		public long estimateSize() {
+			return Long.MAX_VALUE;
+		}
+
+		@Override
+		public int characteristics() {
+			return ORDERED | NONNULL;
+		}
+	}
+}
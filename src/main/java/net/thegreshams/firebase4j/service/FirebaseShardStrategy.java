@@ -0,0 +1,30 @@
+package net.thegreshams.firebase4j.service;
+
+/**
+ * Decides which shard of a {@link ShardedFirebase} holds the data at a path.
+ * A strategy must give the same shard for a path every time, and be safe to
+ * call from many threads at once.
+ *
+ * @see FirebaseHashShardStrategy
+ * @see FirebasePrefixShardStrategy
+ */
+public interface FirebaseShardStrategy {
+
+	/**
+	 * @param path
+	 *            Path relative to the base URLs of the shards; may be null or
+	 *            empty for the root, and start or end with a slash
+	 * @return the name of the shard holding the path, or null if none does
+	 */
+	String shardOf(String path);
+
+	/**
+	 * @param path
+	 *            Path relative to the base URLs of the shards; may be null or
+	 *            empty for the root, and start or end with a slash
+	 * @return whether data below the path may live on other shards than the
+	 *         one {@link #shardOf(String)} gives for it, so that a write of
+	 *         the path as a whole cannot be sent to a single shard
+	 */
+	boolean spansShards(String path);
+}
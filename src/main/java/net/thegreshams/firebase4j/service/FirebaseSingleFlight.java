@@ -0,0 +1,141 @@
+package net.thegreshams.firebase4j.service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.thegreshams.firebase4j.model.FirebaseResponse;
+
+/**
+ * Shares one GET between every caller asking for the same full URL (path
+ * plus query parameters) while it is in flight. The first caller sends the
+ * request on its own thread; callers arriving before it completes wait for
+ * its {@link FirebaseResponse}, or the exception it failed with, instead of
+ * sending requests of their own.
+ *
+ * Writes issued through the owning {@link Firebase} detach the GETs in flight
+ * for the written path, its ancestors and its descendants, so a GET started
+ * after a write never waits for a response read before it.
+ *
+ * Shared responses must not be modified.
+ */
+final class FirebaseSingleFlight {
+
+	private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<>();
+
+	private final long waitTimeout;
+
+	private final AtomicLong coalescedCount = new AtomicLong();
+
+	/**
+	 * @param waitTimeout
+	 *            Time a caller waits for a GET sent by another, in
+	 *            milliseconds; -1 waits for as long as the GET takes
+	 */
+	FirebaseSingleFlight(final long waitTimeout) {
+		this.waitTimeout = waitTimeout;
+	}
+
+	/**
+	 * @return the number of GETs that waited for another instead of being
+	 *         sent
+	 */
+	long getCoalescedCount() {
+		return coalescedCount.get();
+	}
+
+	/**
+	 * @param path
+	 *            Path of the GET, which writes detach it by
+	 * @param url
+	 *            Full URL of the GET, which callers share it by
+	 * @param loader
+	 *            Sends the GET; called on this thread unless a GET of the URL
+	 *            is already in flight
+	 * @return the response of the GET, shared with all callers of the URL
+	 * @throws IOException
+	 *             the exception the GET failed with, also thrown to every
+	 *             other caller; or, if waiting for another caller's GET, an
+	 *             {@link InterruptedIOException} once the wait timeout passes
+	 *             or the thread is interrupted
+	 */
+	FirebaseResponse execute(final String path, final String url, final Callable<FirebaseResponse> loader)
+	        throws IOException {
+		Flight flight = new Flight(FirebaseCache.normalize(path), loader);
+		Flight existing = flights.putIfAbsent(url, flight);
+		if (existing == null) {
+			try {
+				flight.run();
+			} finally {
+				flights.remove(url, flight);
+			}
+			return get(flight, -1, url);
+		}
+		coalescedCount.incrementAndGet();
+		return get(existing, waitTimeout, url);
+	}
+
+	/**
+	 * Detaches the GETs in flight for the path, its ancestors and its
+	 * descendants; callers already waiting for them still get their
+	 * responses.
+	 *
+	 * @param path
+	 *            Path relative to base URL. If null/empty, refers to the base
+	 *            URL (and therefore detaches everything)
+	 */
+	void invalidate(final String path) {
+		String written = FirebaseCache.normalize(path);
+		Iterator<Flight> iterator = flights.values().iterator();
+		while (iterator.hasNext()) {
+			String inFlight = iterator.next().path;
+			if (FirebaseCache.isSameOrDescendant(inFlight, written)
+					|| FirebaseCache.isSameOrDescendant(written, inFlight)) {
+				iterator.remove();
+			}
+		}
+	}
+
+	private static FirebaseResponse get(final Flight flight, final long timeout, final String url)
+	        throws IOException {
+		try {
+			return timeout < 0 ? flight.get() : flight.get(timeout, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting for the GET of '" + url + "'");
+		} catch (TimeoutException e) {
+			throw new InterruptedIOException("timed out after " + timeout + "ms waiting for the GET of '" + url
+					+ "'");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	private static final class Flight extends FutureTask<FirebaseResponse> {
+
+		private final String path;
+
+		private Flight(final String path, final Callable<FirebaseResponse> loader) {
+			super(loader);
+			this.path = path;
+		}
+	}
+}
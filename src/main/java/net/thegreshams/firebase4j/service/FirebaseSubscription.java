@@ -0,0 +1,48 @@
+package net.thegreshams.firebase4j.service;
+
+import java.io.Closeable;
+
+import lombok.ToString;
+
+/**
+ * A listener's registration with the stream of a location, returned by
+ * {@link Firebase#listen(String, FirebaseEventListener)}. Closing the last
+ * subscription of a location closes its connection.
+ */
+@ToString
+public final class FirebaseSubscription implements Closeable {
+
+	private final FirebaseEventStream stream;
+
+	private final FirebaseEventListener listener;
+
+	FirebaseSubscription(final FirebaseEventStream stream, final FirebaseEventListener listener) {
+		this.stream = stream;
+		this.listener = listener;
+	}
+
+	/**
+	 * @return the local copy of the listened location, as unmodifiable maps,
+	 *         lists and scalars; null until the first event arrives or if the
+	 *         location is empty
+	 */
+	public Object getValue() {
+		return stream.getValue();
+	}
+
+	/**
+	 * @return false once closed, or once the server cancelled the stream or
+	 *         revoked its credential
+	 */
+	public boolean isOpen() {
+		return stream.isSubscribed(listener);
+	}
+
+	/**
+	 * Stops delivering events to the listener.
+	 */
+	@Override
+	public void close() {
+		stream.unsubscribe(listener);
+	}
+}
@@ -0,0 +1,514 @@
+package net.thegreshams.firebase4j.service;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Strings.nullToEmpty;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import net.thegreshams.firebase4j.model.FirebaseException;
+import net.thegreshams.firebase4j.model.FirebaseResponse;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.escape.Escaper;
+import com.google.common.net.UrlEscapers;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Exports a location of a {@link Firebase} to a file, and imports such files
+ * back, in many small requests instead of one that times out on a large
+ * database.
+ *
+ * An export splits the location into shards, found with shallow reads: the
+ * locations shardDepth levels below it, or less where the tree is not as
+ * deep. The shards are read in parallel by a pool of workers and written to
+ * the file as newline-delimited JSON, one <code>{"path":...,"value":...}</code>
+ * line per shard, in the order they complete. Paths in the file are made of
+ * the keys as they are, and URL-encoded segment by segment for requests. An
+ * import PUTs the value of every line back to its path, in parallel in the
+ * same way. Requests of both can be limited to a rate, and reads go past the
+ * cache of the Firebase, neither served from nor filling it.
+ *
+ * Both keep a checkpoint file next to the file, listing the shards done so
+ * far. A run that fails or is interrupted is resumed by running it again with
+ * the same file, which skips those shards; a run that completes deletes its
+ * checkpoint, so the next run starts over. A shard can be transferred twice
+ * when a run stops between transferring it and recording it, which is
+ * harmless as both sides replace the data of a shard as a whole.
+ */
+@Getter
+@ToString(of = { "firebase", "workers", "requestsPerSecond", "shardDepth" })
+@Slf4j
+public class FirebaseTransfer {
+
+	/**
+	 * Suffix of the checkpoint of an export, added to the exported file name.
+	 */
+	public static final String EXPORT_CHECKPOINT_SUFFIX = ".exported";
+
+	/**
+	 * Suffix of the checkpoint of an import, added to the imported file name.
+	 */
+	public static final String IMPORT_CHECKPOINT_SUFFIX = ".imported";
+
+	private static final Splitter PATH_SPLITTER = Splitter.on('/').omitEmptyStrings().trimResults();
+
+	/**
+	 * Splits paths of keys, which can start or end with whitespace
+	 */
+	private static final Splitter KEY_SPLITTER = Splitter.on('/').omitEmptyStrings();
+
+	private static final Joiner PATH_JOINER = Joiner.on('/');
+
+	private static final Escaper SEGMENT_ESCAPER = UrlEscapers.urlPathSegmentEscaper();
+
+	private final Firebase firebase;
+
+	private final int workers;
+
+	private final double requestsPerSecond;
+
+	private final int shardDepth;
+
+	/**
+	 * Guards the writes to the files; a lock rather than synchronized, which
+	 * would pin a virtual thread to its carrier for the duration of the I/O.
+	 */
+	@Getter(AccessLevel.NONE)
+	private final Lock fileLock = new ReentrantLock();
+
+	private FirebaseTransfer(final Builder builder) {
+		firebase = builder.firebase;
+		workers = builder.workers;
+		requestsPerSecond = builder.requestsPerSecond;
+		shardDepth = builder.shardDepth;
+	}
+
+	/**
+	 * @param firebase
+	 *            Firebase to export from and import to
+	 * @return a new {@link Builder}
+	 */
+	public static Builder builder(final Firebase firebase) {
+		return new Builder(firebase);
+	}
+
+	/**
+	 * Exports the data at the provided path relative to the base URL, or
+	 * resumes the export to the file if its checkpoint exists
+	 *
+	 * @param path
+	 *            Path relative to base URL. If null/empty, refers to the base
+	 *            URL
+	 * @param file
+	 *            File to write to; replaced unless the export is resumed
+	 * @return the number of shards exported by this call
+	 * @throws FirebaseException
+	 *             if a shard cannot be read; the export can be resumed
+	 * @throws IOException
+	 *             if ClientProtocolException executing Rest request or the
+	 *             file cannot be written; the export can be resumed
+	 */
+	public long exportTo(final String path, final File file) throws IOException {
+		File checkpointFile = new File(file.getPath() + EXPORT_CHECKPOINT_SUFFIX);
+		Set<String> done = readCheckpoint(checkpointFile);
+		if (checkpointFile.exists()) {
+			// drop the line a failed run may have been writing
+			truncateToLastLine(file);
+		} else {
+			Files.deleteIfExists(file.toPath());
+		}
+
+		final RateLimiter rateLimiter = createRateLimiter();
+		ExecutorService executor = createExecutor("firebase-export-%d");
+		long exported;
+		try (final Writer out = append(file); final Writer checkpoint = append(checkpointFile)) {
+			try {
+				List<Callable<Object>> tasks = new ArrayList<>();
+				for (final String shard : discoverShards(normalize(path), executor, rateLimiter)) {
+					if (done.contains(shard)) {
+						continue;
+					}
+					tasks.add(new Callable<Object>() {
+
+						@Override
+						public Object call() throws IOException {
+							acquire(rateLimiter);
+							FirebaseRequest request = firebase.request().withPath(escape(shard));
+							FirebaseResponse response = firebase.getUncached(request);
+							if (!response.isSuccess()) {
+								throw new FirebaseException(response);
+							}
+							String line = "{\"path\":" + new String(firebase.getJsonCodec().write(shard),
+									StandardCharsets.UTF_8) + ",\"value\":" + compact(response.getRawBody()) + "}\n";
+							fileLock.lock();
+							try {
+								out.write(line);
+								out.flush();
+								checkpoint.write(shard + "\n");
+								checkpoint.flush();
+							} finally {
+								fileLock.unlock();
+							}
+							return null;
+						}
+					});
+				}
+				exported = invokeAll(executor, tasks).size();
+			} finally {
+				shutdown(executor);
+			}
+		}
+		Files.delete(checkpointFile.toPath());
+		log.debug("exported {} shards of '{}' to {}; {} were exported before", exported, path, file, done.size());
+		return exported;
+	}
+
+	/**
+	 * Imports a file written by {@link #exportTo(String, File)}, or resumes the
+	 * import of the file if its checkpoint exists
+	 *
+	 * @param file
+	 *            File to read from
+	 * @return the number of shards imported by this call
+	 * @throws FirebaseException
+	 *             if a shard cannot be written; the import can be resumed
+	 * @throws IOException
+	 *             if ClientProtocolException executing Rest request or the
+	 *             file cannot be read; the import can be resumed
+	 */
+	public long importFrom(final File file) throws IOException {
+		File checkpointFile = new File(file.getPath() + IMPORT_CHECKPOINT_SUFFIX);
+		Set<String> done = readCheckpoint(checkpointFile);
+
+		final RateLimiter rateLimiter = createRateLimiter();
+		ExecutorService executor = createExecutor("firebase-import-%d");
+		long imported = 0;
+		try (BufferedReader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8);
+		        final Writer checkpoint = append(checkpointFile)) {
+			try {
+				// read a few lines per worker at a time, to hold few values in memory
+				List<Callable<Object>> batch = new ArrayList<>();
+				String line;
+				while ((line = in.readLine()) != null) {
+					if (line.trim().isEmpty()) {
+						continue;
+					}
+					Map<?, ?> shard = firebase.getJsonCodec().read(line, Map.class);
+					final String path = (String) shard.get("path");
+					final Object value = shard.get("value");
+					if (done.contains(path)) {
+						continue;
+					}
+					batch.add(new Callable<Object>() {
+
+						@Override
+						public Object call() throws IOException {
+							acquire(rateLimiter);
+							FirebaseResponse response = firebase.put(escape(path), value);
+							if (!response.isSuccess()) {
+								throw new FirebaseException(response);
+							}
+							fileLock.lock();
+							try {
+								checkpoint.write(path + "\n");
+								checkpoint.flush();
+							} finally {
+								fileLock.unlock();
+							}
+							return null;
+						}
+					});
+					if (batch.size() == workers * 4) {
+						imported += invokeAll(executor, batch).size();
+						batch.clear();
+					}
+				}
+				imported += invokeAll(executor, batch).size();
+			} finally {
+				shutdown(executor);
+			}
+		}
+		Files.delete(checkpointFile.toPath());
+		log.debug("imported {} shards from {}; {} were imported before", imported, file, done.size());
+		return imported;
+	}
+
+	/**
+	 * @return the paths of the shards below the path, in order
+	 */
+	private List<String> discoverShards(final String path, final ExecutorService executor,
+	        final RateLimiter rateLimiter) throws IOException {
+		List<String> level = Collections.singletonList(path);
+		for (int depth = 0; depth < shardDepth && !level.isEmpty(); depth++) {
+			List<Callable<List<String>>> tasks = new ArrayList<>();
+			for (final String parent : level) {
+				tasks.add(new Callable<List<String>>() {
+
+					@Override
+					public List<String> call() throws IOException {
+						acquire(rateLimiter);
+						FirebaseResponse response = firebase.getUncached(
+								firebase.query(FirebaseQuery.shallow()).withPath(escape(parent)));
+						if (!response.isSuccess()) {
+							throw new FirebaseException(response);
+						}
+						Object keys = !response.getRawBody().isEmpty()
+								? firebase.getJsonCodec().read(response.getRawBody(), Object.class) : null;
+						if (!(keys instanceof Map)) {
+							// a value is a shard of its own; no data is no shard
+							return keys != null ? Collections.singletonList(parent)
+									: Collections.<String> emptyList();
+						}
+						List<String> children = new ArrayList<>();
+						for (Object key : ((Map<?, ?>) keys).keySet()) {
+							children.add(parent.isEmpty() ? (String) key : parent + "/" + key);
+						}
+						return children;
+					}
+				});
+			}
+			List<String> next = new ArrayList<>();
+			for (List<String> children : invokeAll(executor, tasks)) {
+				next.addAll(children);
+			}
+			level = next;
+		}
+		List<String> shards = new ArrayList<>(level);
+		Collections.sort(shards);
+		log.debug("found {} shards below '{}' at depth {}", shards.size(), path, shardDepth);
+		return shards;
+	}
+
+	/**
+	 * Runs the tasks on the executor and waits for all of them, or for the
+	 * first to fail, in which case the others are cancelled.
+	 *
+	 * @return the results in order of completion
+	 */
+	private static <T> List<T> invokeAll(final ExecutorService executor, final List<? extends Callable<T>> tasks)
+	        throws IOException {
+		CompletionService<T> completionService = new ExecutorCompletionService<>(executor);
+		List<Future<T>> futures = new ArrayList<>(tasks.size());
+		for (Callable<T> task : tasks) {
+			futures.add(completionService.submit(task));
+		}
+		List<T> results = new ArrayList<>(tasks.size());
+		try {
+			for (int i = 0; i < tasks.size(); i++) {
+				results.add(completionService.take().get());
+			}
+			return results;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while transferring");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException(cause);
+		} finally {
+			for (Future<T> future : futures) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	private ExecutorService createExecutor(final String nameFormat) {
+		return Executors.newFixedThreadPool(workers, new ThreadFactoryBuilder()
+				.setNameFormat(nameFormat)
+				.setDaemon(true)
+				.build());
+	}
+
+	/**
+	 * Stops the workers and waits for the ones still running a request, so
+	 * none writes to a file after it is closed.
+	 */
+	private static void shutdown(final ExecutorService executor) throws InterruptedIOException {
+		executor.shutdownNow();
+		try {
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while stopping the workers");
+		}
+	}
+
+	private RateLimiter createRateLimiter() {
+		return requestsPerSecond > 0 ? RateLimiter.create(requestsPerSecond) : null;
+	}
+
+	private static void acquire(final RateLimiter rateLimiter) {
+		if (rateLimiter != null) {
+			rateLimiter.acquire();
+		}
+	}
+
+	private static Set<String> readCheckpoint(final File checkpointFile) throws IOException {
+		if (!checkpointFile.exists()) {
+			return Collections.emptySet();
+		}
+		return new HashSet<>(Files.readAllLines(checkpointFile.toPath(), StandardCharsets.UTF_8));
+	}
+
+	private static Writer append(final File file) throws IOException {
+		return new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Cuts off anything after the last line break of the file.
+	 */
+	static void truncateToLastLine(final File file) throws IOException {
+		if (!file.exists()) {
+			return;
+		}
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			byte[] buffer = new byte[8192];
+			long end = raf.length();
+			while (end > 0) {
+				int length = (int) Math.min(buffer.length, end);
+				raf.seek(end - length);
+				raf.readFully(buffer, 0, length);
+				for (int i = length - 1; i >= 0; i--) {
+					if (buffer[i] == '\n') {
+						raf.setLength(end - length + i + 1);
+						return;
+					}
+				}
+				end -= length;
+			}
+			raf.setLength(0);
+		}
+	}
+
+	/**
+	 * @return the JSON on a single line; line breaks can only be whitespace
+	 *         between tokens, as strings hold them escaped
+	 */
+	private static String compact(final String json) {
+		if (json == null || json.isEmpty()) {
+			return "null";
+		}
+		return json.indexOf('\n') < 0 && json.indexOf('\r') < 0 ? json : json.replace("\n", "").replace("\r", "");
+	}
+
+	/**
+	 * @return the path with its URL-encoded segments decoded, as the keys of
+	 *         the data at it
+	 */
+	private static String normalize(final String path) {
+		String normalized = PATH_JOINER.join(PATH_SPLITTER.split(nullToEmpty(path)));
+		return normalized.indexOf('%') < 0 ? normalized : URI.create("/" + normalized).getPath().substring(1);
+	}
+
+	/**
+	 * @return the path of keys with every segment URL-encoded, as sent
+	 */
+	private static String escape(final String path) {
+		StringBuilder escaped = new StringBuilder(path.length());
+		for (String segment : KEY_SPLITTER.split(path)) {
+			if (escaped.length() > 0) {
+				escaped.append('/');
+			}
+			escaped.append(SEGMENT_ESCAPER.escape(segment));
+		}
+		return escaped.toString();
+	}
+
+	/**
+	 * Builder of {@link FirebaseTransfer} instances.
+	 */
+	public static final class Builder {
+
+		private final Firebase firebase;
+
+		private int workers = 4;
+
+		private double requestsPerSecond;
+
+		private int shardDepth = 1;
+
+		private Builder(final Firebase firebase) {
+			this.firebase = checkNotNull(firebase, "firebase cannot be null");
+		}
+
+		/**
+		 * @param workers
+		 *            Number of requests made in parallel; the connection pool
+		 *            of the Firebase should allow as many per route
+		 * @return this Builder
+		 */
+		public Builder workers(final int workers) {
+			checkArgument(workers > 0, "workers must be positive; was: " + workers);
+			this.workers = workers;
+			return this;
+		}
+
+		/**
+		 * @param requestsPerSecond
+		 *            Maximum rate of requests across all workers, or 0 (the
+		 *            default) for no limit
+		 * @return this Builder
+		 */
+		public Builder requestsPerSecond(final double requestsPerSecond) {
+			checkArgument(requestsPerSecond >= 0, "requestsPerSecond cannot be negative; was: " + requestsPerSecond);
+			this.requestsPerSecond = requestsPerSecond;
+			return this;
+		}
+
+		/**
+		 * @param shardDepth
+		 *            Number of levels below the exported path at which the
+		 *            tree is split into shards; each level takes a shallow
+		 *            read per location of the level above. Deeper shards are
+		 *            smaller and more numerous
+		 * @return this Builder
+		 */
+		public Builder shardDepth(final int shardDepth) {
+			checkArgument(shardDepth >= 0, "shardDepth cannot be negative; was: " + shardDepth);
+			this.shardDepth = shardDepth;
+			return this;
+		}
+
+		public FirebaseTransfer build() {
+			return new FirebaseTransfer(this);
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package net.thegreshams.firebase4j.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+
+/**
+ * Sends the requests of a {@link Firebase} over the wire. Everything above
+ * it - retries, the circuit breaker, instrumentation, caching, compression
+ * and JSON - is the same whichever transport is used.
+ *
+ * Requests and responses are those of Apache HttpClient 4.x. A transport must
+ * be safe to call from many threads at once; it may send a request again only
+ * where HTTP allows it to be retried transparently.
+ *
+ * @see FirebaseClientConfig.Builder#http2(boolean)
+ * @see Firebase#Firebase(String, String, FirebaseTransport)
+ */
+public interface FirebaseTransport extends Closeable {
+
+	/**
+	 * @param httpRequest
+	 *            Request to send; its entity, if any, is repeatable
+	 * @return the response, whatever its status code, to be closed by the
+	 *         caller; a gzipped body is decompressed while it is read
+	 * @throws IOException
+	 *             if no response was received
+	 */
+	CloseableHttpResponse execute(HttpUriRequest httpRequest) throws IOException;
+
+	/**
+	 * Releases the connections of this transport; requests sent afterwards
+	 * fail.
+	 */
+	@Override
+	void close() throws IOException;
+}
@@ -0,0 +1,304 @@
+package net.thegreshams.firebase4j.service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleRequestProducer;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.H2AsyncClientBuilder;
+import org.apache.hc.core5.concurrent.BasicFuture;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.apache.hc.core5.http.nio.AsyncResponseConsumer;
+import org.apache.hc.core5.http.nio.CapacityChannel;
+import org.apache.hc.core5.http.nio.support.classic.ContentInputStream;
+import org.apache.hc.core5.http.nio.support.classic.SharedInputBuffer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http2.config.H2Config;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.util.Timeout;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHeaders;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * Transport multiplexing every request to a host as a stream of a single
+ * HTTP/2 connection, through the non-blocking client of Apache HttpClient 5.
+ * Plain http:// URLs are spoken to as h2c with prior knowledge, https:// ones
+ * negotiate HTTP/2 by ALPN; servers that only speak HTTP/1.1 are not
+ * supported.
+ *
+ * Request bodies are held in memory whole. Response bodies are handed over as
+ * soon as their headers arrive and read from the stream as the caller goes:
+ * the server is only granted more of the flow-control window of a stream once
+ * the caller drained what it sent, so streaming a large node keeps as little
+ * of it in memory as over HTTP/1.1. The client never retries by itself:
+ * retries are left to the {@link FirebaseRetryPolicy}.
+ */
+final class Http2Transport implements FirebaseTransport {
+
+	private static final ProtocolVersion HTTP_2 = new ProtocolVersion("HTTP", 2, 0);
+
+	/**
+	 * Initial size of the buffer of a response body, in bytes; it grows with
+	 * the window the server is granted
+	 */
+	private static final int BUFFER_SIZE = 8192;
+
+	private final CloseableHttpAsyncClient httpClient;
+
+	/**
+	 * @param config
+	 *            Configuration whose connect and socket timeouts apply; the
+	 *            pool limits do not, as there is one connection per host
+	 */
+	Http2Transport(final FirebaseClientConfig config) {
+		httpClient = H2AsyncClientBuilder.create()
+				.setH2Config(H2Config.custom().setPushEnabled(false).build())
+				.setDefaultConnectionConfig(ConnectionConfig.custom()
+						.setConnectTimeout(timeout(config.getConnectTimeout()))
+						.setSocketTimeout(timeout(config.getSocketTimeout()))
+						.build())
+				.setDefaultRequestConfig(RequestConfig.custom()
+						.setResponseTimeout(timeout(config.getSocketTimeout()))
+						.build())
+				// unlike the blocking client, this one does not ask for compressed responses by itself
+				.setDefaultHeaders(Collections.singletonList(new BasicHeader(HttpHeaders.ACCEPT_ENCODING, "gzip")))
+				.disableAutomaticRetries()
+				.disableRedirectHandling()
+				.disableCookieManagement()
+				.build();
+		httpClient.start();
+	}
+
+	@Override
+	public CloseableHttpResponse execute(final HttpUriRequest httpRequest) throws IOException {
+		StreamingResponseConsumer consumer = new StreamingResponseConsumer();
+		consumer.exchange = httpClient.execute(SimpleRequestProducer.create(toSimpleRequest(httpRequest)), consumer,
+				consumer);
+		try {
+			CloseableHttpResponse httpResponse = consumer.response.get();
+			Firebase.decompress(httpResponse);
+			return httpResponse;
+		} catch (InterruptedException e) {
+			consumer.cancel();
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting for the " + httpRequest.getMethod() + " of '"
+					+ httpRequest.getURI() + "'");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof HttpException) {
+				throw new ClientProtocolException(cause.getMessage(), cause);
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	@Override
+	public void close() {
+		httpClient.close(CloseMode.GRACEFUL);
+	}
+
+	private static SimpleHttpRequest toSimpleRequest(final HttpUriRequest httpRequest) throws IOException {
+		SimpleHttpRequest request = SimpleHttpRequest.create(httpRequest.getMethod(), httpRequest.getURI());
+		for (Header header : httpRequest.getAllHeaders()) {
+			request.addHeader(header.getName(), header.getValue());
+		}
+		if (httpRequest instanceof HttpEntityEnclosingRequest) {
+			HttpEntity entity = ((HttpEntityEnclosingRequest) httpRequest).getEntity();
+			if (entity != null) {
+				Header contentType = entity.getContentType();
+				request.setBody(EntityUtils.toByteArray(entity),
+						contentType != null ? ContentType.parse(contentType.getValue()) : null);
+				Header encoding = entity.getContentEncoding();
+				if (encoding != null) {
+					request.addHeader(HttpHeaders.CONTENT_ENCODING, encoding.getValue());
+				}
+			}
+		}
+		return request;
+	}
+
+	/**
+	 * @return the timeout of HttpClient 5 for one of HttpClient 4, where zero
+	 *         or less means none
+	 */
+	private static Timeout timeout(final int millis) {
+		return millis > 0 ? Timeout.of(millis, TimeUnit.MILLISECONDS) : Timeout.DISABLED;
+	}
+
+	/**
+	 * Consumer of the response of one exchange, completing {@link #response}
+	 * as soon as its headers arrive with an entity reading the body from a
+	 * buffer the I/O reactor fills. The buffer asks the server for more of
+	 * the body as the caller reads it, so it holds no more than the initial
+	 * window of the stream at a time. It is also the callback of the
+	 * exchange, to learn of the failures that never reach the consumer.
+	 */
+	private static final class StreamingResponseConsumer implements AsyncResponseConsumer<Void>, FutureCallback<Void> {
+
+		private final BasicFuture<CloseableHttpResponse> response = new BasicFuture<>(null);
+
+		private final SharedInputBuffer buffer = new SharedInputBuffer(BUFFER_SIZE);
+
+		private volatile Future<Void> exchange;
+
+		private volatile Exception failure;
+
+		@Override
+		public void consumeResponse(final HttpResponse head, final EntityDetails entityDetails,
+		        final HttpContext context, final FutureCallback<Void> resultCallback) {
+			StreamedResponse httpResponse = new StreamedResponse(head.getCode(), head.getReasonPhrase());
+			for (org.apache.hc.core5.http.Header header : head.getHeaders()) {
+				httpResponse.addHeader(header.getName(), header.getValue());
+			}
+			if (entityDetails != null) {
+				InputStreamEntity entity = new InputStreamEntity(new BodyInputStream(),
+						entityDetails.getContentLength());
+				entity.setContentType(entityDetails.getContentType());
+				entity.setContentEncoding(entityDetails.getContentEncoding());
+				httpResponse.setEntity(entity);
+			} else {
+				buffer.markEndStream();
+			}
+			response.completed(httpResponse);
+		}
+
+		@Override
+		public void informationResponse(final HttpResponse head, final HttpContext context) {
+		}
+
+		@Override
+		public void updateCapacity(final CapacityChannel capacityChannel) throws IOException {
+			buffer.updateCapacity(capacityChannel);
+		}
+
+		@Override
+		public void consume(final ByteBuffer src) {
+			buffer.fill(src);
+		}
+
+		@Override
+		public void streamEnd(final List<? extends org.apache.hc.core5.http.Header> trailers) {
+			buffer.markEndStream();
+		}
+
+		@Override
+		public void completed(final Void result) {
+		}
+
+		@Override
+		public void failed(final Exception cause) {
+			failure = cause;
+			response.failed(cause);
+			buffer.abort();
+		}
+
+		@Override
+		public void cancelled() {
+			response.cancel();
+			buffer.abort();
+		}
+
+		@Override
+		public void releaseResources() {
+		}
+
+		/**
+		 * Cancels the exchange unless its body was read to the end, so that
+		 * neither the server nor the buffer are left waiting on a caller that
+		 * gave up on it. Like the blocking client with a response left unread,
+		 * HttpClient then gives up the connection: it is closed once its other
+		 * streams are done, and the next request opens a new one.
+		 */
+		private void cancel() {
+			if (!buffer.isEndStream() || buffer.hasData()) {
+				buffer.abort();
+				Future<Void> exchange = this.exchange;
+				if (exchange != null) {
+					exchange.cancel(true);
+				}
+			}
+		}
+
+		/**
+		 * Body of the response, failing with the cause of the exchange if it
+		 * ends before the stream did, and cancelling the exchange if it is
+		 * closed before its end.
+		 */
+		private final class BodyInputStream extends ContentInputStream {
+
+			private BodyInputStream() {
+				super(buffer);
+			}
+
+			@Override
+			public int read() throws IOException {
+				return checkEnd(super.read());
+			}
+
+			@Override
+			public int read(final byte[] b, final int off, final int len) throws IOException {
+				return checkEnd(super.read(b, off, len));
+			}
+
+			@Override
+			public void close() {
+				cancel();
+			}
+
+			private int checkEnd(final int read) throws IOException {
+				if (read == -1 && !buffer.isEndStream()) {
+					Exception failure = StreamingResponseConsumer.this.failure;
+					throw failure instanceof IOException ? (IOException) failure
+							: new IOException("the response stream was reset", failure);
+				}
+				return read;
+			}
+		}
+
+		/**
+		 * Response whose exchange is cancelled on close if its body is left
+		 * unread.
+		 */
+		private final class StreamedResponse extends BasicHttpResponse implements CloseableHttpResponse {
+
+			private StreamedResponse(final int code, final String reasonPhrase) {
+				super(new BasicStatusLine(HTTP_2, code, reasonPhrase));
+			}
+
+			@Override
+			public void close() {
+				cancel();
+			}
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package net.thegreshams.firebase4j.service;
+
+import java.io.IOException;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.client.CloseableHttpClient;
+
+/**
+ * Transport sending every request over HTTP/1.1 through a blocking Apache
+ * HttpClient, one pooled connection per request in flight.
+ */
+final class HttpClientTransport implements FirebaseTransport {
+
+	private final CloseableHttpClient httpClient;
+
+	HttpClientTransport(final CloseableHttpClient httpClient) {
+		this.httpClient = httpClient;
+	}
+
+	@Override
+	public CloseableHttpResponse execute(final HttpUriRequest httpRequest) throws IOException {
+		return httpClient.execute(httpRequest);
+	}
+
+	/**
+	 * Does nothing: the client belongs to whoever created it, and may be
+	 * shared.
+	 */
+	@Override
+	public void close() {
+	}
+}
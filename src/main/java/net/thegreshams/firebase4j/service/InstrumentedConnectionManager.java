@@ -0,0 +1,47 @@
+package net.thegreshams.firebase4j.service;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+/**
+ * Connection pool reporting how long every lease waited to
+ * {@link FirebaseInstrumentation#connectionLeased(long)}.
+ */
+final class InstrumentedConnectionManager extends PoolingHttpClientConnectionManager {
+
+	private final FirebaseInstrumentation instrumentation;
+
+	InstrumentedConnectionManager(final long timeToLive, final FirebaseInstrumentation instrumentation) {
+		super(timeToLive, TimeUnit.MILLISECONDS);
+		this.instrumentation = instrumentation;
+	}
+
+	@Override
+	public ConnectionRequest requestConnection(final HttpRoute route, final Object state) {
+		final ConnectionRequest request = super.requestConnection(route, state);
+		return new ConnectionRequest() {
+
+			@Override
+			public HttpClientConnection get(final long timeout, final TimeUnit tunit) throws InterruptedException,
+			        ExecutionException, ConnectionPoolTimeoutException {
+				long start = System.nanoTime();
+				try {
+					return request.get(timeout, tunit);
+				} finally {
+					instrumentation.connectionLeased(System.nanoTime() - start);
+				}
+			}
+
+			@Override
+			public boolean cancel() {
+				return request.cancel();
+			}
+		};
+	}
+}
@@ -0,0 +1,97 @@
+package net.thegreshams.firebase4j.service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+
+/**
+ * Response entity counting the bytes read from it, which reports the
+ * completed request to a {@link FirebaseRequestRecorder} once its content is
+ * read to the end or closed.
+ */
+final class RecordingEntity extends HttpEntityWrapper {
+
+	private final FirebaseRequestRecorder recorder;
+
+	private final int code;
+
+	private final long requestBytes;
+
+	private long responseBytes;
+
+	private boolean recorded;
+
+	RecordingEntity(final HttpEntity entity, final FirebaseRequestRecorder recorder, final int code,
+	        final long requestBytes) {
+		super(entity);
+		this.recorder = recorder;
+		this.code = code;
+		this.requestBytes = requestBytes;
+	}
+
+	@Override
+	public InputStream getContent() throws IOException {
+		return new FilterInputStream(super.getContent()) {
+
+			@Override
+			public int read() throws IOException {
+				int read = super.read();
+				if (read < 0) {
+					record();
+				} else {
+					responseBytes++;
+				}
+				return read;
+			}
+
+			@Override
+			public int read(final byte[] b, final int off, final int len) throws IOException {
+				int read = super.read(b, off, len);
+				if (read < 0) {
+					record();
+				} else {
+					responseBytes += read;
+				}
+				return read;
+			}
+
+			@Override
+			public long skip(final long n) throws IOException {
+				long skipped = super.skip(n);
+				responseBytes += skipped;
+				return skipped;
+			}
+
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					record();
+				}
+			}
+		};
+	}
+
+	@Override
+	public void writeTo(final OutputStream outstream) throws IOException {
+		try (InputStream content = getContent()) {
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = content.read(buffer)) != -1) {
+				outstream.write(buffer, 0, read);
+			}
+		}
+	}
+
+	private void record() {
+		if (!recorded) {
+			recorded = true;
+			recorder.completed(code, requestBytes, responseBytes);
+		}
+	}
+}
@@ -0,0 +1,531 @@
+package net.thegreshams.firebase4j.service;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import net.thegreshams.firebase4j.model.FirebaseException;
+import net.thegreshams.firebase4j.model.FirebaseResponse;
+
+import org.apache.logging.log4j.util.Strings;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Client for data split across several Firebase databases, or shards, to get
+ * past the throughput limits of a single one. Every call is sent to the shard
+ * holding its path, as decided by a {@link FirebaseShardStrategy}: by default
+ * consistent hashing of the first path segment, so that e.g. everything under
+ * "users" lives on one shard and everything under "events" on another.
+ *
+ * Every shard has a base URL and secure token of its own and, unless given as
+ * a ready {@link Firebase}, an HTTP client and connection pool of its own, so
+ * a slow shard cannot take the connections of the others.
+ *
+ * Reads spanning shards are scattered to the shards concurrently and
+ * gathered: {@link #getAll(Collection)} reads many paths, each from its own
+ * shard, and {@link #getFromAll(String)} and {@link #gather(String)} read the
+ * same path from every shard, for data sharded below that path. They run on
+ * a pool of daemon threads of this ShardedFirebase, never on the executor of
+ * the {@link FirebaseClientConfig}: the per-shard tasks of getAll wait on
+ * the per-path tasks the shards submit to that executor, and would deadlock
+ * a bounded one.
+ *
+ * A path the strategy says spans shards, such as "users" where "users/{uid}"
+ * is sharded, cannot be PUT, POSTed to or DELETEd, as the write would reach
+ * only one of the shards holding its children; a PATCH to it is split by the
+ * shard of every child it writes. Build one with {@link #builder()}.
+ */
+@Getter
+@ToString(of = { "shards", "strategy" })
+@Slf4j
+public class ShardedFirebase implements Closeable {
+
+	private final Map<String, Firebase> shards;
+
+	private final FirebaseShardStrategy strategy;
+
+	@Getter(AccessLevel.NONE)
+	private final List<Firebase> ownedShards;
+
+	@Getter(AccessLevel.NONE)
+	private final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+			.setNameFormat("firebase-shard-%d")
+			.setDaemon(true)
+			.build());
+
+	private ShardedFirebase(final Builder builder) {
+		Map<String, Firebase> shards = new LinkedHashMap<>();
+		List<Firebase> ownedShards = new ArrayList<>();
+		for (Map.Entry<String, Shard> entry : builder.shards.entrySet()) {
+			Shard shard = entry.getValue();
+			Firebase firebase = shard.firebase;
+			if (firebase == null) {
+				firebase = new Firebase(shard.baseUrl, shard.secureToken, builder.config);
+				ownedShards.add(firebase);
+			}
+			shards.put(entry.getKey(), firebase);
+		}
+		this.shards = Collections.unmodifiableMap(shards);
+		this.ownedShards = ownedShards;
+		strategy = builder.strategy != null ? builder.strategy
+				: new FirebaseHashShardStrategy(shards.keySet(), 1);
+		log.debug("intialized with shards: " + shards.keySet());
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * @param path
+	 *            Path relative to the base URLs. If null/empty, refers to the
+	 *            base URLs
+	 * @return the Firebase of the shard holding the path, for calls not
+	 *         offered by this ShardedFirebase
+	 * @throws IllegalArgumentException
+	 *             if no shard holds the path
+	 */
+	public Firebase shardOf(final String path) {
+		return shards.get(shardName(path));
+	}
+
+	/**
+	 * GETs data from the provided path relative to the base URL of its shard
+	 *
+	 * @see Firebase#get(String)
+	 */
+	public FirebaseResponse get(final String path) throws IOException {
+		return shardOf(path).get(path);
+	}
+
+	/**
+	 * GETs data from the provided path relative to the base URL of its shard
+	 * and converts it to the provided type
+	 *
+	 * @see Firebase#get(String, Class)
+	 */
+	public <T> T get(final String path, final Class<T> type) throws IOException {
+		return shardOf(path).get(path, type);
+	}
+
+	/**
+	 * PATCHs the value to the provided path relative to the base URL of its
+	 * shard. If the path spans shards, the value must be a map of the
+	 * children to write, which are PATCHed to the path on their shards at
+	 * once; each shard applies its own part, so a failing shard does not undo
+	 * the others.
+	 *
+	 * @return the response of the shard, or where the children span shards,
+	 *         the first unsuccessful response or else that of the shard added
+	 *         last
+	 * @throws IllegalArgumentException
+	 *             if the path spans shards and the value is not a map, or any
+	 *             child written spans shards itself
+	 * @see Firebase#patch(String, Object)
+	 */
+	public FirebaseResponse patch(final String path, final Object value) throws IOException {
+		if (!strategy.spansShards(path) || value instanceof Map && ((Map<?, ?>) value).isEmpty()) {
+			return shardOf(path).patch(path, value);
+		}
+		checkArgument(value instanceof Map, "path '" + path + "' spans shards; only a map of children can be PATCHed");
+
+		String parent = FirebaseCache.normalize(path);
+		Map<String, Map<String, Object>> childrenByShard = new LinkedHashMap<>();
+		for (Map.Entry<?, ?> child : ((Map<?, ?>) value).entrySet()) {
+			String key = String.valueOf(child.getKey());
+			String childPath = parent.isEmpty() ? key : parent + "/" + key;
+			checkWritable(childPath);
+			String name = shardName(childPath);
+			Map<String, Object> children = childrenByShard.get(name);
+			if (children == null) {
+				children = new LinkedHashMap<>();
+				childrenByShard.put(name, children);
+			}
+			children.put(key, child.getValue());
+		}
+
+		Map<String, Callable<FirebaseResponse>> tasks = new LinkedHashMap<>();
+		for (final Map.Entry<String, Map<String, Object>> entry : childrenByShard.entrySet()) {
+			final Firebase shard = shards.get(entry.getKey());
+			tasks.put(entry.getKey(), new Callable<FirebaseResponse>() {
+
+				@Override
+				public FirebaseResponse call() throws IOException {
+					return shard.patch(path, entry.getValue());
+				}
+			});
+		}
+		FirebaseResponse last = null;
+		for (FirebaseResponse response : scatter(tasks).values()) {
+			if (!response.isSuccess()) {
+				return response;
+			}
+			last = response;
+		}
+		return last;
+	}
+
+	/**
+	 * PUTs the value to the provided path relative to the base URL of its
+	 * shard
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the path spans shards
+	 * @see Firebase#put(String, Object)
+	 */
+	public FirebaseResponse put(final String path, final Object value) throws IOException {
+		checkWritable(path);
+		return shardOf(path).put(path, value);
+	}
+
+	/**
+	 * POSTs the value to the provided path relative to the base URL of its
+	 * shard
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the path spans shards, as the shard of the generated
+	 *             child cannot be known beforehand
+	 * @see Firebase#post(String, Object)
+	 */
+	public FirebaseResponse post(final String path, final Object value) throws IOException {
+		checkWritable(path);
+		return shardOf(path).post(path, value);
+	}
+
+	/**
+	 * DELETEs data from the provided path relative to the base URL of its
+	 * shard
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the path spans shards
+	 * @see Firebase#delete(String)
+	 */
+	public FirebaseResponse delete(final String path) throws IOException {
+		checkWritable(path);
+		return shardOf(path).delete(path);
+	}
+
+	/**
+	 * GETs data from many paths at once: the paths of every shard are read
+	 * by a task of their own, in parallel with those of the other shards, and
+	 * within it as {@link Firebase#getAll(Collection)} reads them
+	 *
+	 * @param paths
+	 *            Paths relative to the base URLs; a path given more than once
+	 *            is read once
+	 * @return the {@link FirebaseResponse} of every path, in the order of the
+	 *         paths
+	 * @throws IOException
+	 *             if ClientProtocolException executing any of the requests;
+	 *             the requests still running are cancelled
+	 */
+	public Map<String, FirebaseResponse> getAll(final Collection<String> paths) throws IOException {
+		Map<String, List<String>> pathsByShard = new LinkedHashMap<>();
+		for (String path : paths) {
+			String name = shardName(path);
+			List<String> shardPaths = pathsByShard.get(name);
+			if (shardPaths == null) {
+				shardPaths = new ArrayList<>();
+				pathsByShard.put(name, shardPaths);
+			}
+			shardPaths.add(path);
+		}
+
+		Map<String, Callable<Map<String, FirebaseResponse>>> tasks = new LinkedHashMap<>();
+		for (final Map.Entry<String, List<String>> entry : pathsByShard.entrySet()) {
+			final Firebase shard = shards.get(entry.getKey());
+			tasks.put(entry.getKey(), new Callable<Map<String, FirebaseResponse>>() {
+
+				@Override
+				public Map<String, FirebaseResponse> call() throws IOException {
+					return shard.getAll(entry.getValue());
+				}
+			});
+		}
+		Map<String, FirebaseResponse> shardResponses = new HashMap<>();
+		for (Map<String, FirebaseResponse> responses : scatter(tasks).values()) {
+			shardResponses.putAll(responses);
+		}
+
+		Map<String, FirebaseResponse> responses = new LinkedHashMap<>();
+		for (String path : paths) {
+			responses.put(path, shardResponses.get(path));
+		}
+		return responses;
+	}
+
+	/**
+	 * GETs the provided path from every shard at once
+	 *
+	 * @param path
+	 *            Path relative to the base URLs. If null/empty, refers to the
+	 *            base URLs
+	 * @return the {@link FirebaseResponse} of every shard, by the name of the
+	 *         shard
+	 * @throws IOException
+	 *             if ClientProtocolException executing any of the requests;
+	 *             the requests still running are cancelled
+	 */
+	public Map<String, FirebaseResponse> getFromAll(final String path) throws IOException {
+		Map<String, Callable<FirebaseResponse>> tasks = new LinkedHashMap<>();
+		for (Map.Entry<String, Firebase> entry : shards.entrySet()) {
+			final Firebase shard = entry.getValue();
+			tasks.put(entry.getKey(), new Callable<FirebaseResponse>() {
+
+				@Override
+				public FirebaseResponse call() throws IOException {
+					return shard.get(path);
+				}
+			});
+		}
+		return scatter(tasks);
+	}
+
+	/**
+	 * GETs the provided path from every shard at once and merges the children
+	 * found on all of them, as held by a path sharded below it, e.g. "users"
+	 * where "users/{uid}" is sharded
+	 *
+	 * @param path
+	 *            Path relative to the base URLs. If null/empty, refers to the
+	 *            base URLs
+	 * @return the children of the path on every shard; where shards have a
+	 *         child of the same key, the one of the shard added last
+	 * @throws FirebaseException
+	 *             if the response of any shard is unsuccessful
+	 * @throws IOException
+	 *             if ClientProtocolException executing any of the requests or
+	 *             the data of a shard is not a JSON object; the requests still
+	 *             running are cancelled
+	 */
+	public Map<String, Object> gather(final String path) throws IOException {
+		Map<String, Callable<Map<String, Object>>> tasks = new LinkedHashMap<>();
+		for (Map.Entry<String, Firebase> entry : shards.entrySet()) {
+			final Firebase shard = entry.getValue();
+			tasks.put(entry.getKey(), new Callable<Map<String, Object>>() {
+
+				@Override
+				@SuppressWarnings("unchecked")
+				public Map<String, Object> call() throws IOException {
+					return shard.get(path, Map.class);
+				}
+			});
+		}
+		Map<String, Object> children = new LinkedHashMap<>();
+		for (Map<String, Object> shardChildren : scatter(tasks).values()) {
+			if (shardChildren != null) {
+				children.putAll(shardChildren);
+			}
+		}
+		return children;
+	}
+
+	/**
+	 * Closes the Firebases created by this ShardedFirebase, releasing the
+	 * HTTP client of every shard, and the threads of its scatter-gather
+	 * reads; Firebases given to the {@link Builder} are left open.
+	 */
+	@Override
+	public void close() throws IOException {
+		executor.shutdownNow();
+		IOException failure = null;
+		for (Firebase shard : ownedShards) {
+			try {
+				shard.close();
+			} catch (IOException e) {
+				if (failure == null) {
+					failure = e;
+				} else {
+					failure.addSuppressed(e);
+				}
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	private void checkWritable(final String path) {
+		checkArgument(!strategy.spansShards(path), "path '" + path + "' spans shards; it can only be written below");
+	}
+
+	private String shardName(final String path) {
+		String name = strategy.shardOf(path);
+		checkArgument(name != null, "no shard holds path '" + path + "'");
+		checkState(shards.containsKey(name), "strategy gave unknown shard '" + name + "' for path '" + path + "'");
+		return name;
+	}
+
+	/**
+	 * Runs the tasks in parallel, failing as soon as any of them fails; a
+	 * single task is run on the calling thread.
+	 *
+	 * @return the result of every task, by the key of the task
+	 */
+	private <T> Map<String, T> scatter(final Map<String, Callable<T>> tasks) throws IOException {
+		Map<String, T> results = new LinkedHashMap<>();
+		if (tasks.size() == 1) {
+			Map.Entry<String, Callable<T>> task = tasks.entrySet().iterator().next();
+			try {
+				results.put(task.getKey(), task.getValue().call());
+			} catch (IOException | RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new IOException(e);
+			}
+			return results;
+		}
+
+		CompletionService<T> completionService = new ExecutorCompletionService<>(executor);
+		Map<String, Future<T>> futures = new LinkedHashMap<>();
+		try {
+			for (Map.Entry<String, Callable<T>> task : tasks.entrySet()) {
+				futures.put(task.getKey(), completionService.submit(task.getValue()));
+			}
+			// in order of completion, to fail as soon as any shard fails
+			for (int i = 0; i < futures.size(); i++) {
+				completionService.take().get();
+			}
+			for (Map.Entry<String, Future<T>> future : futures.entrySet()) {
+				results.put(future.getKey(), future.getValue().get());
+			}
+			return results;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting on " + futures.size() + " shards");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException(cause);
+		} finally {
+			if (results.size() < futures.size()) {
+				for (Future<T> future : futures.values()) {
+					future.cancel(true);
+				}
+			}
+		}
+	}
+
+	/**
+	 * A shard as added to the {@link Builder}: either a base URL and token to
+	 * create a Firebase from, or a ready Firebase.
+	 */
+	private static final class Shard {
+
+		private final String baseUrl;
+
+		private final String secureToken;
+
+		private final Firebase firebase;
+
+		private Shard(final String baseUrl, final String secureToken, final Firebase firebase) {
+			this.baseUrl = baseUrl;
+			this.secureToken = secureToken;
+			this.firebase = firebase;
+		}
+	}
+
+	public static final class Builder {
+
+		private final Map<String, Shard> shards = new LinkedHashMap<>();
+
+		private FirebaseShardStrategy strategy;
+
+		private FirebaseClientConfig config = FirebaseClientConfig.DEFAULT;
+
+		private Builder() {
+		}
+
+		/**
+		 * @param name
+		 *            Name of the shard, as given by the strategy
+		 * @param baseUrl
+		 *            Base URL of the shard
+		 * @param secureToken
+		 *            Token sent as the 'auth' query parameter to the shard;
+		 *            may be null
+		 * @return this Builder
+		 */
+		public Builder shard(final String name, final String baseUrl, final String secureToken) {
+			checkArgument(Strings.isNotBlank(baseUrl), "baseUrl cannot be null or empty; was: '" + baseUrl + "'");
+			return add(name, new Shard(baseUrl, secureToken, null));
+		}
+
+		/**
+		 * @param name
+		 *            Name of the shard, as given by the strategy
+		 * @param firebase
+		 *            Firebase of the shard; it is not closed by
+		 *            {@link ShardedFirebase#close()}
+		 * @return this Builder
+		 */
+		public Builder shard(final String name, final Firebase firebase) {
+			return add(name, new Shard(null, null, checkNotNull(firebase, "firebase cannot be null")));
+		}
+
+		/**
+		 * @param strategy
+		 *            Strategy deciding the shard of every path; by default a
+		 *            {@link FirebaseHashShardStrategy} of the first path
+		 *            segment over all shards
+		 * @return this Builder
+		 */
+		public Builder strategy(final FirebaseShardStrategy strategy) {
+			this.strategy = checkNotNull(strategy, "strategy cannot be null");
+			return this;
+		}
+
+		/**
+		 * @param config
+		 *            Configuration of the HTTP client created for every shard
+		 *            added by base URL, each with a connection pool of its own
+		 *            sized by it; its executor runs the per-path reads of
+		 *            {@link ShardedFirebase#getAll(Collection)} within a shard
+		 * @return this Builder
+		 */
+		public Builder config(final FirebaseClientConfig config) {
+			this.config = checkNotNull(config, "config cannot be null");
+			return this;
+		}
+
+		public ShardedFirebase build() {
+			checkState(!shards.isEmpty(), "at least one shard must be added");
+			return new ShardedFirebase(this);
+		}
+
+		private Builder add(final String name, final Shard shard) {
+			checkArgument(Strings.isNotBlank(name), "name cannot be null or empty; was: '" + name + "'");
+			checkArgument(!shards.containsKey(name), "shard '" + name + "' was already added");
+			shards.put(name, shard);
+			return this;
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package net.thegreshams.firebase4j.model;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+import com.google.common.base.Strings;
+
+public class FirebaseExceptionTest {
+
+	private static final String URL = "https://db.firebaseio.com/users.json?auth=s3cr3t&shallow=true";
+
+	@Test
+	public void message_shouldLeaveOutTheQueryOfTheUrl() {
+		FirebaseException exception = new FirebaseException(new FirebaseResponse(false, 401,
+				"{\"error\":\"Permission denied\"}", URL));
+
+		assertThat(exception.getMessage(), is("unsuccessful response from 'https://db.firebaseio.com/users.json': "
+				+ "401 {\"error\":\"Permission denied\"}"));
+		assertThat(exception.getResponse().getUrl(), is(URL));
+	}
+
+	@Test
+	public void message_shouldAbbreviateALargeBody() {
+		String body = Strings.repeat("x", FirebaseException.MAX_MESSAGE_BODY + 1000);
+		FirebaseException exception = new FirebaseException(new FirebaseResponse(false, 500, body, URL));
+
+		assertThat(exception.getMessage(), containsString(Strings.repeat("x", FirebaseException.MAX_MESSAGE_BODY)
+				+ "... (1000 more characters)"));
+		assertThat(exception.getResponse().getRawBody(), is(body));
+	}
+
+	@Test
+	public void circuitOpenMessage_shouldLeaveOutTheQueryOfTheUrl() {
+		String message = new FirebaseCircuitOpenException(URL).getMessage();
+
+		assertThat(message, containsString("https://db.firebaseio.com/users.json'"));
+		assertThat(message, not(containsString("s3cr3t")));
+	}
+}
@@ -0,0 +1,115 @@
+package net.thegreshams.firebase4j.model;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class FirebaseNodeTest {
+
+	private static final String JSON = "{\"users\":{\"sam\":{\"age\":36,\"active\":false},"
+			+ "\"joe\":{\"age\":24,\"tags\":[\"a\",\"b\"],\"score\":9.5,\"active\":true}},\"count\":2,"
+			+ "\"owner\":null}";
+
+	@Test
+	public void at_shouldNavigateToNestedValues() throws Exception {
+		FirebaseNode tree = FirebaseNode.parse(JSON);
+
+		assertThat(tree.at("users/joe/age").asLong(), is(24L));
+		assertThat(tree.at("/users/joe/score/").asDouble(), is(9.5));
+		assertThat(tree.at("users/joe/active").asBoolean(), is(true));
+		assertThat(tree.at("users/sam/active").asBoolean(true), is(false));
+		assertThat(tree.at("users/joe/tags/1").asText(), is("b"));
+		assertThat(tree.at("users/joe/tags").get(0).asText(), is("a"));
+		assertThat(tree.get("count").getType(), is(FirebaseNode.Type.LONG));
+		assertThat(tree.get("owner").isNull(), is(true));
+		assertThat(tree.has("owner"), is(true));
+		assertThat(tree.at(""), is(sameInstance(tree)));
+	}
+
+	@Test
+	public void at_shouldReturnMissing_ifNothingAtPath() throws Exception {
+		FirebaseNode tree = FirebaseNode.parse(JSON);
+
+		assertThat(tree.at("users/annie/age").isMissing(), is(true));
+		assertThat(tree.at("users/annie/age").asLong(-1), is(-1L));
+		assertThat(tree.at("count/age").isMissing(), is(true));
+		assertThat(tree.at("users/joe/tags/2").isMissing(), is(true));
+		assertThat(tree.at("users/joe/tags/x").isMissing(), is(true));
+		assertThat(tree.at("users/joe/age/x").asText(), is(nullValue()));
+		assertThat(tree.has("annie"), is(false));
+	}
+
+	@Test
+	public void keys_shouldBeSorted_withLastValueOfRepeatedKey() throws Exception {
+		FirebaseNode tree = FirebaseNode.parse("{\"b\":1,\"c\":{},\"a\":2,\"b\":3}");
+
+		assertThat(tree.keys(), contains("a", "b", "c"));
+		assertThat(tree.size(), is(3));
+		assertThat(tree.get("b").asLong(), is(3L));
+		assertThat(tree.get("c").isObject(), is(true));
+		assertThat(tree.get("c").size(), is(0));
+	}
+
+	@Test
+	public void keys_shouldBeShared_betweenObjectsOfSameShape() throws Exception {
+		FirebaseNode tree = FirebaseNode.parse("{\"r1\":{\"name\":\"x\",\"score\":1},"
+				+ "\"r2\":{\"score\":2,\"name\":\"y\"}}");
+
+		assertThat(tree.get("r2").keys().get(0), is(sameInstance(tree.get("r1").keys().get(0))));
+		assertThat(tree.at("r2/name").asText(), is("y"));
+	}
+
+	@Test
+	public void asValue_shouldConvertBetweenTypes() throws Exception {
+		FirebaseNode tree = FirebaseNode.parse("{\"text\":\"42\",\"decimal\":\"2.5\",\"word\":\"abc\","
+				+ "\"big\":123456789012345678901234567890,\"flag\":\"TRUE\",\"long\":7}");
+
+		assertThat(tree.get("text").asLong(), is(42L));
+		assertThat(tree.get("decimal").asLong(), is(2L));
+		assertThat(tree.get("word").asLong(5), is(5L));
+		assertThat(tree.get("word").asDouble(), is(0.0));
+		assertThat(tree.get("big").getType(), is(FirebaseNode.Type.DOUBLE));
+		assertThat(tree.get("big").asDouble(), is(1.2345678901234568E29));
+		assertThat(tree.get("flag").asBoolean(), is(true));
+		assertThat(tree.get("long").asText(), is("7"));
+		assertThat(tree.asText("none"), is("none"));
+	}
+
+	@Test
+	public void parse_shouldReadScalarRoots_andBlankAsMissing() throws Exception {
+		assertThat(FirebaseNode.parse("5").asLong(), is(5L));
+		assertThat(FirebaseNode.parse("\"joe\"").asText(), is("joe"));
+		assertThat(FirebaseNode.parse("null").isNull(), is(true));
+		assertThat(FirebaseNode.parse("[]").isArray(), is(true));
+		assertThat(FirebaseNode.parse(" ").isMissing(), is(true));
+		assertThat(FirebaseNode.parse((String) null).isMissing(), is(true));
+		assertThat(FirebaseNode.parse("{\"a\":1}".getBytes(StandardCharsets.UTF_8)).get("a").asLong(), is(1L));
+	}
+
+	@Test(expected = IOException.class)
+	public void parse_shouldThrow_ifJsonInvalid() throws Exception {
+		FirebaseNode.parse("<html>");
+	}
+
+	@Test(expected = IOException.class)
+	public void parse_shouldThrow_ifJsonTruncated() throws Exception {
+		FirebaseNode.parse("{\"a\":[1,2");
+	}
+
+	@Test
+	public void toString_shouldWriteJson_withKeysSorted() throws Exception {
+		FirebaseNode tree = FirebaseNode.parse(JSON);
+
+		assertThat(tree.toString(), is("{\"count\":2,\"owner\":null,\"users\":{\"joe\":{\"active\":true,\"age\":24,"
+				+ "\"score\":9.5,\"tags\":[\"a\",\"b\"]},\"sam\":{\"active\":false,\"age\":36}}}"));
+		assertThat(FirebaseNode.parse(tree.toString()).toString(), is(tree.toString()));
+		assertThat(FirebaseNode.MISSING.toString(), is(""));
+	}
+}
@@ -0,0 +1,85 @@
+package net.thegreshams.firebase4j.model;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class FirebaseResponseTest {
+
+	private static final String RAW_BODY = "{\"users\":{\"joe\":{\"age\":24,\"tags\":[\"a\",\"b\"]},"
+			+ "\"sam\":{\"age\":36}},\"count\":2}";
+
+	@Test
+	public void getBody_shouldBeMemoized() throws Exception {
+		FirebaseResponse response = new FirebaseResponse(true, 200, RAW_BODY, "http://localhost/.json?");
+
+		Map<String, Object> body = response.getBody();
+
+		assertThat(body.get("count"), is((Object) 2));
+		assertThat(response.getBody(), is(sameInstance(body)));
+	}
+
+	@Test
+	public void getTree_shouldBeMemoized() throws Exception {
+		FirebaseResponse response = new FirebaseResponse(true, 200, RAW_BODY, "http://localhost/.json?");
+
+		FirebaseNode tree = response.getTree();
+
+		assertThat(tree.at("users/joe/tags/0").asText(), is("a"));
+		assertThat(response.getTree(), is(sameInstance(tree)));
+	}
+
+	@Test
+	public void getTree_shouldBeMissing_ifBodyEmptyOrInvalid() throws Exception {
+		assertThat(new FirebaseResponse(true, 204, null, "http://localhost/.json?").getTree().isMissing(), is(true));
+		assertThat(new FirebaseResponse(false, 500, "<html>", "http://localhost/.json?").getTree().isMissing(),
+				is(true));
+	}
+
+	@Test
+	public void toString_shouldNotParseBodyOrTree() throws Exception {
+		FirebaseResponse response = new FirebaseResponse(true, 200, RAW_BODY, "http://localhost/.json?");
+
+		assertThat(response.toString(), containsString("rawBody=" + RAW_BODY));
+		assertThat(response.toString(), not(containsString("body=")));
+		assertThat(response.toString(), not(containsString("tree=")));
+	}
+
+	@Test
+	public void getValue_shouldReadNestedValue() throws Exception {
+		FirebaseResponse response = new FirebaseResponse(true, 200, RAW_BODY, "http://localhost/.json?");
+
+		assertThat(response.getValue("users/sam/age", Integer.class), is(36));
+		assertThat(response.getValue("/count", Long.class), is(2L));
+	}
+
+	@Test
+	public void getValue_shouldReturnNull_ifNothingAtPath() throws Exception {
+		FirebaseResponse response = new FirebaseResponse(true, 200, RAW_BODY, "http://localhost/.json?");
+
+		assertThat(response.getValue("users/annie/age", Integer.class), is(nullValue()));
+		assertThat(response.getValue("count/age", Integer.class), is(nullValue()));
+	}
+
+	@Test
+	public void getValue_shouldReturnNull_ifBodyEmpty() throws Exception {
+		FirebaseResponse response = new FirebaseResponse(true, 204, null, "http://localhost/.json?");
+
+		assertThat(response.getValue(null, Map.class), is(nullValue()));
+	}
+
+	@Test(expected = IOException.class)
+	public void getValue_shouldThrow_ifBodyInvalid() throws Exception {
+		FirebaseResponse response = new FirebaseResponse(false, 500, "<html>", "http://localhost/.json?");
+
+		response.getValue("users", Map.class);
+	}
+}
@@ -0,0 +1,123 @@
+package net.thegreshams.firebase4j.service;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.thegreshams.firebase4j.model.FirebaseResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+public class AsyncFirebaseTest {
+
+	private static final int MAX_IN_FLIGHT = 8;
+
+	private final AtomicInteger concurrent = new AtomicInteger();
+
+	private final AtomicInteger maxConcurrent = new AtomicInteger();
+
+	private StubFirebaseServer server;
+
+	private AsyncFirebase asyncFirebase;
+
+	@Before
+	public void setup() throws Exception {
+		final HttpHandler echo = StubFirebaseServer.echo();
+		server = new StubFirebaseServer(new HttpHandler() {
+
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException {
+				maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+				try {
+					Thread.sleep(5);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					// before responding: the client frees its slot as soon as the response arrives
+					concurrent.decrementAndGet();
+				}
+				echo.handle(exchange);
+			}
+		});
+		asyncFirebase = new AsyncFirebase(new Firebase(server.getBaseUrl()), FirebaseClientConfig.builder()
+				.maxInFlight(MAX_IN_FLIGHT)
+				.build());
+	}
+
+	@After
+	public void teardown() throws Exception {
+		asyncFirebase.close();
+		server.close();
+	}
+
+	@Test
+	public void execute_shouldCompleteAllRequests_withBoundedConcurrency() throws Exception {
+		List<CompletableFuture<FirebaseResponse>> futures = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			futures.add(asyncFirebase.put(asyncFirebase.request().addData("i", i).withPath("items/" + i)));
+		}
+
+		for (int i = 0; i < futures.size(); i++) {
+			FirebaseResponse response = futures.get(i).get(10, TimeUnit.SECONDS);
+			assertThat(response.isSuccess(), is(true));
+			assertThat((String) response.getBody().get("path"), is("/items/" + i + ".json"));
+		}
+		assertThat(maxConcurrent.get(), is(lessThanOrEqualTo(MAX_IN_FLIGHT)));
+	}
+
+	@Test
+	public void execute_shouldWaitForASlot_withoutLimit_ifInFlightTimeoutIsNegative() throws Exception {
+		try (AsyncFirebase unlimited = new AsyncFirebase(new Firebase(server.getBaseUrl()),
+				FirebaseClientConfig.builder().maxInFlight(1).inFlightTimeout(-1).build())) {
+			List<CompletableFuture<FirebaseResponse>> futures = new ArrayList<>();
+			for (int i = 0; i < 5; i++) {
+				futures.add(unlimited.get("items/" + i));
+			}
+
+			for (CompletableFuture<FirebaseResponse> future : futures) {
+				assertThat(future.get(10, TimeUnit.SECONDS).isSuccess(), is(true));
+			}
+		}
+	}
+
+	@Test
+	public void execute_shouldFail_ifNoSlotFreesUpWithinInFlightTimeout() throws Exception {
+		try (AsyncFirebase impatient = new AsyncFirebase(new Firebase(server.getBaseUrl()),
+				FirebaseClientConfig.builder().maxInFlight(1).inFlightTimeout(0).build())) {
+			CompletableFuture<FirebaseResponse> first = impatient.get("items/1");
+			CompletableFuture<FirebaseResponse> second = impatient.get("items/2");
+
+			assertThat(first.get(10, TimeUnit.SECONDS).isSuccess(), is(true));
+			try {
+				second.get(10, TimeUnit.SECONDS);
+				fail("expected a RejectedExecutionException");
+			} catch (ExecutionException expected) {
+				assertThat(expected.getCause(), is(instanceOf(RejectedExecutionException.class)));
+			}
+		}
+	}
+
+	@Test
+	public void delete_shouldSucceed_onNoContent() throws Exception {
+		FirebaseResponse response = asyncFirebase.delete("items/1").get(10, TimeUnit.SECONDS);
+
+		assertThat(response.isSuccess(), is(true));
+		assertThat(response.getCode(), is(204));
+	}
+}
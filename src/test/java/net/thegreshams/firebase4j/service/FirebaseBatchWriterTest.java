@@ -0,0 +1,157 @@
+package net.thegreshams.firebase4j.service;
+
+import static net.thegreshams.firebase4j.service.Firebase.OBJECT_MAPPER;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import lombok.Data;
+import net.thegreshams.firebase4j.model.FirebaseResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+public class FirebaseBatchWriterTest {
+
+	private final BlockingQueue<String> requests = new LinkedBlockingQueue<>();
+
+	private StubFirebaseServer server;
+
+	private Firebase firebase;
+
+	@Before
+	public void setup() throws Exception {
+		server = new StubFirebaseServer(new HttpHandler() {
+
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException {
+				String body = StubFirebaseServer.readBody(exchange);
+				requests.add(exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath() + " " + body);
+				StubFirebaseServer.respond(exchange, 200, body);
+			}
+		});
+		firebase = new Firebase(server.getBaseUrl());
+	}
+
+	@After
+	public void teardown() throws IOException {
+		firebase.close();
+		server.close();
+	}
+
+	@Test
+	public void writes_shouldBeSentAsOnePatchOnCommonAncestor() throws Exception {
+		FirebaseBatchWriter writer = new FirebaseBatchWriter(firebase, 50, 1000);
+
+		CompletableFuture<FirebaseResponse> first = writer.put("users/1/name", "joe");
+		CompletableFuture<FirebaseResponse> second = writer.put("/users/2/name/", "sam");
+		CompletableFuture<FirebaseResponse> third = writer.patch("users/3", Collections.singletonMap("age", 3));
+		CompletableFuture<FirebaseResponse> fourth = writer.delete("users/4");
+
+		FirebaseResponse response = first.get(5, TimeUnit.SECONDS);
+		assertThat(response.isSuccess(), is(true));
+		assertThat(second.get(), is(sameInstance(response)));
+		assertThat(third.get(), is(sameInstance(response)));
+		assertThat(fourth.get(), is(sameInstance(response)));
+		assertThat(requests.poll(), is("PATCH /users.json "
+				+ "{\"1/name\":\"joe\",\"2/name\":\"sam\",\"3/age\":3,\"4\":null}"));
+		assertThat(requests.isEmpty(), is(true));
+		writer.close();
+	}
+
+	@Test
+	public void writes_shouldCoalesceLikeIndividualWrites() throws Exception {
+		FirebaseBatchWriter writer = new FirebaseBatchWriter(firebase, 60000, 1000);
+
+		writer.put("a/b", 1);
+		writer.put("a/b", 2);
+		writer.put("c/d/e", 1);
+		writer.put("c", Collections.singletonMap("x", 1));
+		writer.put("c/y", 2);
+		writer.patch("f", new Point(1, 2));
+		writer.put("f/y", null);
+		writer.flush();
+
+		assertThat(requests.poll(), is("PATCH /.json {\"a/b\":2,\"c\":{\"x\":1,\"y\":2},\"f/x\":1,\"f/y\":null}"));
+	}
+
+	@Test
+	public void writes_shouldBeSentOnWritingThread_whenBatchIsFull() throws Exception {
+		FirebaseBatchWriter writer = new FirebaseBatchWriter(firebase, 60000, 2);
+
+		CompletableFuture<FirebaseResponse> first = writer.put("a/1", 1);
+		assertThat(first.isDone(), is(false));
+		CompletableFuture<FirebaseResponse> second = writer.put("a/2", 2);
+
+		assertThat(first.isDone(), is(true));
+		assertThat(second.isDone(), is(true));
+		assertThat(requests.poll(), is("PATCH /a.json {\"1\":1,\"2\":2}"));
+	}
+
+	@Test
+	public void writeToRoot_shouldAbsorbOtherWrites() throws Exception {
+		FirebaseBatchWriter writer = new FirebaseBatchWriter(firebase, 60000, 1000);
+
+		writer.put("a", 1);
+		writer.put(null, Collections.singletonMap("b", 2));
+		writer.put("c", 3);
+		writer.close();
+
+		assertThat(requests.poll(), is("PUT /.json {\"b\":2,\"c\":3}"));
+	}
+
+	@Test
+	public void manyWrites_shouldNeedFewRequests() throws Exception {
+		FirebaseBatchWriter writer = new FirebaseBatchWriter(firebase, 60000, 500);
+
+		List<CompletableFuture<FirebaseResponse>> futures = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			futures.add(writer.put("counters/" + (i % 1000), i));
+		}
+		writer.close();
+
+		for (CompletableFuture<FirebaseResponse> future : futures) {
+			assertThat(future.get(5, TimeUnit.SECONDS).isSuccess(), is(true));
+		}
+		assertThat(requests.size(), is(4));
+		Map<Object, Object> last = new LinkedHashMap<>();
+		for (String request : requests) {
+			Map<?, ?> patch = OBJECT_MAPPER.readValue(request.substring(request.indexOf('{')), Map.class);
+			last.putAll(patch);
+		}
+		assertThat(last.get("999"), is((Object) 1999));
+	}
+
+	@Test
+	public void commonAncestor_shouldBeStrictAncestorOfEveryPath() {
+		assertThat(FirebaseBatchWriter.commonAncestor(Arrays.asList("a/b/c", "a/b/d")), contains("a", "b"));
+		assertThat(FirebaseBatchWriter.commonAncestor(Arrays.asList("a/b", "a/b/c")), contains("a"));
+		assertThat(FirebaseBatchWriter.commonAncestor(Arrays.asList("a/b/c")), contains("a", "b"));
+		assertThat(FirebaseBatchWriter.commonAncestor(Arrays.asList("a", "b")).isEmpty(), is(true));
+	}
+
+	@Data
+	public static class Point {
+
+		private final int x;
+
+		private final int y;
+	}
+}
@@ -0,0 +1,103 @@
+package net.thegreshams.firebase4j.service;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Map;
+
+import lombok.Data;
+import net.thegreshams.firebase4j.model.FirebaseException;
+import net.thegreshams.firebase4j.model.FirebaseResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+public class FirebaseBindingTest {
+
+	private StubFirebaseServer server;
+
+	private Firebase firebase;
+
+	@Before
+	public void setup() throws Exception {
+		final HttpHandler echo = StubFirebaseServer.echo();
+		server = new StubFirebaseServer(new HttpHandler() {
+
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException {
+				if (exchange.getRequestURI().getPath().startsWith("/forbidden")) {
+					StubFirebaseServer.respond(exchange, 401, "{\"error\":\"Permission denied\"}");
+				} else {
+					echo.handle(exchange);
+				}
+			}
+		});
+		firebase = new Firebase(server.getBaseUrl());
+	}
+
+	@After
+	public void teardown() {
+		server.close();
+	}
+
+	@Test
+	public void get_shouldBindResponseToType() throws Exception {
+		Echo echo = firebase.addQuery("print", "silent").get("users/joe", Echo.class);
+
+		assertThat(echo.getMethod(), is("GET"));
+		assertThat(echo.getPath(), is("/users/joe.json"));
+		assertThat(echo.getQuery(), is("print=silent"));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void put_shouldWriteValueAsBody() throws Exception {
+		User user = new User();
+		user.setName("Joe");
+		user.setAge(24);
+
+		FirebaseResponse response = firebase.put("users/joe", user);
+
+		Map<String, Object> body = (Map<String, Object>) response.getBody().get("body");
+		assertThat(response.isSuccess(), is(true));
+		assertThat((String) body.get("name"), is("Joe"));
+		assertThat((Integer) body.get("age"), is(24));
+	}
+
+	@Test
+	public void get_shouldThrowFirebaseException_ifUnsuccessful() throws Exception {
+		try {
+			firebase.get("forbidden", User.class);
+			fail("expected FirebaseException");
+		} catch (FirebaseException e) {
+			assertThat(e.getResponse().getCode(), is(401));
+			assertThat(e.getResponse().getValue("error", String.class), is("Permission denied"));
+		}
+	}
+
+	@Data
+	public static class User {
+
+		private String name;
+
+		private int age;
+	}
+
+	@Data
+	public static class Echo {
+
+		private String method;
+
+		private String path;
+
+		private String query;
+
+		private Object body;
+	}
+}
@@ -0,0 +1,225 @@
+package net.thegreshams.firebase4j.service;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.thegreshams.firebase4j.model.FirebaseException;
+import net.thegreshams.firebase4j.model.FirebaseResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+public class FirebaseCacheTest {
+
+	private final AtomicInteger gets = new AtomicInteger();
+
+	private StubFirebaseServer server;
+
+	private Firebase firebase;
+
+	@Before
+	public void setup() throws Exception {
+		server = new StubFirebaseServer(new HttpHandler() {
+
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException {
+				StubFirebaseServer.readBody(exchange);
+				if (exchange.getRequestURI().getPath().startsWith("/fail")) {
+					StubFirebaseServer.respond(exchange, 401, "{\"error\":\"denied\"}");
+				} else if ("GET".equals(exchange.getRequestMethod())) {
+					StubFirebaseServer.respond(exchange, 200, "{\"get\":" + gets.incrementAndGet() + "}");
+				} else {
+					StubFirebaseServer.respond(exchange, 200, "{}");
+				}
+			}
+		});
+		firebase = new Firebase(server.getBaseUrl(), null, FirebaseClientConfig.builder()
+				.cacheMaximumSize(100)
+				.build());
+	}
+
+	@After
+	public void teardown() throws Exception {
+		firebase.close();
+		server.close();
+	}
+
+	@Test
+	public void get_shouldBeServedFromCache_afterFirstLoad() throws Exception {
+		FirebaseResponse first = firebase.get("users/joe");
+		FirebaseResponse second = firebase.get("/users/joe");
+
+		assertThat(second, is(sameInstance(first)));
+		assertThat(gets.get(), is(1));
+		assertThat(firebase.getCache().stats().hitCount(), is(1L));
+		assertThat(firebase.getCache().stats().missCount(), is(1L));
+	}
+
+	@Test
+	public void typedGet_shouldBeServedFromCache() throws Exception {
+		firebase.get("users/joe");
+
+		Map<?, ?> first = firebase.get("users/joe", Map.class);
+		Map<?, ?> second = firebase.get("users/joe", Map.class);
+
+		assertThat(first.get("get"), is((Object) 1));
+		assertThat(second.get("get"), is((Object) 1));
+		assertThat(gets.get(), is(1));
+	}
+
+	@Test(expected = FirebaseException.class)
+	public void typedGet_shouldThrow_ifCachedReadIsUnsuccessful() throws Exception {
+		firebase.get("fail", Map.class);
+	}
+
+	@Test
+	public void get_shouldCacheEachQuerySeparately() throws Exception {
+		firebase.get("users");
+		firebase.addQuery("shallow", "true").get("users");
+		firebase.addQuery("shallow", "true").get("users");
+
+		assertThat(gets.get(), is(2));
+	}
+
+	@Test
+	public void write_shouldInvalidatePathAncestorsAndDescendants_butNotSiblings() throws Exception {
+		firebase.get("users");
+		firebase.get("users/joe");
+		firebase.get("users/joe/age");
+		firebase.get("users/joel");
+		FirebaseResponse sibling = firebase.get("users/sam");
+
+		firebase.addData("age", 25).patch("users/joe");
+
+		assertThat(firebase.getCache().size(), is(2L));
+		assertThat(firebase.get("users/sam"), is(sameInstance(sibling)));
+		assertThat(firebase.get("users/joel").getBody().get("get"), is((Object) 4));
+		assertThat(firebase.get("users/joe"), is(not(sameInstance(sibling))));
+		assertThat(gets.get(), is(6));
+	}
+
+	@Test
+	public void write_shouldNotInvalidatePathsThatOnlySharePrefix() throws Exception {
+		firebase.get("");
+		FirebaseResponse settings = firebase.get("usersettings/joe");
+		firebase.get("users/joe/age");
+
+		firebase.addData("age", 25).patch("users");
+
+		assertThat(firebase.getCache().size(), is(1L));
+		assertThat(firebase.get("usersettings/joe"), is(sameInstance(settings)));
+	}
+
+	@Test
+	public void load_shouldBeCached_ifOnlyUnrelatedPathsWereWrittenWhileInFlight() {
+		FirebaseCache cache = new FirebaseCache(100, 0);
+		String[] related = { "users/joe", "", "users", "users/joe/age" };
+		for (String written : related) {
+			FirebaseCache.Load load = cache.beginLoad("users/joe");
+			cache.invalidate(written);
+			cache.put(load, "users/joe.json", response());
+			cache.endLoad(load);
+			assertThat(written, cache.size(), is(0L));
+		}
+
+		FirebaseCache.Load load = cache.beginLoad("/users/joe/");
+		cache.invalidate("users/joel");
+		cache.invalidate("rooms/1");
+		cache.invalidate("users/sam/joe");
+		cache.put(load, "users/joe.json", response());
+		cache.endLoad(load);
+
+		assertThat(cache.size(), is(1L));
+	}
+
+	@Test
+	public void invalidate_shouldForgetEvictedEntries() {
+		FirebaseCache cache = new FirebaseCache(1, 0);
+		for (String path : new String[] { "users/joe", "users/sam", "users/joe" }) {
+			FirebaseCache.Load load = cache.beginLoad(path);
+			cache.put(load, path + ".json", response());
+			cache.endLoad(load);
+		}
+
+		cache.invalidate("users/sam");
+		assertThat(cache.get("users/joe.json"), is(notNullValue()));
+		cache.invalidate("users");
+		assertThat(cache.size(), is(0L));
+	}
+
+	@Test
+	public void getIfChanged_shouldBypassCache_withoutInvalidatingIt() throws Exception {
+		FirebaseResponse cached = firebase.get("users/joe");
+		firebase.get("users");
+
+		firebase.getIfChanged("users/joe", null);
+		firebase.getWithEtag("users/joe/age");
+
+		assertThat(gets.get(), is(4));
+		assertThat(firebase.getCache().size(), is(2L));
+		assertThat(firebase.get("users/joe"), is(sameInstance(cached)));
+		assertThat(gets.get(), is(4));
+	}
+
+	@Test
+	public void typedWrite_shouldInvalidatePath() throws Exception {
+		firebase.get("users/joe");
+
+		firebase.put("users/joe", "Joe");
+		firebase.get("users/joe");
+
+		assertThat(gets.get(), is(2));
+	}
+
+	@Test
+	public void get_shouldNotCacheUnsuccessfulResponses() throws Exception {
+		server.close();
+		server = new StubFirebaseServer(new HttpHandler() {
+
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException {
+				gets.incrementAndGet();
+				StubFirebaseServer.respond(exchange, 401, "{\"error\":\"Permission denied\"}");
+			}
+		});
+		Firebase unauthorized = new Firebase(server.getBaseUrl(), null, FirebaseClientConfig.builder()
+				.cacheMaximumSize(100)
+				.build());
+
+		unauthorized.get("users");
+		unauthorized.get("users");
+		unauthorized.close();
+
+		assertThat(gets.get(), is(2));
+	}
+
+	@Test
+	public void get_shouldExpireEntries_afterTimeToLive() throws Exception {
+		Firebase shortLived = new Firebase(server.getBaseUrl(), null, FirebaseClientConfig.builder()
+				.cacheMaximumSize(100)
+				.cacheTimeToLive(20)
+				.build());
+
+		shortLived.get("users");
+		Thread.sleep(50);
+		shortLived.get("users");
+		shortLived.close();
+
+		assertThat(gets.get(), is(2));
+	}
+
+	private static FirebaseResponse response() {
+		return new FirebaseResponse(true, 200, "{}", "url");
+	}
+}
@@ -0,0 +1,61 @@
+package net.thegreshams.firebase4j.service;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.junit.Test;
+
+public class FirebaseClientConfigTest {
+
+	@Test
+	public void createConnectionManager_shouldApplyPoolLimits() throws Exception {
+		FirebaseClientConfig config = FirebaseClientConfig.builder()
+				.maxTotal(64)
+				.maxPerRoute(32)
+				.build();
+
+		PoolingHttpClientConnectionManager manager = config.createConnectionManager();
+
+		assertThat(manager.getMaxTotal(), is(64));
+		assertThat(manager.getDefaultMaxPerRoute(), is(32));
+		manager.close();
+	}
+
+	@Test
+	public void createConnectionManager_shouldUseSuppliedManager_ifSet() throws Exception {
+		PoolingHttpClientConnectionManager supplied = new PoolingHttpClientConnectionManager();
+		FirebaseClientConfig config = FirebaseClientConfig.builder()
+				.connectionManager(supplied)
+				.build();
+
+		assertThat(config.createConnectionManager(), is(sameInstance(supplied)));
+		supplied.close();
+	}
+
+	@Test
+	public void suppliedManager_shouldOutliveTheFirebasesUsingIt() throws Exception {
+		PoolingHttpClientConnectionManager supplied = new PoolingHttpClientConnectionManager();
+		FirebaseClientConfig config = FirebaseClientConfig.builder()
+				.connectionManager(supplied)
+				.build();
+		try (StubFirebaseServer server = new StubFirebaseServer(StubFirebaseServer.echo())) {
+			Firebase first = new Firebase(server.getBaseUrl(), null, config);
+			try (Firebase second = new Firebase(server.getBaseUrl(), null, config)) {
+				assertThat(first.get("a").isSuccess(), is(true));
+				first.close();
+
+				assertThat(second.get("a").isSuccess(), is(true));
+			}
+			assertThat(supplied.getTotalStats().getAvailable(), is(1));
+		} finally {
+			supplied.close();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void maxPerRoute_shouldRejectNonPositiveLimit() throws Exception {
+		FirebaseClientConfig.builder().maxPerRoute(0);
+	}
+}
@@ -0,0 +1,151 @@
+package net.thegreshams.firebase4j.service;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import lombok.Data;
+import net.thegreshams.firebase4j.model.FirebaseResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Strings;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+public class FirebaseCompressionTest {
+
+	private static final String LARGE_VALUE = Strings.repeat("firebase", 1000);
+
+	private final BlockingQueue<Received> received = new LinkedBlockingQueue<>();
+
+	private StubFirebaseServer server;
+
+	@Before
+	public void setup() throws Exception {
+		server = new StubFirebaseServer(new HttpHandler() {
+
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException {
+				String requestEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+				byte[] wire = read(exchange.getRequestBody());
+				byte[] body = "gzip".equals(requestEncoding) ? read(new GZIPInputStream(
+						new ByteArrayInputStream(wire))) : wire;
+				received.add(new Received(requestEncoding, wire.length, new String(body, StandardCharsets.UTF_8)));
+
+				byte[] response = ("{\"value\":\"" + LARGE_VALUE + "\"}").getBytes(StandardCharsets.UTF_8);
+				String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+				exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+				if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+					exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+					ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+					try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+						gzip.write(response);
+					}
+					response = compressed.toByteArray();
+				}
+				exchange.sendResponseHeaders(200, response.length);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(response);
+				}
+			}
+		});
+	}
+
+	@After
+	public void teardown() {
+		server.close();
+	}
+
+	@Test
+	public void requestBodies_shouldBeGzipped_fromThreshold() throws Exception {
+		try (Firebase firebase = firebase(1024)) {
+			assertThat(firebase.put("a", Collections.singletonMap("value", LARGE_VALUE)).isSuccess(), is(true));
+			Received large = received.poll(5, TimeUnit.SECONDS);
+			assertThat(large.getEncoding(), is("gzip"));
+			assertThat(large.getWireBytes(), is(lessThan(200)));
+			assertThat(large.getBody(), is("{\"value\":\"" + LARGE_VALUE + "\"}"));
+
+			firebase.put("a", Collections.singletonMap("value", "small"));
+			Received small = received.poll(5, TimeUnit.SECONDS);
+			assertThat(small.getEncoding(), is(nullValue()));
+			assertThat(small.getBody(), is("{\"value\":\"small\"}"));
+		}
+	}
+
+	@Test
+	public void requestBodies_shouldNotBeGzipped_byDefault() throws Exception {
+		try (Firebase firebase = new Firebase(server.getBaseUrl(), null, FirebaseClientConfig.DEFAULT)) {
+			firebase.request().addData("value", LARGE_VALUE).put("a");
+			Received request = received.poll(5, TimeUnit.SECONDS);
+			assertThat(request.getEncoding(), is(nullValue()));
+			assertThat(request.getWireBytes(), is(request.getBody().length()));
+		}
+	}
+
+	@Test
+	public void gzippedResponses_shouldBeDecompressed() throws Exception {
+		try (Firebase firebase = firebase(0)) {
+			assertThat(firebase.get("a").getBody().get("value"), is((Object) LARGE_VALUE));
+			assertThat(firebase.get("a", Map.class).get("value"), is((Object) LARGE_VALUE));
+		}
+	}
+
+	@Test
+	public void asyncRequests_shouldBeGzipped_andResponsesDecompressed() throws Exception {
+		try (Firebase firebase = firebase(0);
+				AsyncFirebase async = new AsyncFirebase(firebase, FirebaseClientConfig.builder()
+						.compressionThreshold(0)
+						.build())) {
+			FirebaseResponse response = async.put(firebase.request().withPath("a").addData("value", LARGE_VALUE))
+					.get(5, TimeUnit.SECONDS);
+
+			assertThat(response.getBody().get("value"), is((Object) LARGE_VALUE));
+			assertThat(received.poll(5, TimeUnit.SECONDS).getEncoding(), is("gzip"));
+		}
+	}
+
+	private Firebase firebase(final int compressionThreshold) {
+		return new Firebase(server.getBaseUrl(), null, FirebaseClientConfig.builder()
+				.compressionThreshold(compressionThreshold)
+				.build());
+	}
+
+	private static byte[] read(final InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		in.close();
+		return out.toByteArray();
+	}
+
+	@Data
+	private static class Received {
+
+		private final String encoding;
+
+		private final int wireBytes;
+
+		private final String body;
+	}
+}
@@ -0,0 +1,117 @@
+package net.thegreshams.firebase4j.service;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.thegreshams.firebase4j.model.FirebaseResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FirebaseConcurrencyTest {
+
+	private static final int THREADS = 100;
+
+	private static final int REQUESTS_PER_THREAD = 20;
+
+	private StubFirebaseServer server;
+
+	private Firebase firebase;
+
+	@Before
+	public void setup() throws Exception {
+		server = new StubFirebaseServer(StubFirebaseServer.echo());
+		firebase = new Firebase(server.getBaseUrl(), "token123", FirebaseClientConfig.builder()
+				.maxPerRoute(THREADS)
+				.build());
+	}
+
+	@After
+	public void teardown() throws Exception {
+		firebase.close();
+		server.close();
+	}
+
+	@Test
+	public void sharedFirebase_shouldNotLeakDataBetweenConcurrentRequests() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Future<Integer>> results = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			final int thread = t;
+			results.add(executor.submit(new Callable<Integer>() {
+
+				@Override
+				public Integer call() throws Exception {
+					start.await();
+					for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+						exchange(thread, i);
+					}
+					return REQUESTS_PER_THREAD;
+				}
+			}));
+		}
+
+		start.countDown();
+		int completed = 0;
+		for (Future<Integer> result : results) {
+			completed += result.get();
+		}
+		executor.shutdown();
+
+		assertThat(completed, is(THREADS * REQUESTS_PER_THREAD));
+	}
+
+	@SuppressWarnings("unchecked")
+	private void exchange(final int thread, final int i) throws Exception {
+		String id = thread + "-" + i;
+		String path = "threads/" + id;
+		FirebaseRequest request = firebase
+				.addQuery("id", id)
+				.addData("thread", thread)
+				.addData("{\"request\":" + i + "}");
+
+		FirebaseResponse response;
+		switch (i % 5) {
+		case 0:
+			response = request.get(path);
+			assertThat(response.getBody().get("body"), is((Object) null));
+			break;
+		case 1:
+			response = request.put(path);
+			break;
+		case 2:
+			response = request.patch(path);
+			break;
+		case 3:
+			response = request.post(path);
+			break;
+		default:
+			response = request.delete(path);
+			assertThat(response.isSuccess(), is(true));
+			assertThat(response.getCode(), is(204));
+			return;
+		}
+
+		Map<String, Object> echo = response.getBody();
+		assertThat(response.isSuccess(), is(true));
+		assertThat((String) echo.get("path"), is("/" + path + ".json"));
+		assertThat((String) echo.get("query"), is("auth=token123&id=" + id));
+		if (i % 5 != 0) {
+			Map<String, Object> body = (Map<String, Object>) echo.get("body");
+			assertThat(body.size(), is(2));
+			assertThat((Integer) body.get("thread"), is(thread));
+			assertThat((Integer) body.get("request"), is(i));
+		}
+	}
+}
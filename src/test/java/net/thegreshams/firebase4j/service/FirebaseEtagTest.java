@@ -0,0 +1,181 @@
+package net.thegreshams.firebase4j.service;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.thegreshams.firebase4j.model.FirebaseResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+public class FirebaseEtagTest {
+
+	private final Map<String, String> values = new ConcurrentHashMap<>();
+
+	private final AtomicInteger notModified = new AtomicInteger();
+
+	private StubFirebaseServer server;
+
+	private Firebase firebase;
+
+	@Before
+	public void setup() throws Exception {
+		server = new StubFirebaseServer(new EtagHandler());
+		firebase = new Firebase(server.getBaseUrl());
+		values.put("/counter.json", "1");
+	}
+
+	@After
+	public void teardown() throws IOException {
+		firebase.close();
+		server.close();
+	}
+
+	@Test
+	public void getWithEtag_shouldExposeEtag() throws Exception {
+		FirebaseResponse response = firebase.getWithEtag("counter");
+
+		assertThat(response.isSuccess(), is(true));
+		assertThat(response.getEtag(), is(etag("1")));
+		assertThat(firebase.get("counter").getEtag(), is(nullValue()));
+	}
+
+	@Test
+	public void getIfChanged_shouldReusePreviousResponse_whenUnchanged() throws Exception {
+		FirebaseResponse first = firebase.getWithEtag("counter");
+
+		FirebaseResponse second = firebase.getIfChanged("counter", first);
+
+		assertThat(second, is(sameInstance(first)));
+		assertThat(notModified.get(), is(1));
+	}
+
+	@Test
+	public void getIfChanged_shouldReturnNewResponse_whenChanged() throws Exception {
+		FirebaseResponse first = firebase.getWithEtag("counter");
+		firebase.put("counter", 2);
+
+		FirebaseResponse second = firebase.getIfChanged("counter", first);
+
+		assertThat(second, is(not(sameInstance(first))));
+		assertThat(second.getValue(null, Integer.class), is(2));
+		assertThat(second.getEtag(), is(etag("2")));
+	}
+
+	@Test
+	public void compareAndSet_shouldWrite_whenEtagMatches() throws Exception {
+		FirebaseResponse response = firebase.compareAndSet("counter", etag("1"), 5);
+
+		assertThat(response.isSuccess(), is(true));
+		assertThat(response.getEtag(), is(etag("5")));
+		assertThat(values.get("/counter.json"), is("5"));
+	}
+
+	@Test
+	public void compareAndSet_shouldReturnCurrentValue_whenEtagIsStale() throws Exception {
+		FirebaseResponse response = firebase.compareAndSet("counter", etag("0"), 5);
+
+		assertThat(response.isSuccess(), is(false));
+		assertThat(response.getCode(), is(412));
+		assertThat(response.getValue(null, Integer.class), is(1));
+		assertThat(response.getEtag(), is(etag("1")));
+		assertThat(values.get("/counter.json"), is("1"));
+	}
+
+	@Test
+	public void compareAndSet_shouldRetryWithHandlerValue_untilWriteSucceeds() throws Exception {
+		FirebaseResponse read = firebase.getWithEtag("counter");
+		values.put("/counter.json", "10");
+		final AtomicInteger conflicts = new AtomicInteger();
+
+		FirebaseResponse response = firebase.compareAndSet("counter", read.getEtag(),
+				read.getValue(null, Integer.class) + 1, new FirebaseConflictHandler() {
+
+					@Override
+					public Object onConflict(final FirebaseResponse conflict) throws IOException {
+						conflicts.incrementAndGet();
+						return conflict.getValue(null, Integer.class) + 1;
+					}
+				});
+
+		assertThat(response.isSuccess(), is(true));
+		assertThat(conflicts.get(), is(1));
+		assertThat(values.get("/counter.json"), is("11"));
+	}
+
+	@Test
+	public void compareAndSet_shouldStop_whenHandlerAborts() throws Exception {
+		FirebaseResponse response = firebase.compareAndSet("counter", etag("0"), 5, new FirebaseConflictHandler() {
+
+			@Override
+			public Object onConflict(final FirebaseResponse conflict) {
+				return ABORT;
+			}
+		});
+
+		assertThat(response.getCode(), is(412));
+		assertThat(response.getEtag(), is(notNullValue()));
+		assertThat(values.get("/counter.json"), is("1"));
+	}
+
+	private static String etag(final String value) {
+		return Integer.toHexString(value.hashCode());
+	}
+
+	/**
+	 * Serves the in-memory values with the Firebase ETag semantics: the ETag
+	 * header is only sent when asked for, a matching If-None-Match gets a 304
+	 * and a PUT with a stale if-match gets a 412 with the current value.
+	 */
+	private class EtagHandler implements HttpHandler {
+
+		@Override
+		public void handle(final HttpExchange exchange) throws IOException {
+			String path = exchange.getRequestURI().getPath();
+			String body = StubFirebaseServer.readBody(exchange);
+			synchronized (values) {
+				String current = values.get(path);
+				if (current == null) {
+					current = "null";
+				}
+				boolean wantsEtag = "true".equals(exchange.getRequestHeaders().getFirst(Firebase.ETAG_REQUEST_HEADER));
+				String ifMatch = exchange.getRequestHeaders().getFirst(Firebase.IF_MATCH_HEADER);
+				String ifNoneMatch = exchange.getRequestHeaders().getFirst(Firebase.IF_NONE_MATCH_HEADER);
+
+				if ("GET".equals(exchange.getRequestMethod())) {
+					if (etag(current).equals(ifNoneMatch)) {
+						notModified.incrementAndGet();
+						exchange.getResponseHeaders().set(Firebase.ETAG_RESPONSE_HEADER, etag(current));
+						StubFirebaseServer.respond(exchange, 304, null);
+						return;
+					}
+				} else if ("PUT".equals(exchange.getRequestMethod())) {
+					if (ifMatch != null && !etag(current).equals(ifMatch)) {
+						exchange.getResponseHeaders().set(Firebase.ETAG_RESPONSE_HEADER, etag(current));
+						StubFirebaseServer.respond(exchange, 412, current);
+						return;
+					}
+					values.put(path, body);
+					current = body;
+				}
+				if (wantsEtag) {
+					exchange.getResponseHeaders().set(Firebase.ETAG_RESPONSE_HEADER, etag(current));
+				}
+				StubFirebaseServer.respond(exchange, 200, current);
+			}
+		}
+	}
+}
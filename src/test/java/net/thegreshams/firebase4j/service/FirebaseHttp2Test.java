@@ -0,0 +1,210 @@
+package net.thegreshams.firebase4j.service;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.thegreshams.firebase4j.model.FirebaseResponse;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.After;
+import org.junit.Test;
+
+import com.google.common.base.Strings;
+
+public class FirebaseHttp2Test {
+
+	private static final int CALLERS = 64;
+
+	private final ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+
+	private H2StubFirebaseServer server;
+
+	@After
+	public void teardown() {
+		callers.shutdownNow();
+		if (server != null) {
+			server.close();
+		}
+	}
+
+	@Test
+	public void requests_shouldBeSentOverHttp2_whenEnabled() throws Exception {
+		server = new H2StubFirebaseServer(0);
+		try (Firebase firebase = new Firebase(server.getBaseUrl(), "token", http2().build())) {
+			FirebaseResponse get = firebase.addQuery("shallow", "true").get("users/joe");
+			assertThat(get.getValue("protocol", String.class), is("HTTP/2.0"));
+			assertThat(get.getValue("method", String.class), is("GET"));
+			assertThat(get.getValue("path", String.class), is("/users/joe.json"));
+			assertThat(get.getValue("query", String.class), is("auth=token&shallow=true"));
+			assertThat(get.getValue("body", Object.class), is(nullValue()));
+
+			FirebaseResponse put = firebase.put("users/joe", Collections.singletonMap("name", "Joe"));
+			assertThat(put.getValue("method", String.class), is("PUT"));
+			assertThat(put.getValue("body/name", String.class), is("Joe"));
+
+			FirebaseResponse patch = firebase.patch("users/joe", Collections.singletonMap("age", 25));
+			assertThat(patch.getValue("method", String.class), is("PATCH"));
+			assertThat(patch.getValue("body/age", Integer.class), is(25));
+
+			FirebaseResponse delete = firebase.delete("users/joe");
+			assertThat(delete.isSuccess(), is(true));
+			assertThat(delete.getRawBody(), is(""));
+		}
+		assertThat(server.getConnectionCount(), is(1));
+	}
+
+	@Test
+	public void bodies_shouldBeGzipped_overHttp2() throws Exception {
+		server = new H2StubFirebaseServer(0);
+		String large = Strings.repeat("firebase", 1000);
+		try (Firebase firebase = new Firebase(server.getBaseUrl(), null, http2().compressionThreshold(0).build())) {
+			FirebaseResponse put = firebase.put("a", Collections.singletonMap("value", large));
+
+			assertThat(put.isSuccess(), is(true));
+			assertThat(put.getValue("body/value", String.class), is(large));
+		}
+	}
+
+	@Test(timeout = 30000)
+	public void concurrentRequests_shouldShareOneConnection_overHttp2() throws Exception {
+		server = new H2StubFirebaseServer(100);
+		try (Firebase firebase = new Firebase(server.getBaseUrl(), null, http2().build())) {
+			for (FirebaseResponse response : getConcurrently(firebase)) {
+				assertThat(response.getValue("protocol", String.class), is("HTTP/2.0"));
+			}
+		}
+		assertThat(server.getConnectionCount(), is(1));
+	}
+
+	@Test(timeout = 30000)
+	public void concurrentRequests_shouldTakeAConnectionEach_overHttp1() throws Exception {
+		server = new H2StubFirebaseServer(100);
+		FirebaseClientConfig config = FirebaseClientConfig.builder().build();
+		try (Firebase firebase = new Firebase(server.getHttp1BaseUrl(), null, config)) {
+			for (FirebaseResponse response : getConcurrently(firebase)) {
+				assertThat(response.getValue("protocol", String.class), is("HTTP/1.1"));
+			}
+		}
+		assertThat(server.getConnectionCount(), is(greaterThan(1)));
+	}
+
+	@Test(timeout = 30000)
+	public void stream_shouldHandOverChildren_beforeTheBodyEnds_overHttp2() throws Exception {
+		server = new H2StubFirebaseServer(0);
+		final List<String> keys = new ArrayList<>();
+		try (Firebase firebase = new Firebase(server.getBaseUrl(), null, http2().build())) {
+			FirebaseResponse response = firebase.stream("held/users", Integer.class,
+					new FirebaseChildHandler<Integer>() {
+
+						@Override
+						public void onChild(final String key, final Integer value) {
+							keys.add(key);
+							// the rest of the body is only sent once the first child was read
+							server.release();
+						}
+					});
+
+			assertThat(response.isSuccess(), is(true));
+		}
+		assertThat(keys, contains("a", "b"));
+	}
+
+	@Test(timeout = 30000)
+	public void stream_shouldNotWaitForTheRestOfTheBody_whenAborted_overHttp2() throws Exception {
+		server = new H2StubFirebaseServer(0);
+		try (Firebase firebase = new Firebase(server.getBaseUrl(), null, http2().build())) {
+			try {
+				firebase.stream("held/users", Integer.class, new FirebaseChildHandler<Integer>() {
+
+					@Override
+					public void onChild(final String key, final Integer value) throws IOException {
+						throw new IOException("aborted");
+					}
+				});
+				fail("expected an IOException");
+			} catch (IOException expected) {
+				assertThat(expected.getMessage(), is("aborted"));
+			}
+
+			assertThat(firebase.get("users").isSuccess(), is(true));
+		}
+	}
+
+	@Test
+	public void request_shouldFailWithIOException_whenServerIsDown() throws Exception {
+		try (Firebase firebase = new Firebase("http://127.0.0.1:1/", null, http2().build())) {
+			firebase.get("users");
+			fail("expected an IOException");
+		} catch (IOException expected) {
+			// connection refused
+		}
+	}
+
+	@Test
+	public void requests_shouldGoThroughSuppliedTransport() throws Exception {
+		server = new H2StubFirebaseServer(0);
+		final AtomicInteger executed = new AtomicInteger();
+		try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
+			final FirebaseTransport delegate = new HttpClientTransport(httpClient);
+			FirebaseTransport transport = new FirebaseTransport() {
+
+				@Override
+				public CloseableHttpResponse execute(final HttpUriRequest httpRequest) throws IOException {
+					executed.incrementAndGet();
+					return delegate.execute(httpRequest);
+				}
+
+				@Override
+				public void close() {
+				}
+			};
+			try (Firebase firebase = new Firebase(server.getHttp1BaseUrl(), null, transport)) {
+				assertThat(firebase.get("a").isSuccess(), is(true));
+				assertThat(firebase.put("a", 1).isSuccess(), is(true));
+			}
+		}
+		assertThat(executed.get(), is(2));
+	}
+
+	private static FirebaseClientConfig.Builder http2() {
+		return FirebaseClientConfig.builder().http2(true);
+	}
+
+	private List<FirebaseResponse> getConcurrently(final Firebase firebase) throws Exception {
+		List<Future<FirebaseResponse>> futures = new ArrayList<>();
+		for (int i = 0; i < CALLERS; i++) {
+			final String path = "users/u" + i;
+			futures.add(callers.submit(new Callable<FirebaseResponse>() {
+
+				@Override
+				public FirebaseResponse call() throws IOException {
+					return firebase.get(path);
+				}
+			}));
+		}
+		List<FirebaseResponse> responses = new ArrayList<>();
+		for (Future<FirebaseResponse> future : futures) {
+			FirebaseResponse response = future.get();
+			assertThat(response.isSuccess(), is(true));
+			responses.add(response);
+		}
+		return responses;
+	}
+}
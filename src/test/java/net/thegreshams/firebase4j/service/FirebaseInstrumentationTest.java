@@ -0,0 +1,157 @@
+package net.thegreshams.firebase4j.service;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+public class FirebaseInstrumentationTest {
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	private StubFirebaseServer server;
+
+	private Firebase firebase;
+
+	@Before
+	public void setup() throws Exception {
+		server = new StubFirebaseServer(new HttpHandler() {
+
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException {
+				StubFirebaseServer.readBody(exchange);
+				if (exchange.getRequestURI().getPath().startsWith("/missing")) {
+					StubFirebaseServer.respond(exchange, 404, "{\"error\":\"not found\"}");
+				} else if (exchange.getRequestURI().getPath().startsWith("/chunked")) {
+					exchange.sendResponseHeaders(200, 0);
+					try (OutputStream out = exchange.getResponseBody()) {
+						out.write("{\"name\":\"joe\"}".getBytes(StandardCharsets.UTF_8));
+					}
+				} else if ("DELETE".equals(exchange.getRequestMethod())) {
+					StubFirebaseServer.respond(exchange, 200, null);
+				} else {
+					StubFirebaseServer.respond(exchange, 200, "{\"name\":\"joe\"}");
+				}
+			}
+		});
+		firebase = new Firebase(server.getBaseUrl(), null, FirebaseClientConfig.builder()
+				.instrumentation(new FirebaseMicrometerInstrumentation(registry))
+				.build());
+	}
+
+	@After
+	public void teardown() throws IOException {
+		firebase.close();
+		server.close();
+	}
+
+	@Test
+	public void requests_shouldBeTimedByMethodPathTemplateAndStatus() throws Exception {
+		firebase.get("users/joe");
+		firebase.get("/users/sam/");
+		firebase.get("missing/x");
+		firebase.put("users/joe", Collections.singletonMap("name", "joe"));
+
+		assertThat(timer("GET", "users/{key}", "200").count(), is(2L));
+		assertThat(timer("GET", "missing/{key}", "404").count(), is(1L));
+		assertThat(timer("PUT", "users/{key}", "200").count(), is(1L));
+		assertThat(timer("GET", "users/{key}", "200").totalTime(TimeUnit.NANOSECONDS), is(greaterThan(0.0)));
+		assertThat(registry.get("firebase.requests.in.flight").gauge().value(), is(0.0));
+	}
+
+	@Test
+	public void requests_shouldRecordBodySizes() throws Exception {
+		firebase.put("users/joe", Collections.singletonMap("name", "joe"));
+		firebase.delete("users/joe");
+
+		DistributionSummary requestSize = size("firebase.request.size", "PUT");
+		assertThat(requestSize.count(), is(1L));
+		assertThat(requestSize.totalAmount(), is(14.0));
+		assertThat(size("firebase.response.size", "PUT").totalAmount(), is(14.0));
+		assertThat(size("firebase.response.size", "DELETE").totalAmount(), is(0.0));
+		assertThat(timer("DELETE", "users/{key}", "200").count(), is(1L));
+	}
+
+	@Test
+	public void connectionLeases_shouldBeTimed() throws Exception {
+		firebase.get("users/joe");
+		firebase.get("users/joe");
+
+		assertThat(registry.get("firebase.connection.lease").timer().count(), is(2L));
+	}
+
+	@Test
+	public void failedRequests_shouldBeTimedByExceptionClass() throws Exception {
+		StubFirebaseServer closed = new StubFirebaseServer(StubFirebaseServer.echo());
+		closed.close();
+		try (Firebase unreachable = new Firebase(closed.getBaseUrl(), null, FirebaseClientConfig.builder()
+				.instrumentation(new FirebaseMicrometerInstrumentation(registry))
+				.build())) {
+			unreachable.get("users/joe");
+			fail("expected a connection error");
+		} catch (ConnectException e) {
+			assertThat(timer("GET", "users/{key}", "HttpHostConnectException").count(), is(1L));
+			assertThat(registry.get("firebase.requests.in.flight").gauge().value(), is(0.0));
+		}
+	}
+
+	@Test
+	public void asyncRequests_shouldBeTimed() throws Exception {
+		try (AsyncFirebase async = new AsyncFirebase(firebase)) {
+			async.get("users/joe").get(5, TimeUnit.SECONDS);
+		}
+
+		assertThat(timer("GET", "users/{key}", "200").count(), is(1L));
+		assertThat(size("firebase.response.size", "GET").totalAmount(), is(14.0));
+	}
+
+	@Test
+	public void asyncRequests_shouldRecordTheBytesRead_ofChunkedResponses() throws Exception {
+		try (AsyncFirebase async = new AsyncFirebase(firebase)) {
+			async.get("chunked/joe").get(5, TimeUnit.SECONDS);
+		}
+
+		assertThat(size("firebase.response.size", "GET").totalAmount(), is(14.0));
+	}
+
+	@Test
+	public void noopInstrumentation_shouldNotRecord() {
+		assertThat(FirebaseInstrumentation.NOOP.start(FirebaseRestMethod.GET, "users"), is(nullValue()));
+		assertThat(FirebaseClientConfig.DEFAULT.getInstrumentation(), is(FirebaseInstrumentation.NOOP));
+	}
+
+	@Test
+	public void keyTemplate_shouldReplaceEveryOtherSegment() {
+		assertThat(FirebaseMicrometerInstrumentation.keyTemplate(""), is("/"));
+		assertThat(FirebaseMicrometerInstrumentation.keyTemplate("users"), is("users"));
+		assertThat(FirebaseMicrometerInstrumentation.keyTemplate("users/joe/posts/-Kx1"),
+				is("users/{key}/posts/{key}"));
+	}
+
+	private Timer timer(final String method, final String path, final String status) {
+		return registry.get("firebase.requests").tag("method", method).tag("path", path).tag("status", status).timer();
+	}
+
+	private DistributionSummary size(final String name, final String method) {
+		return registry.get(name).tag("method", method).summary();
+	}
+}
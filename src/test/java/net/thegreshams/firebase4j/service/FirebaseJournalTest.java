@@ -0,0 +1,274 @@
+package net.thegreshams.firebase4j.service;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+public class FirebaseJournalTest {
+
+	private static final int ITEMS = 500;
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private final InMemoryFirebase data = new InMemoryFirebase();
+
+	private final AtomicInteger writes = new AtomicInteger();
+
+	/**
+	 * Number of writes the stub accepts before answering 503 to every write;
+	 * negative for no limit.
+	 */
+	private volatile int acceptedWrites = -1;
+
+	private StubFirebaseServer server;
+
+	private Firebase firebase;
+
+	private File directory;
+
+	@Before
+	public void setup() throws Exception {
+		server = new StubFirebaseServer(new HttpHandler() {
+
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException {
+				String body = StubFirebaseServer.readBody(exchange);
+				if (!"GET".equals(exchange.getRequestMethod())) {
+					int limit = acceptedWrites;
+					if (limit >= 0 && writes.get() >= limit) {
+						StubFirebaseServer.respond(exchange, 503, "{\"error\":\"unavailable\"}");
+						return;
+					}
+					if (body.contains("forbidden")) {
+						StubFirebaseServer.respond(exchange, 401, "{\"error\":\"Permission denied\"}");
+						return;
+					}
+					writes.incrementAndGet();
+				}
+				exchange.setStreams(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), null);
+				data.handle(exchange);
+			}
+		});
+		firebase = new Firebase(server.getBaseUrl(), null, FirebaseClientConfig.builder().build());
+		directory = new File(folder.getRoot(), "journal");
+	}
+
+	@After
+	public void teardown() throws Exception {
+		firebase.close();
+		server.close();
+	}
+
+	@Test(timeout = 30000)
+	public void writes_shouldBeSentInOrder_withTheirCombinedEffect() throws Exception {
+		try (FirebaseJournal journal = journal().maxBatchSize(7).build()) {
+			Map<String, Object> joe = new LinkedHashMap<>();
+			joe.put("name", "Joe");
+			joe.put("age", 24);
+			journal.put("users/joe", joe);
+			journal.patch("users/joe", Collections.singletonMap("age", 25));
+			journal.put("users/joe/email", "joe@example.com");
+			journal.delete("users/joe/name");
+			journal.put("users/sam", "Sam");
+			journal.delete("users/sam");
+			for (int i = 0; i < 20; i++) {
+				journal.put("counter", i);
+			}
+
+			assertThat(journal.awaitDrained(10000), is(true));
+			assertThat(journal.getPendingCount(), is(0L));
+		}
+
+		Map<String, Object> joe = new LinkedHashMap<>();
+		joe.put("age", 25);
+		joe.put("email", "joe@example.com");
+		assertThat(data.get("users/joe"), is((Object) joe));
+		assertThat(data.get("users/sam"), is(nullValue()));
+		assertThat(data.get("counter"), is((Object) 19));
+	}
+
+	@Test(timeout = 30000)
+	public void post_shouldWriteChildrenUnderGeneratedKeys_inOrder() throws Exception {
+		List<String> keys = new ArrayList<>();
+		try (FirebaseJournal journal = journal().build()) {
+			for (int i = 0; i < 50; i++) {
+				keys.add(journal.post("events", i));
+			}
+			assertThat(journal.awaitDrained(10000), is(true));
+		}
+
+		List<String> sorted = new ArrayList<>(keys);
+		Collections.sort(sorted);
+		assertThat(sorted, is(keys));
+		for (int i = 0; i < keys.size(); i++) {
+			assertThat(keys.get(i).length(), is(20));
+			assertThat(data.get("events/" + keys.get(i)), is((Object) i));
+		}
+	}
+
+	@Test(timeout = 30000)
+	public void open_shouldResumeWrites_afterDrainerIsStoppedMidStream() throws Exception {
+		acceptedWrites = 0;
+		try (FirebaseJournal journal = journal().retryDelay(10).build()) {
+			for (int i = 0; i < ITEMS; i++) {
+				journal.put("items/i" + i, i);
+			}
+		}
+
+		acceptedWrites = 5;
+		FirebaseJournal journal = journal().maxBatchSize(10).retryDelay(10).build();
+		while (writes.get() < 5) {
+			Thread.sleep(5);
+		}
+		// stopped while retrying the sixth batch, as a crash would stop it
+		journal.close();
+		assertThat(journal.getPendingCount(), is((long) ITEMS - 50));
+
+		acceptedWrites = -1;
+		try (FirebaseJournal reopened = journal().maxBatchSize(10).build()) {
+			assertThat(reopened.getPendingCount(), is((long) ITEMS - 50));
+			assertThat(reopened.awaitDrained(10000), is(true));
+		}
+		for (int i = 0; i < ITEMS; i++) {
+			assertThat(data.get("items/i" + i), is((Object) i));
+		}
+		assertThat(writes.get(), is(ITEMS / 10));
+	}
+
+	@Test(timeout = 30000)
+	public void open_shouldRecoverWrites_andRotateSegments_whileFirebaseIsDown() throws Exception {
+		acceptedWrites = 0;
+		try (FirebaseJournal journal = journal().segmentSize(4096).retryDelay(10).build()) {
+			for (int i = 0; i < ITEMS; i++) {
+				journal.put("items/i" + i, Collections.singletonMap("value", i));
+			}
+			assertThat(journal.getPendingCount(), is((long) ITEMS));
+		}
+		assertThat(segmentFiles().length, is(greaterThan(1)));
+
+		acceptedWrites = -1;
+		try (FirebaseJournal journal = journal().segmentSize(4096).build()) {
+			assertThat(journal.awaitDrained(10000), is(true));
+			journal.put("items/last", true);
+			assertThat(journal.awaitDrained(10000), is(true));
+		}
+		assertThat(data.get("items/i" + (ITEMS - 1)), is((Object) Collections.singletonMap("value", ITEMS - 1)));
+		assertThat(data.get("items/last"), is((Object) true));
+		// the segments sent are deleted
+		assertThat(segmentFiles().length, is(1));
+	}
+
+	@Test(timeout = 30000)
+	public void open_shouldDiscardTornWrite_andKeepTheOnesBefore() throws Exception {
+		acceptedWrites = 0;
+		try (FirebaseJournal journal = journal().retryDelay(10).build()) {
+			journal.put("a", 1);
+			journal.put("b", 2);
+			journal.put("c", 3);
+		}
+		File segment = segmentFiles()[0];
+		try (RandomAccessFile raf = new RandomAccessFile(segment, "rw")) {
+			// the third write is 8 + 1 + 4 + 1 + 1 bytes long; corrupt its value
+			raf.seek(2 * 15 + 14);
+			raf.write('9');
+		}
+
+		acceptedWrites = -1;
+		try (FirebaseJournal journal = journal().build()) {
+			assertThat(journal.getPendingCount(), is(2L));
+			journal.put("d", 4);
+			assertThat(journal.awaitDrained(10000), is(true));
+		}
+		assertThat(data.get("a"), is((Object) 1));
+		assertThat(data.get("b"), is((Object) 2));
+		assertThat(data.get("c"), is(nullValue()));
+		assertThat(data.get("d"), is((Object) 4));
+	}
+
+	@Test(timeout = 30000)
+	public void drain_shouldDropRejectedWrites_andSendTheOthers() throws Exception {
+		try (FirebaseJournal journal = journal().build()) {
+			journal.put("x/a", Collections.singletonMap("v", 1));
+			journal.put("x/b", Collections.singletonMap("v", "forbidden"));
+			journal.put("x/c", Collections.singletonMap("v", 3));
+
+			assertThat(journal.awaitDrained(10000), is(true));
+			assertThat(journal.getDroppedCount(), is(1L));
+		}
+		assertThat(data.get("x/a"), is((Object) Collections.singletonMap("v", 1)));
+		assertThat(data.get("x/b"), is(nullValue()));
+		assertThat(data.get("x/c"), is((Object) Collections.singletonMap("v", 3)));
+	}
+
+	@Test
+	public void open_shouldFail_whileJournalIsOpenOnDirectory() throws Exception {
+		try (FirebaseJournal journal = journal().build()) {
+			try {
+				journal().build();
+				fail("expected an IOException");
+			} catch (IOException expected) {
+				// the first journal is still usable
+			}
+			journal.put("users/sam", "Sam");
+			assertThat(journal.awaitDrained(10000), is(true));
+		}
+		assertThat(data.get("users/sam"), is((Object) "Sam"));
+		try (FirebaseJournal journal = journal().build()) {
+			assertThat(journal.getPendingCount(), is(0L));
+		}
+	}
+
+	@Test(timeout = 30000)
+	public void awaitDrained_shouldTimeOut_whileFirebaseIsDown() throws Exception {
+		acceptedWrites = 0;
+		try (FirebaseJournal journal = journal().retryDelay(10).maxRetryDelay(20).build()) {
+			journal.put("a", 1);
+
+			long start = System.nanoTime();
+			assertThat(journal.awaitDrained(100), is(false));
+			assertThat((System.nanoTime() - start) / 1000000, is(lessThan(5000L)));
+			assertThat(journal.getPendingCount(), is(1L));
+		}
+		assertThat(writes.get(), is(0));
+	}
+
+	private FirebaseJournal.Builder journal() {
+		return FirebaseJournal.builder(firebase, directory);
+	}
+
+	private File[] segmentFiles() {
+		return directory.listFiles(new FileFilter() {
+
+			@Override
+			public boolean accept(final File file) {
+				return file.getName().endsWith(FirebaseJournal.SEGMENT_SUFFIX);
+			}
+		});
+	}
+}
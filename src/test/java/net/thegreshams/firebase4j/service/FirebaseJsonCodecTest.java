@@ -0,0 +1,152 @@
+package net.thegreshams.firebase4j.service;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Data;
+import net.thegreshams.firebase4j.model.FirebaseResponse;
+
+import org.junit.Test;
+
+public class FirebaseJsonCodecTest {
+
+	private static final List<FirebaseJsonCodec> CODECS = asList(FirebaseJackson2Codec.DEFAULT,
+			FirebaseJackson1Codec.INSTANCE);
+
+	@Test
+	public void write_shouldRoundTripObjects() throws Exception {
+		for (FirebaseJsonCodec codec : CODECS) {
+			User user = new User();
+			user.setName("Joe");
+			user.setScore(24);
+			user.setActive(true);
+
+			byte[] json = codec.write(user);
+
+			assertThat(codec.toString(), new String(json, StandardCharsets.UTF_8),
+					is("{\"name\":\"Joe\",\"score\":24,\"active\":true}"));
+			assertThat(codec.toString(), codec.read(json, User.class), is(user));
+			assertThat(codec.toString(), codec.write(null), is("null".getBytes(StandardCharsets.UTF_8)));
+		}
+	}
+
+	@Test
+	public void writeObject_shouldMergeMapAndFragments_laterFragmentsWinning() throws Exception {
+		for (FirebaseJsonCodec codec : CODECS) {
+			Map<String, Object> dataMap = new LinkedHashMap<>();
+			dataMap.put("name", "Joe");
+			dataMap.put("age", 24);
+
+			byte[] json = codec.writeObject(dataMap, asList("{\"name\":\"Sam\"}", "[1]", "{\"name\":\"Ann\"}"));
+
+			assertThat(codec.toString(), new String(json, StandardCharsets.UTF_8),
+					is("{\"name\":\"Ann\",\"age\":24}"));
+		}
+	}
+
+	@Test
+	public void readChild_shouldReadValueAtPath() throws Exception {
+		String json = "{\"users\":{\"joe\":{\"name\":\"Joe\",\"score\":24,\"active\":true}},\"other\":[1,2]}";
+		for (FirebaseJsonCodec codec : CODECS) {
+			assertThat(codec.toString(), codec.readChild(json, "users/joe", User.class).getName(), is("Joe"));
+			assertThat(codec.toString(), codec.readChild(json, "users/sam", User.class), is(nullValue()));
+			assertThat(codec.toString(), codec.readChild("", null, Map.class), is(nullValue()));
+		}
+	}
+
+	@Test
+	public void readChildren_shouldHandEveryChildToHandler() throws Exception {
+		for (FirebaseJsonCodec codec : CODECS) {
+			final List<String> children = new ArrayList<>();
+			FirebaseChildHandler<Integer> handler = new FirebaseChildHandler<Integer>() {
+
+				@Override
+				public void onChild(final String key, final Integer value) {
+					children.add(key + "=" + value);
+				}
+			};
+
+			codec.readChildren(stream("{\"a\":1,\"b\":2}"), Integer.class, handler);
+			codec.readChildren(stream("[3,4]"), Integer.class, handler);
+			codec.readChildren(stream("5"), Integer.class, handler);
+
+			assertThat(codec.toString(), children, contains("a=1", "b=2", "0=3", "1=4", "null=5"));
+		}
+	}
+
+	@Test
+	public void convert_shouldConvertObjectToMap() {
+		for (FirebaseJsonCodec codec : CODECS) {
+			User user = new User();
+			user.setName("Joe");
+
+			Map<?, ?> map = codec.convert(user, Map.class);
+
+			assertThat(codec.toString(), map.get("name"), is((Object) "Joe"));
+		}
+	}
+
+	@Test
+	public void firebase_shouldConvertWithConfiguredCodec() throws Exception {
+		try (StubFirebaseServer server = new StubFirebaseServer(StubFirebaseServer.echo());
+		        Firebase firebase = new Firebase(server.getBaseUrl(), null, FirebaseClientConfig.builder()
+		                .jsonCodec(FirebaseJackson1Codec.INSTANCE).build())) {
+			FirebaseResponse response = firebase.put("users/joe", new Jackson1Annotated());
+
+			assertThat(firebase.getJsonCodec(), is((FirebaseJsonCodec) FirebaseJackson1Codec.INSTANCE));
+			assertThat(response.getValue("body/n", String.class), is("Joe"));
+		}
+	}
+
+	@Test
+	public void firebase_shouldUseJackson2ByDefault() throws Exception {
+		try (Firebase firebase = new Firebase("http://localhost", null, FirebaseClientConfig.DEFAULT)) {
+			assertThat(firebase.getJsonCodec(), is((FirebaseJsonCodec) FirebaseJackson2Codec.DEFAULT));
+			assertThat(new String(firebase.getJsonCodec().write(Collections.singletonMap("a", 1)),
+					StandardCharsets.UTF_8), is("{\"a\":1}"));
+		}
+	}
+
+	@Test
+	public void firebase_shouldWriteAddedDataWithJackson1ByDefault() throws Exception {
+		try (StubFirebaseServer server = new StubFirebaseServer(StubFirebaseServer.echo());
+		        Firebase firebase = new Firebase(server.getBaseUrl())) {
+			FirebaseResponse response = firebase.addData("user", new Jackson1Annotated()).put("users");
+
+			assertThat(response.getValue("body/user/n", String.class), is("Joe"));
+		}
+	}
+
+	private static ByteArrayInputStream stream(final String json) {
+		return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Data
+	public static class User {
+
+		private String name;
+
+		private int score;
+
+		private boolean active;
+	}
+
+	public static class Jackson1Annotated {
+
+		@org.codehaus.jackson.annotate.JsonProperty("n")
+		public String getName() {
+			return "Joe";
+		}
+	}
+}
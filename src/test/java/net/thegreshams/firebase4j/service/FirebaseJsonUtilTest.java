@@ -0,0 +1,67 @@
+package net.thegreshams.firebase4j.service;
+
+import static java.util.Arrays.asList;
+import static net.thegreshams.firebase4j.service.FirebaseJsonUtil.convertDataToJson;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class FirebaseJsonUtilTest {
+
+	@Test
+	public void convertDataToJson_shouldWriteEmptyObject_ifNoData() throws Exception {
+		assertThat(json(Collections.<String, Object> emptyMap(), Collections.<String> emptyList()), is("{}"));
+	}
+
+	@Test
+	public void convertDataToJson_shouldMergeMapAndFragments() throws Exception {
+		Map<String, Object> dataMap = new LinkedHashMap<>();
+		dataMap.put("name", "Joe");
+		dataMap.put("age", 24);
+		dataMap.put("tags", asList("a", "b"));
+		dataMap.put("nothing", null);
+
+		String json = json(dataMap, asList("{\"address\":{\"city\":\"Provo\"}}", "{\"active\":true}"));
+
+		assertThat(json, is("{\"active\":true,\"address\":{\"city\":\"Provo\"},"
+				+ "\"name\":\"Joe\",\"age\":24,\"tags\":[\"a\",\"b\"],\"nothing\":null}"));
+	}
+
+	@Test
+	public void convertDataToJson_shouldLetLaterFragmentsWin() throws Exception {
+		Map<String, Object> dataMap = new LinkedHashMap<>();
+		dataMap.put("name", "Joe");
+		dataMap.put("age", 24);
+
+		String json = json(dataMap, asList("{\"name\":\"Sam\",\"city\":\"Provo\"}", "{\"city\":\"Orem\"}"));
+
+		assertThat(json, is("{\"city\":\"Orem\",\"name\":\"Sam\",\"age\":24}"));
+	}
+
+	@Test
+	public void convertDataToJson_shouldIgnoreBlankAndNonObjectFragments() throws Exception {
+		String json = json(Collections.<String, Object> singletonMap("name", "Joe"), asList("", "[1,2]"));
+
+		assertThat(json, is("{\"name\":\"Joe\"}"));
+	}
+
+	@Test
+	public void convertDataToJson_shouldEncodeUtf8() throws Exception {
+		String json = json(Collections.<String, Object> singletonMap("name", "J\u00f6rg \u6771\u4eac"),
+				Collections.<String> emptyList());
+
+		assertThat(json, is("{\"name\":\"J\u00f6rg \u6771\u4eac\"}"));
+	}
+
+	private static String json(final Map<String, Object> dataMap, final List<String> jsonData)
+	        throws Exception {
+		return new String(convertDataToJson(dataMap, jsonData), StandardCharsets.UTF_8);
+	}
+}
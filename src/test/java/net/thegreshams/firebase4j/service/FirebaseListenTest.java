@@ -0,0 +1,210 @@
+package net.thegreshams.firebase4j.service;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import net.thegreshams.firebase4j.model.FirebaseEvent;
+import net.thegreshams.firebase4j.model.FirebaseEvent.Type;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+public class FirebaseListenTest {
+
+	private static final String DISCONNECT = "disconnect";
+
+	/**
+	 * One queue of frames per connection the stub accepted, in order.
+	 */
+	private final BlockingQueue<BlockingQueue<String>> connections = new LinkedBlockingQueue<>();
+
+	private StubFirebaseServer server;
+
+	private Firebase firebase;
+
+	@Before
+	public void setup() throws Exception {
+		server = new StubFirebaseServer(new HttpHandler() {
+
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException {
+				if (!"text/event-stream".equals(exchange.getRequestHeaders().getFirst("Accept"))) {
+					StubFirebaseServer.respond(exchange, 400, "{\"error\":\"not a stream request\"}");
+					return;
+				}
+				if (exchange.getRequestURI().getPath().equals("/forbidden.json")) {
+					StubFirebaseServer.respond(exchange, 401, "{\"error\":\"Permission denied\"}");
+					return;
+				}
+				BlockingQueue<String> frames = new LinkedBlockingQueue<>();
+				connections.add(frames);
+				exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+				exchange.sendResponseHeaders(200, 0);
+				try (OutputStream out = exchange.getResponseBody()) {
+					String frame;
+					while (!DISCONNECT.equals(frame = frames.take())) {
+						out.write(frame.getBytes(StandardCharsets.UTF_8));
+						out.flush();
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		firebase = new Firebase(server.getBaseUrl(), null, FirebaseClientConfig.builder()
+				.listenRetryDelay(10)
+				.build());
+	}
+
+	@After
+	public void teardown() throws IOException {
+		firebase.close();
+		server.close();
+	}
+
+	@Test
+	public void listen_shouldMirrorPutAndPatchEvents() throws Exception {
+		QueueListener listener = new QueueListener();
+		FirebaseSubscription subscription = firebase.listen("rooms", listener);
+		BlockingQueue<String> connection = nextConnection();
+
+		connection.add(event("put", "{\"path\":\"/\",\"data\":{\"a\":1,\"b\":{\"c\":2}}}"));
+		FirebaseEvent put = listener.next();
+		assertThat(put.getType(), is(Type.PUT));
+		assertThat(put.getPath(), is("/"));
+		assertThat(put.getSnapshot().toString(), is("{a=1, b={c=2}}"));
+
+		connection.add(":comment\n" + event("keep-alive", "null"));
+		connection.add(event("patch", "{\"path\":\"/b\",\"data\":{\"c\":3,\"d/e\":4}}"));
+		FirebaseEvent patch = listener.next();
+		assertThat(patch.getType(), is(Type.PATCH));
+		assertThat(patch.getPath(), is("/b"));
+		assertThat(patch.getSnapshot().toString(), is("{a=1, b={c=3, d={e=4}}}"));
+
+		connection.add(event("put", "{\"path\":\"/a\",\"data\":null}"));
+		assertThat(listener.next().getSnapshot().toString(), is("{b={c=3, d={e=4}}}"));
+		assertThat(subscription.getValue().toString(), is("{b={c=3, d={e=4}}}"));
+		assertThat(((Map<?, ?>) put.getSnapshot()).get("a"), is((Object) 1));
+	}
+
+	@Test
+	public void listen_shouldShareOneConnectionBetweenSubscribers() throws Exception {
+		QueueListener first = new QueueListener();
+		QueueListener second = new QueueListener();
+		FirebaseSubscription firstSubscription = firebase.listen("rooms", first);
+		BlockingQueue<String> connection = nextConnection();
+		connection.add(event("put", "{\"path\":\"/\",\"data\":{\"a\":1}}"));
+		first.next();
+
+		FirebaseSubscription secondSubscription = firebase.listen("/rooms", second);
+		FirebaseEvent initial = second.next();
+		assertThat(initial.getType(), is(Type.PUT));
+		assertThat(initial.getSnapshot().toString(), is("{a=1}"));
+
+		connection.add(event("patch", "{\"path\":\"/\",\"data\":{\"b\":2}}"));
+		assertThat(first.next().getSnapshot().toString(), is("{a=1, b=2}"));
+		assertThat(second.next().getSnapshot().toString(), is("{a=1, b=2}"));
+		assertThat(connections.isEmpty(), is(true));
+
+		firstSubscription.close();
+		assertThat(firstSubscription.isOpen(), is(false));
+		assertThat(secondSubscription.isOpen(), is(true));
+		secondSubscription.close();
+		assertThat(secondSubscription.isOpen(), is(false));
+
+		firebase.listen("rooms", first);
+		assertThat(nextConnection(), is(notNullValue()));
+	}
+
+	@Test
+	public void listen_shouldReconnect_afterConnectionDrops() throws Exception {
+		QueueListener listener = new QueueListener();
+		FirebaseSubscription subscription = firebase.listen("rooms", listener);
+
+		BlockingQueue<String> connection = nextConnection();
+		connection.add(event("put", "{\"path\":\"/\",\"data\":{\"a\":1}}"));
+		assertThat(listener.next().getSnapshot().toString(), is("{a=1}"));
+		connection.add(DISCONNECT);
+
+		BlockingQueue<String> reconnection = nextConnection();
+		reconnection.add(event("put", "{\"path\":\"/\",\"data\":{\"a\":2}}"));
+		assertThat(listener.next().getSnapshot().toString(), is("{a=2}"));
+		assertThat(subscription.isOpen(), is(true));
+	}
+
+	@Test
+	public void listen_shouldStop_onCancel() throws Exception {
+		QueueListener listener = new QueueListener();
+		FirebaseSubscription subscription = firebase.listen("rooms", listener);
+
+		nextConnection().add(event("cancel", "\"permission denied\""));
+
+		FirebaseEvent cancel = listener.next();
+		assertThat(cancel.getType(), is(Type.CANCEL));
+		assertThat((String) cancel.getData(), is("permission denied"));
+		assertThat(subscription.isOpen(), is(false));
+	}
+
+	@Test
+	public void listen_shouldStop_onAuthRevoked() throws Exception {
+		QueueListener listener = new QueueListener();
+		FirebaseSubscription subscription = firebase.listen("rooms", listener);
+
+		nextConnection().add(event("auth_revoked", "\"credential is no longer valid\""));
+
+		assertThat(listener.next().getType(), is(Type.AUTH_REVOKED));
+		assertThat(subscription.isOpen(), is(false));
+	}
+
+	@Test
+	public void listen_shouldStop_onClientError() throws Exception {
+		QueueListener listener = new QueueListener();
+		FirebaseSubscription subscription = firebase.listen("forbidden", listener);
+
+		FirebaseEvent cancel = listener.next();
+		assertThat(cancel.getType(), is(Type.CANCEL));
+		assertThat((String) cancel.getData(), is("{\"error\":\"Permission denied\"}"));
+		assertThat(cancel.getSnapshot(), is(nullValue()));
+		assertThat(subscription.isOpen(), is(false));
+	}
+
+	private BlockingQueue<String> nextConnection() throws InterruptedException {
+		BlockingQueue<String> connection = connections.poll(5, TimeUnit.SECONDS);
+		assertThat("no connection was opened", connection, is(notNullValue()));
+		return connection;
+	}
+
+	private static String event(final String type, final String data) {
+		return "event: " + type + "\ndata: " + data + "\n\n";
+	}
+
+	private static class QueueListener implements FirebaseEventListener {
+
+		private final BlockingQueue<FirebaseEvent> events = new LinkedBlockingQueue<>();
+
+		@Override
+		public void onEvent(final FirebaseEvent event) {
+			events.add(event);
+		}
+
+		FirebaseEvent next() throws InterruptedException {
+			FirebaseEvent event = events.poll(5, TimeUnit.SECONDS);
+			assertThat("no event was received", event, is(notNullValue()));
+			return event;
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package net.thegreshams.firebase4j.service;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class FirebasePathTemplateTest {
+
+	private static final FirebasePathTemplate EVENTS = FirebasePathTemplate.compile("/users/{uid}/events/{eventId}");
+
+	@Test
+	public void compile_shouldFindVariablesInOrder() {
+		assertThat(EVENTS.getVariables(), contains("uid", "eventId"));
+		assertThat(FirebasePathTemplate.compile("users").getVariables(), is(empty()));
+	}
+
+	@Test
+	public void expand_shouldReplaceVariables_withoutLeadingOrTrailingSlash() {
+		assertThat(EVENTS.expand("joe", "-Kx1"), is("users/joe/events/-Kx1"));
+		assertThat(FirebasePathTemplate.compile("{a}/{b}/").expand("1", "2"), is("1/2"));
+		assertThat(FirebasePathTemplate.compile(" users // all ").expand(), is("users/all"));
+	}
+
+	@Test
+	public void expand_shouldEncodeLiteralsAndValues_asSingleSegments() {
+		FirebasePathTemplate template = FirebasePathTemplate.compile("user names/{name}");
+
+		assertThat(template.expand("joe/smith?"), is("user%20names/joe%2Fsmith%3F"));
+	}
+
+	@Test
+	public void appendTo_shouldAppendToBuilder() {
+		StringBuilder builder = new StringBuilder("https://example.firebaseio.com/");
+
+		EVENTS.appendTo(builder, "joe", "1").append(".json");
+
+		assertThat(builder.toString(), is("https://example.firebaseio.com/users/joe/events/1.json"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void expand_shouldFail_ifValueCountDoesNotMatch() {
+		EVENTS.expand("joe");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void expand_shouldFail_ifValueIsEmpty() {
+		EVENTS.expand("joe", "");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void compile_shouldFail_ifBracesAreNotAWholeSegment() {
+		FirebasePathTemplate.compile("users/user-{uid}");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void compile_shouldFail_ifVariableIsRepeated() {
+		FirebasePathTemplate.compile("{uid}/friends/{uid}");
+	}
+
+	@Test
+	public void withPath_shouldBuildUrlFromTemplate_withEncodedToken() throws Exception {
+		Firebase firebase = new Firebase("http://localhost", "token/123");
+
+		FirebaseRequest request = firebase.request().withPath(EVENTS, "joe", "1").addQuery("print", "pretty");
+
+		assertThat(firebase.buildFullUrlFromRelativePath(request),
+				is("http://localhost/users/joe/events/1.json?auth=token%2F123&print=pretty"));
+	}
+}
@@ -0,0 +1,203 @@
+package net.thegreshams.firebase4j.service;
+
+import static net.thegreshams.firebase4j.service.Firebase.OBJECT_MAPPER;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import net.thegreshams.firebase4j.model.FirebaseException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+public class FirebaseQueryTest {
+
+	private static final int CHILDREN = 2500;
+
+	private final TreeMap<String, Integer> items = new TreeMap<>(FirebaseQuery.KEY_ORDER);
+
+	private final AtomicInteger pageRequests = new AtomicInteger();
+
+	private StubFirebaseServer server;
+
+	private Firebase firebase;
+
+	@Before
+	public void setup() throws Exception {
+		for (int i = 0; i < CHILDREN; i++) {
+			items.put(Integer.toString(i), i);
+		}
+		final HttpHandler echo = StubFirebaseServer.echo();
+		server = new StubFirebaseServer(new HttpHandler() {
+
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException {
+				String path = exchange.getRequestURI().getPath();
+				if (path.equals("/items.json")) {
+					pageRequests.incrementAndGet();
+					StubFirebaseServer.respond(exchange, 200, page(exchange.getRequestURI().getRawQuery()));
+				} else if (path.equals("/missing.json")) {
+					StubFirebaseServer.respond(exchange, 400, "{\"error\":\"Index not defined\"}");
+				} else {
+					echo.handle(exchange);
+				}
+			}
+		});
+		firebase = new Firebase(server.getBaseUrl());
+	}
+
+	@After
+	public void teardown() throws IOException {
+		firebase.close();
+		server.close();
+	}
+
+	@Test
+	public void query_shouldBeSentAsEncodedJsonParameters() throws Exception {
+		assertThat(firebase.query(FirebaseQuery.orderByChild("score").startAt(100).limitToFirst(10))
+				.get("users").getBody().get("query"), is((Object) "orderBy=%22score%22&startAt=100&limitToFirst=10"));
+		assertThat(firebase.query(FirebaseQuery.orderByKey().equalTo("a b")).get("users").getBody().get("query"),
+				is((Object) "orderBy=%22%24key%22&equalTo=%22a+b%22"));
+		assertThat(firebase.query(FirebaseQuery.shallow()).get("users").getBody().get("query"),
+				is((Object) "shallow=true"));
+		assertThat(FirebaseQuery.orderByValue().endAt(1.5).limitToLast(2).getParameters().toString(),
+				is("{orderBy=\"$value\", endAt=1.5, limitToLast=2}"));
+	}
+
+	@Test
+	public void query_shouldRejectInvalidCombinations() {
+		try {
+			FirebaseQuery.shallow().limitToFirst(1);
+			fail("expected shallow to reject other parameters");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		try {
+			FirebaseQuery.orderByKey().startAt("a").equalTo("b");
+			fail("expected equalTo to reject startAt");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		try {
+			FirebaseQuery.orderByKey().limitToFirst(1).limitToLast(1);
+			fail("expected limitToLast to reject limitToFirst");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		try {
+			FirebaseQuery.orderByChild("$key");
+			fail("expected orderByChild to reject a special ordering");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void keyOrder_shouldPutIntegerKeysFirst() {
+		List<String> keys = new ArrayList<>(Arrays.asList("b", "10", "007", "2", "a", "-1", "-0"));
+		Collections.sort(keys, FirebaseQuery.KEY_ORDER);
+
+		assertThat(keys, contains("-1", "2", "10", "-0", "007", "a", "b"));
+	}
+
+	@Test
+	public void scan_shouldWalkEveryChildInKeyOrder() throws Exception {
+		int expected = 0;
+		for (Map.Entry<String, Integer> item : firebase.scan("items", Integer.class, 1000)) {
+			assertThat(item.getKey(), is(Integer.toString(expected)));
+			assertThat(item.getValue(), is(expected));
+			expected++;
+		}
+
+		assertThat(expected, is(CHILDREN));
+		assertThat(pageRequests.get(), is(3));
+	}
+
+	@Test
+	public void scan_shouldEnd_whenLastPageIsFull() throws Exception {
+		Iterator<SortedMap<String, Integer>> pages = firebase.scan("items", Integer.class, 500).pages();
+		int count = 0;
+		while (pages.hasNext()) {
+			assertThat(pages.next().size(), is(500));
+			count++;
+		}
+
+		assertThat(count, is(5));
+		assertThat(pageRequests.get(), is(6));
+		assertThat(firebase.scan("items", Integer.class, 10).stream().limit(25).count(), is(25L));
+	}
+
+	@Test
+	public void pageStream_shouldProcessPagesInParallel() throws Exception {
+		final AtomicLong sum = new AtomicLong();
+		firebase.scan("items", Integer.class, 100).pageStream().parallel().forEach(
+				new Consumer<SortedMap<String, Integer>>() {
+
+					@Override
+					public void accept(final SortedMap<String, Integer> page) {
+						for (Integer value : page.values()) {
+							sum.addAndGet(value);
+						}
+					}
+				});
+
+		assertThat(sum.get(), is((long) CHILDREN * (CHILDREN - 1) / 2));
+	}
+
+	@Test
+	public void scan_shouldFail_onUnsuccessfulResponse() throws Exception {
+		try {
+			firebase.scan("missing", Integer.class, 10).iterator().hasNext();
+			fail("expected the page to fail");
+		} catch (UncheckedIOException e) {
+			assertThat(e.getCause(), is(instanceOf(FirebaseException.class)));
+			assertThat(((FirebaseException) e.getCause()).getResponse().getCode(), is(400));
+		}
+	}
+
+	/**
+	 * @return the items selected by a key-ordered query, in reverse order as
+	 *         Firebase does not order the JSON object
+	 */
+	private String page(final String rawQuery) throws IOException {
+		Map<String, String> query = new HashMap<>();
+		for (String parameter : rawQuery.split("&")) {
+			String[] nameAndValue = parameter.split("=", 2);
+			query.put(nameAndValue[0], URLDecoder.decode(nameAndValue[1], "UTF-8"));
+		}
+		assertThat(query.get("orderBy"), is("\"$key\""));
+		SortedMap<String, Integer> selected = query.containsKey("startAt")
+				? items.tailMap(OBJECT_MAPPER.readValue(query.get("startAt"), String.class)) : items;
+		List<String> keys = new ArrayList<>(selected.keySet());
+		keys = keys.subList(0, Math.min(keys.size(), Integer.parseInt(query.get("limitToFirst"))));
+		Collections.reverse(keys);
+		Map<String, Integer> page = new LinkedHashMap<>();
+		for (String key : keys) {
+			page.put(key, items.get(key));
+		}
+		return OBJECT_MAPPER.writeValueAsString(page);
+	}
+}
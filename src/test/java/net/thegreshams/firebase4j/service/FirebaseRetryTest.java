@@ -0,0 +1,242 @@
+package net.thegreshams.firebase4j.service;
+
+import static net.thegreshams.firebase4j.service.FirebaseRestMethod.GET;
+import static net.thegreshams.firebase4j.service.FirebaseRestMethod.PATCH;
+import static net.thegreshams.firebase4j.service.FirebaseRestMethod.POST;
+import static net.thegreshams.firebase4j.service.FirebaseRestMethod.PUT;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.thegreshams.firebase4j.model.FirebaseCircuitOpenException;
+import net.thegreshams.firebase4j.model.FirebaseResponse;
+
+import org.apache.http.HttpVersion;
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+public class FirebaseRetryTest {
+
+	/**
+	 * Status codes to answer with, in order; 200 once exhausted.
+	 */
+	private final Deque<Integer> codes = new ConcurrentLinkedDeque<>();
+
+	private final AtomicInteger requests = new AtomicInteger();
+
+	private StubFirebaseServer server;
+
+	@Before
+	public void setup() throws Exception {
+		server = new StubFirebaseServer(new HttpHandler() {
+
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException {
+				StubFirebaseServer.readBody(exchange);
+				requests.incrementAndGet();
+				Integer code = codes.poll();
+				StubFirebaseServer.respond(exchange, code != null ? code : 200, "{\"code\":" + code + "}");
+			}
+		});
+	}
+
+	@After
+	public void teardown() {
+		server.close();
+	}
+
+	@Test
+	public void get_shouldBeRetried_onServiceUnavailable() throws Exception {
+		codes.add(503);
+		codes.add(429);
+		try (Firebase firebase = firebase(FirebaseBackoffRetryPolicy.builder().initialDelay(1).build(), 0)) {
+			FirebaseResponse response = firebase.get("a");
+
+			assertThat(response.isSuccess(), is(true));
+			assertThat(requests.get(), is(3));
+			assertThat(firebase.stats().getRequestCount(), is(1L));
+			assertThat(firebase.stats().getRetryCount(), is(2L));
+		}
+	}
+
+	@Test
+	public void get_shouldReturnLastResponse_whenAttemptsAreExhausted() throws Exception {
+		for (int i = 0; i < 5; i++) {
+			codes.add(500);
+		}
+		try (Firebase firebase = firebase(FirebaseBackoffRetryPolicy.builder().maxAttempts(3).initialDelay(1).build(),
+				0)) {
+			FirebaseResponse response = firebase.get("a");
+
+			assertThat(response.getCode(), is(500));
+			assertThat(requests.get(), is(3));
+		}
+	}
+
+	@Test
+	public void post_shouldNotBeRetried() throws Exception {
+		codes.add(503);
+		try (Firebase firebase = firebase(FirebaseBackoffRetryPolicy.builder().initialDelay(1).build(), 0)) {
+			FirebaseResponse response = firebase.post("a", 1);
+
+			assertThat(response.getCode(), is(503));
+			assertThat(requests.get(), is(1));
+		}
+	}
+
+	@Test
+	public void get_shouldBeRetried_onConnectionError() throws Exception {
+		String baseUrl = server.getBaseUrl();
+		server.close();
+		try (Firebase firebase = new Firebase(baseUrl, null, FirebaseClientConfig.builder()
+				.retryPolicy(FirebaseBackoffRetryPolicy.builder().maxAttempts(3).initialDelay(1).build())
+				.build())) {
+			try {
+				firebase.get("a");
+				fail("expected a connection error");
+			} catch (ConnectException e) {
+				assertThat(firebase.stats().getRetryCount(), is(2L));
+			}
+		}
+	}
+
+	@Test(timeout = 30000)
+	public void get_shouldBeSentOnce_whenRetryPolicyNeverRetries() throws Exception {
+		final AtomicInteger connections = new AtomicInteger();
+		try (final ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+			Thread acceptor = new Thread() {
+
+				@Override
+				public void run() {
+					try {
+						while (true) {
+							// read the request, then hang up without answering
+							try (Socket socket = serverSocket.accept()) {
+								connections.incrementAndGet();
+								socket.getInputStream().read(new byte[8192]);
+							}
+						}
+					} catch (IOException e) {
+						// closed
+					}
+				}
+			};
+			acceptor.setDaemon(true);
+			acceptor.start();
+			String baseUrl = "http://127.0.0.1:" + serverSocket.getLocalPort() + "/";
+			try (Firebase firebase = new Firebase(baseUrl, null, FirebaseClientConfig.builder()
+					.retryPolicy(FirebaseRetryPolicy.NEVER)
+					.build())) {
+				try {
+					firebase.get("a");
+					fail("expected an IOException");
+				} catch (NoHttpResponseException e) {
+					assertThat(connections.get(), is(1));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void circuitBreaker_shouldFailFast_whileOpen_andCloseAfterSuccessfulTrial() throws Exception {
+		codes.add(503);
+		codes.add(503);
+		try (Firebase firebase = firebase(FirebaseRetryPolicy.NEVER, 2)) {
+			firebase.get("a");
+			assertThat(firebase.getCircuitBreaker().getState(), is(FirebaseCircuitBreaker.State.CLOSED));
+			firebase.get("a");
+			assertThat(firebase.getCircuitBreaker().getState(), is(FirebaseCircuitBreaker.State.OPEN));
+
+			try {
+				firebase.get("a");
+				fail("expected the circuit breaker to reject the request");
+			} catch (FirebaseCircuitOpenException e) {
+				assertThat(requests.get(), is(2));
+			}
+
+			Thread.sleep(60);
+			assertThat(firebase.get("a").isSuccess(), is(true));
+			assertThat(firebase.getCircuitBreaker().getState(), is(FirebaseCircuitBreaker.State.CLOSED));
+			FirebaseRequestStats stats = firebase.stats();
+			assertThat(stats.getCircuitOpenedCount(), is(1L));
+			assertThat(stats.getRejectedCount(), is(1L));
+		}
+	}
+
+	@Test
+	public void circuitBreaker_shouldReopen_whenTrialFails() throws Exception {
+		FirebaseCircuitBreaker breaker = new FirebaseCircuitBreaker(1, 1);
+		assertThat(breaker.tryAcquire(), is(true));
+		breaker.onFailure();
+		Thread.sleep(5);
+
+		assertThat(breaker.tryAcquire(), is(true));
+		assertThat(breaker.getState(), is(FirebaseCircuitBreaker.State.HALF_OPEN));
+		assertThat(breaker.tryAcquire(), is(false));
+		breaker.onFailure();
+
+		assertThat(breaker.getState(), is(FirebaseCircuitBreaker.State.OPEN));
+		assertThat(breaker.getOpenedCount(), is(2L));
+	}
+
+	@Test
+	public void backoffPolicy_shouldJitterWithinDoublingBound_andHonorRetryAfter() {
+		FirebaseBackoffRetryPolicy policy = FirebaseBackoffRetryPolicy.builder()
+				.maxAttempts(10)
+				.initialDelay(100)
+				.maxDelay(1000)
+				.build();
+
+		for (int i = 0; i < 100; i++) {
+			assertThat(policy.retryDelay(GET, 1, 503, -1), is(lessThanOrEqualTo(100L)));
+			assertThat(policy.retryDelay(PUT, 3, 503, -1), is(lessThanOrEqualTo(400L)));
+			assertThat(policy.retryDelay(GET, 9, 503, -1), is(lessThanOrEqualTo(1000L)));
+			assertThat(policy.retryDelay(GET, 1, 429, 700), is(greaterThanOrEqualTo(700L)));
+		}
+		assertThat(policy.retryDelay(GET, 1, 429, 5000), is(FirebaseRetryPolicy.NO_RETRY));
+		assertThat(policy.retryDelay(GET, 1, 404, -1), is(FirebaseRetryPolicy.NO_RETRY));
+		assertThat(policy.retryDelay(GET, 10, 503, -1), is(FirebaseRetryPolicy.NO_RETRY));
+		assertThat(policy.retryDelay(PATCH, 1, 503, -1), is(FirebaseRetryPolicy.NO_RETRY));
+		assertThat(policy.retryDelay(POST, 1, new ConnectException()), is(FirebaseRetryPolicy.NO_RETRY));
+		assertThat(policy.retryDelay(GET, 1, new UnknownHostException()), is(FirebaseRetryPolicy.NO_RETRY));
+	}
+
+	@Test
+	public void retryAfter_shouldParseSecondsAndDates() {
+		BasicHttpResponse response = new BasicHttpResponse(new BasicStatusLine(HttpVersion.HTTP_1_1, 429, "Busy"));
+		assertThat(Firebase.retryAfter(response), is(-1L));
+
+		response.setHeader("Retry-After", "3");
+		assertThat(Firebase.retryAfter(response), is(3000L));
+
+		response.setHeader("Retry-After", "Thu, 01 Jan 1970 00:00:00 GMT");
+		assertThat(Firebase.retryAfter(response), is(0L));
+	}
+
+	private Firebase firebase(final FirebaseRetryPolicy retryPolicy, final int circuitBreakerFailureThreshold) {
+		return new Firebase(server.getBaseUrl(), null, FirebaseClientConfig.builder()
+				.retryPolicy(retryPolicy)
+				.circuitBreakerFailureThreshold(circuitBreakerFailureThreshold)
+				.circuitBreakerOpenTime(50)
+				.build());
+	}
+}
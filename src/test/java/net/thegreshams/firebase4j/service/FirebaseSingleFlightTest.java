@@ -0,0 +1,236 @@
+package net.thegreshams.firebase4j.service;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.thegreshams.firebase4j.model.FirebaseResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+public class FirebaseSingleFlightTest {
+
+	private static final int CALLERS = 16;
+
+	private final AtomicInteger gets = new AtomicInteger();
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	private volatile boolean failGets;
+
+	private final ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+
+	private StubFirebaseServer server;
+
+	@Before
+	public void setup() throws Exception {
+		server = new StubFirebaseServer(new HttpHandler() {
+
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException {
+				StubFirebaseServer.readBody(exchange);
+				if (!"GET".equals(exchange.getRequestMethod())) {
+					StubFirebaseServer.respond(exchange, 200, "{}");
+					return;
+				}
+				int get = gets.incrementAndGet();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				if (failGets) {
+					// closed without a response
+					exchange.close();
+					return;
+				}
+				StubFirebaseServer.respond(exchange, 200, "{\"get\":" + get + "}");
+			}
+		});
+	}
+
+	@After
+	public void teardown() {
+		release.countDown();
+		callers.shutdownNow();
+		server.close();
+	}
+
+	@Test(timeout = 10000)
+	public void get_shouldShareOneRequest_betweenConcurrentCallersOfSameUrl() throws Exception {
+		try (Firebase firebase = firebase(FirebaseClientConfig.builder().coalesceGets(true))) {
+			List<Future<FirebaseResponse>> responses = getConcurrently(firebase, "users/joe", CALLERS);
+			awaitCoalesced(firebase, CALLERS - 1);
+			release.countDown();
+
+			FirebaseResponse first = responses.get(0).get();
+			for (Future<FirebaseResponse> response : responses) {
+				assertThat(response.get(), is(sameInstance(first)));
+			}
+			assertThat(first.getRawBody(), is("{\"get\":1}"));
+			assertThat(gets.get(), is(1));
+			assertThat(firebase.stats().getRequestCount(), is(1L));
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void typedGet_shouldShareOneRequest_withConcurrentGets() throws Exception {
+		try (final Firebase firebase = firebase(FirebaseClientConfig.builder().coalesceGets(true))) {
+			List<Future<FirebaseResponse>> responses = getConcurrently(firebase, "users/joe", 1);
+			awaitGets(1);
+			List<Future<Map<?, ?>>> typed = new ArrayList<>();
+			for (int i = 0; i < CALLERS - 1; i++) {
+				typed.add(callers.submit(new Callable<Map<?, ?>>() {
+
+					@Override
+					public Map<?, ?> call() throws IOException {
+						return firebase.get("users/joe", Map.class);
+					}
+				}));
+			}
+			awaitCoalesced(firebase, CALLERS - 1);
+			release.countDown();
+
+			assertThat(responses.get(0).get().isSuccess(), is(true));
+			for (Future<Map<?, ?>> value : typed) {
+				assertThat(value.get().get("get"), is((Object) 1));
+			}
+			assertThat(gets.get(), is(1));
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void get_shouldSendRequestPerUrl_whenQueriesDiffer() throws Exception {
+		release.countDown();
+		try (Firebase firebase = firebase(FirebaseClientConfig.builder().coalesceGets(true))) {
+			FirebaseResponse all = firebase.get("users");
+			FirebaseResponse shallow = firebase.addQuery("shallow", "true").get("users");
+
+			assertThat(all.getRawBody(), is("{\"get\":1}"));
+			assertThat(shallow.getRawBody(), is("{\"get\":2}"));
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void get_shouldThrowFailureToEveryCaller() throws Exception {
+		failGets = true;
+		try (Firebase firebase = firebase(FirebaseClientConfig.builder().coalesceGets(true))) {
+			List<Future<FirebaseResponse>> responses = getConcurrently(firebase, "users/joe", CALLERS);
+			awaitCoalesced(firebase, CALLERS - 1);
+			release.countDown();
+
+			for (Future<FirebaseResponse> response : responses) {
+				try {
+					response.get();
+					fail("expected an IOException");
+				} catch (ExecutionException e) {
+					assertThat(e.getCause() instanceof IOException, is(true));
+				}
+			}
+			assertThat(firebase.stats().getRequestCount(), is(1L));
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void get_shouldStopWaiting_afterWaitTimeout_whileRequestCarriesOn() throws Exception {
+		try (Firebase firebase = firebase(FirebaseClientConfig.builder().coalesceGets(true)
+				.coalesceWaitTimeout(100))) {
+			Future<FirebaseResponse> first = getConcurrently(firebase, "users/joe", 1).get(0);
+			awaitGets(1);
+
+			long start = System.nanoTime();
+			try {
+				firebase.get("users/joe");
+				fail("expected an InterruptedIOException");
+			} catch (InterruptedIOException expected) {
+				assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 100, is(true));
+			}
+
+			release.countDown();
+			assertThat(first.get().getRawBody(), is("{\"get\":1}"));
+			assertThat(gets.get(), is(1));
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void write_shouldDetachRequestInFlight_fromLaterGets() throws Exception {
+		try (Firebase firebase = firebase(FirebaseClientConfig.builder().coalesceGets(true))) {
+			Future<FirebaseResponse> before = getConcurrently(firebase, "users/joe", 1).get(0);
+			awaitGets(1);
+
+			firebase.put("users", "{}");
+			Future<FirebaseResponse> after = getConcurrently(firebase, "users/joe", 1).get(0);
+			awaitGets(2);
+			release.countDown();
+
+			assertThat(before.get().getRawBody(), is("{\"get\":1}"));
+			assertThat(after.get().getRawBody(), is("{\"get\":2}"));
+			assertThat(firebase.stats().getCoalescedCount(), is(0L));
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void get_shouldSendEveryRequest_byDefault() throws Exception {
+		try (Firebase firebase = firebase(FirebaseClientConfig.builder())) {
+			List<Future<FirebaseResponse>> responses = getConcurrently(firebase, "users/joe", 4);
+			awaitGets(4);
+			release.countDown();
+
+			for (Future<FirebaseResponse> response : responses) {
+				assertThat(response.get().isSuccess(), is(true));
+			}
+			assertThat(firebase.stats().getCoalescedCount(), is(0L));
+		}
+	}
+
+	private Firebase firebase(final FirebaseClientConfig.Builder config) {
+		return new Firebase(server.getBaseUrl(), null, config.build());
+	}
+
+	private List<Future<FirebaseResponse>> getConcurrently(final Firebase firebase, final String path,
+	        final int count) {
+		List<Future<FirebaseResponse>> responses = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			responses.add(callers.submit(new Callable<FirebaseResponse>() {
+
+				@Override
+				public FirebaseResponse call() throws IOException {
+					return firebase.get(path);
+				}
+			}));
+		}
+		return responses;
+	}
+
+	private static void awaitCoalesced(final Firebase firebase, final long count) throws InterruptedException {
+		while (firebase.stats().getCoalescedCount() < count) {
+			Thread.sleep(5);
+		}
+	}
+
+	private void awaitGets(final int count) throws InterruptedException {
+		while (gets.get() < count) {
+			Thread.sleep(5);
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package net.thegreshams.firebase4j.service;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.thegreshams.firebase4j.model.FirebaseResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+public class FirebaseStreamTest {
+
+	private static final int CHILDREN = 200000;
+
+	private final CountDownLatch firstChildHandled = new CountDownLatch(1);
+
+	private StubFirebaseServer server;
+
+	private Firebase firebase;
+
+	@Before
+	public void setup() throws Exception {
+		server = new StubFirebaseServer(new HttpHandler() {
+
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException {
+				if (!exchange.getRequestURI().getPath().equals("/events.json")) {
+					StubFirebaseServer.respond(exchange, 404, "{\"error\":\"not found\"}");
+					return;
+				}
+				exchange.sendResponseHeaders(200, 0);
+				try (OutputStream out = exchange.getResponseBody()) {
+					writeEvents(out);
+				}
+			}
+		});
+		firebase = new Firebase(server.getBaseUrl());
+	}
+
+	@After
+	public void teardown() {
+		server.close();
+	}
+
+	@Test
+	public void stream_shouldHandleChildrenWhileBodyIsStillArriving() throws Exception {
+		final AtomicLong scoreSum = new AtomicLong();
+		final AtomicLong count = new AtomicLong();
+
+		FirebaseResponse response = firebase.stream("events", Map.class, new FirebaseChildHandler<Object>() {
+
+			@Override
+			public void onChild(final String key, final Object value) {
+				assertThat(key, is("event" + count.get()));
+				scoreSum.addAndGet(((Number) ((Map<?, ?>) value).get("score")).longValue());
+				count.incrementAndGet();
+				firstChildHandled.countDown();
+			}
+		});
+
+		assertThat(response.isSuccess(), is(true));
+		assertThat(response.getRawBody(), is(""));
+		assertThat(count.get(), is((long) CHILDREN));
+		assertThat(scoreSum.get(), is((long) CHILDREN * (CHILDREN - 1) / 2));
+	}
+
+	@Test
+	public void stream_shouldReturnErrorBody_withoutCallingHandler() throws Exception {
+		FirebaseResponse response = firebase.stream("missing", Object.class, new FirebaseChildHandler<Object>() {
+
+			@Override
+			public void onChild(final String key, final Object value) {
+				throw new AssertionError("handler should not be called");
+			}
+		});
+
+		assertThat(response.isSuccess(), is(false));
+		assertThat(response.getCode(), is(404));
+		assertThat((String) response.getBody().get("error"), is("not found"));
+	}
+
+	/**
+	 * Writes the first half of the payload, then holds the rest back until
+	 * the client has handled a child; a client buffering the whole body would
+	 * time out here.
+	 */
+	private void writeEvents(final OutputStream out) throws IOException {
+		Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+		writer.write('{');
+		for (int i = 0; i < CHILDREN; i++) {
+			if (i > 0) {
+				writer.write(',');
+			}
+			writer.write("\"event" + i + "\":{\"score\":" + i + ",\"payload\":\"x" + i + "-padding-padding\"}");
+			if (i == CHILDREN / 2) {
+				writer.flush();
+				try {
+					if (!firstChildHandled.await(10, TimeUnit.SECONDS)) {
+						throw new IOException("client did not start handling children before the body completed");
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException(e);
+				}
+			}
+		}
+		writer.write('}');
+		writer.flush();
+	}
+}
@@ -8,7 +8,6 @@ import static net.thegreshams.firebase4j.service.FirebaseRestMethod.PUT;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.when;
-import static org.springframework.test.util.ReflectionTestUtils.getField;
 import static org.springframework.test.util.ReflectionTestUtils.invokeMethod;
 
 import java.io.IOException;
@@ -96,13 +95,12 @@ public class FirebaseTest {
 		};
 	}
 
-	@SuppressWarnings("unchecked")
 	@Test
 	public void constructor_shouldAddSecureTokenAsParam_ifNotNull() throws Exception {
 		String token = "token123";
 		Firebase firebase = new Firebase("http://localhost", token);
 
-		Map<String, String> query = (Map<String, String>) getField(firebase, "queryMap");
+		Map<String, String> query = firebase.request().getQueryMap();
 		assertThat(query.get("auth"), is(token));
 	}
 
@@ -180,36 +178,51 @@ public class FirebaseTest {
 	public void buildFullUrlFromRelativePath_shouldUseAllQueryParams() throws Exception {
 		Firebase firebase = new Firebase("http://localhost");
 
-		firebase.addQuery("query1", "parameter1");
-		firebase.addQuery("query2", "parameter2");
+		FirebaseRequest request = firebase
+				.addQuery("query1", "parameter1")
+				.addQuery("query2", "parameter2");
 
-		String fullUrl = invokeMethod(firebase, "buildFullUrlFromRelativePath", (String) null);
+		String fullUrl = invokeMethod(firebase, "buildFullUrlFromRelativePath", request);
 
-		assertThat(fullUrl, is("http://localhost.json?query1=parameter1&query2=parameter2"));
+		assertThat(fullUrl, is("http://localhost/.json?query1=parameter1&query2=parameter2"));
 	}
 
 	@Test
 	public void buildFullUrlFromRelativePath_shouldSetSecureToken_withQueryParam_ifTokenNotNull() throws Exception {
 		Firebase firebase = new Firebase("http://localhost", "token123");
 
-		firebase.addQuery("query1", "parameter1");
+		FirebaseRequest request = firebase.addQuery("query1", "parameter1");
 
-		String fullUrl = invokeMethod(firebase, "buildFullUrlFromRelativePath", (String) null);
+		String fullUrl = invokeMethod(firebase, "buildFullUrlFromRelativePath", request);
 
-		assertThat(fullUrl, is("http://localhost.json?auth=token123&query1=parameter1"));
+		assertThat(fullUrl, is("http://localhost/.json?auth=token123&query1=parameter1"));
 	}
 
 	@Test
 	public void buildFullUrlFromRelativePath_shouldSetSecureToken_withoutQueryParam_ifTokenNotNull() throws Exception {
 		Firebase firebase = new Firebase("http://localhost", "token123");
 
-		String fullUrl = invokeMethod(firebase, "buildFullUrlFromRelativePath", (String) null);
+		String fullUrl = invokeMethod(firebase, "buildFullUrlFromRelativePath", firebase.request());
 
-		assertThat(fullUrl, is("http://localhost.json?auth=token123"));
+		assertThat(fullUrl, is("http://localhost/.json?auth=token123"));
+	}
+
+	@Test
+	public void addData_shouldNotModifyOriginalRequest() throws Exception {
+		Firebase firebase = new Firebase("http://localhost");
+
+		FirebaseRequest template = firebase.addData("key1", "value1");
+		FirebaseRequest request = template.addData("key2", "value2").addQuery("query1", "parameter1");
+
+		assertThat(template.getDataMap().size(), is(1));
+		assertThat(template.getQueryMap().isEmpty(), is(true));
+		assertThat(request.getDataMap().size(), is(2));
+		assertThat(firebase.request().getDataMap().isEmpty(), is(true));
 	}
 
 	private FirebaseResponse processResponse(final FirebaseRestMethod method) {
 		Firebase firebase = new Firebase("http://localhost");
-		return ReflectionTestUtils.invokeMethod(firebase, "processResponse", method, httpResponse);
+		return ReflectionTestUtils.invokeMethod(firebase, "processResponse", method, httpResponse,
+				"http://localhost/.json?");
 	}
 }
@@ -0,0 +1,188 @@
+package net.thegreshams.firebase4j.service;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.thegreshams.firebase4j.model.FirebaseException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FirebaseTransferTest {
+
+	private static final int USERS = 50;
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private final InMemoryFirebase source = new InMemoryFirebase();
+
+	private final InMemoryFirebase target = new InMemoryFirebase();
+
+	private StubFirebaseServer sourceServer;
+
+	private StubFirebaseServer targetServer;
+
+	private Firebase sourceFirebase;
+
+	private Firebase targetFirebase;
+
+	private File file;
+
+	@Before
+	public void setup() throws Exception {
+		for (int i = 0; i < USERS; i++) {
+			Map<String, Object> user = new LinkedHashMap<>();
+			user.put("name", "user\n" + i);
+			user.put("age", i);
+			source.set("users/u" + i, user);
+		}
+		source.set("config", "v1");
+		sourceServer = new StubFirebaseServer(source);
+		targetServer = new StubFirebaseServer(target);
+		sourceFirebase = new Firebase(sourceServer.getBaseUrl());
+		targetFirebase = new Firebase(targetServer.getBaseUrl());
+		file = new File(folder.getRoot(), "backup.ndjson");
+	}
+
+	@After
+	public void teardown() throws IOException {
+		sourceFirebase.close();
+		targetFirebase.close();
+		sourceServer.close();
+		targetServer.close();
+	}
+
+	@Test
+	public void exportAndImport_shouldCopyTheTreeShardByShard() throws Exception {
+		long exported = FirebaseTransfer.builder(sourceFirebase).shardDepth(2).workers(8).build().exportTo(null, file);
+
+		assertThat(exported, is(USERS + 1L));
+		assertThat(source.requestCount("GET"), is(1 + 2 + USERS + 1));
+		List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+		assertThat(lines.size(), is(USERS + 1));
+		assertThat(new File(file.getPath() + FirebaseTransfer.EXPORT_CHECKPOINT_SUFFIX).exists(), is(false));
+
+		long imported = FirebaseTransfer.builder(targetFirebase).workers(8).build().importFrom(file);
+
+		assertThat(imported, is(USERS + 1L));
+		assertThat(target.requestCount("PUT"), is(USERS + 1));
+		assertThat(target.get(""), is(source.get("")));
+	}
+
+	@Test
+	public void exportAndImport_shouldEncodeKeysInRequests_butNotInTheFile() throws Exception {
+		List<String> keys = Arrays.asList("joe smith", "100%", "why?", "zo\u00eb", " padded ");
+		for (int i = 0; i < keys.size(); i++) {
+			source.set("odd keys/" + keys.get(i) + "/n", i);
+		}
+
+		long exported = FirebaseTransfer.builder(sourceFirebase).build().exportTo("odd%20keys", file);
+		long imported = FirebaseTransfer.builder(targetFirebase).build().importFrom(file);
+
+		assertThat(exported, is(5L));
+		assertThat(imported, is(5L));
+		String lines = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+		for (int i = 0; i < keys.size(); i++) {
+			String line = "{\"path\":\"odd keys/" + keys.get(i) + "\",\"value\":{\"n\":" + i + "}}";
+			assertThat(lines, containsString(line));
+			assertThat(target.get("odd keys/" + keys.get(i) + "/n"), is((Object) i));
+		}
+	}
+
+	@Test
+	public void export_shouldReadPastTheCache() throws Exception {
+		try (Firebase cached = new Firebase(sourceServer.getBaseUrl(), null, FirebaseClientConfig.builder()
+				.cacheMaximumSize(100)
+				.build())) {
+			cached.get("config");
+			source.set("config", "v2");
+
+			FirebaseTransfer.builder(cached).build().exportTo(null, file);
+
+			String lines = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+			assertThat(lines, containsString("{\"path\":\"config\",\"value\":\"v2\"}"));
+			assertThat(cached.getCache().size(), is(1L));
+		}
+	}
+
+	@Test
+	public void export_shouldResumeFromCheckpoint_afterFailure() throws Exception {
+		FirebaseTransfer transfer = FirebaseTransfer.builder(sourceFirebase).workers(1).build();
+		source.fail("users");
+		try {
+			transfer.exportTo("/", file);
+			fail("expected the export to fail");
+		} catch (FirebaseException e) {
+			assertThat(e.getResponse().getCode(), is(500));
+		}
+		File checkpoint = new File(file.getPath() + FirebaseTransfer.EXPORT_CHECKPOINT_SUFFIX);
+		assertThat(Files.readAllLines(checkpoint.toPath(), StandardCharsets.UTF_8), is(Arrays.asList("config")));
+
+		// a line cut off by the failure
+		Files.write(file.toPath(), "{\"path\":\"us".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+		source.recover("users");
+		source.set("config", "v2");
+
+		assertThat(transfer.exportTo("/", file), is(1L));
+		assertThat(checkpoint.exists(), is(false));
+
+		FirebaseTransfer.builder(targetFirebase).build().importFrom(file);
+		assertThat(target.get("users"), is(source.get("users")));
+		assertThat(target.get("config"), is((Object) "v1"));
+	}
+
+	@Test
+	public void import_shouldResumeFromCheckpoint_afterFailure() throws Exception {
+		FirebaseTransfer.builder(sourceFirebase).build().exportTo("users", file);
+		FirebaseTransfer transfer = FirebaseTransfer.builder(targetFirebase).workers(2).build();
+		target.fail("users/u7");
+		try {
+			transfer.importFrom(file);
+			fail("expected the import to fail");
+		} catch (FirebaseException e) {
+			assertThat(e.getResponse().getCode(), is(500));
+		}
+		target.recover("users/u7");
+		File checkpoint = new File(file.getPath() + FirebaseTransfer.IMPORT_CHECKPOINT_SUFFIX);
+		int done = Files.readAllLines(checkpoint.toPath(), StandardCharsets.UTF_8).size();
+
+		assertThat(transfer.importFrom(file), is((long) USERS - done));
+		assertThat(target.get("users"), is(source.get("users")));
+		assertThat(checkpoint.exists(), is(false));
+	}
+
+	@Test
+	public void requests_shouldBeRateLimited() throws Exception {
+		long start = System.nanoTime();
+		FirebaseTransfer.builder(sourceFirebase).requestsPerSecond(20).workers(4).build().exportTo("users", file);
+		long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+		// one shallow read and 50 shards: the last of 51 permits is 50/20s after the first
+		assertThat(elapsedMillis, is(greaterThanOrEqualTo(2400L)));
+	}
+
+	@Test
+	public void shardDepthZero_shouldExportThePathAsOneShard() throws Exception {
+		assertThat(FirebaseTransfer.builder(sourceFirebase).shardDepth(0).build().exportTo("users", file), is(1L));
+		assertThat(source.requestCount("GET"), is(1));
+		assertThat(Files.readAllLines(file.toPath(), StandardCharsets.UTF_8).get(0).startsWith("{\"path\":\"users\""),
+				is(true));
+	}
+}
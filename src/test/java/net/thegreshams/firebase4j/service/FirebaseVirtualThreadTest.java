@@ -0,0 +1,186 @@
+package net.thegreshams.firebase4j.service;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import net.thegreshams.firebase4j.model.FirebaseResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+public class FirebaseVirtualThreadTest {
+
+	private static final int CALLERS = 20000;
+
+	private final InMemoryFirebase data = new InMemoryFirebase();
+
+	private StubFirebaseServer server;
+
+	@Before
+	public void setup() throws Exception {
+		for (int i = 0; i < 100; i++) {
+			data.set("users/u" + i, "user " + i);
+		}
+		server = new StubFirebaseServer(data);
+	}
+
+	@After
+	public void teardown() {
+		server.close();
+	}
+
+	@Test
+	public void getAll_shouldReturnResponsesInOrderOfPaths_onExecutor() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try (Firebase firebase = firebase(FirebaseClientConfig.builder().executor(executor))) {
+			Map<String, FirebaseResponse> responses = firebase.getAll(Arrays.asList("users/u3", "users/u1",
+					"users/missing", "users/u3"));
+
+			assertThat(responses.keySet(), contains("users/u3", "users/u1", "users/missing"));
+			assertThat(responses.get("users/u3").getRawBody(), is("\"user 3\""));
+			assertThat(responses.get("users/u1").getRawBody(), is("\"user 1\""));
+			assertThat(responses.get("users/missing").getRawBody(), is("null"));
+			assertThat(data.requestCount("GET"), is(3));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void getAll_shouldReadPathsOnCallingThread_withoutExecutor() throws Exception {
+		try (Firebase firebase = firebase(FirebaseClientConfig.builder())) {
+			data.fail("users/u2");
+
+			Map<String, FirebaseResponse> responses = firebase.request().addQuery("print", "silent")
+					.getAll(Arrays.asList("users/u1", "users/u2"));
+
+			assertThat(responses.get("users/u1").isSuccess(), is(true));
+			assertThat(responses.get("users/u2").getCode(), is(500));
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void getAll_shouldFail_asSoonAsAnyRequestFails() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try (StubFirebaseServer failing = new StubFirebaseServer(new HttpHandler() {
+
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException {
+				if (exchange.getRequestURI().getPath().equals("/users/u0.json")) {
+					// closed without a response
+					exchange.close();
+					return;
+				}
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				StubFirebaseServer.respond(exchange, 200, "null");
+			}
+		}); Firebase firebase = new Firebase(failing.getBaseUrl(), null, FirebaseClientConfig.builder()
+		        .executor(executor).build())) {
+			try {
+				firebase.getAll(Arrays.asList("users/u0", "users/u1", "users/u2"));
+				fail("expected an IOException");
+			} catch (IOException expected) {
+				// thrown while the other requests are still waiting for their responses
+				assertThat(release.getCount(), is(1L));
+			} finally {
+				release.countDown();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void virtualThreads_shouldFail_beforeJava21() {
+		assumeTrue(!virtualThreadsAvailable());
+
+		FirebaseClientConfig.builder().virtualThreads();
+	}
+
+	/**
+	 * Tens of thousands of blocking callers, each on a virtual thread of its
+	 * own, share a pool of a few hundred connections while the number of
+	 * platform threads stays small. Runs on Java 21 or later only.
+	 */
+	@Test(timeout = 120000)
+	public void virtualThreads_shouldScaleToTensOfThousandsOfBlockingCallers() throws Exception {
+		assumeTrue(virtualThreadsAvailable());
+
+		FirebaseClientConfig config = FirebaseClientConfig.builder()
+				.virtualThreads()
+				.maxTotal(200)
+				.maxPerRoute(200)
+				.connectionRequestTimeout(-1)
+				.socketTimeout(-1)
+				.build();
+		ExecutorService callers = config.getExecutor();
+		try (Firebase firebase = new Firebase(server.getBaseUrl(), null, config)) {
+			int platformThreadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+			List<Future<FirebaseResponse>> responses = new ArrayList<>(CALLERS);
+			for (int i = 0; i < CALLERS; i++) {
+				final String path = "users/u" + i % 100;
+				responses.add(callers.submit(new Callable<FirebaseResponse>() {
+
+					@Override
+					public FirebaseResponse call() throws Exception {
+						return firebase.get(path);
+					}
+				}));
+			}
+			int platformThreadsDuring = ManagementFactory.getThreadMXBean().getThreadCount();
+			for (Future<FirebaseResponse> response : responses) {
+				assertThat(response.get(60, TimeUnit.SECONDS).isSuccess(), is(true));
+			}
+
+			List<String> paths = new ArrayList<>();
+			for (int i = 0; i < 100; i++) {
+				paths.add("users/u" + i);
+			}
+			assertThat(firebase.getAll(paths).size(), is(100));
+			assertThat(data.requestCount("GET"), is(CALLERS + 100));
+			// carriers, the connection pool and the stub, not a thread per caller
+			assertThat(platformThreadsDuring - platformThreadsBefore, is(lessThan(1000)));
+		} finally {
+			callers.shutdown();
+		}
+	}
+
+	private Firebase firebase(final FirebaseClientConfig.Builder config) {
+		return new Firebase(server.getBaseUrl(), null, config.build());
+	}
+
+	private static boolean virtualThreadsAvailable() {
+		try {
+			Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,300 @@
+package net.thegreshams.firebase4j.service;
+
+import static net.thegreshams.firebase4j.service.Firebase.OBJECT_MAPPER;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.hc.core5.function.Decorator;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.Message;
+import org.apache.hc.core5.http.URIScheme;
+import org.apache.hc.core5.http.impl.bootstrap.HttpAsyncServer;
+import org.apache.hc.core5.http.nio.AsyncEntityProducer;
+import org.apache.hc.core5.http.nio.AsyncRequestConsumer;
+import org.apache.hc.core5.http.nio.AsyncServerRequestHandler;
+import org.apache.hc.core5.http.nio.DataStreamChannel;
+import org.apache.hc.core5.http.nio.entity.BasicAsyncEntityConsumer;
+import org.apache.hc.core5.http.nio.support.AsyncResponseBuilder;
+import org.apache.hc.core5.http.nio.support.BasicRequestConsumer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http.protocol.HttpCoreContext;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.http2.config.H2Config;
+import org.apache.hc.core5.http2.impl.nio.bootstrap.H2ServerBootstrap;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.IOSession;
+import org.apache.hc.core5.reactor.ListenerEndpoint;
+
+/**
+ * A local server standing in for Firebase in tests and benchmarks, listening
+ * on two ephemeral ports of the loopback interface: one speaking h2c (HTTP/2
+ * without TLS, with prior knowledge), the other HTTP/1.1. It answers every
+ * request but DELETEs (which get an empty 204) with a JSON description of it
+ * (method, protocol, path, raw query and body), after a fixed delay standing in for the work of a real server,
+ * and counts the connections opened to it.
+ *
+ * Gzipped request bodies are decompressed, and answered with gzipped
+ * responses. GETs of paths under held/ are instead answered with an object
+ * whose first child is sent at once and whose second one is held back until
+ * {@link #release()} is called.
+ */
+public class H2StubFirebaseServer implements Closeable {
+
+	private final HttpAsyncServer server;
+
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+	private final AtomicInteger connectionCount = new AtomicInteger();
+
+	private final CountDownLatch released = new CountDownLatch(1);
+
+	private final List<DataStreamChannel> heldChannels = new CopyOnWriteArrayList<>();
+
+	private final long delay;
+
+	private final int port;
+
+	private final int http1Port;
+
+	/**
+	 * @param delay
+	 *            Time every request is answered after, in milliseconds; it
+	 *            ties up no thread while waiting
+	 */
+	public H2StubFirebaseServer(final long delay) throws IOException {
+		this.delay = delay;
+		server = H2ServerBootstrap.bootstrap()
+				.setH2Config(H2Config.custom().setMaxConcurrentStreams(1000).build())
+				.setIOSessionDecorator(new Decorator<IOSession>() {
+
+					@Override
+					public IOSession decorate(final IOSession session) {
+						connectionCount.incrementAndGet();
+						return session;
+					}
+				})
+				.register("*", new EchoHandler())
+				.create();
+		server.start();
+		try {
+			port = listen(HttpVersionPolicy.FORCE_HTTP_2);
+			http1Port = listen(HttpVersionPolicy.FORCE_HTTP_1);
+		} catch (InterruptedException | ExecutionException e) {
+			close();
+			throw new IOException("cannot listen", e);
+		}
+	}
+
+	/**
+	 * @return the base URL of the h2c port
+	 */
+	public String getBaseUrl() {
+		return "http://127.0.0.1:" + port + "/";
+	}
+
+	/**
+	 * @return the base URL of the HTTP/1.1 port
+	 */
+	public String getHttp1BaseUrl() {
+		return "http://127.0.0.1:" + http1Port + "/";
+	}
+
+	/**
+	 * @return the number of connections opened to this server so far
+	 */
+	public int getConnectionCount() {
+		return connectionCount.get();
+	}
+
+	/**
+	 * Sends the rest of the bodies held back, and of those to come.
+	 */
+	public void release() {
+		released.countDown();
+		for (DataStreamChannel channel : heldChannels) {
+			channel.requestOutput();
+		}
+	}
+
+	@Override
+	public void close() {
+		server.close(CloseMode.IMMEDIATE);
+		scheduler.shutdownNow();
+	}
+
+	private int listen(final HttpVersionPolicy versionPolicy) throws InterruptedException, ExecutionException {
+		ListenerEndpoint endpoint = server.listen(new InetSocketAddress("127.0.0.1", 0), URIScheme.HTTP,
+				versionPolicy, null).get();
+		return ((InetSocketAddress) endpoint.getAddress()).getPort();
+	}
+
+	private final class EchoHandler implements AsyncServerRequestHandler<Message<HttpRequest, byte[]>> {
+
+		@Override
+		public AsyncRequestConsumer<Message<HttpRequest, byte[]>> prepare(final HttpRequest request,
+		        final EntityDetails entityDetails, final HttpContext context) {
+			return new BasicRequestConsumer<>(entityDetails != null ? new BasicAsyncEntityConsumer() : null);
+		}
+
+		@Override
+		public void handle(final Message<HttpRequest, byte[]> message, final ResponseTrigger responseTrigger,
+		        final HttpContext context) throws HttpException, IOException {
+			HttpRequest request = message.getHead();
+			if ("GET".equals(request.getMethod()) && request.getPath().startsWith("/held/")) {
+				responseTrigger.submitResponse(AsyncResponseBuilder.create(200)
+						.setEntity(new HeldEntityProducer())
+						.build(), context);
+				return;
+			}
+			Header encoding = request.getFirstHeader(HttpHeaders.CONTENT_ENCODING);
+			boolean gzip = encoding != null && "gzip".equalsIgnoreCase(encoding.getValue());
+			byte[] body = message.getBody() != null ? message.getBody() : new byte[0];
+			if (gzip) {
+				body = gunzip(body);
+			}
+
+			Map<String, Object> echo = new LinkedHashMap<>();
+			echo.put("method", request.getMethod());
+			echo.put("protocol", HttpCoreContext.adapt(context).getProtocolVersion().toString());
+			URI uri = URI.create(request.getPath());
+			echo.put("path", uri.getPath());
+			echo.put("query", uri.getRawQuery());
+			echo.put("body", body.length == 0 ? null : OBJECT_MAPPER.readValue(body, Object.class));
+			byte[] response = OBJECT_MAPPER.writeValueAsBytes(echo);
+
+			final AsyncResponseBuilder builder;
+			if ("DELETE".equals(request.getMethod())) {
+				builder = AsyncResponseBuilder.create(204);
+			} else {
+				builder = AsyncResponseBuilder.create(200);
+				if (gzip) {
+					builder.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+					response = gzip(response);
+				}
+				builder.setEntity(response, ContentType.APPLICATION_JSON);
+			}
+			scheduler.schedule(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						responseTrigger.submitResponse(builder.build(), context);
+					} catch (HttpException | IOException e) {
+						// the client is gone
+					}
+				}
+			}, delay, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private final class HeldEntityProducer implements AsyncEntityProducer {
+
+		private final ByteBuffer first = ByteBuffer.wrap("{\"a\":1,".getBytes(StandardCharsets.UTF_8));
+
+		private final ByteBuffer rest = ByteBuffer.wrap("\"b\":2}".getBytes(StandardCharsets.UTF_8));
+
+		@Override
+		public void produce(final DataStreamChannel channel) throws IOException {
+			if (first.hasRemaining()) {
+				channel.write(first);
+				// registered before looking at the latch, so that a release in between still wakes it
+				heldChannels.add(channel);
+			}
+			if (!first.hasRemaining() && released.getCount() == 0) {
+				channel.write(rest);
+				if (!rest.hasRemaining()) {
+					channel.endStream();
+				}
+			}
+		}
+
+		@Override
+		public int available() {
+			return first.hasRemaining() || released.getCount() == 0 ? rest.remaining() : 0;
+		}
+
+		@Override
+		public boolean isRepeatable() {
+			return false;
+		}
+
+		@Override
+		public long getContentLength() {
+			return -1;
+		}
+
+		@Override
+		public String getContentType() {
+			return ContentType.APPLICATION_JSON.toString();
+		}
+
+		@Override
+		public String getContentEncoding() {
+			return null;
+		}
+
+		@Override
+		public boolean isChunked() {
+			return true;
+		}
+
+		@Override
+		public Set<String> getTrailerNames() {
+			return null;
+		}
+
+		@Override
+		public void failed(final Exception cause) {
+		}
+
+		@Override
+		public void releaseResources() {
+		}
+	}
+
+	private static byte[] gunzip(final byte[] bytes) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+		}
+		return out.toByteArray();
+	}
+
+	private static byte[] gzip(final byte[] bytes) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+			gzip.write(bytes);
+		}
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,184 @@
+package net.thegreshams.firebase4j.service;
+
+import static net.thegreshams.firebase4j.service.Firebase.OBJECT_MAPPER;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * An in-memory stand-in for the Firebase REST API, to be served by a
+ * {@link StubFirebaseServer}: a tree of maps supporting GET (including
+ * shallow=true), PUT, PATCH, POST and DELETE on any path.
+ */
+public class InMemoryFirebase implements HttpHandler {
+
+	private static final Splitter PATH_SPLITTER = Splitter.on('/').omitEmptyStrings();
+
+	private final Map<String, Object> root = new LinkedHashMap<>();
+
+	private final ConcurrentMap<String, AtomicInteger> requestCounts = new ConcurrentHashMap<>();
+
+	private final Set<String> failingPaths = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	private final AtomicInteger pushIds = new AtomicInteger();
+
+	@Override
+	public void handle(final HttpExchange exchange) throws IOException {
+		String method = exchange.getRequestMethod();
+		String uriPath = exchange.getRequestURI().getPath();
+		String path = uriPath.substring(1, uriPath.length() - ".json".length());
+		String body = StubFirebaseServer.readBody(exchange);
+		count(method);
+		if (failingPaths.contains(path)) {
+			StubFirebaseServer.respond(exchange, 500, "{\"error\":\"failing on purpose\"}");
+			return;
+		}
+
+		Object result;
+		switch (method) {
+		case "GET":
+			String query = exchange.getRequestURI().getRawQuery();
+			result = query != null && query.contains("shallow=true") ? shallow(get(path)) : get(path);
+			break;
+		case "PUT":
+			result = OBJECT_MAPPER.readValue(body, Object.class);
+			set(path, result);
+			break;
+		case "PATCH":
+			Map<?, ?> children = OBJECT_MAPPER.readValue(body, Map.class);
+			for (Map.Entry<?, ?> child : children.entrySet()) {
+				set(path + "/" + child.getKey(), child.getValue());
+			}
+			result = children;
+			break;
+		case "POST":
+			String name = String.format("-push%08d", pushIds.incrementAndGet());
+			set(path + "/" + name, OBJECT_MAPPER.readValue(body, Object.class));
+			result = Collections.singletonMap("name", name);
+			break;
+		case "DELETE":
+			set(path, null);
+			result = null;
+			break;
+		default:
+			StubFirebaseServer.respond(exchange, 405, "{\"error\":\"method not allowed\"}");
+			return;
+		}
+		StubFirebaseServer.respond(exchange, 200, OBJECT_MAPPER.writeValueAsString(result));
+	}
+
+	/**
+	 * @return a deep copy of the data at the path, or null if there is none
+	 */
+	public synchronized Object get(final String path) {
+		Object node = root;
+		for (String key : PATH_SPLITTER.split(path)) {
+			if (!(node instanceof Map)) {
+				return null;
+			}
+			node = ((Map<?, ?>) node).get(key);
+		}
+		if (node == root && root.isEmpty()) {
+			return null;
+		}
+		return node != null ? OBJECT_MAPPER.convertValue(node, Object.class) : null;
+	}
+
+	/**
+	 * Replaces the data at the path; null deletes it.
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized void set(final String path, final Object value) {
+		List<String> keys = PATH_SPLITTER.splitToList(path);
+		if (keys.isEmpty()) {
+			root.clear();
+			if (value instanceof Map) {
+				root.putAll((Map<String, Object>) OBJECT_MAPPER.convertValue(value, Map.class));
+			}
+			return;
+		}
+		List<Map<String, Object>> parents = new ArrayList<>();
+		Map<String, Object> node = root;
+		for (String key : keys.subList(0, keys.size() - 1)) {
+			parents.add(node);
+			Object child = node.get(key);
+			if (!(child instanceof Map)) {
+				if (value == null) {
+					return;
+				}
+				child = new LinkedHashMap<String, Object>();
+				node.put(key, child);
+			}
+			node = (Map<String, Object>) child;
+		}
+		String last = keys.get(keys.size() - 1);
+		if (value != null) {
+			node.put(last, OBJECT_MAPPER.convertValue(value, Object.class));
+			return;
+		}
+		node.remove(last);
+		// like Firebase, drop parents left without children
+		for (int i = parents.size() - 1; i >= 0 && node.isEmpty(); i--) {
+			parents.get(i).remove(keys.get(i));
+			node = parents.get(i);
+		}
+	}
+
+	/**
+	 * Answers every request on the path with a 500 until
+	 * {@link #recover(String)} is called.
+	 */
+	public void fail(final String path) {
+		failingPaths.add(path);
+	}
+
+	public void recover(final String path) {
+		failingPaths.remove(path);
+	}
+
+	/**
+	 * @return the number of requests received with the method
+	 */
+	public int requestCount(final String method) {
+		AtomicInteger count = requestCounts.get(method);
+		return count != null ? count.get() : 0;
+	}
+
+	private void count(final String method) {
+		AtomicInteger count = requestCounts.get(method);
+		if (count == null) {
+			requestCounts.putIfAbsent(method, new AtomicInteger());
+			count = requestCounts.get(method);
+		}
+		count.incrementAndGet();
+	}
+
+	private static Object shallow(final Object value) {
+		if (!(value instanceof Map)) {
+			return value;
+		}
+		Map<String, Object> keys = new LinkedHashMap<>();
+		for (Object key : ((Map<?, ?>) value).keySet()) {
+			keys.put(String.valueOf(key), true);
+		}
+		return keys;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return Joiner.on(", ").withKeyValueSeparator("=").join(root);
+	}
+}
@@ -0,0 +1,326 @@
+package net.thegreshams.firebase4j.service;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.thegreshams.firebase4j.model.FirebaseException;
+import net.thegreshams.firebase4j.model.FirebaseResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ShardedFirebaseTest {
+
+	private static final List<String> SHARDS = Arrays.asList("a", "b", "c");
+
+	private final Map<String, InMemoryFirebase> databases = new LinkedHashMap<>();
+
+	private final List<StubFirebaseServer> servers = new ArrayList<>();
+
+	private ShardedFirebase firebase;
+
+	@Before
+	public void setup() throws Exception {
+		for (String shard : SHARDS) {
+			InMemoryFirebase database = new InMemoryFirebase();
+			databases.put(shard, database);
+			servers.add(new StubFirebaseServer(database));
+		}
+	}
+
+	@After
+	public void teardown() throws IOException {
+		if (firebase != null) {
+			firebase.close();
+		}
+		for (StubFirebaseServer server : servers) {
+			server.close();
+		}
+	}
+
+	@Test
+	public void requests_shouldGoToTheShardOfTheirPrefix() throws Exception {
+		Map<String, String> shardsByPrefix = new HashMap<>();
+		shardsByPrefix.put("users", "a");
+		shardsByPrefix.put("/events/2024/", "b");
+		firebase = builder().strategy(new FirebasePrefixShardStrategy(shardsByPrefix, "c")).build();
+
+		firebase.put("users/joe", Collections.singletonMap("age", 24));
+		firebase.patch("users/joe", Collections.singletonMap("name", "Joe"));
+		String key = (String) firebase.post("events/2024", "launch").getBody().get("name");
+		firebase.put("events/2023/e1", "old");
+		firebase.put("usersettings/joe", "dark");
+
+		assertThat(databases.get("a").get("users/joe/age"), is((Object) 24));
+		assertThat(databases.get("a").get("users/joe/name"), is((Object) "Joe"));
+		assertThat(databases.get("b").get("events/2024/" + key), is((Object) "launch"));
+		assertThat(databases.get("c").get("events/2023/e1"), is((Object) "old"));
+		assertThat(databases.get("c").get("usersettings/joe"), is((Object) "dark"));
+		assertThat(firebase.get("users/joe/age", Integer.class), is(24));
+		assertThat(firebase.get("events/2023/e1").getRawBody(), is("\"old\""));
+
+		firebase.delete("users/joe");
+		assertThat(databases.get("a").get("users/joe"), is(nullValue()));
+		assertThat(databases.get("a").requestCount("GET"), is(1));
+		assertThat(databases.get("b").requestCount("GET"), is(0));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void requests_shouldFail_ifNoShardHoldsThePath() throws Exception {
+		firebase = builder().strategy(new FirebasePrefixShardStrategy(Collections.singletonMap("users", "a"), null))
+				.build();
+
+		firebase.get("events");
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void requests_shouldFail_ifStrategyGivesUnknownShard() throws Exception {
+		firebase = builder().strategy(new FirebasePrefixShardStrategy(Collections.<String, String> emptyMap(), "z"))
+				.build();
+
+		firebase.get("users");
+	}
+
+	@Test
+	public void requests_shouldCarryTheTokenOfTheirShard() throws Exception {
+		try (StubFirebaseServer one = new StubFirebaseServer(StubFirebaseServer.echo());
+		        StubFirebaseServer two = new StubFirebaseServer(StubFirebaseServer.echo())) {
+			Map<String, String> shardsByPrefix = new HashMap<>();
+			shardsByPrefix.put("one", "one");
+			shardsByPrefix.put("two", "two");
+			firebase = ShardedFirebase.builder()
+					.shard("one", one.getBaseUrl(), "token1")
+					.shard("two", two.getBaseUrl(), "token2")
+					.strategy(new FirebasePrefixShardStrategy(shardsByPrefix, null))
+					.build();
+
+			assertThat(firebase.get("one/x").getBody().get("query"), is((Object) "auth=token1"));
+			assertThat(firebase.get("two/x").getBody().get("query"), is((Object) "auth=token2"));
+			assertThat(firebase.getShards().get("one"), is(firebase.shardOf("one")));
+		}
+	}
+
+	@Test
+	public void writes_shouldBeRejected_abovePrefixesOnOtherShards() throws Exception {
+		Map<String, String> shardsByPrefix = new HashMap<>();
+		shardsByPrefix.put("events", "a");
+		shardsByPrefix.put("events/2024", "b");
+		shardsByPrefix.put("users/admins", "a");
+		firebase = builder().strategy(new FirebasePrefixShardStrategy(shardsByPrefix, "a")).build();
+
+		firebase.delete("users");
+		firebase.put("events/2023", "old");
+		try {
+			firebase.delete("events");
+			fail("expected an IllegalArgumentException");
+		} catch (IllegalArgumentException expected) {
+			assertThat(databases.get("a").requestCount("DELETE"), is(1));
+		}
+	}
+
+	@Test
+	public void writes_shouldBeRejected_aboveTheHashDepth() throws Exception {
+		firebase = builder().strategy(new FirebaseHashShardStrategy(SHARDS, 2)).build();
+		firebase.put("users/u1", 1);
+
+		for (String path : Arrays.asList("users", "/users/", "", null)) {
+			try {
+				firebase.put(path, Collections.singletonMap("u1", 2));
+				fail("expected an IllegalArgumentException");
+			} catch (IllegalArgumentException expected) {
+				// the children of the path live on any of the shards
+			}
+			try {
+				firebase.post(path, 2);
+				fail("expected an IllegalArgumentException");
+			} catch (IllegalArgumentException expected) {
+				// the generated child may belong on another shard
+			}
+			try {
+				firebase.delete(path);
+				fail("expected an IllegalArgumentException");
+			} catch (IllegalArgumentException expected) {
+				// the children of the path live on any of the shards
+			}
+		}
+		assertThat(firebase.get("users/u1", Integer.class), is(1));
+	}
+
+	@Test
+	public void patch_shouldSplitItsChildrenByShard_aboveTheHashDepth() throws Exception {
+		FirebaseHashShardStrategy strategy = new FirebaseHashShardStrategy(SHARDS, 2);
+		firebase = builder().strategy(strategy).build();
+		Map<String, Object> children = new LinkedHashMap<>();
+		for (int i = 0; i < 30; i++) {
+			children.put("u" + i, Collections.singletonMap("score", i));
+		}
+		Map<String, Object> names = new LinkedHashMap<>();
+		names.put("users/u7/name", "Seven");
+		names.put("users/u8/name", "Eight");
+
+		FirebaseResponse response = firebase.patch("users", children);
+		firebase.patch("", names);
+
+		assertThat(response.isSuccess(), is(true));
+		for (int i = 0; i < 30; i++) {
+			InMemoryFirebase database = databases.get(strategy.shardOf("users/u" + i));
+			assertThat(database.get("users/u" + i + "/score"), is((Object) i));
+		}
+		assertThat(databases.get(strategy.shardOf("users/u7")).get("users/u7/name"), is((Object) "Seven"));
+		assertThat(databases.get(strategy.shardOf("users/u8")).get("users/u8/name"), is((Object) "Eight"));
+		assertThat(firebase.gather("users").size(), is(30));
+		for (InMemoryFirebase database : databases.values()) {
+			assertThat(database.requestCount("PATCH"), is(lessThan(3)));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void patch_shouldBeRejected_forChildrenAboveTheHashDepth() throws Exception {
+		firebase = builder().strategy(new FirebaseHashShardStrategy(SHARDS, 3)).build();
+
+		firebase.patch("users", Collections.singletonMap("u1", Collections.singletonMap("score", 1)));
+	}
+
+	@Test
+	public void getAll_shouldReadEveryPathFromItsShard_inOrder() throws Exception {
+		firebase = builder().strategy(new FirebaseHashShardStrategy(SHARDS, 2)).build();
+		List<String> paths = new ArrayList<>();
+		for (int i = 0; i < 30; i++) {
+			paths.add("users/u" + i);
+			firebase.put("users/u" + i + "/score", i);
+		}
+		Collections.reverse(paths);
+
+		Map<String, FirebaseResponse> responses = firebase.getAll(paths);
+
+		assertThat(new ArrayList<>(responses.keySet()), is(paths));
+		for (String path : paths) {
+			assertThat(responses.get(path).getBody().get("score"), is((Object) Integer.valueOf(path.substring(7))));
+		}
+		for (InMemoryFirebase database : databases.values()) {
+			assertThat(database.requestCount("GET"), is(greaterThan(0)));
+		}
+	}
+
+	@Test(timeout = 30000)
+	public void getAll_shouldNotDeadlock_onABoundedExecutorSmallerThanTheShards() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			firebase = builder().strategy(new FirebaseHashShardStrategy(SHARDS, 2))
+					.config(FirebaseClientConfig.builder().executor(executor).build())
+					.build();
+			List<String> paths = new ArrayList<>();
+			for (int i = 0; i < 30; i++) {
+				paths.add("users/u" + i);
+			}
+
+			Map<String, FirebaseResponse> responses = firebase.getAll(paths);
+
+			assertThat(responses.size(), is(30));
+			for (InMemoryFirebase database : databases.values()) {
+				assertThat(database.requestCount("GET"), is(greaterThan(0)));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void gather_shouldMergeTheChildrenOfEveryShard() throws Exception {
+		firebase = builder().strategy(new FirebaseHashShardStrategy(SHARDS, 2)).build();
+		for (int i = 0; i < 30; i++) {
+			firebase.put("users/u" + i, Collections.singletonMap("score", i));
+		}
+
+		Map<String, Object> users = firebase.gather("users");
+		Map<String, FirebaseResponse> responses = firebase.getFromAll("users");
+
+		assertThat(users.size(), is(30));
+		assertThat(((Map<?, ?>) users.get("u7")).get("score"), is((Object) 7));
+		assertThat(responses.keySet(), contains("a", "b", "c"));
+		int children = 0;
+		for (FirebaseResponse response : responses.values()) {
+			assertThat(response.getBody().size(), is(lessThan(30)));
+			children += response.getBody().size();
+		}
+		assertThat(children, is(30));
+		assertThat(firebase.gather("nothing").isEmpty(), is(true));
+	}
+
+	@Test
+	public void gather_shouldFail_ifAnyShardFails() throws Exception {
+		firebase = builder().build();
+		databases.get("b").fail("users");
+
+		try {
+			firebase.gather("users");
+			fail("expected a FirebaseException");
+		} catch (FirebaseException expected) {
+			assertThat(expected.getResponse().getCode(), is(500));
+		}
+	}
+
+	@Test
+	public void hashStrategy_shouldSpreadPrefixesEvenly_andMoveFewWhenAShardIsAdded() {
+		FirebaseShardStrategy three = new FirebaseHashShardStrategy(SHARDS, 2);
+		FirebaseShardStrategy four = new FirebaseHashShardStrategy(Arrays.asList("a", "b", "c", "d"), 2);
+		Map<String, Integer> counts = new HashMap<>();
+		int moved = 0;
+		for (int i = 0; i < 3000; i++) {
+			String shard = three.shardOf("users/u" + i + "/score");
+			assertThat(three.shardOf("/users/u" + i + "/name/"), is(shard));
+			counts.put(shard, counts.containsKey(shard) ? counts.get(shard) + 1 : 1);
+			String newShard = four.shardOf("users/u" + i);
+			if (!newShard.equals(shard)) {
+				assertThat(newShard, is("d"));
+				moved++;
+			}
+		}
+
+		for (String shard : SHARDS) {
+			assertThat(counts.get(shard), is(greaterThan(800)));
+		}
+		assertThat(moved, is(greaterThan(500)));
+		assertThat(moved, is(lessThan(1000)));
+	}
+
+	@Test
+	public void shardOf_shouldHashTheFirstSegment_byDefault() throws Exception {
+		firebase = builder().build();
+
+		Firebase shard = firebase.shardOf("users");
+		for (int i = 0; i < 20; i++) {
+			assertThat(firebase.shardOf("users/u" + i), is(shard));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void builder_shouldRejectDuplicateShardNames() {
+		ShardedFirebase.builder().shard("a", "http://localhost/", null).shard("a", "http://localhost:81/", null);
+	}
+
+	private ShardedFirebase.Builder builder() {
+		ShardedFirebase.Builder builder = ShardedFirebase.builder();
+		for (int i = 0; i < SHARDS.size(); i++) {
+			builder.shard(SHARDS.get(i), servers.get(i).getBaseUrl(), null);
+		}
+		return builder;
+	}
+}
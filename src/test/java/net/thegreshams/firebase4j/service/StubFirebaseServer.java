@@ -0,0 +1,105 @@
+package net.thegreshams.firebase4j.service;
+
+import static net.thegreshams.firebase4j.service.Firebase.OBJECT_MAPPER;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local HTTP server standing in for Firebase in tests. Binds an ephemeral
+ * port on the loopback interface and dispatches every request to a single
+ * {@link HttpHandler}.
+ */
+public class StubFirebaseServer implements Closeable {
+
+	static {
+		// without this, Nagle's algorithm delays small responses by ~40ms
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+	}
+
+	private final HttpServer server;
+
+	private final ExecutorService executor;
+
+	public StubFirebaseServer(final HttpHandler handler) throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", handler);
+		executor = Executors.newFixedThreadPool(32);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	public String getBaseUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	/**
+	 * @return a handler answering every request with a JSON description of
+	 *         the request it received (method, path, raw query and body)
+	 */
+	public static HttpHandler echo() {
+		return new HttpHandler() {
+
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException {
+				Map<String, Object> echo = new LinkedHashMap<>();
+				echo.put("method", exchange.getRequestMethod());
+				echo.put("path", exchange.getRequestURI().getPath());
+				echo.put("query", exchange.getRequestURI().getRawQuery());
+				String body = readBody(exchange);
+				echo.put("body", body.isEmpty() ? null : OBJECT_MAPPER.readValue(body, Map.class));
+
+				if ("DELETE".equals(exchange.getRequestMethod())) {
+					respond(exchange, 204, null);
+				} else {
+					respond(exchange, 200, OBJECT_MAPPER.writeValueAsString(echo));
+				}
+			}
+		};
+	}
+
+	public static String readBody(final HttpExchange exchange) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (InputStream in = exchange.getRequestBody()) {
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+		}
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	public static void respond(final HttpExchange exchange, final int code, final String body) throws IOException {
+		if (body == null) {
+			exchange.sendResponseHeaders(code, -1);
+			exchange.close();
+			return;
+		}
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(code, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+}